@@ -0,0 +1,125 @@
+package io.left.rightmesh.libdtn.common.data;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CrcBenchmark compares the {@link Crc} implementation with the byte-at-a-time table lookup it
+ * replaced, over heap and direct buffers of various sizes. Run with ./gradlew :libdtn-common:jmh
+ *
+ * @author Lucien Loiseau on 22/11/18.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrcBenchmark {
+
+    private static final int[] CRC16_TABLE = table(0x8408);
+    private static final int[] CRC32_TABLE = table(0xedb88320);
+
+    @Param({"64", "4096", "1048576"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private ByteBuffer data;
+
+    /**
+     * reflected lookup table of a polynomial.
+     */
+    private static int[] table(int polynomial) {
+        int[] ret = new int[256];
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ polynomial : c >>> 1;
+            }
+            ret[n] = c;
+        }
+        return ret;
+    }
+
+    /**
+     * prepare random data.
+     */
+    @Setup
+    public void setup() {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        data = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        data.put(bytes);
+        data.flip();
+    }
+
+    /**
+     * previous Crc-16 implementation.
+     *
+     * @return crc
+     */
+    @Benchmark
+    public short crc16ByteAtATime() {
+        ByteBuffer buffer = data.duplicate();
+        short crc16 = (short) 0xffff;
+        while (buffer.hasRemaining()) {
+            crc16 = (short) ((crc16 >> 8)
+                    ^ (short) CRC16_TABLE[((crc16 & 0xff) ^ buffer.get()) & 0xff]);
+        }
+        return (short) ~crc16;
+    }
+
+    /**
+     * slicing-by-8 Crc-16.
+     *
+     * @return crc
+     */
+    @Benchmark
+    public ByteBuffer crc16SlicingBy8() {
+        Crc crc = Crc.init(Crc.CrcType.CRC16);
+        crc.read(data.duplicate());
+        return crc.done();
+    }
+
+    /**
+     * previous Crc-32 implementation.
+     *
+     * @return crc
+     */
+    @Benchmark
+    public int crc32ByteAtATime() {
+        ByteBuffer buffer = data.duplicate();
+        int crc32 = 0xffffffff;
+        while (buffer.hasRemaining()) {
+            crc32 = ((crc32 >> 8) ^ CRC32_TABLE[((crc32 & 0xff) ^ buffer.get()) & 0xff]);
+        }
+        return ~crc32;
+    }
+
+    /**
+     * intrinsic Crc-32.
+     *
+     * @return crc
+     */
+    @Benchmark
+    public ByteBuffer crc32Intrinsic() {
+        Crc crc = Crc.init(Crc.CrcType.CRC32);
+        crc.read(data.duplicate());
+        return crc.done();
+    }
+}
@@ -0,0 +1,145 @@
+package io.left.rightmesh.libdtn.common.data.bundlev7;
+
+import io.left.rightmesh.libcbor.CBOR;
+import io.left.rightmesh.libcbor.CborParser;
+import io.left.rightmesh.libcbor.rxparser.RxParserException;
+import io.left.rightmesh.libdtn.common.BaseExtensionToolbox;
+import io.left.rightmesh.libdtn.common.data.AgeBlock;
+import io.left.rightmesh.libdtn.common.data.BlockHeader;
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.BundleId;
+import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.data.PayloadBlock;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+import io.left.rightmesh.libdtn.common.data.ScopeControlHopLimitBlock;
+import io.left.rightmesh.libdtn.common.data.blob.BaseBlobFactory;
+import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BundleV7Item;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
+import io.left.rightmesh.libdtn.common.data.eid.EidIpn;
+import io.left.rightmesh.libdtn.common.utils.Log;
+import io.left.rightmesh.libdtn.common.utils.NullLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BundleV7ParserBenchmark compares parsing every received bundle with a new
+ * {@link BundleV7Item}, as a channel used to do, with reusing the same item for every bundle.
+ * Run with the gc profiler to see the allocation per bundle:
+ * ./gradlew :libdtn-common:jmh -PjmhArgs="BundleV7ParserBenchmark -prof gc"
+ *
+ * @author Lucien Loiseau on 24/11/18.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleV7ParserBenchmark {
+
+    @Param({"false", "true"})
+    public boolean crc;
+
+    private Log logger = new NullLogger();
+    private BaseExtensionToolbox toolbox = new BaseExtensionToolbox();
+    private BlobFactory blobFactory = new BaseBlobFactory().enableVolatile(1000000);
+    private byte[] encoded;
+    private Bundle[] result = {null};
+    private CborParser freshParser;
+    private CborParser reusedParser;
+
+    /**
+     * serialize a bundle with a few extension blocks and prepare the parsers.
+     */
+    @Setup
+    public void setup() {
+        Bundle bundle = new Bundle();
+        bundle.setDestination(new EidIpn(5, 12));
+        bundle.setSource(DtnEid.unsafe("source"));
+        bundle.setReportto(DtnEid.nullEid());
+        bundle.bid = BundleId.create(bundle);
+        CanonicalBlock age = new AgeBlock();
+        CanonicalBlock scope = new ScopeControlHopLimitBlock();
+        CanonicalBlock payload = new PayloadBlock("This is a test for bundle parsing");
+        if (crc) {
+            bundle.setCrcType(PrimaryBlock.CrcFieldType.CRC_32);
+            age.crcType = BlockHeader.CrcFieldType.CRC_16;
+            scope.crcType = BlockHeader.CrcFieldType.CRC_16;
+            payload.crcType = BlockHeader.CrcFieldType.CRC_32;
+        }
+        bundle.addBlock(age);
+        bundle.addBlock(scope);
+        bundle.addBlock(payload);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BundleV7Serializer.encode(bundle, new BaseBlockDataSerializerFactory())
+                .observe()
+                .blockingForEach(buffer -> {
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer.get());
+                    }
+                });
+        encoded = out.toByteArray();
+
+        freshParser = CBOR.parser().cbor_parse_custom_item(
+                () -> new BundleV7Item(logger, toolbox, blobFactory),
+                (p, t, item) -> result[0] = item.bundle);
+
+        BundleV7Item bundleItem = new BundleV7Item(logger, toolbox, blobFactory);
+        reusedParser = CBOR.parser().cbor_parse_custom_item(
+                () -> bundleItem,
+                (p, t, item) -> result[0] = item.bundle);
+    }
+
+    private Bundle parse(CborParser parser) throws RxParserException {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        while (!parser.read(buffer)) {
+            if (!buffer.hasRemaining()) {
+                throw new RxParserException("truncated bundle");
+            }
+        }
+        parser.reset();
+        Bundle ret = result[0];
+        ret.clearBundle();
+        return ret;
+    }
+
+    /**
+     * a new BundleV7Item for every bundle.
+     *
+     * @return the parsed bundle
+     * @throws RxParserException if the bundle is malformed
+     */
+    @Benchmark
+    public Bundle freshItem() throws RxParserException {
+        return parse(freshParser);
+    }
+
+    /**
+     * the same BundleV7Item for every bundle.
+     *
+     * @return the parsed bundle
+     * @throws RxParserException if the bundle is malformed
+     */
+    @Benchmark
+    public Bundle reusedItem() throws RxParserException {
+        return parse(reusedParser);
+    }
+}
@@ -39,12 +39,12 @@ public abstract class BlockBlob extends CanonicalBlock {
     }
 
     /**
-     * Clear the blob unless it is tagged not so.
+     * Release the reference this block holds on its blob.
      */
     @Override
     public void clearBlock() {
         super.clearBlock();
-        data.getWritableBlob().clear();
+        data.release();
     }
 
     @Override
@@ -1,6 +1,7 @@
 package io.left.rightmesh.libdtn.common.data;
 
 import io.left.rightmesh.libdtn.common.data.eid.Eid;
+import io.left.rightmesh.libdtn.common.utils.RefCounter;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -15,12 +16,16 @@ import java.util.LinkedList;
  * This is useful for bundle processing pipelines. Those attachement will not get serialized
  * neither to peers nor to storage.
  *
+ * <p>A Bundle is reference-counted, it is created with a single reference owned by its creator.
+ * The blocks are only cleared once every holder has released its reference.
+ *
  * @author Lucien Loiseau on 16/07/18.
  */
 public class Bundle extends PrimaryBlock implements BundleApi {
 
     public ArrayList<CanonicalBlock> blocks = new ArrayList<>();
     private int blockNumber = 1;
+    private final RefCounter refCnt = new RefCounter();
 
     /**
      * Default Constructor.
@@ -61,10 +66,30 @@ public class Bundle extends PrimaryBlock implements BundleApi {
 
     @Override
     public void clearBundle() {
+        release();
+    }
+
+    @Override
+    public Bundle retain() {
+        refCnt.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        if (!refCnt.release()) {
+            return false;
+        }
         for (Block block : blocks) {
             block.clearBlock();
         }
         blocks.clear();
+        return true;
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt.get();
     }
 
     @Override
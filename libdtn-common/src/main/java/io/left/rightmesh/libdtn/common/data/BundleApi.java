@@ -10,10 +10,34 @@ import java.util.LinkedList;
 public interface BundleApi {
 
     /**
-     * clear all extension from this bundle.
+     * release the reference held by the caller on this bundle, see {@link #release()}.
      */
     void clearBundle();
 
+    /**
+     * Acquire a new reference on this bundle. Every component that holds the bundle beyond the
+     * current processing (storage, in-flight transmission, delivery) must retain it and release
+     * it when it is done.
+     *
+     * @return this bundle
+     */
+    BundleApi retain();
+
+    /**
+     * Release a reference on this bundle. When the last reference is released, every block is
+     * cleared and the resources held by their blob are freed.
+     *
+     * @return true if the bundle was cleared, false if it is still referenced
+     */
+    boolean release();
+
+    /**
+     * Number of references currently held on this bundle.
+     *
+     * @return reference count
+     */
+    int refCnt();
+
     /**
      * check if ths current Bundle has a block of given type.
      *
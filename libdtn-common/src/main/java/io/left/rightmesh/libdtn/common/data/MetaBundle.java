@@ -1,7 +1,8 @@
 package io.left.rightmesh.libdtn.common.data;
 
 /**
- * MetaBundle is a Bundle that only contains the {@link PrimaryBlock}.
+ * MetaBundle is a Bundle that only contains the {@link PrimaryBlock}. It holds no resources so
+ * it is never cleared and its references are not counted.
  *
  * @author Lucien Loiseau on 07/10/18.
  */
@@ -17,4 +18,14 @@ public class MetaBundle extends Bundle {
     public MetaBundle(Bundle bundle) {
         super((PrimaryBlock)bundle);
     }
+
+    @Override
+    public MetaBundle retain() {
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return false;
+    }
 }
@@ -4,11 +4,17 @@ import io.left.rightmesh.libdtn.common.data.eid.ApiEid;
 import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
 import io.left.rightmesh.libdtn.common.data.eid.Eid;
 
+import java.nio.ByteBuffer;
+
 /**
  * PrimaryBlock is the first block of a {@link Bundle}, there can be only one per Bundle.
  * The primary bundle block contains the basic information needed to route bundles
  * to their destinations.
  *
+ * <p>The primary block doesn't change while the bundle is in transit so its serialized form,
+ * Crc included, is cached the first time it is needed and is dropped whenever a field is set.
+ * The Eid are considered immutable values.
+ *
  * @author Lucien Loiseau on 20/07/18.
  */
 public class PrimaryBlock extends Block {
@@ -90,6 +96,7 @@ public class PrimaryBlock extends Block {
 
     /* libdtn internal use */
     public BundleId bid;
+    private volatile ByteBuffer encodedCache = null;
 
     /**
      * Constructor: creates an empty PrimaryBlock, should probably not be used.
@@ -124,7 +131,9 @@ public class PrimaryBlock extends Block {
      * @param other other primary block to copy
      */
     public PrimaryBlock(PrimaryBlock other) {
+        this.version = other.version;
         this.procV7Flags = other.procV7Flags;
+        this.crcType = other.crcType;
         this.source = other.source;
         this.destination = other.destination;
         this.reportto = other.reportto;
@@ -196,10 +205,12 @@ public class PrimaryBlock extends Block {
 
     public void setVersion(int version) {
         this.version = version;
+        invalidateEncodedCache();
     }
 
     public void setProcV7Flags(long procV7Flags) {
         this.procV7Flags = procV7Flags;
+        invalidateEncodedCache();
     }
 
     /**
@@ -214,44 +225,80 @@ public class PrimaryBlock extends Block {
         } else {
             procV7Flags &= ~(0b1L << flag.getOffset());
         }
+        invalidateEncodedCache();
     }
 
     public void setCrcType(CrcFieldType crcType) {
         this.crcType = crcType;
+        invalidateEncodedCache();
     }
 
     public void setDestination(Eid destination) {
         this.destination = destination;
+        invalidateEncodedCache();
     }
 
     public void setSource(Eid source) {
         this.source = source;
         this.bid = BundleId.create(this);
+        invalidateEncodedCache();
     }
 
     public void setReportto(Eid reportto) {
         this.reportto = reportto;
+        invalidateEncodedCache();
     }
 
     public void setCreationTimestamp(long creationTimestamp) {
         this.creationTimestamp = creationTimestamp;
         this.bid = BundleId.create(this);
+        invalidateEncodedCache();
     }
 
     public void setSequenceNumber(long sequenceNumber) {
         this.sequenceNumber = sequenceNumber;
         this.bid = BundleId.create(this);
+        invalidateEncodedCache();
     }
 
     public void setLifetime(long lifetime) {
         this.lifetime = lifetime;
+        invalidateEncodedCache();
     }
 
     public void setAppDataLength(Long appDataLength) {
         this.appDataLength = appDataLength;
+        invalidateEncodedCache();
     }
 
     public void setFragmentOffset(Long fragmentOffset) {
         this.fragmentOffset = fragmentOffset;
+        invalidateEncodedCache();
+    }
+
+    /**
+     * returns the cached serialized form of this block.
+     *
+     * @return read-only buffer holding the serialized block, null if it is not cached
+     */
+    public ByteBuffer getEncodedCache() {
+        ByteBuffer cache = encodedCache;
+        return cache == null ? null : cache.duplicate();
+    }
+
+    /**
+     * cache the serialized form of this block until a field is set.
+     *
+     * @param encoded serialized block, from its position to its limit
+     */
+    public void setEncodedCache(ByteBuffer encoded) {
+        this.encodedCache = encoded.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * drop the cached serialized form of this block.
+     */
+    public void invalidateEncodedCache() {
+        this.encodedCache = null;
     }
 }
@@ -7,7 +7,10 @@ import java.io.File;
 import java.io.IOException;
 
 /**
- * BaseBlobFactory is a Blob factory that can creates volatile or persistent {@link Blob}.
+ * BaseBlobFactory is a Blob factory that can creates volatile or persistent {@link Blob}. A
+ * Blob is created in volatile memory first unless it is larger than the volatile threshold, in
+ * which case it is created in persistent storage first so that a very large Blob is streamed to
+ * disk without ever being held in memory.
  *
  * @author Lucien Loiseau on 28/10/18.
  */
@@ -19,6 +22,7 @@ public class BaseBlobFactory implements BlobFactory {
     private boolean enableVolatileBlob = false;
     private boolean enableFileBlob = false;
     private String filePath = "./";
+    private long volatileThreshold = Long.MAX_VALUE;
 
     /**
      * enable volatile Blob to be created.
@@ -65,6 +69,28 @@ public class BaseBlobFactory implements BlobFactory {
         return this;
     }
 
+    /**
+     * Set the size above which a {@link Blob} is created in persistent storage rather than in
+     * volatile memory. A larger Blob is still created in volatile memory if persistent Blob are
+     * disabled.
+     *
+     * @param threshold size in bytes
+     * @return the current BaseBlobFactory.
+     */
+    public BaseBlobFactory setVolatileThreshold(long threshold) {
+        this.volatileThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Get the size above which a {@link Blob} is created in persistent storage first.
+     *
+     * @return threshold size in bytes
+     */
+    public long getVolatileThreshold() {
+        return volatileThreshold;
+    }
+
     /**
      * Check wether volatile blob is enabled.
      *
@@ -74,6 +100,15 @@ public class BaseBlobFactory implements BlobFactory {
         return enableVolatileBlob;
     }
 
+    /**
+     * Get the memory tracker shared by all the volatile Blob created by this factory.
+     *
+     * @return the VolatileMemory or null if volatile Blob were never enabled.
+     */
+    public VolatileMemory getVolatileMemory() {
+        return memory;
+    }
+
     /**
      * Check wether persistent blob is enabled.
      *
@@ -92,11 +127,11 @@ public class BaseBlobFactory implements BlobFactory {
      * @return a new {@link ByteBufferBlob}
      * @throws BlobFactoryException if volatile {@link Blob} are disabled or if there is no memory.
      */
-    public Blob createVolatileBlob(int expectedSize) throws BlobFactoryException {
+    public Blob createVolatileBlob(long expectedSize) throws BlobFactoryException {
         // try in volatile memory
-        if (isVolatileEnabled()) {
+        if (isVolatileEnabled() && expectedSize <= Integer.MAX_VALUE) {
             try {
-                return new ByteBufferBlob(memory, expectedSize);
+                return new ByteBufferBlob(memory, (int) expectedSize);
             } catch (IOException io) {
                 throw new BlobFactoryException();
             }
@@ -111,7 +146,7 @@ public class BaseBlobFactory implements BlobFactory {
      * @return a new {@link FileBlob}
      * @throws BlobFactoryException if persistent {@link Blob} are disabled or if disk is full.
      */
-    public Blob createFileBlob(int expectedSize) throws BlobFactoryException {
+    public Blob createFileBlob(long expectedSize) throws BlobFactoryException {
         // try in persistent memory
         if (isPersistentEnabled()) {
             if (spaceLeft(filePath) > expectedSize) {
@@ -127,22 +162,33 @@ public class BaseBlobFactory implements BlobFactory {
     }
 
     @Override
-    public Blob createBlob(int expectedSize) throws BlobFactoryException {
+    public Blob createBlob(long expectedSize) throws BlobFactoryException {
         if (expectedSize < 0) {
             // indefinite size Blob
             return createGrowingBlob();
         }
 
+        boolean large = expectedSize > getVolatileThreshold();
+        if (large) {
+            try {
+                return createFileBlob(expectedSize);
+            } catch (BlobFactoryException e) {
+                /* ignore */
+            }
+        }
+
         try {
             return createVolatileBlob(expectedSize);
         } catch (BlobFactoryException e) {
             /* ignore */
         }
 
-        try {
-            return createFileBlob(expectedSize);
-        } catch (BlobFactoryException e) {
-            /* ignore */
+        if (!large) {
+            try {
+                return createFileBlob(expectedSize);
+            } catch (BlobFactoryException e) {
+                /* ignore */
+            }
         }
 
         return new NullBlob();
@@ -6,7 +6,9 @@ import io.left.rightmesh.libdtn.common.utils.Supplier;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * A Blob is an abstract structure that holds a buffer that may be very large.
@@ -33,6 +35,30 @@ public interface Blob extends Taggable {
      */
     Flowable<ByteBuffer> observe();
 
+    /**
+     * Write the entire Blob into a channel. A Blob backed by a file hands the transfer to
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)} so that
+     * the kernel may move the data without copying it through the JVM, a Blob held in memory
+     * writes its buffers directly. The default implementation writes every buffer observed.
+     *
+     * @param target channel to write the Blob into
+     * @return number of bytes written
+     * @throws IOException if the Blob could not be read or the channel could not be written
+     */
+    default long transferTo(WritableByteChannel target) throws IOException {
+        long written = 0;
+        try {
+            for (ByteBuffer buffer : observe().blockingIterable()) {
+                while (buffer.hasRemaining()) {
+                    written += target.write(buffer);
+                }
+            }
+        } catch (RuntimeException re) {
+            throw new IOException(re.getCause() != null ? re.getCause() : re);
+        }
+        return written;
+    }
+
     /**
      * modify the content of the Blob in-place. If the function throws an Exception it will
      * not modify the Blob.
@@ -82,4 +108,46 @@ public interface Blob extends Taggable {
      * @return Completable that completes when the task is finished.
      */
     Completable moveToFile(String path);
+
+    /**
+     * Number of references currently held on this Blob. A Blob that doesn't count its
+     * references always returns 1.
+     *
+     * @return reference count
+     */
+    default int refCnt() {
+        return 1;
+    }
+
+    /**
+     * Acquire a new reference on this Blob, the data remains valid until every reference is
+     * released. A Blob that doesn't count its references ignores this call.
+     *
+     * @return this Blob
+     */
+    default Blob retain() {
+        return this;
+    }
+
+    /**
+     * Release a reference on this Blob. The resources held by the Blob are freed when the last
+     * reference is released. A Blob that doesn't count its references is cleared right away.
+     *
+     * @return true if the Blob was freed, false if it is still referenced
+     */
+    default boolean release() {
+        getWritableBlob().clear();
+        return true;
+    }
+
+    /**
+     * Give up the ownership of the file holding this Blob: releasing the last reference no
+     * longer deletes it. Used once the file was handed to a storage, which deletes it itself.
+     * A Blob that doesn't own a file ignores this call.
+     *
+     * @return this Blob
+     */
+    default Blob disown() {
+        return this;
+    }
 }
@@ -11,12 +11,13 @@ public interface BlobFactory {
     }
 
     /**
-     * creates a new {@link Blob} of expected size.
+     * creates a new {@link Blob} of expected size. A negative size means that the size is not
+     * known in advance.
      *
      * @param size expected
      * @return a new Blob instance
      * @throws BlobFactoryException if the Blob could not be created.
      */
-    Blob createBlob(int size) throws BlobFactoryException;
+    Blob createBlob(long size) throws BlobFactoryException;
 
 }
@@ -1,16 +1,30 @@
 package io.left.rightmesh.libdtn.common.data.blob;
 
+import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.RefCounter;
+import io.left.rightmesh.libdtn.common.utils.Supplier;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
- * ByteBufferBlob is a {@link Blob} that uses a ByteBuffer internally to hold the data.
+ * ByteBufferBlob is a {@link Blob} that uses a ByteBuffer internally to hold the data. The
+ * ByteBuffer is a chunk of off-heap memory allocated from {@link VolatileMemory}.
+ *
+ * <p>The Blob is reference-counted, it is created with a single reference and every holder that
+ * needs the data to outlive the current owner must {@link #retain()} it. The chunk is given back
+ * to the VolatileMemory as soon as the last reference is released. Clearing the
+ * {@link WritableBlob} releases one reference.
  *
  * @author Lucien Loiseau on 20/09/18.
  */
 public class ByteBufferBlob extends UntrackedByteBufferBlob {
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     private VolatileMemory memory;
+    private VolatileMemory.Tracker tracker;
+    private final RefCounter refCnt = new RefCounter();
 
     /**
      * Constructor.
@@ -20,25 +34,98 @@ public class ByteBufferBlob extends UntrackedByteBufferBlob {
      * @throws IOException if the Blob could not be created.
      */
     public ByteBufferBlob(VolatileMemory memory, int expectedSize) throws IOException {
+        init(memory, memory.malloc(expectedSize));
+    }
+
+    /**
+     * Constructor creates a ByteBufferBlob holding a copy of a byte array.
+     *
+     * @param memory a memory tracker.
+     * @param data array to copy.
+     * @throws IOException if the Blob could not be created.
+     */
+    public ByteBufferBlob(VolatileMemory memory, byte[] data) throws IOException {
+        init(memory, memory.malloc(data));
+    }
+
+    /**
+     * Constructor creates a ByteBufferBlob holding a copy of the remaining bytes of a buffer.
+     *
+     * @param memory a memory tracker.
+     * @param data buffer to copy.
+     * @throws IOException if the Blob could not be created.
+     */
+    public ByteBufferBlob(VolatileMemory memory, ByteBuffer data) throws IOException {
+        init(memory, memory.malloc(data));
+    }
+
+    private void init(VolatileMemory memory, ByteBuffer chunk) {
         this.memory = memory;
-        this.data = memory.malloc(expectedSize);
+        this.data = chunk;
         this.data.mark();
+        this.tracker = memory.track(this, chunk);
     }
 
-    public ByteBufferBlob(byte[] data) throws IOException {
-        this.data = memory.malloc(data);
-        this.data.mark();
+    /**
+     * The function is given a heap copy of the data so it can safely access its backing array,
+     * the result is then copied into a new chunk and the old one is given back.
+     */
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> function,
+                    Supplier<ByteBuffer> close) throws Exception {
+        if (refCnt.get() == 0) {
+            throw new IOException("blob already released");
+        }
+
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+
+        ByteBuffer opened = open.get();
+        ByteBuffer mapped = function.apply(ByteBuffer.wrap(copy));
+        ByteBuffer closed = close.get();
+        ByteBuffer ret = memory.malloc(opened.remaining()
+                + mapped.remaining()
+                + closed.remaining());
+        ret.put(opened);
+        ret.put(mapped);
+        ret.put(closed);
+        ret.position(0);
+        ret.mark();
+
+        ByteBuffer old = data;
+        this.data = ret;
+        tracker.update(ret);
+        memory.free(old);
     }
 
-    public ByteBufferBlob(ByteBuffer data) throws IOException {
-        this.data = memory.malloc(data);
-        this.data.mark();
+    @Override
+    void clearData() {
+        release();
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt.get();
     }
 
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        memory.free(data.capacity());
+    public ByteBufferBlob retain() {
+        refCnt.retain();
+        return this;
     }
 
+    @Override
+    public boolean release() {
+        if (!refCnt.release()) {
+            return false;
+        }
+
+        ByteBuffer chunk = data;
+        data = EMPTY.duplicate();
+        data.mark();
+        tracker.close();
+        memory.free(chunk);
+        return true;
+    }
 }
@@ -0,0 +1,291 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.Supplier;
+import io.reactivex.Flowable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+/**
+ * CompositeBlob is a volatile {@link Blob} made of a sequence of segments. A segment is a
+ * ByteBuffer that the composite takes over and never modifies, the caller must not modify it
+ * either once it is added. Segments can be prepended or appended and the composite can be
+ * sliced without copying any data, so a header or a trailer can be stitched around a payload
+ * for free. The segments can be retrieved all at once with {@link #nioBuffers()} for a
+ * gathering write.
+ *
+ * @author Lucien Loiseau on 18/11/18.
+ */
+public class CompositeBlob extends VolatileBlob {
+
+    private static final int STAGING_SIZE = 4096;
+
+    private ArrayList<ByteBuffer> segments = new ArrayList<>();
+    private long size = 0;
+
+    /**
+     * Constructor: creates an empty CompositeBlob.
+     */
+    public CompositeBlob() {
+    }
+
+    /**
+     * Constructor: creates a CompositeBlob out of segments, in order.
+     *
+     * @param buffers segments, from their position to their limit
+     */
+    public CompositeBlob(ByteBuffer... buffers) {
+        for (ByteBuffer buffer : buffers) {
+            append(buffer);
+        }
+    }
+
+    /**
+     * Add a segment at the end of this Blob.
+     *
+     * @param buffer segment, from its position to its limit
+     * @return this Blob
+     */
+    public CompositeBlob append(ByteBuffer buffer) {
+        if (buffer.hasRemaining()) {
+            segments.add(buffer.slice());
+            size += buffer.remaining();
+        }
+        return this;
+    }
+
+    /**
+     * Add every segment of another CompositeBlob at the end of this Blob.
+     *
+     * @param other composite whose segments are shared
+     * @return this Blob
+     */
+    public CompositeBlob append(CompositeBlob other) {
+        for (ByteBuffer segment : new ArrayList<>(other.segments)) {
+            append(segment.duplicate());
+        }
+        return this;
+    }
+
+    /**
+     * Add a segment at the beginning of this Blob.
+     *
+     * @param buffer segment, from its position to its limit
+     * @return this Blob
+     */
+    public CompositeBlob prepend(ByteBuffer buffer) {
+        if (buffer.hasRemaining()) {
+            segments.add(0, buffer.slice());
+            size += buffer.remaining();
+        }
+        return this;
+    }
+
+    /**
+     * Create a new CompositeBlob that shares a range of the data of this Blob. No data is
+     * copied, the cost only depends on the number of segments.
+     *
+     * @param offset of the first byte of the range
+     * @param length of the range
+     * @return a new Blob holding the range
+     * @throws IndexOutOfBoundsException if the range is out of the bounds of this Blob
+     */
+    public CompositeBlob slice(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException("slice [" + offset + ", " + (offset + length)
+                    + "[ out of bounds of a blob of size " + size);
+        }
+
+        CompositeBlob ret = new CompositeBlob();
+        long skip = offset;
+        long left = length;
+        for (ByteBuffer segment : segments) {
+            if (left == 0) {
+                break;
+            }
+            int remaining = segment.remaining();
+            if (skip >= remaining) {
+                skip -= remaining;
+                continue;
+            }
+            ByteBuffer dup = segment.duplicate();
+            dup.position(dup.position() + (int) skip);
+            dup.limit(dup.position() + (int) Math.min(left, remaining - skip));
+            left -= dup.remaining();
+            skip = 0;
+            ret.append(dup);
+        }
+        return ret;
+    }
+
+    /**
+     * Number of segments this Blob is made of.
+     *
+     * @return number of segments
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Segments of this Blob, in order. Every buffer is independent so the array can be handed
+     * to {@link GatheringByteChannel#write(ByteBuffer[])}.
+     *
+     * @return array of ByteBuffer
+     */
+    public ByteBuffer[] nioBuffers() {
+        ByteBuffer[] ret = new ByteBuffer[segments.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = segments.get(i).duplicate();
+        }
+        return ret;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return Flowable.defer(() -> Flowable.fromArray(nioBuffers()));
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        ByteBuffer[] buffers = nioBuffers();
+        long written = 0;
+        if (target instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) target;
+            while (written < size) {
+                written += gathering.write(buffers);
+            }
+            return written;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                written += target.write(buffer);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * The open and close buffers are added as new segments and every segment is replaced by
+     * its mapped value, the segments themselves are never copied.
+     */
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        CompositeBlob mapped = new CompositeBlob();
+        mapped.append(open.get());
+        for (ByteBuffer segment : segments) {
+            mapped.append(update.apply(segment.duplicate()));
+        }
+        mapped.append(close.get());
+        this.segments = mapped.segments;
+        this.size = mapped.size;
+    }
+
+    /**
+     * The WritableBlob copies the data into new segments appended to this Blob. Small writes
+     * are staged together so that writing byte per byte doesn't create a segment per byte, the
+     * staged data is appended when the WritableBlob is closed.
+     */
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new WritableBlob() {
+            private ByteBuffer staging;
+
+            private void flush() {
+                if (staging != null) {
+                    staging.flip();
+                    append(staging);
+                    staging = null;
+                }
+            }
+
+            private ByteBuffer stage(int length) {
+                if (staging != null && staging.remaining() < length) {
+                    flush();
+                }
+                if (staging == null) {
+                    staging = ByteBuffer.allocate(STAGING_SIZE);
+                }
+                return staging;
+            }
+
+            @Override
+            public void clear() {
+                staging = null;
+                segments = new ArrayList<>();
+                size = 0;
+            }
+
+            @Override
+            public int write(byte b) {
+                stage(1).put(b);
+                return 1;
+            }
+
+            @Override
+            public int write(byte[] a) {
+                return write(ByteBuffer.wrap(a));
+            }
+
+            @Override
+            public int write(ByteBuffer buffer) {
+                int length = buffer.remaining();
+                if (length < STAGING_SIZE) {
+                    stage(length).put(buffer);
+                } else {
+                    flush();
+                    ByteBuffer copy = ByteBuffer.allocate(length);
+                    copy.put(buffer);
+                    copy.flip();
+                    append(copy);
+                }
+                return length;
+            }
+
+            @Override
+            public long write(InputStream stream) throws IOException {
+                byte[] transfer = new byte[STAGING_SIZE];
+                long total = 0;
+                int read;
+                while ((read = stream.read(transfer)) != -1) {
+                    write(ByteBuffer.wrap(transfer, 0, read));
+                    total += read;
+                }
+                return total;
+            }
+
+            @Override
+            public long write(InputStream stream, long length) throws IOException {
+                byte[] transfer = new byte[STAGING_SIZE];
+                long total = 0;
+                while (total < length) {
+                    int read = stream.read(transfer, 0,
+                            (int) Math.min(STAGING_SIZE, length - total));
+                    if (read == -1) {
+                        break;
+                    }
+                    write(ByteBuffer.wrap(transfer, 0, read));
+                    total += read;
+                }
+                return total;
+            }
+
+            @Override
+            public void close() {
+                flush();
+            }
+        };
+    }
+}
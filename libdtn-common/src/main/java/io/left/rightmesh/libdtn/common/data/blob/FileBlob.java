@@ -3,12 +3,13 @@ package io.left.rightmesh.libdtn.common.data.blob;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import io.left.rightmesh.libdtn.common.data.Tag;
+import io.left.rightmesh.libdtn.common.utils.BufferPool;
 import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.RefCounter;
 import io.left.rightmesh.libdtn.common.utils.Supplier;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -18,7 +19,7 @@ import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -27,12 +28,18 @@ import java.nio.file.Paths;
  * FileBlob holds a Blob in a file saved in persistent storage. Useful for large Blob that can't
  * fit in memory or if persistence over reboot is necessary for long caching strategy.
  *
+ * <p>The Blob is reference-counted, the file is deleted once the last reference is released
+ * unless the Blob was {@link #disown() disowned}.
+ *
  * @author Lucien Loiseau on 26/07/18.
  */
 public class FileBlob extends Tag implements Blob {
 
     private static final int BUFFER_SIZE = 4096;
+    private static final int WRITE_BUFFER_SIZE = 65536;
     private File file;
+    private final RefCounter refCnt = new RefCounter();
+    private volatile boolean owner = true;
 
     public String getPathToBlob() {
         return file.getAbsolutePath();
@@ -79,39 +86,32 @@ public class FileBlob extends Tag implements Blob {
         }
     }
 
+    /**
+     * Observe the file from start to end. The file is read through a {@link FileRegionBlob}.
+     *
+     * @return Flowable of ByteBuffer
+     */
     @Override
     public Flowable<ByteBuffer> observe() {
-        return Flowable.generate(
-                () -> {
-                    if (!file.exists()) {
-                        return null;
-                    }
-                    return new FileInputStream(file).getChannel();
-                },
-                (channel, emitter) -> {
-                    if (channel == null) {
-                        emitter.onError(new Throwable("couldn't open FileBlob"));
-                        return null;
-                    }
-
-                    try {
-                        ByteBuffer buffer = ByteBuffer.allocate(2048);
-                        buffer.clear();
-                        if (channel.read(buffer) == -1) {
-                            emitter.onComplete();
-                            channel.close();
-                        } else {
-                            buffer.flip();
-                            emitter.onNext(buffer);
-                            return channel;
-                        }
-                    } catch (NonReadableChannelException | IOException io) {
-                        emitter.onError(io);
-                        channel.close();
-                    }
-                    return channel;
-                },
-                (channel) -> channel.close());
+        return Flowable.defer(() -> {
+            if (!file.exists()) {
+                return Flowable.error(new Throwable("couldn't open FileBlob"));
+            }
+            return Flowable.using(
+                    () -> new FileRegionBlob(file, 0, file.length()),
+                    FileRegionBlob::observe,
+                    FileRegionBlob::release);
+        });
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        FileChannel in = new FileInputStream(file).getChannel();
+        try {
+            return FileRegionBlob.transfer(in, 0, in.size(), target);
+        } finally {
+            in.close();
+        }
     }
 
     @Override
@@ -124,19 +124,20 @@ public class FileBlob extends Tag implements Blob {
 
         FileChannel readChannel = new RandomAccessFile(file, "r").getChannel();
         FileChannel writeChannel = new RandomAccessFile(file, "rw").getChannel();
-        ByteBuffer buffer = ByteBuffer.allocate(2048);
-        buffer.clear();
-
-        writeChannel.write(open.get());
-        while ((readChannel.read(buffer) != -1)) {
-            buffer.flip();
-            writeChannel.write(update.apply(buffer));
-            buffer.clear();
+        ByteBuffer buffer = BufferPool.HEAP.acquire(2048);
+        try {
+            writeChannel.write(open.get());
+            while ((readChannel.read(buffer) != -1)) {
+                buffer.flip();
+                writeChannel.write(update.apply(buffer));
+                buffer.clear();
+            }
+            writeChannel.write(close.get());
+        } finally {
+            BufferPool.HEAP.release(buffer);
+            readChannel.close();
+            writeChannel.close();
         }
-        writeChannel.write(close.get());
-
-        readChannel.close();
-        writeChannel.close();
     }
 
     @Override
@@ -169,10 +170,43 @@ public class FileBlob extends Tag implements Blob {
     }
 
 
+    @Override
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    @Override
+    public FileBlob retain() {
+        refCnt.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        if (!refCnt.release()) {
+            return false;
+        }
+        if (owner && file.exists()) {
+            file.delete();
+        }
+        return true;
+    }
+
+    @Override
+    public FileBlob disown() {
+        owner = false;
+        return this;
+    }
+
+    /**
+     * WritableFileBlob appends to the file through a FileChannel. Small writes are staged in a
+     * buffer and written together, a buffer larger than the staging area is handed directly to
+     * the channel.
+     */
     private class WritableFileBlob implements WritableBlob {
 
-        private FileOutputStream fos = null;
-        private BufferedOutputStream bos = null;
+        private FileChannel channel = null;
+        private ByteBuffer staging = null;
         private boolean open = false;
 
         @Override
@@ -190,44 +224,63 @@ public class FileBlob extends Tag implements Blob {
             if (!file.exists()) {
                 throw new IOException("can't access file");
             }
-            fos = new FileOutputStream(file, true);
-            bos = new BufferedOutputStream(fos);
+            channel = new FileOutputStream(file, true).getChannel();
+            staging = BufferPool.HEAP.acquire(WRITE_BUFFER_SIZE);
             open = true;
         }
 
+        private void drain(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void flush() throws IOException {
+            staging.flip();
+            drain(staging);
+            staging.clear();
+        }
+
         @Override
         public int write(byte b) throws IOException {
             open();
-            bos.write(b);
+            if (!staging.hasRemaining()) {
+                flush();
+            }
+            staging.put(b);
             return 1;
         }
 
         @Override
         public int write(byte[] a) throws IOException {
-            open();
-            bos.write(a);
-            return a.length;
+            return write(ByteBuffer.wrap(a));
         }
 
         @Override
         public int write(ByteBuffer buffer) throws IOException {
+            open();
             int length = buffer.remaining();
-            while (buffer.hasRemaining()) {
-                int b = buffer.get();
-                System.out.println("bundle=" + (char) b);
-                bos.write(b);
+            if (length <= staging.remaining()) {
+                staging.put(buffer);
+                return length;
+            }
+            flush();
+            if (length < staging.capacity()) {
+                staging.put(buffer);
+            } else {
+                drain(buffer);
             }
             return length;
         }
 
         @Override
-        public int write(InputStream stream) throws IOException {
+        public long write(InputStream stream) throws IOException {
             open();
-            int total = 0;
+            long total = 0;
             byte[] fileBuffer = new byte[BUFFER_SIZE];
             int count = stream.read(fileBuffer, 0, BUFFER_SIZE);
             while (count > 0) {
-                bos.write(fileBuffer, 0, count);
+                write(ByteBuffer.wrap(fileBuffer, 0, count));
                 total += count;
                 count = stream.read(fileBuffer, 0, BUFFER_SIZE);
             }
@@ -235,15 +288,15 @@ public class FileBlob extends Tag implements Blob {
         }
 
         @Override
-        public int write(InputStream stream, int size) throws IOException {
+        public long write(InputStream stream, long size) throws IOException {
             open();
-            int total = 0;
+            long total = 0;
             byte[] fileBuffer = new byte[BUFFER_SIZE];
-            int count = stream.read(fileBuffer, 0, Math.min(BUFFER_SIZE, size));
+            int count = stream.read(fileBuffer, 0, (int) Math.min(BUFFER_SIZE, size));
             while (count > 0) {
-                bos.write(fileBuffer, 0, count);
+                write(ByteBuffer.wrap(fileBuffer, 0, count));
                 total += count;
-                count = stream.read(fileBuffer, 0, Math.min(BUFFER_SIZE, size - total));
+                count = stream.read(fileBuffer, 0, (int) Math.min(BUFFER_SIZE, size - total));
             }
             if (total != size) {
                 throw new IOException("We read " + (total < size ? "less" : "more")
@@ -254,20 +307,22 @@ public class FileBlob extends Tag implements Blob {
 
         @Override
         public void close() {
+            if (!open) {
+                return;
+            }
             try {
-                if (bos != null) {
-                    bos.close();
-                }
+                flush();
             } catch (IOException io) {
                 // ignore
             }
             try {
-                if (fos != null) {
-                    fos.close();
-                }
+                channel.close();
             } catch (IOException io) {
                 // ignore
             }
+            BufferPool.HEAP.release(staging);
+            staging = null;
+            open = false;
         }
     }
 }
@@ -0,0 +1,276 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import io.left.rightmesh.libdtn.common.data.Tag;
+import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.RefCounter;
+import io.left.rightmesh.libdtn.common.utils.Supplier;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * FileRegionBlob is a read-only {@link Blob} that refers to a region (offset, length) of an
+ * existing file, typically the payload of a bundle kept in persistent storage. The data is never
+ * copied into memory, it is read from its original location every time the Blob is observed.
+ *
+ * <p>The file is opened once, when the Blob is created, and stays opened until the last
+ * reference on the Blob is released. The data thus remains readable even if the file is
+ * deleted in the meantime, for instance if the bundle is removed from the storage while it is
+ * still being sent.
+ *
+ * <p>The data is expected to be already in the file when the Blob is created, writing into the
+ * Blob only accounts for the bytes and never modifies the file. For the same reason, the Blob
+ * can't be modified in-place with {@link #map(Supplier, Function, Supplier)}.
+ *
+ * <p>The region is observed as heap buffers read from the file so that any consumer may access
+ * their backing array. A consumer that holds a channel may instead opt in to
+ * {@link #transferTo(WritableByteChannel)} and let the kernel copy the region by itself.
+ *
+ * @author Lucien Loiseau on 17/11/18.
+ */
+public class FileRegionBlob extends Tag implements Blob {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final RefCounter refCnt = new RefCounter();
+    private File file;
+    private FileChannel channel;
+    private long offset;
+    private long length;
+
+    /**
+     * Constructor.
+     *
+     * @param file   holding the data
+     * @param offset of the region within the file
+     * @param length of the region
+     * @throws IOException if the file cannot be accessed or is too small
+     */
+    public FileRegionBlob(File file, long offset, long length) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("Can't access file: " + file.getAbsolutePath());
+        }
+        FileChannel channel = new FileInputStream(file).getChannel();
+        if (offset < 0 || length < 0 || offset + length > channel.size()) {
+            channel.close();
+            throw new IOException("region out of file bounds: " + file.getAbsolutePath());
+        }
+        this.file = file;
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    private static class Reader {
+        long position;
+        long end;
+
+        Reader(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return Flowable.generate(
+                () -> new Reader(offset, offset + length),
+                (reader, emitter) -> {
+                    if (refCnt.get() == 0) {
+                        emitter.onError(new IOException("FileRegionBlob is released"));
+                        return reader;
+                    }
+
+                    if (reader.position >= reader.end) {
+                        emitter.onComplete();
+                        return reader;
+                    }
+
+                    try {
+                        long remaining = reader.end - reader.position;
+                        ByteBuffer buffer = ByteBuffer.allocate(
+                                (int) Math.min(BUFFER_SIZE, remaining));
+                        int read = channel.read(buffer, reader.position);
+                        if (read <= 0) {
+                            emitter.onError(new IOException("unexpected end of file"));
+                        } else {
+                            reader.position += read;
+                            buffer.flip();
+                            emitter.onNext(buffer);
+                        }
+                    } catch (IOException io) {
+                        emitter.onError(io);
+                    }
+                    return reader;
+                });
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return transfer(channel, offset, length, target);
+    }
+
+    /**
+     * Copy a region of a file into a channel with {@link FileChannel#transferTo}.
+     *
+     * @param in     file to read from
+     * @param offset of the region
+     * @param length of the region
+     * @param target channel to write into, must be in blocking mode
+     * @return number of bytes transferred
+     * @throws IOException if the region could not be transferred entirely
+     */
+    static long transfer(FileChannel in, long offset, long length, WritableByteChannel target)
+            throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long sent = in.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new IOException("unexpected end of file");
+            }
+            position += sent;
+        }
+        return length;
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        throw new IOException("FileRegionBlob is read-only");
+    }
+
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new WritableBlob() {
+            private long written = 0;
+
+            private int account(long size) throws BlobOverflowException {
+                if (written + size > length) {
+                    throw new BlobOverflowException();
+                }
+                written += size;
+                return (int) size;
+            }
+
+            @Override
+            public void clear() {
+                written = 0;
+            }
+
+            @Override
+            public long write(InputStream stream) throws IOException, BlobOverflowException {
+                throw new IOException("FileRegionBlob is read-only");
+            }
+
+            @Override
+            public long write(InputStream stream, long size)
+                    throws IOException, BlobOverflowException {
+                throw new IOException("FileRegionBlob is read-only");
+            }
+
+            @Override
+            public int write(byte b) throws BlobOverflowException {
+                return account(1);
+            }
+
+            @Override
+            public int write(byte[] a) throws BlobOverflowException {
+                return account(a.length);
+            }
+
+            @Override
+            public int write(ByteBuffer buffer) throws BlobOverflowException {
+                int size = account(buffer.remaining());
+                buffer.position(buffer.limit());
+                return size;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public boolean isFileBlob() {
+        return false;
+    }
+
+    @Override
+    public String getFilePath() throws NotFileBlob {
+        throw new NotFileBlob();
+    }
+
+    @Override
+    public Completable moveToFile(String path) {
+        return Completable.create(s -> {
+            FileChannel out = new FileOutputStream(path).getChannel();
+            try {
+                transfer(channel, offset, length, out);
+                FileChannel old = channel;
+                channel = new FileInputStream(path).getChannel();
+                old.close();
+                file = new File(path);
+                offset = 0;
+                s.onComplete();
+            } catch (IOException io) {
+                s.onError(io);
+            } finally {
+                out.close();
+            }
+        });
+    }
+
+    @Override
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    @Override
+    public FileRegionBlob retain() {
+        refCnt.retain();
+        return this;
+    }
+
+    /**
+     * Release a reference on this Blob, the file is closed once the last reference is released.
+     * The file itself is never deleted.
+     *
+     * @return true if the Blob was freed, false if it is still referenced
+     */
+    @Override
+    public boolean release() {
+        if (!refCnt.release()) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException io) {
+            /* ignore */
+        }
+        return true;
+    }
+}
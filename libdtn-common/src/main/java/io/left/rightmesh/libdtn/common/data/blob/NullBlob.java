@@ -22,7 +22,7 @@ public class NullBlob extends Tag implements Blob {
     public NullBlob() {
     }
     
-    public NullBlob(int expectedSize) {
+    public NullBlob(long expectedSize) {
     }
 
     @Override
@@ -57,12 +57,12 @@ public class NullBlob extends Tag implements Blob {
         }
 
         @Override
-        public int write(InputStream stream) {
+        public long write(InputStream stream) {
             return 0;
         }
 
         @Override
-        public int write(InputStream stream, int size) {
+        public long write(InputStream stream, long size) {
             return 0;
         }
 
@@ -0,0 +1,316 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import io.left.rightmesh.libdtn.common.data.Tag;
+import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.Supplier;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.UnicastProcessor;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StreamingBlob is a {@link Blob} that can be read while it is still being written. Every
+ * chunk written is stored into an underlying Blob and is also published on a live stream, the
+ * first subscriber to {@link #observe()} receives this live stream and so gets the data as soon
+ * as it arrives. Every other subscriber waits for the data to be complete and then reads the
+ * underlying Blob.
+ *
+ * <p>The live stream only buffers a limited amount of data that its subscriber has not read
+ * yet. Past this limit the chunks are no longer published, the live subscriber then waits for
+ * the end of the live stream and reads the rest of the data from the underlying Blob.
+ *
+ * <p>The writer ends the live stream either with {@link #seal()} once the data is known to
+ * be valid, or with {@link #abort(Throwable)} to make the live subscriber fail. In both cases
+ * the underlying Blob remains readable as long as all the data was written into it.
+ *
+ * @author Lucien Loiseau on 26/11/18.
+ */
+public class StreamingBlob extends Tag implements Blob {
+
+    private static final int STREAM_CHUNK_SIZE = 4096;
+    private static final long DEFAULT_LIVE_BUFFER_LIMIT = 1 << 20;
+
+    private final Blob blob;
+    private final long size;
+    private final UnicastProcessor<ByteBuffer> live = UnicastProcessor.create();
+    private final FlowableProcessor<ByteBuffer> publisher = live.toSerialized();
+    private final AtomicBoolean liveTaken = new AtomicBoolean(false);
+    private final AtomicBoolean ended = new AtomicBoolean(false);
+    private final CompletableSubject done = CompletableSubject.create();
+    private final CompletableSubject liveDone = CompletableSubject.create();
+    private final long liveBufferLimit;
+    private final AtomicLong liveBuffered = new AtomicLong(0);
+    private volatile boolean liveOverflowed = false;
+    private volatile boolean written = false;
+
+    /**
+     * Constructor.
+     *
+     * @param blob         where the data is stored
+     * @param expectedSize size of the data that is going to be written
+     */
+    public StreamingBlob(Blob blob, long expectedSize) {
+        this(blob, expectedSize, DEFAULT_LIVE_BUFFER_LIMIT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param blob            where the data is stored
+     * @param expectedSize    size of the data that is going to be written
+     * @param liveBufferLimit maximum number of bytes buffered for the live subscriber
+     */
+    public StreamingBlob(Blob blob, long expectedSize, long liveBufferLimit) {
+        this.blob = blob;
+        this.size = expectedSize;
+        this.liveBufferLimit = liveBufferLimit;
+    }
+
+    /**
+     * End the live stream successfully. If the data was not entirely written, the live stream
+     * is aborted instead.
+     */
+    public void seal() {
+        if (!written) {
+            abort(new IOException("blob sealed before its data was written"));
+            return;
+        }
+        if (ended.compareAndSet(false, true)) {
+            publisher.onComplete();
+            liveDone.onComplete();
+            done.onComplete();
+            drainUntakenLive();
+        }
+    }
+
+    /**
+     * End the live stream with an error. The underlying Blob is still readable by the other
+     * subscribers if its data was entirely written.
+     *
+     * @param reason why the live stream is aborted
+     */
+    public void abort(Throwable reason) {
+        if (ended.compareAndSet(false, true)) {
+            if (!liveOverflowed) {
+                publisher.onError(reason);
+            }
+            liveDone.onError(reason);
+            if (written) {
+                done.onComplete();
+            } else {
+                done.onError(reason);
+            }
+            drainUntakenLive();
+        }
+    }
+
+    /* nobody is reading the live stream, release the chunks it buffered */
+    private void drainUntakenLive() {
+        if (liveTaken.compareAndSet(false, true)) {
+            live.ignoreElements().onErrorComplete().subscribe();
+        }
+    }
+
+    /**
+     * Completable that completes when the underlying Blob holds the entire data.
+     *
+     * @return Completable
+     */
+    public Completable whenDone() {
+        return done;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Flowable<ByteBuffer> observe() {
+        return Flowable.defer(() -> {
+            if (liveTaken.compareAndSet(false, true)) {
+                return observeLive();
+            }
+            return done.andThen(Flowable.defer(blob::observe));
+        });
+    }
+
+    /* the live stream, followed by the data that overflowed it once it is sealed */
+    private Flowable<ByteBuffer> observeLive() {
+        long[] delivered = {0};
+        return live
+                .doOnNext(buffer -> {
+                    delivered[0] += buffer.remaining();
+                    liveBuffered.addAndGet(-buffer.remaining());
+                })
+                .concatWith(liveDone.andThen(Flowable.defer(() -> {
+                    if (delivered[0] >= size) {
+                        return Flowable.empty();
+                    }
+                    return skip(blob.observe(), delivered[0]);
+                })));
+    }
+
+    private static Flowable<ByteBuffer> skip(Flowable<ByteBuffer> source, long bytes) {
+        long[] left = {bytes};
+        return source
+                .map(buffer -> {
+                    ByteBuffer ret = buffer.duplicate();
+                    int n = (int) Math.min(left[0], ret.remaining());
+                    ret.position(ret.position() + n);
+                    left[0] -= n;
+                    return ret;
+                })
+                .filter(ByteBuffer::hasRemaining);
+    }
+
+    @Override
+    public void map(Supplier<ByteBuffer> open,
+                    Function<ByteBuffer, ByteBuffer> update,
+                    Supplier<ByteBuffer> close) throws Exception {
+        done.blockingAwait();
+        blob.map(open, update, close);
+    }
+
+    /**
+     * The WritableBlob writes into the underlying Blob and publishes a copy of every chunk on
+     * the live stream.
+     */
+    @Override
+    public WritableBlob getWritableBlob() {
+        return new StreamingWritableBlob(blob.getWritableBlob());
+    }
+
+    /**
+     * A StreamingBlob is only a file once its data is complete.
+     */
+    @Override
+    public boolean isFileBlob() {
+        return done.hasComplete() && blob.isFileBlob();
+    }
+
+    @Override
+    public String getFilePath() throws NotFileBlob {
+        if (!done.hasComplete()) {
+            throw new NotFileBlob();
+        }
+        return blob.getFilePath();
+    }
+
+    @Override
+    public Completable moveToFile(String path) {
+        return done.andThen(Completable.defer(() -> blob.moveToFile(path)));
+    }
+
+    @Override
+    public int refCnt() {
+        return blob.refCnt();
+    }
+
+    @Override
+    public Blob retain() {
+        blob.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return blob.release();
+    }
+
+    @Override
+    public Blob disown() {
+        blob.disown();
+        return this;
+    }
+
+    private class StreamingWritableBlob implements WritableBlob {
+
+        private final WritableBlob sink;
+        private boolean failed = false;
+
+        StreamingWritableBlob(WritableBlob sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void clear() {
+            sink.clear();
+        }
+
+        @Override
+        public long write(InputStream stream) throws IOException, BlobOverflowException {
+            return write(stream, Long.MAX_VALUE);
+        }
+
+        @Override
+        public long write(InputStream stream, long size)
+                throws IOException, BlobOverflowException {
+            byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+            long read = 0;
+            while (read < size) {
+                int n = stream.read(chunk, 0, (int) Math.min(chunk.length, size - read));
+                if (n < 0) {
+                    break;
+                }
+                write(ByteBuffer.wrap(chunk, 0, n));
+                read += n;
+            }
+            return read;
+        }
+
+        @Override
+        public int write(byte b) throws IOException, BlobOverflowException {
+            return write(ByteBuffer.wrap(new byte[]{b}));
+        }
+
+        @Override
+        public int write(byte[] a) throws IOException, BlobOverflowException {
+            return write(ByteBuffer.wrap(a));
+        }
+
+        @Override
+        public int write(ByteBuffer buffer) throws IOException, BlobOverflowException {
+            ByteBuffer copy = copyForLive(buffer);
+            try {
+                int n = sink.write(buffer);
+                if (copy != null) {
+                    publisher.onNext(copy);
+                }
+                return n;
+            } catch (IOException | BlobOverflowException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        /* past the limit, the live subscriber reads the rest from the underlying Blob */
+        private ByteBuffer copyForLive(ByteBuffer buffer) {
+            if (liveOverflowed) {
+                return null;
+            }
+            if (liveBuffered.addAndGet(buffer.remaining()) > liveBufferLimit) {
+                liveOverflowed = true;
+                publisher.onComplete();
+                return null;
+            }
+            ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer.duplicate());
+            copy.flip();
+            return copy;
+        }
+
+        @Override
+        public void close() {
+            sink.close();
+            written = !failed;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * UntrackedByteBuffer is a simple ByteBuffer Blob that doesn't "malloc" to {@link VolatileMemory}.
@@ -66,6 +67,17 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
         }, BackpressureStrategy.BUFFER);
     }
 
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        ByteBuffer dup = data.duplicate();
+        dup.reset();
+        long written = 0;
+        while (dup.hasRemaining()) {
+            written += target.write(dup);
+        }
+        return written;
+    }
+
     @Override
     public void map(Supplier<ByteBuffer> open,
                     Function<ByteBuffer, ByteBuffer> function,
@@ -84,12 +96,19 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
         data.mark();
     }
 
+    /**
+     * Drop the content of the Blob, called when the {@link WritableBlob} is cleared.
+     */
+    void clearData() {
+        data.clear();
+    }
+
     @Override
     public WritableBlob getWritableBlob() {
         return new WritableBlob() {
             @Override
             public void clear() {
-                data.clear();
+                clearData();
             }
 
             @Override
@@ -124,7 +143,7 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
             }
 
             @Override
-            public int write(InputStream stream)
+            public long write(InputStream stream)
                     throws IOException, BlobOverflowException {
                 int read = data.remaining();
                 int size = read;
@@ -140,12 +159,12 @@ public class UntrackedByteBufferBlob extends VolatileBlob {
             }
 
             @Override
-            public int write(InputStream stream, int size)
+            public long write(InputStream stream, long size)
                     throws IOException, BlobOverflowException {
                 if (size > (data.remaining())) {
                     throw new BlobOverflowException();
                 }
-                int read = size;
+                long read = size;
                 while (read > 0) {
                     data.put((byte) stream.read());
                     read--;
@@ -1,29 +1,35 @@
 package io.left.rightmesh.libdtn.common.data.blob;
 
 import io.left.rightmesh.libdtn.common.utils.Function;
+import io.left.rightmesh.libdtn.common.utils.RefCounter;
 import io.left.rightmesh.libdtn.common.utils.Supplier;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
-import io.reactivex.Observable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.LinkedList;
 
 /**
  * VersatileGrowingBuffer is a growing Blob that uses volatile or persistent buffer to grow
  * depending on what is available everytime it needs to instantiate a new Blob to grow.
  *
+ * <p>The buffer is reference-counted as a whole, the chunks are released together with the last
+ * reference. Clearing the {@link WritableBlob} releases one reference.
+ *
  * @author Lucien Loiseau on 01/11/18.
  */
 public class VersatileGrowingBuffer extends VolatileBlob {
 
     private static final int VOLATILE_BLOB_SIZE = 20000;
+    private static final int TRANSFER_BUFFER_SIZE = 4096;
 
     private BlobFactory factory;
     private LinkedList<Blob> blobs;
     private int blobSizeUnit = VOLATILE_BLOB_SIZE;
+    private final RefCounter refCnt = new RefCounter();
 
     /**
      * Constructor requires a factory to instantiate new Blob chunk as it grows.
@@ -60,12 +66,11 @@ public class VersatileGrowingBuffer extends VolatileBlob {
 
     @Override
     public long size() {
-        return Observable.fromIterable(blobs)
-                .map(Blob::size)
-                .reduce(
-                        0L,
-                        (a, b) -> a + b)
-                .blockingGet();
+        long size = 0;
+        for (Blob blob : blobs) {
+            size += blob.size();
+        }
+        return size;
     }
 
     @Override
@@ -73,6 +78,15 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         return Flowable.fromIterable(blobs).concatMap(Blob::observe, 1);
     }
 
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long written = 0;
+        for (Blob blob : blobs) {
+            written += blob.transferTo(target);
+        }
+        return written;
+    }
+
     @Override
     public void map(Supplier<ByteBuffer> open,
                     Function<ByteBuffer, ByteBuffer> update,
@@ -100,80 +114,115 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         }
     }
 
+    /* number of bytes a chunk is expected to hold, a file chunk is not bounded */
+    private long capacity(Blob blob) {
+        return blob.isFileBlob() ? Long.MAX_VALUE : blobSizeUnit;
+    }
+
+    /**
+     * The WritableBlob copies the data by slices that fit in the current chunk and only grows
+     * the buffer when a slice reaches the end of the chunk. If a chunk turns out to be smaller
+     * than expected, the slice is written byte per byte until the chunk overflows.
+     */
     @Override
     public WritableBlob getWritableBlob() {
         return new WritableBlob() {
-            {
-                {
-                    cur = blobs.getLast().getWritableBlob();
+            private WritableBlob cur = blobs.getLast().getWritableBlob();
+            private long room = capacity(blobs.getLast());
+            private byte[] transfer;
+
+            private void grow() throws IOException {
+                cur.close();
+                try {
+                    Blob blob = allocateBlob();
+                    cur = blob.getWritableBlob();
+                    room = capacity(blob);
+                } catch (BlobFactory.BlobFactoryException e) {
+                    throw new IOException(e);
                 }
             }
 
-            private WritableBlob cur;
-
             @Override
             public void clear() {
-                blobs.forEach(b -> b.getWritableBlob().clear());
-                blobs.clear();
+                release();
             }
 
             @Override
             public int write(byte b) throws IOException, BlobOverflowException {
                 try {
                     cur.write(b);
+                    room--;
                     return 1;
                 } catch (IOException | BlobOverflowException e) {
-                    cur.close();
                     /* create new blob */
                 }
 
-                try {
-                    allocateBlob();
-                    cur = blobs.getLast().getWritableBlob();
-                } catch (BlobFactory.BlobFactoryException e) {
-                    throw new IOException(e);
-                }
-
+                grow();
                 cur.write(b);
+                room--;
                 return 1;
             }
 
             @Override
             public int write(byte[] a) throws IOException, BlobOverflowException {
-                for (int i = 0; i < a.length; i++) {
-                    write(a[i]);
-                }
-                return a.length;
+                return write(ByteBuffer.wrap(a));
             }
 
             @Override
             public int write(ByteBuffer buffer) throws IOException, BlobOverflowException {
                 int size = buffer.remaining();
                 while (buffer.hasRemaining()) {
-                    write(buffer.get());
+                    if (room <= 0) {
+                        grow();
+                    }
+
+                    int length = (int) Math.min(buffer.remaining(), room);
+                    ByteBuffer slice = buffer.duplicate();
+                    slice.limit(slice.position() + length);
+                    try {
+                        cur.write(slice);
+                        room -= length;
+                        buffer.position(slice.limit());
+                    } catch (BlobOverflowException boe) {
+                        /* the chunk is smaller than expected, find its end */
+                        while (buffer.position() < slice.limit()) {
+                            write(buffer.get());
+                        }
+                    }
                 }
                 return size;
             }
 
+            private byte[] transferBuffer() {
+                if (transfer == null) {
+                    transfer = new byte[TRANSFER_BUFFER_SIZE];
+                }
+                return transfer;
+            }
+
             @Override
-            public int write(InputStream stream) throws IOException, BlobOverflowException {
-                int read = 0;
-                int b;
-                while ((b = stream.read()) != -1) {
-                    write((byte) b);
-                    read++;
+            public long write(InputStream stream) throws IOException, BlobOverflowException {
+                byte[] array = transferBuffer();
+                long read = 0;
+                int count;
+                while ((count = stream.read(array, 0, array.length)) != -1) {
+                    write(ByteBuffer.wrap(array, 0, count));
+                    read += count;
                 }
                 return read;
             }
 
             @Override
-            public int write(InputStream stream, int size)
+            public long write(InputStream stream, long size)
                     throws IOException, BlobOverflowException {
-                int read = 0;
-                int b;
-                while (((b = stream.read()) != -1) && (read < size)) {
-                    write((byte) b);
-                    read++;
+                byte[] array = transferBuffer();
+                long read = 0;
+                int count;
+                while ((read < size)
+                        && (count = stream.read(array, 0,
+                        (int) Math.min(array.length, size - read))) != -1) {
+                    write(ByteBuffer.wrap(array, 0, count));
+                    read += count;
                 }
                 return read;
             }
@@ -185,6 +234,33 @@ public class VersatileGrowingBuffer extends VolatileBlob {
         };
     }
 
+    @Override
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    @Override
+    public VersatileGrowingBuffer retain() {
+        refCnt.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        if (!refCnt.release()) {
+            return false;
+        }
+        blobs.forEach(Blob::release);
+        blobs.clear();
+        return true;
+    }
+
+    @Override
+    public VersatileGrowingBuffer disown() {
+        blobs.forEach(Blob::disown);
+        return this;
+    }
+
     @Override
     public boolean isFileBlob() {
         return blobs.size() == 1 && blobs.getLast() instanceof FileBlob;
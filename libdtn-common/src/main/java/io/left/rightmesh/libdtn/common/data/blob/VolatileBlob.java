@@ -3,10 +3,10 @@ package io.left.rightmesh.libdtn.common.data.blob;
 import io.left.rightmesh.libdtn.common.data.Tag;
 import io.reactivex.Completable;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 /**
  * VolatileBlob is an abstract class that describe a Blob holding data in a volatile fashion.
@@ -36,38 +36,19 @@ public abstract class VolatileBlob extends Tag implements Blob {
                     }
                 } catch (IOException io) {
                     s.onError(io);
+                    return;
                 }
             }
-            FileOutputStream fos = new FileOutputStream(file, true);
-            BufferedOutputStream bos = new BufferedOutputStream(fos);
-            observe().subscribe(
-                    b -> {
-                        try {
-                            while (b.hasRemaining()) {
-                                bos.write(b.get());
-                            }
-                        } catch (IOException io) {
-                            s.onError(io);
-                        }
-                    },
-                    e -> {
-                        try {
-                            bos.close();
-                        } catch (IOException io) {
-                            /* silently ignore */
-                        }
-                        file.delete();
-                        s.onError(e);
-                    },
-                    () -> {
-                        try {
-                            bos.close();
-                        } catch (IOException io) {
-                            /* silently ignore */
-                        }
-                        s.onComplete();
-                    }
-            );
+            FileChannel out = new FileOutputStream(file, true).getChannel();
+            try {
+                transferTo(out);
+                s.onComplete();
+            } catch (IOException io) {
+                file.delete();
+                s.onError(io);
+            } finally {
+                out.close();
+            }
         });
     }
 
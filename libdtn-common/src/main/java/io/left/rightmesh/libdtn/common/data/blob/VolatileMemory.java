@@ -1,41 +1,356 @@
 package io.left.rightmesh.libdtn.common.data.blob;
 
+import io.left.rightmesh.libdtn.common.utils.Log;
+
 import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * VolatileMemory is used to track the memory used by the various blob. It is not a real
- * memory manager as it does not perform the allocation and disallocation of memory itself
- * (that is managed by the JVM) but it does maintain a memory count and a limit and may
- * throw an exception if too much memory is requested.
+ * VolatileMemory is a slab allocator that holds the volatile Blob off-heap. The memory is
+ * reserved from the JVM by pages of direct memory, each page is assigned to a size class when
+ * it is needed and carved into chunks of that size. A chunk given back with
+ * {@link #free(ByteBuffer)} is pushed back on its page and is the first one reused by the next
+ * allocation of the same class. Requests bigger than a page are allocated on their own.
+ *
+ * <p>The memory reserved (pages and large allocations) never exceeds the memory limit, an
+ * allocation that would cross it throws an exception. Before giving up, the pages whose chunks
+ * are all free are taken back from their size class: they are carved again for another class
+ * or given back to make room for a large allocation. The pages are managed under the lock of
+ * the allocator, the large allocations only take it to record the buffer they return.
+ *
+ * <p>Every buffer returned by malloc is recorded as in use until it is freed. Freeing a buffer
+ * that is not in use, either because it was not returned by malloc or because it was already
+ * freed, has no effect so that the same chunk can never be handed out twice.
+ *
+ * <p>The owner of a chunk is expected to free it explicitly. As a safety net, an owner can be
+ * tracked with {@link #track(Object, ByteBuffer)}: if it is garbage collected without having
+ * freed its chunk, the leak is reported and the chunk is reclaimed the next time the allocator
+ * is used.
  *
  * @author Lucien Loiseau on 30/10/18.
  */
 public class VolatileMemory {
 
-    private int memoryLimit;
-    private int currentMemoryUsage = 0;
+    private static final String TAG = "VolatileMemory";
+
+    static final int MIN_CHUNK_SIZE = 64;
+    static final int MAX_PAGE_SIZE = 1 << 20;
+    private static final int PAGES_PER_LIMIT = 16;
+    private static final int MIN_CHUNK_SHIFT = Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+
+    private final int memoryLimit;
+    private final int pageSize;
+    private final ArrayDeque<Page>[] available;
+    private final Map<ByteBuffer, Page> owners = new IdentityHashMap<>();
+    private final Set<ByteBuffer> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final AtomicLong memoryUsage = new AtomicLong(0);
+    private final AtomicLong memoryReserved = new AtomicLong(0);
+    private final AtomicLong leaks = new AtomicLong(0);
+    private final ReferenceQueue<Object> leakQueue = new ReferenceQueue<>();
+    private final Set<Tracker> trackers = ConcurrentHashMap.newKeySet();
+    private volatile Log logger;
+
+    /**
+     * Page is a piece of direct memory carved into chunks of a single size class.
+     */
+    private static final class Page {
+        private final ByteBuffer memory;
+        private final int sizeClass;
+        private final int chunks;
+        private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+        private Page(ByteBuffer memory, int sizeClass) {
+            this.memory = memory;
+            this.sizeClass = sizeClass;
+            this.chunks = memory.capacity() / chunkSize(sizeClass);
+        }
+
+        private boolean isUnused() {
+            return free.size() == chunks;
+        }
+    }
+
+    /**
+     * Tracker keeps the chunk of an owner until the owner is either closed or garbage collected.
+     */
+    final class Tracker extends PhantomReference<Object> {
+        private volatile ByteBuffer chunk;
 
+        private Tracker(Object owner, ByteBuffer chunk) {
+            super(owner, leakQueue);
+            this.chunk = chunk;
+            trackers.add(this);
+        }
+
+        /**
+         * Replace the chunk held by the owner.
+         *
+         * @param chunk new chunk
+         */
+        void update(ByteBuffer chunk) {
+            this.chunk = chunk;
+        }
+
+        /**
+         * Stop tracking the owner, must be called when the owner frees its chunk.
+         */
+        void close() {
+            trackers.remove(this);
+            clear();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param limit maximum number of bytes that the volatile Blob can use together.
+     */
+    @SuppressWarnings("unchecked")
     public VolatileMemory(int limit) {
         memoryLimit = limit;
+        pageSize = Math.min(MAX_PAGE_SIZE,
+                Integer.highestOneBit(Math.max(MIN_CHUNK_SIZE, limit / PAGES_PER_LIMIT)));
+        int classes = Integer.numberOfTrailingZeros(pageSize) - MIN_CHUNK_SHIFT + 1;
+        available = (ArrayDeque<Page>[]) new ArrayDeque<?>[classes];
+        for (int i = 0; i < classes; i++) {
+            available[i] = new ArrayDeque<>();
+        }
     }
 
+    /**
+     * Maximum amount of memory that can be spent.
+     *
+     * @return memory limit in bytes
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Amount of memory currently spent, rounded up to the size class of every allocation.
+     *
+     * @return memory usage in bytes
+     */
+    public int getMemoryUsage() {
+        expunge();
+        return (int) memoryUsage.get();
+    }
+
+    /**
+     * Amount of memory reserved from the JVM, either in use or held by a free list.
+     *
+     * @return reserved memory in bytes
+     */
+    public int getMemoryReserved() {
+        return (int) memoryReserved.get();
+    }
+
+    /**
+     * Number of chunks that were reclaimed after their owner was garbage collected.
+     *
+     * @return number of leaks detected
+     */
+    public long getLeakCount() {
+        expunge();
+        return leaks.get();
+    }
+
+    /**
+     * Set the logger used to report the leaks.
+     *
+     * @param logger to report leaks to
+     */
+    public void setLogger(Log logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Track the owner of a chunk so that the chunk is reclaimed and reported as leaked if the
+     * owner is garbage collected without closing the returned tracker.
+     *
+     * @param owner of the chunk
+     * @param chunk returned by malloc
+     * @return tracker to update whenever the owner replaces its chunk and to close when the
+     *         owner frees it
+     */
+    Tracker track(Object owner, ByteBuffer chunk) {
+        return new Tracker(owner, chunk);
+    }
+
+    private void expunge() {
+        Tracker tracker;
+        while ((tracker = (Tracker) leakQueue.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                ByteBuffer chunk = tracker.chunk;
+                int size = chunk.limit();
+                leaks.incrementAndGet();
+                free(chunk);
+                Log log = logger;
+                if (log != null) {
+                    log.w(TAG, () -> "leak detected: a volatile blob of " + size
+                            + " bytes was garbage collected before it was released");
+                }
+            }
+        }
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    private static int chunkSize(int sizeClass) {
+        return MIN_CHUNK_SIZE << sizeClass;
+    }
+
+    private int sizeClass(int size) {
+        if (size > pageSize) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, MIN_CHUNK_SIZE) - 1);
+        return shift - MIN_CHUNK_SHIFT;
+    }
+
+    private boolean reserve(long size) {
+        long reserved;
+        do {
+            reserved = memoryReserved.get();
+            if (reserved + size > memoryLimit) {
+                return false;
+            }
+        } while (!memoryReserved.compareAndSet(reserved, reserved + size));
+        return true;
+    }
+
+    /* must be called with the lock held */
+    private Page carve(int sizeClass) {
+        ByteBuffer memory;
+        if (reserve(pageSize)) {
+            memory = ByteBuffer.allocateDirect(pageSize);
+        } else {
+            memory = reclaimUnusedPage();
+            if (memory == null) {
+                return null;
+            }
+        }
+
+        Page page = new Page(memory, sizeClass);
+        int size = chunkSize(sizeClass);
+        for (int offset = pageSize - size; offset >= 0; offset -= size) {
+            memory.limit(offset + size);
+            memory.position(offset);
+            ByteBuffer chunk = memory.slice();
+            page.free.push(chunk);
+            owners.put(chunk, page);
+        }
+        available[sizeClass].push(page);
+        return page;
+    }
+
+    /* take back a page whose chunks are all free, must be called with the lock held */
+    private ByteBuffer reclaimUnusedPage() {
+        for (ArrayDeque<Page> pages : available) {
+            Iterator<Page> it = pages.iterator();
+            while (it.hasNext()) {
+                Page page = it.next();
+                if (page.isUnused()) {
+                    it.remove();
+                    for (ByteBuffer chunk : page.free) {
+                        owners.remove(chunk);
+                    }
+                    page.memory.clear();
+                    return page.memory;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean reserveLarge(int size) {
+        while (!reserve(size)) {
+            if (reclaimUnusedPage() == null) {
+                return false;
+            }
+            memoryReserved.addAndGet(-pageSize);
+        }
+        return true;
+    }
+
+    private synchronized ByteBuffer allocateChunk(int sizeClass) {
+        Page page = available[sizeClass].peekFirst();
+        if (page == null) {
+            page = carve(sizeClass);
+        }
+        for (int i = sizeClass + 1; page == null && i < available.length; i++) {
+            /* no page left, fall back to a free chunk of a bigger class */
+            page = available[i].peekFirst();
+        }
+        if (page == null) {
+            return null;
+        }
+
+        ByteBuffer chunk = page.free.pop();
+        if (page.free.isEmpty()) {
+            available[page.sizeClass].remove(page);
+        }
+        inUse.add(chunk);
+        return chunk;
+    }
+
+    private ByteBuffer allocate(int size) throws IOException {
+        if (size < 0) {
+            throw new IOException("negative size");
+        }
+        expunge();
+
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            /* larger than a page */
+            if (!reserve(size) && !reserveLarge(size)) {
+                throw new IOException("volatile memory exhausted");
+            }
+            memoryUsage.addAndGet(size);
+            ByteBuffer large = ByteBuffer.allocateDirect(size);
+            synchronized (this) {
+                inUse.add(large);
+            }
+            return large;
+        }
+
+        ByteBuffer chunk = allocateChunk(sizeClass);
+        if (chunk == null) {
+            throw new IOException("volatile memory exhausted");
+        }
+
+        memoryUsage.addAndGet(chunk.capacity());
+        chunk.clear();
+        chunk.limit(size);
+        return chunk;
+    }
 
     /**
      * request to spend more volatile memory. Throws an exception if the array given as an
      * argument is bigger than the authorized memory remaining. Otherwise it returns a
-     * ByteBuffer wrapping around the array.
+     * ByteBuffer holding a copy of the array.
      *
      * @param array requested
-     * @return ByteBuffer wrapping around the array.
+     * @return ByteBuffer holding a copy of the array.
      * @throws IOException if memory limit is hit.
      */
     public ByteBuffer malloc(byte[] array) throws IOException {
-        if (currentMemoryUsage + array.length > memoryLimit) {
-            throw new IOException();
-        }
-        currentMemoryUsage += array.length;
-        return ByteBuffer.wrap(array);
+        ByteBuffer ret = allocate(array.length);
+        ret.put(array);
+        ret.position(0);
+        return ret;
     }
 
     /**
@@ -48,11 +363,7 @@ public class VolatileMemory {
      * @throws IOException if memory limit is hit.
      */
     public ByteBuffer malloc(ByteBuffer buffer) throws IOException {
-        if (currentMemoryUsage + buffer.remaining() > memoryLimit) {
-            throw new IOException();
-        }
-        currentMemoryUsage += buffer.remaining();
-        ByteBuffer ret = ByteBuffer.allocate(buffer.remaining());
+        ByteBuffer ret = allocate(buffer.remaining());
         ret.put(buffer);
         ret.position(0);
         return ret;
@@ -68,23 +379,33 @@ public class VolatileMemory {
      * @throws IOException if memory limit is hit.
      */
     public ByteBuffer malloc(int size) throws IOException {
-        if (currentMemoryUsage + size > memoryLimit) {
-            throw new IOException();
-        }
-        currentMemoryUsage += size;
-        return ByteBuffer.allocate(size);
+        return allocate(size);
     }
 
     /**
-     * Instruct VolatileMemory that some memory was freed.
+     * Give back a ByteBuffer returned by malloc. The buffer must not be used afterward. A buffer
+     * that is not in use, unknown or already freed, is ignored.
      *
-     * @param size newly available memory
+     * @param buffer to free
      */
-    public void free(int size) {
-        currentMemoryUsage -= size;
-        if (currentMemoryUsage < 0) {
-            currentMemoryUsage = 0;
+    public void free(ByteBuffer buffer) {
+        int size = buffer.capacity();
+        synchronized (this) {
+            if (!inUse.remove(buffer)) {
+                return;
+            }
+            memoryUsage.addAndGet(-size);
+            Page page = owners.get(buffer);
+            if (page == null) {
+                /* large allocation, reclaimed when the buffer is garbage collected */
+                memoryReserved.addAndGet(-size);
+                return;
+            }
+            buffer.clear();
+            if (page.free.isEmpty()) {
+                available[page.sizeClass].push(page);
+            }
+            page.free.push(buffer);
         }
     }
-
 }
@@ -20,29 +20,25 @@ public interface WritableBlob {
     void clear();
 
     /**
-     * Read size bytes from the InputStream and store it in the VolatileBlob.
-     * Note that there is a natural limit to the size of a Blob because we can read
-     * up to {@link Integer#MAX_VALUE} bytes.
+     * Read the InputStream until its end and store it in the Blob.
      *
      * @param stream read the data from
-     * @return int number of bytes read
+     * @return number of bytes read
      * @throws IOException if low-level reading the data or writing to the blob failed
      * @throws BlobOverflowException if write size exceed VolatileBlob capacity
      */
-    int write(InputStream stream) throws IOException, BlobOverflowException;
+    long write(InputStream stream) throws IOException, BlobOverflowException;
 
     /**
-     * Read size bytes from the InputStream and store it in the VolatileBlob.
-     * Note that there is a natural limit to the size of a VolatileBlob because
-     * we can read up to {@link Integer#MAX_VALUE} bytes.
+     * Read size bytes from the InputStream and store it in the Blob.
      *
      * @param stream read the data from
      * @param size   of the data to read
-     * @return int number of byte read
+     * @return number of bytes read
      * @throws IOException if low-level reading the data or writing to the blob failed
      * @throws BlobOverflowException if write size exceed VolatileBlob capacity
      */
-    int write(InputStream stream, int size) throws IOException, BlobOverflowException;
+    long write(InputStream stream, long size) throws IOException, BlobOverflowException;
 
     /**
      * copy one byte to the VolatileBlob.
@@ -23,7 +23,7 @@ public class ZeroBlob extends Tag implements Blob {
     public ZeroBlob() {
     }
 
-    public ZeroBlob(int expectedSize) {
+    public ZeroBlob(long expectedSize) {
     }
 
     @Override
@@ -58,12 +58,12 @@ public class ZeroBlob extends Tag implements Blob {
         }
 
         @Override
-        public int write(InputStream stream) throws BlobOverflowException {
+        public long write(InputStream stream) throws BlobOverflowException {
             throw new BlobOverflowException();
         }
 
         @Override
-        public int write(InputStream stream, int size) throws BlobOverflowException {
+        public long write(InputStream stream, long size) throws BlobOverflowException {
             throw new BlobOverflowException();
         }
 
@@ -31,13 +31,13 @@ public class AdministrativeRecordItem implements CborParser.ParseableItem {
     public CborParser getItemParser() {
         return CBOR.parser()
                 .cbor_open_array((parser, tags, i) -> {
-                    logger.v(TAG, ". array size=" + i);
+                    logger.v(TAG, () -> ". array size=" + i);
                     if (i != 2) {
                         throw new RxParserException("wrong number of element in canonical block");
                     }
                 })
                 .cbor_parse_int((parser, tags, i) -> { // block PAYLOAD_BLOCK_TYPE
-                    logger.v(TAG, ". PAYLOAD_BLOCK_TYPE=" + i);
+                    logger.v(TAG, () -> ". PAYLOAD_BLOCK_TYPE=" + i);
                     switch ((int) i) {
                         case StatusReport.STATUS_REPORT_ADM_TYPE:
                             record = new StatusReport();
@@ -23,9 +23,9 @@ public class BlockBlobParser {
         return CBOR.parser()
                 .cbor_parse_byte_string(
                         (parser, tags, size) -> {
-                            logger.v(TAG, ".. blob_byte_string_size=" + size);
+                            logger.v(TAG, () -> ".. blob_byte_string_size=" + size);
                             try {
-                                block.data = factory.createBlob((int) size);
+                                block.data = factory.createBlob(size);
                             } catch (BlobFactory.BlobFactoryException sfe) {
                                 logger.v(TAG, ".. blob_create=NullBlob");
                                 block.data = new NullBlob();
@@ -33,12 +33,11 @@ public class BlockBlobParser {
                             parser.setReg(3, block.data.getWritableBlob());
                         },
                         (p, chunk) -> {
-                            logger.v(TAG, ".. blob_byte_chunk_size=" + chunk.remaining());
-                            logger.v(TAG, ".. chunk=" + new String(chunk.array()));
+                            logger.v(TAG, () -> ".. blob_byte_chunk_size=" + chunk.remaining());
                             try {
                                 p.<WritableBlob>getReg(3).write(chunk);
                             } catch (WritableBlob.BlobOverflowException | IOException io) {
-                                logger.v(TAG, ".. blob_write_error=" + io.getMessage());
+                                logger.v(TAG, () -> ".. blob_write_error=" + io.getMessage());
                                 p.<WritableBlob>getReg(3).close();
                                 p.setReg(3, null);
                             }
@@ -7,12 +7,23 @@ import io.left.rightmesh.libdtn.common.ExtensionToolbox;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.left.rightmesh.libdtn.common.utils.Log;
 
 /**
  * BundleV7Item is a CborParser.ParseableItem for {@link Bundle}.
  *
+ * <p>The parser and the block items are built once, so a channel receiving many bundles
+ * should keep a single BundleV7Item and hand it over to its parser for every bundle; each
+ * bundle is then parsed without rebuilding the parser chain.
+ *
+ * <p>If a {@link HeaderProcessor} is given, it can reject a bundle as soon as its header is
+ * parsed. The rest of a rejected bundle is still parsed to keep up with the stream but its
+ * payload is discarded instead of being written into a blob, and {@link #rejected} is set.
+ * If the bundle is a definite-length array whose last item is the payload block, the bundle is
+ * tagged "payload_last" before the processor sees its header.
+ *
  * @author Lucien Loiseau on 10/09/18.
  */
 public class BundleV7Item implements CborParser.ParseableItem {
@@ -30,33 +41,105 @@ public class BundleV7Item implements CborParser.ParseableItem {
     public BundleV7Item(Log logger,
                         ExtensionToolbox toolbox,
                         BlobFactory blobFactory) {
+        this(logger, toolbox, blobFactory, null);
+    }
+
+    /**
+     * Same as above but the header of every bundle is submitted to a {@link HeaderProcessor}
+     * before its payload is parsed.
+     *
+     * @param logger          to output parsing information
+     * @param toolbox         for the data structure factory
+     * @param blobFactory     to create blobs.
+     * @param headerProcessor to reject a bundle early, may be null
+     */
+    public BundleV7Item(Log logger,
+                        ExtensionToolbox toolbox,
+                        BlobFactory blobFactory,
+                        HeaderProcessor headerProcessor) {
         this.logger = logger;
         this.toolbox = toolbox;
         this.blobFactory = blobFactory;
+        this.headerProcessor = headerProcessor;
     }
 
     public Bundle bundle = null;
+    public boolean rejected = false;
+    private long blockCount = -1;
+    private HeaderProcessor headerProcessor;
     private Log logger;
     private ExtensionToolbox toolbox;
     private BlobFactory blobFactory;
-
+    private PrimaryBlockItem primaryBlockItem;
+    private CanonicalBlockItem canonicalBlockItem;
+    private CborParser parser;
 
     @Override
     public CborParser getItemParser() {
+        bundle = null;
+        rejected = false;
+        blockCount = -1;
+        if (parser == null) {
+            primaryBlockItem = new PrimaryBlockItem(toolbox.getEidFactory(), logger);
+            canonicalBlockItem = new CanonicalBlockItem(logger, toolbox, blobFactory);
+            if (headerProcessor != null) {
+                canonicalBlockItem.onPayloadHeader = p -> {
+                    if (!rejected) {
+                        /* the processor sees the header of the payload, its data comes next */
+                        bundle.addBlock(canonicalBlockItem.block);
+                        if (blockCount == bundle.blocks.size() + 1) {
+                            bundle.tag("payload_last");
+                        }
+                        try {
+                            headerProcessor.onHeaderDeserialized(bundle);
+                        } catch (ProcessingException pe) {
+                            reject(pe);
+                        }
+                    }
+                };
+            }
+            parser = createParser();
+        } else {
+            parser.reset();
+        }
+        canonicalBlockItem.discardBlob = false;
+        return parser;
+    }
+
+    private void reject(ProcessingException pe) {
+        logger.i(TAG, () -> "bundle rejected: " + bundle.getBid().getBidString()
+                + " reason: " + pe.getMessage());
+        rejected = true;
+        canonicalBlockItem.discardBlob = true;
+    }
+
+    private CborParser createParser() {
         return CBOR.parser()
                 .cbor_open_array((parser, tags, size) -> {
                     logger.v(TAG, "[+] parsing new bundle");
+                    blockCount = size;
                 })
                 .cbor_parse_custom_item(
-                        () -> new PrimaryBlockItem(toolbox.getEidFactory(), logger),
+                        () -> primaryBlockItem,
                         (parser, tags, item) -> {
                             logger.v(TAG, "-> primary block parsed");
                             bundle = item.bundle;
+                            if (headerProcessor != null) {
+                                try {
+                                    headerProcessor.onPrimaryBlockDeserialized(bundle);
+                                } catch (ProcessingException pe) {
+                                    reject(pe);
+                                }
+                            }
                         })
                 .cbor_parse_array_items(
-                        () -> new CanonicalBlockItem(logger, toolbox, blobFactory),
+                        () -> canonicalBlockItem,
                         (parser, tags, item) -> {
                             logger.v(TAG, "-> canonical block parsed");
+                            if (rejected) {
+                                bundle.addBlock(item.block);
+                                return;
+                            }
 
                             /* early validation of block */
                             try {
@@ -0,0 +1,138 @@
+package io.left.rightmesh.libdtn.common.data.bundlev7.parser;
+
+import io.left.rightmesh.libcbor.CBOR;
+import io.left.rightmesh.libcbor.CborParser;
+import io.left.rightmesh.libcbor.rxparser.RxParserException;
+import io.left.rightmesh.libdtn.common.data.Crc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CrcFeed computes the Crc of a block while it is being parsed. The bytes read before the
+ * crc type field is known are kept in a small scratch buffer, the Crc is only created once a
+ * block actually declares one and is then reused for every following block parsed by the
+ * same item.
+ *
+ * @author Lucien Loiseau on 24/11/18.
+ */
+class CrcFeed {
+
+    static final String KEY = "crc";
+
+    private static final byte[] ZERO_CRC16 = {0x42, 0x00, 0x00};
+    private static final byte[] ZERO_CRC32 = {0x44, 0x00, 0x00, 0x00, 0x00};
+
+    private ByteBuffer prefix = ByteBuffer.allocate(32);
+    private final ByteBuffer zeroCrc16 = ByteBuffer.wrap(ZERO_CRC16).asReadOnlyBuffer();
+    private final ByteBuffer zeroCrc32 = ByteBuffer.wrap(ZERO_CRC32).asReadOnlyBuffer();
+    private Crc crc16;
+    private Crc crc32;
+    private Crc crc;
+    private boolean ok;
+
+    private final CborParser noCrc = CBOR.parser();
+    private final CborParser closeCrc16 = closeParser(zeroCrc16, 2);
+    private final CborParser closeCrc32 = closeParser(zeroCrc32, 4);
+    private CborParser close;
+
+    /**
+     * prepare for a new block.
+     */
+    void start() {
+        prefix.clear();
+        crc = null;
+        close = noCrc;
+        ok = true;
+    }
+
+    /**
+     * consume a chunk of the block, must be called for every chunk until the crc is closed.
+     *
+     * @param buffer chunk
+     */
+    void read(ByteBuffer buffer) {
+        if (crc != null) {
+            crc.read(buffer);
+            return;
+        }
+        if (prefix.remaining() < buffer.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(prefix.capacity() * 2 + buffer.remaining());
+            prefix.flip();
+            larger.put(prefix);
+            prefix = larger;
+        }
+        prefix.put(buffer);
+    }
+
+    /**
+     * select the Crc declared by the block and feed it with the bytes read so far.
+     *
+     * @param p     the parser feeding this crc
+     * @param type  crc field value, 0 for no crc, 1 for crc-16 and 2 for crc-32
+     * @throws RxParserException if the crc type is unknown
+     */
+    void select(CborParser p, long type) throws RxParserException {
+        switch ((int) type) {
+            case 0:
+                p.undo_for_each_now(KEY);
+                close = noCrc;
+                return;
+            case 1:
+                if (crc16 == null) {
+                    crc16 = Crc.init(Crc.CrcType.CRC16);
+                }
+                crc = crc16.reset();
+                close = closeCrc16;
+                break;
+            case 2:
+                if (crc32 == null) {
+                    crc32 = Crc.init(Crc.CrcType.CRC32);
+                }
+                crc = crc32.reset();
+                close = closeCrc32;
+                break;
+            default:
+                throw new RxParserException("wrong Crc PAYLOAD_BLOCK_TYPE");
+        }
+        prefix.flip();
+        crc.read(prefix);
+        prefix.clear();
+    }
+
+    /**
+     * parser for the crc field of the block, to be inserted at the end of the block.
+     *
+     * @return parser
+     */
+    CborParser closeParser() {
+        close.reset();
+        return close;
+    }
+
+    /**
+     * result of the crc check.
+     *
+     * @return true if the block had no crc or if it matched, false otherwise
+     */
+    boolean isValid() {
+        return ok;
+    }
+
+    private CborParser closeParser(ByteBuffer zeroCrc, int size) {
+        return CBOR.parser()
+                .undo_for_each(KEY, (p) -> {
+                    zeroCrc.rewind();
+                    crc.read(zeroCrc);
+                })
+                .cbor_parse_byte_string(
+                        (p, t, s) -> {
+                            if (s != size) {
+                                throw new RxParserException("Crc " + (size * 8)
+                                        + " should be exactly " + size + " bytes");
+                            }
+                        },
+                        (p, buffer) -> {
+                            ok = crc.doneAndValidate(buffer);
+                        });
+    }
+}
@@ -16,7 +16,8 @@ import io.left.rightmesh.libdtn.common.data.eid.UnknowEid;
 import io.left.rightmesh.libdtn.common.utils.Log;
 
 /**
- * EidItem is a CborParser.ParseableItem for an {@link Eid}.
+ * EidItem is a CborParser.ParseableItem for an {@link Eid}. The same item can be reused to
+ * parse several Eid one after the other.
  *
  * @author Lucien Loiseau on 04/11/18.
  */
@@ -33,21 +34,35 @@ public class EidItem implements CborParser.ParseableItem {
     public Eid eid;
     public int ianaNumber;
 
+    private CborParser parser;
+
     @Override
     public CborParser getItemParser() {
+        if (parser == null) {
+            parser = createParser();
+        } else {
+            parser.reset();
+        }
+        return parser;
+    }
+
+    private CborParser createParser() {
         return CBOR.parser()
                 .cbor_open_array(2)
                 .cbor_parse_int((p, t, i) -> {
-                    logger.v(TAG, ".. iana_value=" + i);
+                    logger.v(TAG, () -> ".. iana_value=" + i);
                     this.ianaNumber = (int) i;
                     switch ((int) i) {
                         case EID_IPN_IANA_VALUE:
+                            parseIpn.reset();
                             p.insert_now(parseIpn);
                             break;
                         case EID_DTN_IANA_VALUE:
+                            parseDtn.reset();
                             p.insert_now(parseDtn);
                             break;
                         default:
+                            parseEid.reset();
                             p.insert_now(parseEid);
                     }
                 });
@@ -70,7 +85,7 @@ public class EidItem implements CborParser.ParseableItem {
                                 }
                             },
                             (p, str) -> {
-                                logger.v(TAG, ".. dtn_ssp=" + str);
+                                logger.v(TAG, () -> ".. dtn_ssp=" + str);
                                 try {
                                     eid = new DtnEid(str);
                                 } catch (EidFormatException efe) {
@@ -89,9 +104,9 @@ public class EidItem implements CborParser.ParseableItem {
                         try {
                             String scheme = eidFactory.getIanaScheme(ianaNumber);
                             eid = eidFactory.create(scheme, ssp);
-                            logger.v(TAG, ".. eid scheme=" + scheme + " ssp=" + ssp);
+                            logger.v(TAG, () -> ".. eid scheme=" + scheme + " ssp=" + ssp);
                         } catch (EidFactory.UnknownIanaNumber | EidFactory.UnknownEidScheme uin) {
-                            logger.v(TAG, ".. unknown Eid=" + ianaNumber + " ssp=" + ssp);
+                            logger.v(TAG, () -> ".. unknown Eid=" + ianaNumber + " ssp=" + ssp);
                             try {
                                 eid = new UnknowEid(ianaNumber, ssp);
                             } catch (EidFormatException efe) {
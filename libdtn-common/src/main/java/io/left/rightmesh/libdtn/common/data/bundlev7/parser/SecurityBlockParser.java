@@ -24,20 +24,20 @@ public class SecurityBlockParser {
                 .cbor_parse_linear_array(
                         CBOR.IntegerItem::new,
                         (p, t, i) -> {
-                            logger.v(TAG, ".. nb_of_targets=" + i);
+                            logger.v(TAG, () -> ".. nb_of_targets=" + i);
                         },
                         (p, t, item) -> {
-                            logger.v(TAG, ".. target=" + item.value());
+                            logger.v(TAG, () -> ".. target=" + item.value());
                             block.securityTargets.add((int) item.value());
                         },
                         (p, t, a) -> {
                         })
                 .cbor_parse_int((p, t, i) -> {
-                    logger.v(TAG, ".. cipherSuiteId=" + i);
+                    logger.v(TAG, () -> ".. cipherSuiteId=" + i);
                     block.cipherSuiteId = (int) i;
                 })
                 .cbor_parse_int((p, t, i) -> {
-                    logger.v(TAG, ".. securityBlockFlag=" + i);
+                    logger.v(TAG, () -> ".. securityBlockFlag=" + i);
                     block.securityBlockFlag = (int) i;
                 })
                 .do_insert_if(
@@ -46,14 +46,14 @@ public class SecurityBlockParser {
                         CBOR.parser().cbor_parse_custom_item(
                                 () -> new EidItem(eidFactory, logger),
                                 (p, t, item) -> {
-                                    logger.v(TAG, ".. securitySource="
+                                    logger.v(TAG, () -> ".. securitySource="
                                             + item.eid.getEidString());
                                     block.securitySource = item.eid;
                                 }))
                 .cbor_parse_linear_array(
                         () ->   /* array in array */
                                 () -> {
-                                    logger.v(TAG, "... target="
+                                    logger.v(TAG, () -> "... target="
                                             + block.securityResults.size());
                                     block.securityResults.add(new LinkedList<>());
                                     return CBOR.parser()
@@ -64,7 +64,7 @@ public class SecurityBlockParser {
                                                             logger),
                                                     (p, t, size) ->
                                                             logger.v(TAG,
-                                                                    "... target_results="
+                                                                    () -> "... target_results="
                                                                             + size),
                                                     (p, t, item) -> {
                                                         block.securityResults.getLast()
@@ -73,7 +73,7 @@ public class SecurityBlockParser {
                                                     (p, t, s) -> {
                                                     });
                                 },
-                        (p, t, size) -> logger.v(TAG, ".. security_results=" + size),
+                        (p, t, size) -> logger.v(TAG, () -> ".. security_results=" + size),
                         (p, t, item) -> {
                         },
                         (p, t, a) -> {
@@ -37,11 +37,14 @@ public class SecurityResultItem implements CborParser.ParseableItem {
                                 /* size of the checksum */
                             },
                             (p, chunk) -> {
-                                securityResult = new IntegrityResult(chunk.array());
-                                logger.v(TAG, ".... result_id="
+                                /* the chunk may be a direct buffer mapped from a file */
+                                byte[] value = new byte[chunk.remaining()];
+                                chunk.duplicate().get(value);
+                                securityResult = new IntegrityResult(value);
+                                logger.v(TAG, () -> ".... result_id="
                                         + securityResult.getResultId());
-                                logger.v(TAG, ".... result_value="
-                                        + new String(chunk.array()));
+                                logger.v(TAG, () -> ".... result_value="
+                                        + new String(value));
                             },
                             (p) -> {
                             });
@@ -20,7 +20,7 @@ public class StatusReportParser {
     static CborParser getParser(StatusReport report, EidFactory eidFactory, Log logger) {
         return CBOR.parser()
                 .cbor_open_array((p, t, i) -> {
-                    logger.v(TAG, ".. status_report_array size=" + i);
+                    logger.v(TAG, () -> ".. status_report_array size=" + i);
                     if (i != 4 && i != 6) {
                         throw new RxParserException("wrong number of element in status report");
                     }
@@ -36,12 +36,12 @@ public class StatusReportParser {
                                             .cbor_open_array((p, t, i) -> {
                                                 if (i == 1) {
                                                     p.insert_now(CBOR.parser().cbor_parse_boolean((p2, b) -> {
-                                                        logger.v(TAG, ".... " + assertion + "=false");
+                                                        logger.v(TAG, () -> ".... " + assertion + "=false");
                                                     }));
                                                 } else if (i == 2) {
                                                     p.insert_now(CBOR.parser()
                                                             .cbor_parse_boolean((p2, b) -> {
-                                                                logger.v(TAG, ".... " + assertion + "=true");
+                                                                logger.v(TAG, () -> ".... " + assertion + "=true");
                                                             })
                                                             .cbor_parse_int((p2, t2, timestamp) -> {
                                                                 logger.v(TAG, ".... timestamp=true");
@@ -54,7 +54,7 @@ public class StatusReportParser {
                                             });
                                 },
                         (p, t, size) -> {
-                            logger.v(TAG, "... status_assertion_array_size=" + size);
+                            logger.v(TAG, () -> "... status_assertion_array_size=" + size);
                             if (size != StatusReport.StatusAssertion.values().length) {
                                 throw new RxParserException("wrong number of status assertion");
                             }
@@ -64,7 +64,7 @@ public class StatusReportParser {
                         (p, t, a) -> { /* ignore, already dealt with in item factory */
                         })
                 .cbor_parse_int((p, t, error) -> {
-                    logger.v(TAG, ".. error_code=" + error);
+                    logger.v(TAG, () -> ".. error_code=" + error);
                     if (error > StatusReport.ReasonCode.values().length) {
                         report.code = StatusReport.ReasonCode.Other;
                     } else {
@@ -72,11 +72,11 @@ public class StatusReportParser {
                     }
                 })
                 .cbor_parse_custom_item(() -> new EidItem(eidFactory, logger), (p, t, item) -> {
-                    logger.v(TAG, ".. subject_source_EID=" + item.eid.getEidString());
+                    logger.v(TAG, () -> ".. subject_source_EID=" + item.eid.getEidString());
                     report.source = item.eid;
                 })
                 .cbor_parse_int((p, t, timestamp) -> {
-                    logger.v(TAG, ".. subbject_creation_timestamp=" + timestamp);
+                    logger.v(TAG, () -> ".. subbject_creation_timestamp=" + timestamp);
                     report.creationTimestamp = timestamp;
                 }); //todo fragmented bundle is not supported
     }
@@ -0,0 +1,33 @@
+package io.left.rightmesh.libdtn.common.data.bundlev7.processor;
+
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+
+/**
+ * HeaderProcessor is called while a Bundle is being deserialized, as soon as its header is
+ * available and before its payload is received. Throwing a {@link ProcessingException} rejects
+ * the bundle, the rest of it is then parsed but discarded without being stored.
+ *
+ * @author Lucien Loiseau on 25/11/18.
+ */
+public interface HeaderProcessor {
+
+    /**
+     * This is called once the primary block has been deserialized.
+     *
+     * @param block primary block of the bundle
+     * @throws ProcessingException if the bundle is to be rejected
+     */
+    void onPrimaryBlockDeserialized(PrimaryBlock block) throws ProcessingException;
+
+    /**
+     * This is called once every block preceding the payload block has been deserialized, just
+     * before the payload is received. The payload block is already part of the bundle but its
+     * data is not, it will be written into the blob created for it right after this call. The
+     * bundle is tagged "payload_last" if no block can follow the payload.
+     *
+     * @param bundle with its primary block, its extension blocks and its payload block header
+     * @throws ProcessingException if the bundle is to be rejected
+     */
+    void onHeaderDeserialized(Bundle bundle) throws ProcessingException;
+}
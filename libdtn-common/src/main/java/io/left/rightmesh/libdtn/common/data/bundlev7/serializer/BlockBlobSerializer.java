@@ -21,4 +21,15 @@ public class BlockBlobSerializer {
         return CBOR.encoder()
                 .cbor_encode_byte_string(block.data.observe());
     }
+
+    /**
+     * Compute the size of a serialized {@link BlockBlob} from the size of its Blob, the data
+     * itself is not read.
+     *
+     * @param block to serialize.
+     * @return size of the Cbor-encoded BlockBlob, in bytes.
+     */
+    static long encodedSize(BlockBlob block) {
+        return CborSize.byteString(block.data.size());
+    }
 }
@@ -26,6 +26,19 @@ public class BlockHeaderSerializer {
                 .cbor_encode_int(block.crcType.ordinal());
     }
 
+    /**
+     * Compute the size of a serialized {@link BlockHeader} without serializing it.
+     *
+     * @param block to serialize.
+     * @return size of the Cbor-encoded BlockHeader, in bytes.
+     */
+    public static long encodedSize(BlockHeader block) {
+        return CborSize.header(getItemCount(block))
+                + CborSize.integer(block.type)
+                + CborSize.integer(block.number)
+                + CborSize.integer(block.procV7flags)
+                + CborSize.integer(block.crcType.ordinal());
+    }
 
     private static int getItemCount(BlockHeader block) {
         int length = 5; // 6 in draft-BPbis v10, currently v11
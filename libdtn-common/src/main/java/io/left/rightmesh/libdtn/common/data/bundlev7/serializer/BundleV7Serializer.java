@@ -4,6 +4,10 @@ import io.left.rightmesh.libcbor.CBOR;
 import io.left.rightmesh.libcbor.CborEncoder;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.utils.Function;
+import io.reactivex.Flowable;
+
+import java.nio.ByteBuffer;
 
 /**
  * BundleV7Serializer serializes a {@link Bundle}.
@@ -13,6 +17,8 @@ import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 public class BundleV7Serializer {
 
     public static final byte BUNDLE_VERSION_7 = 0x07;
+    private static final byte[] START_INDEFINITE_ARRAY = {(byte) 0x9f};
+    private static final byte[] BREAK = {(byte) 0xff};
 
     /**
      * Serialize a bundle into a cbor stream. If an ExtensionBlock is unknown, the block payload
@@ -36,4 +42,90 @@ public class BundleV7Serializer {
         return enc;
     }
 
+    /**
+     * Serialize a bundle into a stream of buffers. Unlike {@link #encode(Bundle,
+     * BlockDataSerializerFactory)}, the PrimaryBlock is taken from its cached serialized form so
+     * that a bundle sent to multiple peers only has its PrimaryBlock serialized once.
+     *
+     * @param bundle to serialize
+     * @param serializerFactory block serializer
+     * @return cbor-encoded bundle
+     */
+    public static Flowable<ByteBuffer> observe(Bundle bundle,
+                                               BlockDataSerializerFactory serializerFactory) {
+        return Flowable.defer(() -> {
+            Flowable<ByteBuffer> ret = Flowable.just(ByteBuffer.wrap(START_INDEFINITE_ARRAY))
+                    .concatWith(Flowable.just(PrimaryBlockSerializer.encodeToBuffer(bundle)));
+
+            for (CanonicalBlock block : bundle.getBlocks()) {
+                ret = ret.concatWith(CanonicalBlockSerializer
+                        .encode(block, serializerFactory).observe());
+            }
+
+            return ret.concatWith(Flowable.just(ByteBuffer.wrap(BREAK)));
+        });
+    }
+
+    /**
+     * Serialize a bundle into a stream of buffers preceded by a header that depends on the size
+     * of the serialized bundle, such as a length prefix. The blocks are serialized only once,
+     * when the stream is subscribed, and the size is taken from this very serialization: a
+     * block whose encoding changes every time it is serialized, like the AgeBlock, is thus
+     * sent with the value it was measured with. The size of the Blob blocks is derived from
+     * the size of their Blob so that their data is only read once, when it is sent.
+     *
+     * @param bundle to serialize
+     * @param serializerFactory block serializer
+     * @param header creates the header from the size of the cbor-encoded bundle
+     * @return header followed by the cbor-encoded bundle
+     */
+    public static Flowable<ByteBuffer> observe(Bundle bundle,
+                                               BlockDataSerializerFactory serializerFactory,
+                                               Function<Long, CborEncoder> header) {
+        return Flowable.defer(() -> {
+            ByteBuffer primary = PrimaryBlockSerializer.encodeToBuffer(bundle);
+            long size = 1 /* indefinite array */
+                    + primary.remaining()
+                    + 1 /* break */;
+            Flowable<ByteBuffer> blocks = Flowable.empty();
+
+            for (CanonicalBlock block : bundle.getBlocks()) {
+                CborEncoder enc = CanonicalBlockSerializer.encode(block, serializerFactory);
+                if (CanonicalBlockSerializer.isSizedFromBlob(block)) {
+                    size += CanonicalBlockSerializer.encodedSize(block, serializerFactory);
+                } else {
+                    size += CborSize.measure(enc);
+                }
+                blocks = blocks.concatWith(enc.observe());
+            }
+
+            return header.apply(size).observe()
+                    .concatWith(Flowable.just(ByteBuffer.wrap(START_INDEFINITE_ARRAY)))
+                    .concatWith(Flowable.just(primary))
+                    .concatWith(blocks)
+                    .concatWith(Flowable.just(ByteBuffer.wrap(BREAK)));
+        });
+    }
+
+    /**
+     * Compute the size of the serialized bundle without serializing it. The size of the Blob
+     * blocks (like the payload) is derived from the size of their Blob so that their data is
+     * never read.
+     *
+     * @param bundle to serialize
+     * @param blockDataSerializerFactory block serializer
+     * @return size of the cbor-encoded bundle, in bytes
+     */
+    public static long encodedSize(Bundle bundle,
+                                   BlockDataSerializerFactory blockDataSerializerFactory) {
+        long size = 1 /* indefinite array */
+                + PrimaryBlockSerializer.encodedSize(bundle);
+
+        for (CanonicalBlock block : bundle.getBlocks()) {
+            size += CanonicalBlockSerializer.encodedSize(block, blockDataSerializerFactory);
+        }
+
+        return size + 1 /* break */;
+    }
+
 }
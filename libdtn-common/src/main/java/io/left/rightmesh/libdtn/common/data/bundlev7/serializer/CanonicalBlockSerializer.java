@@ -5,6 +5,7 @@ import io.left.rightmesh.libcbor.CborEncoder;
 import io.left.rightmesh.libdtn.common.data.BlockBlob;
 import io.left.rightmesh.libdtn.common.data.BlockHeader;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.data.PayloadBlock;
 import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.reactivex.Flowable;
 
@@ -40,6 +41,47 @@ public class CanonicalBlockSerializer {
         return enc.merge(encodeCrc(enc.observe(50), block.crcType));
     }
 
+    /**
+     * Compute the size of a serialized {@link CanonicalBlock} without serializing it. The size
+     * of an encrypted block or of a payload block is derived from the size of its Blob. The
+     * other blocks hold small structures that are measured by running their serializer.
+     *
+     * @param block to serialize.
+     * @param factory to create a block-specific data serializer
+     * @return size of the Cbor-encoded CanonicalBlock, in bytes.
+     */
+    public static long encodedSize(CanonicalBlock block, BlockDataSerializerFactory factory) {
+        long size = BlockHeaderSerializer.encodedSize(block);
+
+        if (isSizedFromBlob(block)) {
+            size += BlockBlobSerializer.encodedSize((BlockBlob) block);
+        } else {
+            try {
+                size += CborSize.measure(factory.create(block));
+            } catch (BlockDataSerializerFactory.UnknownBlockTypeException ubte) {
+                /* empty block data */
+            }
+        }
+
+        return size + crcSize(block.crcType);
+    }
+
+    /* the size of these blocks is derived from their Blob, their data is never read */
+    static boolean isSizedFromBlob(CanonicalBlock block) {
+        return block.getV7Flag(BlockHeader.BlockV7Flags.BLOCK_IS_ENCRYPTED)
+                || (block.type == PayloadBlock.PAYLOAD_BLOCK_TYPE
+                && block instanceof BlockBlob);
+    }
+
+    static int crcSize(BlockHeader.CrcFieldType type) {
+        if (type == BlockHeader.CrcFieldType.CRC_16) {
+            return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.CRC_16);
+        }
+        if (type == BlockHeader.CrcFieldType.CRC_32) {
+            return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.CRC_32);
+        }
+        return PrimaryBlockSerializer.crcSize(PrimaryBlock.CrcFieldType.NO_CRC);
+    }
 
     static CborEncoder encodeCrc(Flowable<ByteBuffer> source,
                                  BlockHeader.CrcFieldType type) {
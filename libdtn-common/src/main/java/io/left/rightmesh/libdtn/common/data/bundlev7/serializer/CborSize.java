@@ -0,0 +1,87 @@
+package io.left.rightmesh.libdtn.common.data.bundlev7.serializer;
+
+import io.left.rightmesh.libcbor.CborEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CborSize computes the length of the CBOR encoding of a data item without encoding it. Every
+ * item is assumed to be encoded in its shortest form, as the CborEncoder does.
+ *
+ * @author Lucien Loiseau on 21/11/18.
+ */
+public class CborSize {
+
+    /**
+     * Length of the header of an item whose argument (the value of an unsigned integer, the
+     * length of a string or the number of items of an array) is given.
+     *
+     * @param argument unsigned argument of the header
+     * @return size in bytes
+     */
+    public static int header(long argument) {
+        if (argument < 0) {
+            /* unsigned argument above Long.MAX_VALUE */
+            return 9;
+        }
+        if (argument < 24) {
+            return 1;
+        }
+        if (argument < 0x100) {
+            return 2;
+        }
+        if (argument < 0x10000) {
+            return 3;
+        }
+        if (argument < 0x100000000L) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * Length of an encoded integer, negative integers included.
+     *
+     * @param value of the integer
+     * @return size in bytes
+     */
+    public static int integer(long value) {
+        return header(value >= 0 ? value : -1 - value);
+    }
+
+    /**
+     * Length of an encoded definite-length byte string.
+     *
+     * @param length of the byte string
+     * @return size in bytes
+     */
+    public static long byteString(long length) {
+        return header(length) + length;
+    }
+
+    /**
+     * Length of an encoded text string.
+     *
+     * @param str text string
+     * @return size in bytes
+     */
+    public static long textString(String str) {
+        int length = str.getBytes(StandardCharsets.UTF_8).length;
+        return header(length) + length;
+    }
+
+    /**
+     * Length of the output of an encoder. The encoder is run in order to measure it, this must
+     * only be used for small items held in memory.
+     *
+     * @param enc encoder to measure
+     * @return size in bytes
+     */
+    public static long measure(CborEncoder enc) {
+        return enc.observe()
+                .map(ByteBuffer::remaining)
+                .reduce(0L, (a, b) -> a + b)
+                .blockingGet();
+    }
+}
@@ -42,4 +42,24 @@ public class EidSerializer {
                 .cbor_encode_text_string(eid.getSsp());
     }
 
+    /**
+     * Compute the size of a serialized {@link Eid} without serializing it.
+     *
+     * @param eid to serialize.
+     * @return size of the Cbor-encoded Eid, in bytes.
+     */
+    public static long encodedSize(Eid eid) {
+        long size = CborSize.header(2) + CborSize.integer(eid.ianaNumber());
+        if (eid.equals(DtnEid.nullEid())) {
+            return size + CborSize.integer(0);
+        }
+        if (eid.ianaNumber() == EID_IPN_IANA_VALUE) {
+            return size
+                    + CborSize.header(2)
+                    + CborSize.integer(((EidIpn) eid).nodeNumber)
+                    + CborSize.integer(((EidIpn) eid).serviceNumber);
+        }
+        return size + CborSize.textString(eid.getSsp());
+    }
+
 }
@@ -8,6 +8,7 @@ import io.left.rightmesh.libdtn.common.data.Crc;
 import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.reactivex.Flowable;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 
 /**
@@ -23,7 +24,46 @@ public class PrimaryBlockSerializer {
      * @param block to serialize
      * @return a Cbor-encoded serialized PrimaryBlock.
      */
-    static CborEncoder encode(PrimaryBlock block) {
+    public static CborEncoder encode(PrimaryBlock block) {
+        CborEncoder enc = encodeFields(block);
+
+        /* the Crc is the last item of a serialized block, reuse it if it was cached */
+        ByteBuffer cache = block.getEncodedCache();
+        int crcSize = crcSize(block.getCrcType());
+        if (cache != null && crcSize > 0) {
+            byte[] crc = new byte[crcSize - 1];
+            cache.position(cache.limit() - crc.length);
+            cache.get(crc);
+            return enc.cbor_encode_byte_string(crc);
+        }
+
+        return enc.merge(encodeCrc(enc.observe(1000), block.getCrcType()));
+    }
+
+    /**
+     * Serialize a {@link PrimaryBlock} into a buffer. The buffer is cached in the block so that
+     * the block is only serialized (and its Crc computed) again if it was modified.
+     *
+     * @param block to serialize
+     * @return a read-only buffer holding the Cbor-encoded PrimaryBlock.
+     */
+    public static ByteBuffer encodeToBuffer(PrimaryBlock block) {
+        ByteBuffer cache = block.getEncodedCache();
+        if (cache != null) {
+            return cache;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) encodedSize(block));
+        encode(block).observe().blockingForEach(buffer -> {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk, 0, chunk.length);
+        });
+        block.setEncodedCache(ByteBuffer.wrap(out.toByteArray()));
+        return block.getEncodedCache();
+    }
+
+    private static CborEncoder encodeFields(PrimaryBlock block) {
         CborEncoder enc = CBOR.encoder()
                 .cbor_start_array(getItemCount(block))
                 .cbor_encode_int(BUNDLE_VERSION_7)
@@ -41,7 +81,38 @@ public class PrimaryBlockSerializer {
             enc.cbor_encode_int(block.getFragmentOffset());
         }
 
-        return enc.merge(encodeCrc(enc.observe(1000), block.getCrcType()));
+        return enc;
+    }
+
+    /**
+     * Compute the size of a serialized {@link PrimaryBlock} without serializing it.
+     *
+     * @param block to serialize
+     * @return size of the Cbor-encoded PrimaryBlock, in bytes.
+     */
+    public static long encodedSize(PrimaryBlock block) {
+        ByteBuffer cache = block.getEncodedCache();
+        if (cache != null) {
+            return cache.remaining();
+        }
+
+        long size = CborSize.header(getItemCount(block))
+                + CborSize.integer(BUNDLE_VERSION_7)
+                + CborSize.integer(block.getProcV7Flags())
+                + CborSize.integer(block.getCrcType().ordinal())
+                + EidSerializer.encodedSize(block.getDestination())
+                + EidSerializer.encodedSize(block.getSource())
+                + EidSerializer.encodedSize(block.getReportto())
+                + CborSize.header(2)
+                + CborSize.integer(block.getCreationTimestamp())
+                + CborSize.integer(block.getSequenceNumber())
+                + CborSize.integer(block.getLifetime());
+
+        if (block.getV7Flag(PrimaryBlock.BundleV7Flags.FRAGMENT)) {
+            size += CborSize.integer(block.getFragmentOffset());
+        }
+
+        return size + crcSize(block.getCrcType());
     }
 
     static int getItemCount(PrimaryBlock block) {
@@ -55,6 +126,17 @@ public class PrimaryBlockSerializer {
         return length;
     }
 
+    // size of the encoded PrimaryBlock Crc
+    static int crcSize(PrimaryBlock.CrcFieldType type) {
+        if (type == PrimaryBlock.CrcFieldType.CRC_16) {
+            return 3;
+        }
+        if (type == PrimaryBlock.CrcFieldType.CRC_32) {
+            return 5;
+        }
+        return 0;
+    }
+
     // encode PrimaryBlock Crc
     static CborEncoder encodeCrc(Flowable<ByteBuffer> source, PrimaryBlock.CrcFieldType type) {
         if (type == PrimaryBlock.CrcFieldType.CRC_16) {
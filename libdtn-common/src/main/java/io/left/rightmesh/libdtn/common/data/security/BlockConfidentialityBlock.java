@@ -7,9 +7,9 @@ import io.left.rightmesh.libdtn.common.ExtensionToolbox;
 import io.left.rightmesh.libdtn.common.data.BlockBlob;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.data.blob.CompositeBlob;
 import io.left.rightmesh.libdtn.common.data.blob.UntrackedByteBufferBlob;
 import io.left.rightmesh.libdtn.common.data.blob.VersatileGrowingBuffer;
-import io.left.rightmesh.libdtn.common.data.blob.WritableBlob;
 import io.left.rightmesh.libdtn.common.data.bundlev7.parser.CanonicalBlockItem;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockHeaderSerializer;
@@ -98,7 +98,7 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
                         BlockDataSerializerFactory serializerFactory,
                         Log logger) throws SecurityOperationException {
         for (int blockNumber : securityTargets) {
-            logger.v(TAG, ".. applying encryption to: " + blockNumber);
+            logger.v(TAG, () -> ".. applying encryption to: " + blockNumber);
             CanonicalBlock block = bundle.getBlock(blockNumber);
             if (block != null) {
                 // init cipher
@@ -154,31 +154,24 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
                         throw new SecurityOperationException("target block serializer not found");
                     }
 
-                    int encodedSize = encoder.observe(1024)
-                            .map(ByteBuffer::remaining)
-                            .reduce(0, (a, b) -> a + b)
-                            .blockingGet();
-
-                    // malloc space for the new encrypted block
-                    encryptedBlock.data = new UntrackedByteBufferBlob(
-                            cipher.getOutputSize(encodedSize) + cipher.getBlockSize());
-                    WritableBlob wblob = encryptedBlock.data.getWritableBlob();
+                    // every output of the cipher becomes a segment of the encrypted blob
+                    CompositeBlob encrypted = new CompositeBlob();
+                    encryptedBlock.data = encrypted;
 
                     // encrypt serialized content
                     encoder.observe(cipher.getBlockSize() == 0 ? 128 : cipher.getBlockSize())
                             .subscribe(/* same thread */
                                     byteBuffer -> {
-                                        ByteBuffer bb = ByteBuffer
-                                                .wrap(cipher.update(byteBuffer.array()));
-                                        wblob.write(bb);
+                                        byte[] array = new byte[byteBuffer.remaining()];
+                                        byteBuffer.duplicate().get(array);
+                                        byte[] out = cipher.update(array);
+                                        if (out != null) {
+                                            encrypted.append(ByteBuffer.wrap(out));
+                                        }
                                     },
                                     e -> {
                                     },
-                                    () -> {
-                                        ByteBuffer bb = ByteBuffer.wrap(cipher.doFinal());
-                                        wblob.write(bb);
-                                    });
-                    wblob.close();
+                                    () -> encrypted.append(ByteBuffer.wrap(cipher.doFinal())));
 
                     // replace the current block with encrypted blob
                     bundle.updateBlock(blockNumber, encryptedBlock);
@@ -205,7 +198,7 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
                           Log logger) throws SecurityOperationException {
         for (int blockNumber : securityTargets) {
             CanonicalBlock block = bundle.getBlock(blockNumber);
-            logger.v(TAG, ".. applying decryption to: " + blockNumber);
+            logger.v(TAG, () -> ".. applying decryption to: " + blockNumber);
             if (block instanceof BlockBlob && block.getV7Flag(BlockV7Flags.BLOCK_IS_ENCRYPTED)) {
 
                 // init cipher
@@ -225,7 +218,8 @@ public class BlockConfidentialityBlock extends AbstractSecurityBlock {
                             .cbor_parse_custom_item(
                                     () -> new CanonicalBlockItem(logger, toolbox,
                                             (size) -> new VersatileGrowingBuffer(
-                                                    UntrackedByteBufferBlob::new, 1024)),
+                                                    (chunk) -> new UntrackedByteBufferBlob(
+                                                            (int) chunk), 1024)),
                                     (p, t, item) -> {
                                         bundle.updateBlock(block.number, item.block);
                                     });
@@ -97,7 +97,7 @@ public class BlockIntegrityBlock extends AbstractSecurityBlock {
                         BlockDataSerializerFactory serializerFactory,
                         Log logger) throws SecurityOperationException {
         for (int blockNumber : securityTargets) {
-            logger.v(TAG, ".. computing integrity for block number: " + blockNumber);
+            logger.v(TAG, () -> ".. computing integrity for block number: " + blockNumber);
             CanonicalBlock block = bundle.getBlock(blockNumber);
             LinkedList<SecurityResult> results = new LinkedList<>();
             securityResults.add(results);
@@ -122,7 +122,7 @@ public class BlockIntegrityBlock extends AbstractSecurityBlock {
 
                 encoder.observe()
                         .subscribe(/* same thread */
-                                byteBuffer -> digest.update(byteBuffer.array()),
+                                byteBuffer -> digest.update(byteBuffer.duplicate()),
                                 e -> {
                                 },
                                 () -> {
@@ -157,7 +157,7 @@ public class BlockIntegrityBlock extends AbstractSecurityBlock {
             int blockNumber = securityTargets.get(i);
             List<SecurityResult> results = securityResults.get(i);
 
-            logger.v(TAG, ".. checking integrity for block number: " + blockNumber);
+            logger.v(TAG, () -> ".. checking integrity for block number: " + blockNumber);
             CanonicalBlock block = bundle.getBlock(blockNumber);
             if (block != null) {
                 MessageDigest digest;
@@ -189,15 +189,7 @@ public class BlockIntegrityBlock extends AbstractSecurityBlock {
                 }
                 encoder.observe()
                         .subscribe(/* same thread */
-                                byteBuffer -> {
-                                    if (byteBuffer.remaining() == byteBuffer.capacity()) {
-                                        digest.update(byteBuffer.array());
-                                    } else {
-                                        byte[] array = new byte[byteBuffer.remaining()];
-                                        byteBuffer.get(array);
-                                        digest.update(array);
-                                    }
-                                },
+                                byteBuffer -> digest.update(byteBuffer.duplicate()),
                                 e -> {
                                 },
                                 () -> {
@@ -205,12 +197,12 @@ public class BlockIntegrityBlock extends AbstractSecurityBlock {
 
                 byte[] checkDigest = digest.digest();
                 if (!Arrays.equals(ir.getChecksum(), checkDigest)) {
-                    logger.v(TAG, ".. integrity failed for target block=" + blockNumber);
+                    logger.v(TAG, () -> ".. integrity failed for target block=" + blockNumber);
                     throw new SecurityOperationException("checksum doesn't match: "
                             + "\nbib_result=" + new String(ir.getChecksum())
                             + "\ndigest=" + new String(checkDigest));
                 } else {
-                    logger.v(TAG, ".. integrity ok for target block=" + blockNumber);
+                    logger.v(TAG, () -> ".. integrity ok for target block=" + blockNumber);
                 }
             } else {
                 /* should we thrown a NoSuchBlockException ? probably means that it was removed
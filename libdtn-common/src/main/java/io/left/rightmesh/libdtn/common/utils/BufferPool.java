@@ -0,0 +1,344 @@
+package io.left.rightmesh.libdtn.common.utils;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BufferPool recycles the temporary ByteBuffer used to read and write data so that the hot
+ * paths don't allocate a new buffer for every read. Buffers are sorted in size classes, powers
+ * of two from {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}. A released buffer is first
+ * cached by the releasing thread, which doesn't need any synchronization, and is given to a
+ * global pool shared by every thread once the thread cache of its class is full. Both the thread
+ * caches and the global pool are bounded, a buffer that doesn't fit is left to the garbage
+ * collector. A request larger than the biggest class is allocated and never pooled.
+ *
+ * <p>A buffer must be released exactly once and must not be used after it is released. A buffer
+ * released again while it is still in the thread cache of the releasing thread is ignored. In
+ * debug mode, the pool tracks every buffer it hands out: a buffer released while it is not
+ * handed out is ignored so that two callers never acquire the same buffer, and a buffer garbage
+ * collected before it was released is reported as a leak together with the place it was
+ * acquired from.
+ *
+ * @author Lucien Loiseau on 20/11/18.
+ */
+public class BufferPool {
+
+    private static final String TAG = "BufferPool";
+
+    public static final int MIN_BUFFER_SIZE = 512;
+    public static final int MAX_BUFFER_SIZE = 65536;
+    static final int THREAD_CACHE_SIZE = 8;
+    static final int GLOBAL_POOL_SIZE = 64;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int CLASSES =
+            Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1;
+
+    /**
+     * Pool of heap buffers.
+     */
+    public static final BufferPool HEAP = new BufferPool(false);
+
+    /**
+     * Pool of direct buffers.
+     */
+    public static final BufferPool DIRECT = new BufferPool(true);
+
+    private final boolean direct;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] pools;
+    private final AtomicInteger[] poolSizes;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> caches;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong leaks = new AtomicLong(0);
+
+    private volatile boolean leakDetection = false;
+    private volatile Log logger;
+    private final ReferenceQueue<ByteBuffer> leakQueue = new ReferenceQueue<>();
+    private final Map<Integer, LinkedList<Tracker>> trackers = new HashMap<>();
+
+    /**
+     * Tracker remembers where a buffer was acquired until it is released.
+     */
+    private final class Tracker extends WeakReference<ByteBuffer> {
+        private final int key;
+        private final int capacity;
+        private final Throwable origin;
+
+        private Tracker(ByteBuffer buffer) {
+            super(buffer, leakQueue);
+            this.key = System.identityHashCode(buffer);
+            this.capacity = buffer.capacity();
+            this.origin = new Throwable();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param direct true if the pool holds direct buffers, false for heap buffers
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct) {
+        this.direct = direct;
+        pools = (ConcurrentLinkedQueue<ByteBuffer>[]) new ConcurrentLinkedQueue<?>[CLASSES];
+        poolSizes = new AtomicInteger[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            pools[i] = new ConcurrentLinkedQueue<>();
+            poolSizes[i] = new AtomicInteger(0);
+        }
+        caches = ThreadLocal.withInitial(() -> {
+            ArrayDeque<ByteBuffer>[] cache
+                    = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[CLASSES];
+            for (int i = 0; i < CLASSES; i++) {
+                cache[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Enable or disable the leak detection. Tracking the buffers is expensive and is meant to
+     * be used for debugging only. While it is enabled, a buffer acquired before is treated as a
+     * buffer released twice when it is released.
+     *
+     * @param enable true to track every buffer acquired from now on
+     */
+    public void setLeakDetection(boolean enable) {
+        leakDetection = enable;
+    }
+
+    /**
+     * Set the logger used to report the leaks.
+     *
+     * @param logger to report leaks to
+     */
+    public void setLogger(Log logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Number of buffers acquired from a thread cache or from the global pool.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of buffers that had to be allocated because no pooled buffer was available.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of buffers garbage collected before they were released, only counted while the
+     * leak detection is enabled.
+     *
+     * @return leak count
+     */
+    public long getLeakCount() {
+        expunge();
+        return leaks.get();
+    }
+
+    private static int sizeClass(int size) {
+        if (size > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, MIN_BUFFER_SIZE) - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_BUFFER_SIZE << sizeClass;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Acquire a buffer. The buffer is cleared and its limit is set to the size requested, its
+     * capacity may be larger.
+     *
+     * @param size requested
+     * @return a ByteBuffer of at least size bytes
+     */
+    public ByteBuffer acquire(int size) {
+        if (leakDetection) {
+            expunge();
+        }
+
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = caches.get()[sizeClass].pollFirst();
+            if (buffer == null) {
+                buffer = pools[sizeClass].poll();
+                if (buffer != null) {
+                    poolSizes[sizeClass].decrementAndGet();
+                }
+            }
+        }
+
+        if (buffer == null) {
+            misses.incrementAndGet();
+            buffer = allocate(sizeClass >= 0 ? classSize(sizeClass) : size);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        if (leakDetection) {
+            track(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer returned by {@link #acquire(int)}. The buffer must not be used
+     * afterward. Releasing a buffer that is still in the thread cache, or that is not handed out
+     * while the leak detection is enabled, has no effect.
+     *
+     * @param buffer to release
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        boolean tracked = untrack(buffer);
+
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass < 0 || classSize(sizeClass) != capacity || buffer.isDirect() != direct
+                || buffer.isReadOnly()) {
+            /* not a pooled buffer */
+            return;
+        }
+
+        if (leakDetection && !tracked) {
+            releasedTwice(capacity);
+            return;
+        }
+
+        ArrayDeque<ByteBuffer> cache = caches.get()[sizeClass];
+        for (ByteBuffer cached : cache) {
+            if (cached == buffer) {
+                releasedTwice(capacity);
+                return;
+            }
+        }
+
+        buffer.clear();
+        if (cache.size() < THREAD_CACHE_SIZE) {
+            cache.push(buffer);
+            return;
+        }
+        if (poolSizes[sizeClass].incrementAndGet() <= GLOBAL_POOL_SIZE) {
+            pools[sizeClass].offer(buffer);
+        } else {
+            poolSizes[sizeClass].decrementAndGet();
+        }
+    }
+
+    private void releasedTwice(int capacity) {
+        Log log = logger;
+        if (log != null) {
+            log.w(TAG, () -> "a buffer of " + capacity + " bytes was released twice");
+        }
+    }
+
+    private void track(ByteBuffer buffer) {
+        Tracker tracker = new Tracker(buffer);
+        synchronized (trackers) {
+            LinkedList<Tracker> list = trackers.get(tracker.key);
+            if (list == null) {
+                list = new LinkedList<>();
+                trackers.put(tracker.key, list);
+            }
+            list.add(tracker);
+        }
+    }
+
+    private boolean untrack(ByteBuffer buffer) {
+        int key = System.identityHashCode(buffer);
+        synchronized (trackers) {
+            if (trackers.isEmpty()) {
+                return false;
+            }
+            LinkedList<Tracker> list = trackers.get(key);
+            if (list == null) {
+                return false;
+            }
+            boolean found = false;
+            Iterator<Tracker> it = list.iterator();
+            while (it.hasNext()) {
+                Tracker tracker = it.next();
+                if (tracker.get() == buffer) {
+                    tracker.clear();
+                    it.remove();
+                    found = true;
+                    break;
+                }
+            }
+            if (list.isEmpty()) {
+                trackers.remove(key);
+            }
+            return found;
+        }
+    }
+
+    private boolean forget(Tracker tracker) {
+        synchronized (trackers) {
+            LinkedList<Tracker> list = trackers.get(tracker.key);
+            if (list == null || !list.remove(tracker)) {
+                return false;
+            }
+            if (list.isEmpty()) {
+                trackers.remove(tracker.key);
+            }
+            return true;
+        }
+    }
+
+    private void expunge() {
+        Tracker tracker;
+        while ((tracker = (Tracker) leakQueue.poll()) != null) {
+            if (!forget(tracker)) {
+                continue;
+            }
+            leaks.incrementAndGet();
+            Log log = logger;
+            if (log != null) {
+                final Tracker leaked = tracker;
+                log.w(TAG, () -> "leak detected: a buffer of " + leaked.capacity
+                        + " bytes was garbage collected before it was released, acquired at "
+                        + origin(leaked.origin));
+            }
+        }
+    }
+
+    private static String origin(Throwable origin) {
+        for (StackTraceElement element : origin.getStackTrace()) {
+            if (!element.getClassName().equals(BufferPool.class.getName())
+                    && !element.getClassName().startsWith(BufferPool.class.getName() + "$")) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+}
@@ -1,7 +1,9 @@
 package io.left.rightmesh.libdtn.common.utils;
 
 /**
- * Simple Logger.
+ * Simple Logger. Every message can be given either as a String or as a {@link Supplier} that
+ * is only called if the message is actually logged, so that building a verbose message costs
+ * nothing when the level is disabled.
  *
  * @author Lucien Loiseau on 15/09/18.
  */
@@ -26,6 +28,31 @@ public interface Log {
         }
     }
 
+    /**
+     * check whether a message of a given level would be logged. It is meant to guard a costly
+     * preparation of the log message.
+     *
+     * @param level of the message
+     * @return true if the message would be logged, false otherwise
+     */
+    default boolean isLoggable(LogLevel level) {
+        return true;
+    }
+
+    /**
+     * build a lazy log message. If the supplier fails, the failure is logged instead.
+     *
+     * @param msg supplier of the message
+     * @return the message
+     */
+    static String build(Supplier<String> msg) {
+        try {
+            return msg.get();
+        } catch (Exception e) {
+            return "log message failed: " + e;
+        }
+    }
+
     // CHECKSTYLE IGNORE MethodName
     void v(String tag, String msg);
 
@@ -36,5 +63,37 @@ public interface Log {
     void w(String tag, String msg);
 
     void e(String tag, String msg);
+
+    /* lazy log messages, only built if the level is loggable */
+
+    default void v(String tag, Supplier<String> msg) {
+        if (isLoggable(LogLevel.VERBOSE)) {
+            v(tag, build(msg));
+        }
+    }
+
+    default void d(String tag, Supplier<String> msg) {
+        if (isLoggable(LogLevel.DEBUG)) {
+            d(tag, build(msg));
+        }
+    }
+
+    default void i(String tag, Supplier<String> msg) {
+        if (isLoggable(LogLevel.INFO)) {
+            i(tag, build(msg));
+        }
+    }
+
+    default void w(String tag, Supplier<String> msg) {
+        if (isLoggable(LogLevel.WARN)) {
+            w(tag, build(msg));
+        }
+    }
+
+    default void e(String tag, Supplier<String> msg) {
+        if (isLoggable(LogLevel.ERROR)) {
+            e(tag, build(msg));
+        }
+    }
     //CHECKSTYLE END IGNORE
 }
@@ -7,6 +7,11 @@ package io.left.rightmesh.libdtn.common.utils;
  */
 public class NullLogger implements Log {
 
+    @Override
+    public boolean isLoggable(LogLevel level) {
+        return false;
+    }
+
     @Override
     public void v(String tag, String msg) {
     }
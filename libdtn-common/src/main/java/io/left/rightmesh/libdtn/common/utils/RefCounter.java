@@ -0,0 +1,55 @@
+package io.left.rightmesh.libdtn.common.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RefCounter is a thread-safe reference counter. It starts with a single reference held by the
+ * creator of the counted object, the object must free its resources once the counter drops to
+ * zero. A released counter can't be retained anymore.
+ *
+ * @author Lucien Loiseau on 19/11/18.
+ */
+public class RefCounter {
+
+    private final AtomicInteger count = new AtomicInteger(1);
+
+    /**
+     * Number of references currently held.
+     *
+     * @return reference count
+     */
+    public int get() {
+        return count.get();
+    }
+
+    /**
+     * Acquire a new reference.
+     *
+     * @throws IllegalStateException if every reference was already released
+     */
+    public void retain() {
+        int cnt;
+        do {
+            cnt = count.get();
+            if (cnt == 0) {
+                throw new IllegalStateException("already released");
+            }
+        } while (!count.compareAndSet(cnt, cnt + 1));
+    }
+
+    /**
+     * Release a reference. Releasing a counter that already dropped to zero has no effect.
+     *
+     * @return true if the last reference was just released, false otherwise
+     */
+    public boolean release() {
+        int cnt;
+        do {
+            cnt = count.get();
+            if (cnt == 0) {
+                return false;
+            }
+        } while (!count.compareAndSet(cnt, cnt - 1));
+        return cnt == 1;
+    }
+}
@@ -9,8 +9,13 @@ public class SimpleLogger implements Log {
 
     private LogLevel level = LogLevel.VERBOSE;
 
+    @Override
+    public boolean isLoggable(LogLevel l) {
+        return l.ordinal() >= level.ordinal();
+    }
+
     private void log(LogLevel l, String tag, String msg) {
-        if (l.ordinal() >= level.ordinal()) {
+        if (isLoggable(l)) {
             System.out.println(System.currentTimeMillis() + " " + l + " - " + tag + ": " + msg);
         }
     }
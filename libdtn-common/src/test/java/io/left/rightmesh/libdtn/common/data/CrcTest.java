@@ -0,0 +1,82 @@
+package io.left.rightmesh.libdtn.common.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the Crc.
+ *
+ * @author Lucien Loiseau on 22/11/18.
+ */
+public class CrcTest {
+
+    private static ByteBuffer crc(Crc.CrcType type, ByteBuffer... buffers) {
+        Crc crc = Crc.init(type);
+        for (ByteBuffer buffer : buffers) {
+            crc.read(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        return crc.done();
+    }
+
+    private static ByteBuffer direct(byte[] data) {
+        ByteBuffer ret = ByteBuffer.allocateDirect(data.length);
+        ret.put(data);
+        ret.flip();
+        return ret;
+    }
+
+    @Test
+    public void testCheckValues() {
+        System.out.println("[+] Crc: test check values");
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals((short) 0x906e, crc(Crc.CrcType.CRC16, ByteBuffer.wrap(check)).getShort());
+        assertEquals(0xcbf43926, crc(Crc.CrcType.CRC32, ByteBuffer.wrap(check)).getInt());
+        assertEquals((short) 0x906e, crc(Crc.CrcType.CRC16, direct(check)).getShort());
+        assertEquals(0xcbf43926, crc(Crc.CrcType.CRC32, direct(check)).getInt());
+    }
+
+    @Test
+    public void testReset() {
+        System.out.println("[+] Crc: test reset");
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        for (Crc.CrcType type : Crc.CrcType.values()) {
+            Crc crc = Crc.init(type);
+            crc.read(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            crc.reset().read(ByteBuffer.wrap(check));
+            assertEquals(crc(type, ByteBuffer.wrap(check)), crc.done());
+        }
+    }
+
+    @Test
+    public void testBuffers() {
+        System.out.println("[+] Crc: test heap, direct and split buffers");
+        byte[] data = new byte[10007];
+        new Random(42).nextBytes(data);
+
+        for (Crc.CrcType type : Crc.CrcType.values()) {
+            ByteBuffer expected = crc(type, ByteBuffer.wrap(data));
+            assertEquals(expected, crc(type, direct(data)));
+
+            /* unaligned split, some buffers shorter than a slice */
+            for (int split : new int[]{1, 3, 7, 8, 9, 4099}) {
+                assertEquals(expected, crc(type,
+                        ByteBuffer.wrap(data, 0, split),
+                        ByteBuffer.wrap(data, split, data.length - split)));
+            }
+
+            /* a buffer with an offset and a limit */
+            ByteBuffer window = ByteBuffer.wrap(data, 5, 100).slice();
+            assertEquals(crc(type, ByteBuffer.wrap(data, 5, 100)), crc(type, window));
+            assertTrue(crc(type, ByteBuffer.allocate(0)).hasRemaining());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Test class for CompositeBlob.
+ *
+ * @author Lucien Loiseau on 18/11/18.
+ */
+public class CompositeBlobTest {
+
+    private static byte[] bytes(int from, int length) {
+        byte[] ret = new byte[length];
+        for (int i = 0; i < length; i++) {
+            ret[i] = (byte) (from + i);
+        }
+        return ret;
+    }
+
+    private static byte[] read(Blob blob) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(b -> {
+            while (b.hasRemaining()) {
+                out.write(b.get());
+            }
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSegments() {
+        System.out.println("[+] CompositeBlob: segments and slices");
+        byte[] payload = bytes(0, 100);
+        CompositeBlob blob = new CompositeBlob(ByteBuffer.wrap(payload));
+        blob.prepend(ByteBuffer.wrap(bytes(-10, 10)));
+        blob.append(ByteBuffer.wrap(bytes(100, 10)));
+
+        assertEquals(3, blob.segmentCount());
+        assertEquals(120, blob.size());
+        assertArrayEquals(bytes(-10, 120), read(blob));
+
+        /* slices share the segments and may span several of them */
+        CompositeBlob slice = blob.slice(5, 110);
+        assertEquals(110, slice.size());
+        assertEquals(3, slice.segmentCount());
+        assertArrayEquals(bytes(-5, 110), read(slice));
+        assertArrayEquals(bytes(20, 30), read(slice.slice(25, 30)));
+        assertEquals(0, blob.slice(120, 0).size());
+
+        /* observing twice gives the same data */
+        assertArrayEquals(bytes(-10, 120), read(blob));
+
+        try {
+            blob.slice(100, 21);
+            fail();
+        } catch (IndexOutOfBoundsException ioobe) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testMap() throws Exception {
+        System.out.println("[+] CompositeBlob: map");
+        CompositeBlob blob = new CompositeBlob(
+                ByteBuffer.wrap(bytes(0, 10)),
+                ByteBuffer.wrap(bytes(10, 10)));
+        blob.map(
+                () -> ByteBuffer.wrap(new byte[]{1, 2}),
+                buffer -> {
+                    ByteBuffer ret = ByteBuffer.allocate(buffer.remaining());
+                    while (buffer.hasRemaining()) {
+                        ret.put((byte) (buffer.get() + 1));
+                    }
+                    ret.flip();
+                    return ret;
+                },
+                () -> ByteBuffer.wrap(new byte[]{3}));
+
+        byte[] expected = new byte[23];
+        expected[0] = 1;
+        expected[1] = 2;
+        System.arraycopy(bytes(1, 20), 0, expected, 2, 20);
+        expected[22] = 3;
+        assertEquals(23, blob.size());
+        assertArrayEquals(expected, read(blob));
+    }
+
+    @Test
+    public void testWritableAndTransfer() throws Exception {
+        System.out.println("[+] CompositeBlob: writable and gathering transfer");
+        byte[] large = bytes(0, 10000);
+        CompositeBlob blob = new CompositeBlob();
+        WritableBlob writable = blob.getWritableBlob();
+        for (int i = 0; i < 100; i++) {
+            writable.write((byte) i);
+        }
+        writable.write(large);
+        writable.write(ByteBuffer.wrap(bytes(0, 50)));
+        writable.close();
+
+        byte[] expected = new byte[10150];
+        System.arraycopy(bytes(0, 100), 0, expected, 0, 100);
+        System.arraycopy(large, 0, expected, 100, 10000);
+        System.arraycopy(bytes(0, 50), 0, expected, 10100, 50);
+        assertEquals(expected.length, blob.size());
+        assertEquals(3, blob.segmentCount());
+        assertArrayEquals(expected, read(blob));
+
+        File file = File.createTempFile("composite-", ".blob");
+        file.deleteOnExit();
+        FileChannel out = new FileOutputStream(file).getChannel();
+        assertEquals(expected.length, blob.transferTo(out));
+        out.close();
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+
+        blob.getWritableBlob().clear();
+        assertEquals(0, blob.size());
+        assertArrayEquals(new byte[0], read(blob));
+        assertEquals(0, blob.nioBuffers().length);
+    }
+}
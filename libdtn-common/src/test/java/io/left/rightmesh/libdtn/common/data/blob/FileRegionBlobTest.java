@@ -0,0 +1,160 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Test class for FileRegionBlob.
+ *
+ * @author Lucien Loiseau on 17/11/18.
+ */
+public class FileRegionBlobTest {
+
+    private File file(byte[] data) throws IOException {
+        File file = File.createTempFile("region-", ".bundle");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(data);
+        fos.close();
+        return file;
+    }
+
+    @Test
+    public void testObserveRegion() throws IOException {
+        System.out.println("[+] FileRegionBlob: observe region");
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        File file = file(data);
+
+        FileRegionBlob blob = new FileRegionBlob(file, 1234, 5000);
+        assertEquals(5000, blob.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(b -> {
+            while (b.hasRemaining()) {
+                out.write(b.get());
+            }
+        });
+        assertArrayEquals(Arrays.copyOfRange(data, 1234, 6234), out.toByteArray());
+
+        /* moving the blob copies the region only */
+        File moved = File.createTempFile("region-", ".blob");
+        moved.deleteOnExit();
+        blob.moveToFile(moved.getAbsolutePath()).blockingAwait();
+        assertArrayEquals(Arrays.copyOfRange(data, 1234, 6234),
+                Files.readAllBytes(moved.toPath()));
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        System.out.println("[+] FileRegionBlob: transfer to channel");
+        byte[] data = new byte[3 << 20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        File file = file(data);
+        byte[] expected = Arrays.copyOfRange(data, 100, data.length - 100);
+
+        /* large regions are still observed as heap buffers */
+        FileRegionBlob blob = new FileRegionBlob(file, 100, expected.length);
+        ByteArrayOutputStream observed = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(b -> {
+            assertEquals(true, b.hasArray());
+            while (b.hasRemaining()) {
+                observed.write(b.get());
+            }
+        });
+        assertArrayEquals(expected, observed.toByteArray());
+
+        /* transfer from file to file */
+        File copy = File.createTempFile("region-", ".blob");
+        copy.deleteOnExit();
+        FileChannel out = new FileOutputStream(copy).getChannel();
+        assertEquals(expected.length, blob.transferTo(out));
+        out.close();
+        assertArrayEquals(expected, Files.readAllBytes(copy.toPath()));
+
+        /* transfer a whole FileBlob to a stream channel */
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        FileBlob fileBlob = new FileBlob(copy);
+        assertEquals(expected.length, fileBlob.transferTo(Channels.newChannel(streamed)));
+        assertArrayEquals(expected, streamed.toByteArray());
+    }
+
+    @Test
+    public void testReadOnly() throws Exception {
+        System.out.println("[+] FileRegionBlob: read-only");
+        File file = file(new byte[100]);
+        FileRegionBlob blob = new FileRegionBlob(file, 10, 50);
+
+        WritableBlob writable = blob.getWritableBlob();
+        assertEquals(40, writable.write(ByteBuffer.allocate(40)));
+        try {
+            writable.write(ByteBuffer.allocate(11));
+            fail();
+        } catch (WritableBlob.BlobOverflowException boe) {
+            /* expected */
+        }
+        writable.close();
+        assertArrayEquals(new byte[100], Files.readAllBytes(file.toPath()));
+
+        try {
+            new FileRegionBlob(file, 60, 50);
+            fail();
+        } catch (IOException io) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testReadAfterDelete() throws Exception {
+        System.out.println("[+] FileRegionBlob: read after the file is deleted");
+        byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        File file = file(data);
+        FileRegionBlob large = new FileRegionBlob(file, 100, 150000);
+        FileRegionBlob small = new FileRegionBlob(file, 10, 5000);
+
+        /* the bundle is removed from the storage before its payload is read */
+        assertTrue(file.delete());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        large.observe().blockingForEach(b -> {
+            while (b.hasRemaining()) {
+                out.write(b.get());
+            }
+        });
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 150100), out.toByteArray());
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        assertEquals(5000, small.transferTo(Channels.newChannel(streamed)));
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 5010), streamed.toByteArray());
+
+        /* the file is closed once the last reference is released */
+        small.retain();
+        assertFalse(small.release());
+        small.observe().test().assertComplete();
+        assertTrue(small.release());
+        assertTrue(large.release());
+        small.observe().test().assertError(IOException.class);
+    }
+}
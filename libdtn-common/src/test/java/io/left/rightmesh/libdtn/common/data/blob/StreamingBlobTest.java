@@ -0,0 +1,147 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.reactivex.subscribers.TestSubscriber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Test class for StreamingBlob.
+ *
+ * @author Lucien Loiseau on 26/11/18.
+ */
+public class StreamingBlobTest {
+
+    private static byte[] bytes(int from, int length) {
+        byte[] ret = new byte[length];
+        for (int i = 0; i < length; i++) {
+            ret[i] = (byte) (from + i);
+        }
+        return ret;
+    }
+
+    private static byte[] concat(Iterable<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer b : buffers) {
+            while (b.hasRemaining()) {
+                out.write(b.get());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testLiveStream() throws Exception {
+        System.out.println("[+] StreamingBlob: live stream and stored copy");
+        StreamingBlob blob = new StreamingBlob(new UntrackedByteBufferBlob(100), 100);
+        assertEquals(100, blob.size());
+
+        /* the first subscriber gets the chunks as soon as they are written */
+        TestSubscriber<ByteBuffer> live = blob.observe().test();
+        TestSubscriber<ByteBuffer> stored = blob.observe().test();
+
+        WritableBlob wblob = blob.getWritableBlob();
+        ByteBuffer chunk = ByteBuffer.wrap(bytes(0, 60));
+        wblob.write(chunk);
+        assertFalse(chunk.hasRemaining());
+        live.assertValueCount(1);
+        live.assertNotComplete();
+        stored.assertNoValues();
+
+        wblob.write(bytes(60, 40));
+        wblob.close();
+        live.assertValueCount(2);
+        live.assertNotComplete();
+        assertFalse(blob.isFileBlob());
+
+        /* the other subscribers read the stored copy once the blob is sealed */
+        blob.seal();
+        live.assertComplete();
+        stored.assertComplete();
+        assertArrayEquals(bytes(0, 100), concat(live.values()));
+        assertArrayEquals(bytes(0, 100), concat(stored.values()));
+        assertArrayEquals(bytes(0, 100), concat(blob.observe().blockingIterable()));
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        System.out.println("[+] StreamingBlob: aborted live stream");
+        StreamingBlob blob = new StreamingBlob(new UntrackedByteBufferBlob(10), 10);
+        TestSubscriber<ByteBuffer> live = blob.observe().test();
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(bytes(0, 10));
+        wblob.close();
+
+        /* the live subscriber fails but the stored copy is complete */
+        blob.abort(new IOException("aborted"));
+        live.assertError(IOException.class);
+        blob.whenDone().test().assertComplete();
+        assertArrayEquals(bytes(0, 10), concat(blob.observe().blockingIterable()));
+
+        /* a blob whose data is incomplete can't be read at all */
+        StreamingBlob partial = new StreamingBlob(new UntrackedByteBufferBlob(10), 10);
+        TestSubscriber<ByteBuffer> partialLive = partial.observe().test();
+        partial.getWritableBlob().write(bytes(0, 5));
+        partial.seal();
+        partialLive.assertError(IOException.class);
+        partial.observe().test().assertError(IOException.class);
+        try {
+            partial.getFilePath();
+            fail();
+        } catch (Blob.NotFileBlob nfb) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testLiveOverflow() throws Exception {
+        System.out.println("[+] StreamingBlob: live stream falls back on the stored copy");
+        StreamingBlob blob = new StreamingBlob(new UntrackedByteBufferBlob(100), 100, 50);
+
+        /* the live subscriber does not read anything yet */
+        TestSubscriber<ByteBuffer> live = blob.observe().test(0);
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(bytes(0, 40));
+        wblob.write(bytes(40, 40));
+        wblob.write(bytes(80, 20));
+        wblob.close();
+        live.assertNoValues();
+
+        /* it reads what was buffered and then the rest of the stored copy */
+        live.request(1);
+        live.assertValueCount(1);
+        live.assertNotComplete();
+        live.request(Long.MAX_VALUE);
+        live.assertNotComplete();
+        blob.seal();
+        live.assertComplete();
+        assertArrayEquals(bytes(0, 100), concat(live.values()));
+
+        /* a late subscriber gets the buffered chunks and the stored copy as well */
+        StreamingBlob late = new StreamingBlob(new UntrackedByteBufferBlob(100), 100, 50);
+        WritableBlob lateWblob = late.getWritableBlob();
+        for (int i = 0; i < 10; i++) {
+            lateWblob.write(bytes(i * 10, 10));
+        }
+        lateWblob.close();
+        late.seal();
+        assertArrayEquals(bytes(0, 100), concat(late.observe().blockingIterable()));
+
+        /* an aborted stream fails the live subscriber even after the fallback */
+        StreamingBlob aborted = new StreamingBlob(new UntrackedByteBufferBlob(100), 100, 50);
+        TestSubscriber<ByteBuffer> abortedLive = aborted.observe().test(0);
+        aborted.getWritableBlob().write(bytes(0, 100));
+        aborted.abort(new IOException("aborted"));
+        abortedLive.request(Long.MAX_VALUE);
+        abortedLive.assertError(IOException.class);
+    }
+}
@@ -0,0 +1,245 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the VolatileMemory slab allocator.
+ *
+ * @author Lucien Loiseau on 18/11/18.
+ */
+public class VolatileMemoryTest {
+
+    @Test
+    public void testSizeClass() throws IOException {
+        System.out.println("[+] VolatileMemory: test size classes");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        ByteBuffer small = memory.malloc(10);
+        assertTrue(small.isDirect());
+        assertEquals(10, small.limit());
+        assertEquals(VolatileMemory.MIN_CHUNK_SIZE, small.capacity());
+
+        ByteBuffer medium = memory.malloc(1000);
+        assertEquals(1000, medium.limit());
+        assertEquals(1024, medium.capacity());
+
+        assertEquals(VolatileMemory.MIN_CHUNK_SIZE + 1024, memory.getMemoryUsage());
+        assertEquals(2 * memory.getPageSize(), memory.getMemoryReserved());
+
+        memory.free(small);
+        memory.free(medium);
+        assertEquals(0, memory.getMemoryUsage());
+        assertEquals(2 * memory.getPageSize(), memory.getMemoryReserved());
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        System.out.println("[+] VolatileMemory: test chunk reuse");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        byte[] data = {1, 2, 3, 4, 5};
+        ByteBuffer chunk = memory.malloc(data);
+        byte[] read = new byte[data.length];
+        chunk.duplicate().get(read);
+        assertArrayEquals(data, read);
+
+        memory.free(chunk);
+        ByteBuffer other = memory.malloc(40);
+        assertSame(chunk, other);
+        assertEquals(40, other.limit());
+        assertEquals(0, other.position());
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        System.out.println("[+] VolatileMemory: test memory limit");
+        VolatileMemory memory = new VolatileMemory(64 * 1024);
+        int page = memory.getPageSize();
+
+        /* larger than a page */
+        ByteBuffer large = memory.malloc(page + 1);
+        assertEquals(page + 1, large.capacity());
+
+        try {
+            memory.malloc(64 * 1024);
+            fail("memory limit should have been hit");
+        } catch (IOException io) {
+            /* expected */
+        }
+
+        memory.free(large);
+        assertEquals(0, memory.getMemoryReserved());
+        memory.malloc(page * 2);
+
+        /* fill every remaining page with 64 bytes chunks */
+        int chunks = 0;
+        try {
+            while (true) {
+                memory.malloc(1);
+                chunks++;
+            }
+        } catch (IOException io) {
+            /* expected */
+        }
+        assertEquals((64 * 1024 - page * 2) / VolatileMemory.MIN_CHUNK_SIZE, chunks);
+    }
+
+    @Test
+    public void testPageReclaim() throws IOException {
+        System.out.println("[+] VolatileMemory: test unused pages are reclaimed");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        /* fill the whole memory with the smallest chunks and free them all */
+        List<ByteBuffer> chunks = new ArrayList<>();
+        try {
+            while (true) {
+                chunks.add(memory.malloc(64));
+            }
+        } catch (IOException io) {
+            /* expected */
+        }
+        assertEquals(1 << 20, memory.getMemoryReserved());
+        for (ByteBuffer chunk : chunks) {
+            memory.free(chunk);
+        }
+        assertEquals(0, memory.getMemoryUsage());
+
+        /* the pages can now be carved for another class or given back for a large buffer */
+        ByteBuffer medium = memory.malloc(4096);
+        assertEquals(4096, medium.capacity());
+        ByteBuffer large = memory.malloc(memory.getPageSize() * 4);
+        assertEquals(1 << 20, memory.getMemoryReserved());
+        memory.free(large);
+        memory.free(medium);
+        assertEquals(0, memory.getMemoryUsage());
+
+        /* and the small chunks are still available */
+        chunks.clear();
+        try {
+            while (true) {
+                chunks.add(memory.malloc(64));
+            }
+        } catch (IOException io) {
+            /* expected */
+        }
+        assertEquals((1 << 20) / VolatileMemory.MIN_CHUNK_SIZE, chunks.size());
+    }
+
+    @Test
+    public void testByteBufferBlob() throws Exception {
+        System.out.println("[+] VolatileMemory: test ByteBufferBlob lifecycle");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        ByteBufferBlob blob = new ByteBufferBlob(memory, 100);
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(new byte[]{1, 2, 3});
+        wblob.close();
+        assertEquals(3, blob.size());
+        assertEquals(128, memory.getMemoryUsage());
+
+        blob.map(
+                () -> ByteBuffer.allocate(0),
+                buffer -> {
+                    byte[] array = buffer.array();
+                    byte[] out = new byte[array.length * 2];
+                    System.arraycopy(array, 0, out, 0, array.length);
+                    System.arraycopy(array, 0, out, array.length, array.length);
+                    return ByteBuffer.wrap(out);
+                },
+                () -> ByteBuffer.allocate(0));
+        assertEquals(6, blob.size());
+        assertEquals(VolatileMemory.MIN_CHUNK_SIZE, memory.getMemoryUsage());
+
+        ByteBuffer content = blob.observe().blockingFirst();
+        byte[] read = new byte[content.remaining()];
+        content.get(read);
+        assertArrayEquals(new byte[]{1, 2, 3, 1, 2, 3}, read);
+
+        blob.getWritableBlob().clear();
+        blob.getWritableBlob().clear();
+        assertEquals(0, memory.getMemoryUsage());
+    }
+
+    @Test
+    public void testRefCount() throws Exception {
+        System.out.println("[+] VolatileMemory: test ByteBufferBlob reference count");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        ByteBufferBlob blob = new ByteBufferBlob(memory, new byte[]{1, 2, 3});
+        assertEquals(1, blob.refCnt());
+        blob.retain();
+        assertEquals(2, blob.refCnt());
+
+        assertFalse(blob.release());
+        assertEquals(VolatileMemory.MIN_CHUNK_SIZE, memory.getMemoryUsage());
+        assertEquals(3, blob.size());
+
+        assertTrue(blob.release());
+        assertEquals(0, memory.getMemoryUsage());
+        assertEquals(0, blob.size());
+        assertFalse(blob.release());
+
+        try {
+            blob.retain();
+            fail("a released blob can't be retained");
+        } catch (IllegalStateException ise) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void testInvalidFree() throws IOException {
+        System.out.println("[+] VolatileMemory: test double and unknown free");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        ByteBuffer chunk = memory.malloc(100);
+        ByteBuffer large = memory.malloc(memory.getPageSize() + 1);
+        long usage = memory.getMemoryUsage();
+
+        /* a buffer that was not returned by malloc is ignored */
+        memory.free(ByteBuffer.allocateDirect(128));
+        memory.free(chunk.duplicate());
+        assertEquals(usage, memory.getMemoryUsage());
+
+        /* a chunk freed twice is only given back once */
+        memory.free(chunk);
+        memory.free(chunk);
+        memory.free(large);
+        memory.free(large);
+        assertEquals(0, memory.getMemoryUsage());
+        assertEquals(memory.getPageSize(), memory.getMemoryReserved());
+
+        ByteBuffer first = memory.malloc(100);
+        ByteBuffer second = memory.malloc(100);
+        assertTrue(first != second);
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        System.out.println("[+] VolatileMemory: test leak detection");
+        VolatileMemory memory = new VolatileMemory(1 << 20);
+
+        new ByteBufferBlob(memory, 100);
+        new ByteBufferBlob(memory, 100).release();
+        assertEquals(128, memory.getMemoryUsage());
+
+        for (int i = 0; i < 50 && memory.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, memory.getLeakCount());
+        assertEquals(0, memory.getMemoryUsage());
+    }
+}
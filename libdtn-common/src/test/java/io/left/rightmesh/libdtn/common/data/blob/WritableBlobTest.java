@@ -0,0 +1,127 @@
+package io.left.rightmesh.libdtn.common.data.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Test class for the bulk write path of VersatileGrowingBuffer and FileBlob.
+ *
+ * @author Lucien Loiseau on 19/11/18.
+ */
+public class WritableBlobTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static byte[] content(Blob blob) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        blob.observe().blockingForEach(buffer -> {
+            while (buffer.hasRemaining()) {
+                out.write(buffer.get());
+            }
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGrowingBufferSlices() throws Exception {
+        System.out.println("[+] WritableBlob: VersatileGrowingBuffer bulk write");
+        BaseBlobFactory factory = new BaseBlobFactory().enableVolatile(1 << 20);
+        VersatileGrowingBuffer vgb = new VersatileGrowingBuffer(factory, 100);
+
+        byte[] data = data(1050);
+        WritableBlob wblob = vgb.getWritableBlob();
+        wblob.write(data[0]);
+        wblob.write(ByteBuffer.wrap(data, 1, 249));
+        wblob.write(new ByteArrayInputStream(data, 250, 500), 500);
+        wblob.write(ByteBuffer.wrap(data, 750, 300));
+        wblob.close();
+
+        assertEquals(1050, vgb.size());
+        assertArrayEquals(data, content(vgb));
+        assertEquals(11 * 128, factory.getVolatileMemory().getMemoryUsage());
+
+        vgb.release();
+        assertEquals(0, factory.getVolatileMemory().getMemoryUsage());
+    }
+
+    @Test
+    public void testFileBlob() throws Exception {
+        System.out.println("[+] WritableBlob: FileBlob bulk write");
+        File file = File.createTempFile("blob-", ".test");
+        file.deleteOnExit();
+
+        byte[] data = data(200000);
+        FileBlob blob = new FileBlob(file);
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(data[0]);
+        wblob.write(ByteBuffer.wrap(data, 1, 99));
+        wblob.write(ByteBuffer.wrap(data, 100, 100000));
+        wblob.write(new ByteArrayInputStream(data, 100100, 99900));
+        wblob.close();
+
+        assertEquals(200000, blob.size());
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testFileBlobOwnership() throws Exception {
+        System.out.println("[+] WritableBlob: a disowned FileBlob keeps its file");
+        File owned = File.createTempFile("blob-", ".test");
+        owned.deleteOnExit();
+        assertTrue(new FileBlob(owned).release());
+        assertFalse(owned.exists());
+
+        File disowned = File.createTempFile("blob-", ".test");
+        disowned.deleteOnExit();
+        FileBlob blob = new FileBlob(disowned).disown();
+        assertEquals(1, blob.refCnt());
+        assertTrue(blob.release());
+        assertTrue(disowned.exists());
+    }
+
+    @Test
+    public void testVolatileThreshold() throws Exception {
+        System.out.println("[+] WritableBlob: large Blob are created on disk");
+        File dir = Files.createTempDirectory("blobs-").toFile();
+        dir.deleteOnExit();
+        BaseBlobFactory factory = new BaseBlobFactory()
+                .enableVolatile(1 << 20)
+                .enablePersistent(dir.getAbsolutePath())
+                .setVolatileThreshold(1000);
+
+        assertTrue(factory.createBlob(1000) instanceof ByteBufferBlob);
+        Blob large = factory.createBlob(5000);
+        assertTrue(large instanceof FileBlob);
+
+        /* the size is not narrowed on the way to the writer */
+        byte[] data = data(5000);
+        WritableBlob wblob = large.getWritableBlob();
+        assertEquals(5000L, wblob.write(new ByteArrayInputStream(data), 5000L));
+        wblob.close();
+        assertArrayEquals(data, content(large));
+        large.release();
+
+        /* without persistent storage, a large Blob falls back to volatile memory */
+        factory.disablePersistent();
+        assertTrue(factory.createBlob(5000) instanceof ByteBufferBlob);
+
+        /* a Blob that can't be held in memory is never truncated to an int */
+        assertTrue(factory.createBlob(3L << 30) instanceof NullBlob);
+    }
+}
@@ -1,6 +1,9 @@
 package io.left.rightmesh.libdtn.common.data.bundlev7;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import io.left.rightmesh.libcbor.CBOR;
@@ -19,11 +22,19 @@ import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.left.rightmesh.libdtn.common.data.ScopeControlHopLimitBlock;
 import io.left.rightmesh.libdtn.common.data.blob.BaseBlobFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BundleV7Item;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.CanonicalBlockSerializer;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.PrimaryBlockSerializer;
 import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
 import io.left.rightmesh.libdtn.common.data.eid.EidIpn;
 import io.left.rightmesh.libdtn.common.utils.NullLogger;
+import io.reactivex.Flowable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import org.junit.Test;
 
@@ -191,6 +202,297 @@ public class BundleV7Test {
         }
     }
 
+    @Test
+    public void testReusedParser() {
+        System.out.println("[+] bundle: testing a single reused parser with 6 test bundles");
+
+        Bundle[] bundles = {
+                testBundle6(),
+                testBundle1(),
+                testBundle5(),
+                testBundle2(),
+                testBundle6(),
+                testBundle4()
+        };
+
+        // one item for all the bundles, like a channel does
+        BundleV7Item bundleItem = new BundleV7Item(
+                new NullLogger(),
+                new BaseExtensionToolbox(),
+                new BaseBlobFactory().enableVolatile(100000).disablePersistent());
+        Bundle[] res = {null};
+        CborParser parser = CBOR.parser().cbor_parse_custom_item(
+                () -> bundleItem,
+                (p, t, item) -> res[0] = item.bundle);
+
+        for (Bundle bundle : bundles) {
+            res[0] = null;
+            BundleV7Serializer.encode(bundle, new BaseBlockDataSerializerFactory())
+                    .observe(10).subscribe(
+                        buf -> {
+                            try {
+                                if (parser.read(buf)) {
+                                    assertEquals(false, buf.hasRemaining());
+                                    parser.reset();
+                                }
+                            } catch (RxParserException rpe) {
+                                rpe.printStackTrace();
+                                fail();
+                            }
+                        });
+
+            checkBundlePayload(res[0]);
+            assertEquals(bundle.getCrcType(), res[0].getCrcType());
+            assertEquals(bundle.getBlocks().size(), res[0].getBlocks().size());
+            assertEquals(true, res[0].<Boolean>getTagAttachment("crc_check"));
+        }
+    }
+
+    @Test
+    public void testHeaderProcessor() {
+        System.out.println("[+] bundle: testing the early rejection of a bundle");
+
+        // reject the bundles with a crc-16 primary block or with an age block before the payload
+        HeaderProcessor processor = new HeaderProcessor() {
+            @Override
+            public void onPrimaryBlockDeserialized(PrimaryBlock block)
+                    throws ProcessingException {
+                if (block.getCrcType() == PrimaryBlock.CrcFieldType.CRC_16) {
+                    throw new ProcessingException("primary block rejected");
+                }
+            }
+
+            @Override
+            public void onHeaderDeserialized(Bundle bundle) throws ProcessingException {
+                // the payload block header is already part of the bundle
+                assertNotNull(bundle.getPayloadBlock());
+                if (bundle.hasBlock(AgeBlock.AGE_BLOCK_TYPE)) {
+                    throw new ProcessingException("header rejected");
+                }
+            }
+        };
+
+        Bundle crc16 = testBundle1();
+        crc16.setCrcType(PrimaryBlock.CrcFieldType.CRC_16);
+        Bundle[] bundles = {
+                testBundle1(),
+                crc16,
+                testBundle6(),
+                testBundle4(),
+                testBundle1()
+        };
+        boolean[] rejected = {false, true, true, false, false};
+
+        BundleV7Item bundleItem = new BundleV7Item(
+                new NullLogger(),
+                new BaseExtensionToolbox(),
+                new BaseBlobFactory().enableVolatile(100000).disablePersistent(),
+                processor);
+        BundleV7Item[] res = {null};
+        CborParser parser = CBOR.parser().cbor_parse_custom_item(
+                () -> bundleItem,
+                (p, t, item) -> res[0] = item);
+
+        for (int i = 0; i < bundles.length; i++) {
+            res[0] = null;
+            BundleV7Serializer.encode(bundles[i], new BaseBlockDataSerializerFactory())
+                    .observe(10).subscribe(
+                        buf -> {
+                            try {
+                                if (parser.read(buf)) {
+                                    parser.reset();
+                                }
+                            } catch (RxParserException rpe) {
+                                rpe.printStackTrace();
+                                fail();
+                            }
+                        });
+
+            assertNotNull(res[0]);
+            assertEquals(rejected[i], res[0].rejected);
+            if (rejected[i]) {
+                // the payload went nowhere
+                assertEquals(0, res[0].bundle.getPayloadBlock().data.size());
+            } else {
+                checkBundlePayload(res[0].bundle);
+            }
+        }
+    }
+
+    @Test
+    public void testPayloadLast() {
+        System.out.println("[+] bundle: testing that the last payload is known early");
+
+        boolean[] payloadLast = {false};
+        HeaderProcessor processor = new HeaderProcessor() {
+            @Override
+            public void onPrimaryBlockDeserialized(PrimaryBlock block) {
+            }
+
+            @Override
+            public void onHeaderDeserialized(Bundle bundle) {
+                payloadLast[0] = bundle.isTagged("payload_last");
+            }
+        };
+
+        BaseBlockDataSerializerFactory factory = new BaseBlockDataSerializerFactory();
+        Bundle last = testBundle1();
+        Bundle notLast = testBundle2();
+        CborEncoder[] encoders = {
+                // definite-length array, the payload is the last block
+                CBOR.encoder()
+                        .cbor_start_array(2)
+                        .merge(PrimaryBlockSerializer.encode(last))
+                        .merge(CanonicalBlockSerializer.encode(last.getPayloadBlock(), factory)),
+                // definite-length array, an age block follows the payload
+                CBOR.encoder()
+                        .cbor_start_array(3)
+                        .merge(PrimaryBlockSerializer.encode(notLast))
+                        .merge(CanonicalBlockSerializer.encode(
+                                notLast.getPayloadBlock(), factory))
+                        .merge(CanonicalBlockSerializer.encode(
+                                notLast.getBlocks(AgeBlock.AGE_BLOCK_TYPE).getFirst(), factory)),
+                // indefinite-length array, a block could follow the payload
+                BundleV7Serializer.encode(testBundle1(), factory)
+        };
+        boolean[] expected = {true, false, false};
+
+        BundleV7Item bundleItem = new BundleV7Item(
+                new NullLogger(),
+                new BaseExtensionToolbox(),
+                new BaseBlobFactory().enableVolatile(100000).disablePersistent(),
+                processor);
+        BundleV7Item[] res = {null};
+        CborParser parser = CBOR.parser().cbor_parse_custom_item(
+                () -> bundleItem,
+                (p, t, item) -> res[0] = item);
+
+        for (int i = 0; i < encoders.length; i++) {
+            res[0] = null;
+            payloadLast[0] = !expected[i];
+            encoders[i].observe(10).subscribe(
+                    buf -> {
+                        try {
+                            if (parser.read(buf)) {
+                                parser.reset();
+                            }
+                        } catch (RxParserException rpe) {
+                            rpe.printStackTrace();
+                            fail();
+                        }
+                    });
+
+            assertNotNull(res[0]);
+            assertEquals(expected[i], payloadLast[0]);
+            checkBundlePayload(res[0].bundle);
+        }
+    }
+
+    @Test
+    public void testEncodedSize() {
+        System.out.println("[+] bundle: testing the encoded size with 7 test bundles");
+
+        Bundle[] bundles = {
+                testBundle0(),
+                testBundle1(),
+                testBundle2(),
+                testBundle3(),
+                testBundle4(),
+                testBundle5(),
+                testBundle6()
+        };
+
+        for (Bundle bundle : bundles) {
+            long size = BundleV7Serializer.encode(bundle, new BaseBlockDataSerializerFactory())
+                    .observe()
+                    .map(ByteBuffer::remaining)
+                    .reduce(0L, (a, b) -> a + b)
+                    .blockingGet();
+            assertEquals(size,
+                    BundleV7Serializer.encodedSize(bundle, new BaseBlockDataSerializerFactory()));
+        }
+    }
+
+    @Test
+    public void testPrimaryBlockCache() {
+        System.out.println("[+] bundle: testing the cached primary block with 6 test bundles");
+
+        Bundle[] bundles = {
+                testBundle1(),
+                testBundle2(),
+                testBundle3(),
+                testBundle4(),
+                testBundle5(),
+                testBundle6()
+        };
+
+        for (Bundle bundle : bundles) {
+            assertNull(bundle.getEncodedCache());
+            assertArrayEquals(
+                    toArray(BundleV7Serializer.encode(bundle,
+                            new BaseBlockDataSerializerFactory()).observe()),
+                    toArray(BundleV7Serializer.observe(bundle,
+                            new BaseBlockDataSerializerFactory())));
+            assertNotNull(bundle.getEncodedCache());
+
+            // the cached Crc is reused by the encoder
+            assertArrayEquals(
+                    toArray(Flowable.just(bundle.getEncodedCache())),
+                    toArray(PrimaryBlockSerializer.encode(bundle).observe()));
+
+            // any modification drops the cache
+            bundle.setLifetime(bundle.getLifetime() + 1);
+            assertNull(bundle.getEncodedCache());
+            assertArrayEquals(
+                    toArray(BundleV7Serializer.encode(bundle,
+                            new BaseBlockDataSerializerFactory()).observe()),
+                    toArray(BundleV7Serializer.observe(bundle,
+                            new BaseBlockDataSerializerFactory())));
+        }
+    }
+
+    @Test
+    public void testSizePrefixedSerialization() {
+        System.out.println("[+] bundle: testing the size prefix with 7 test bundles");
+
+        Bundle[] bundles = {
+                testBundle0(),
+                testBundle1(),
+                testBundle2(),
+                testBundle3(),
+                testBundle4(),
+                testBundle5(),
+                testBundle6()
+        };
+
+        for (Bundle bundle : bundles) {
+            // an age about to need a longer encoding as the AgeBlock keeps aging
+            for (CanonicalBlock block : bundle.getBlocks()) {
+                if (block instanceof AgeBlock) {
+                    ((AgeBlock) block).age = 0xfff0;
+                }
+            }
+
+            long[] prefix = {-1};
+            byte[] framed = toArray(BundleV7Serializer.observe(bundle,
+                    new BaseBlockDataSerializerFactory(),
+                    size -> {
+                        prefix[0] = size;
+                        return CBOR.encoder();
+                    }));
+            assertEquals(prefix[0], framed.length);
+        }
+    }
+
+    private static byte[] toArray(Flowable<ByteBuffer> source) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source.blockingForEach(buffer -> {
+            while (buffer.hasRemaining()) {
+                out.write(buffer.get());
+            }
+        });
+        return out.toByteArray();
+    }
 
     /**
      * check that the payload of the bundle is correct.
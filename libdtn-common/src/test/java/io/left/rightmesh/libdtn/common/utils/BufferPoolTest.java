@@ -0,0 +1,150 @@
+package io.left.rightmesh.libdtn.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import org.junit.Test;
+
+/**
+ * Test class for BufferPool.
+ *
+ * @author Lucien Loiseau on 20/11/18.
+ */
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        System.out.println("[+] BufferPool: test size classes");
+        BufferPool pool = new BufferPool(false);
+
+        ByteBuffer buffer = pool.acquire(500);
+        assertEquals(512, buffer.capacity());
+        assertEquals(500, buffer.limit());
+        assertEquals(0, buffer.position());
+        assertFalse(buffer.isDirect());
+
+        assertEquals(2048, pool.acquire(2000).capacity());
+        assertEquals(BufferPool.MAX_BUFFER_SIZE,
+                pool.acquire(BufferPool.MAX_BUFFER_SIZE).capacity());
+        assertEquals(100000, pool.acquire(100000).capacity());
+        assertTrue(new BufferPool(true).acquire(100).isDirect());
+    }
+
+    @Test
+    public void testReuse() {
+        System.out.println("[+] BufferPool: test reuse");
+        BufferPool pool = new BufferPool(false);
+
+        ByteBuffer buffer = pool.acquire(1000);
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        /* the buffer is reused by the same class only and comes back cleared */
+        ByteBuffer other = pool.acquire(100);
+        assertNotSame(buffer, other);
+        ByteBuffer same = pool.acquire(1024);
+        assertSame(buffer, same);
+        assertEquals(0, same.position());
+        assertEquals(1024, same.limit());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+
+        /* a buffer that doesn't belong to a class is not pooled */
+        pool.release(ByteBuffer.allocate(1000));
+        pool.release(pool.acquire(100000));
+        assertNotSame(same, pool.acquire(1000));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(4, pool.getMissCount());
+    }
+
+    @Test
+    public void testDoubleRelease() throws Exception {
+        System.out.println("[+] BufferPool: test double release");
+        BufferPool pool = new BufferPool(false);
+
+        /* a second release in the thread cache is ignored */
+        ByteBuffer buffer = pool.acquire(1000);
+        pool.release(buffer);
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(1000));
+        assertNotSame(buffer, pool.acquire(1000));
+
+        /* the buffer can be released again once it was acquired */
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(1000));
+
+        /* with leak detection, a second release in the global pool is ignored */
+        BufferPool tracking = new BufferPool(false);
+        tracking.setLeakDetection(true);
+        LinkedList<ByteBuffer> buffers = new LinkedList<>();
+        for (int i = 0; i < BufferPool.THREAD_CACHE_SIZE + 1; i++) {
+            buffers.add(tracking.acquire(4096));
+        }
+        Thread releaser = new Thread(() -> {
+            for (ByteBuffer b : buffers) {
+                tracking.release(b);
+            }
+            tracking.release(buffers.getLast());
+        });
+        releaser.start();
+        releaser.join();
+        assertSame(buffers.getLast(), tracking.acquire(4096));
+        ByteBuffer fresh = tracking.acquire(4096);
+        for (ByteBuffer b : buffers) {
+            assertNotSame(b, fresh);
+        }
+    }
+
+    @Test
+    public void testGlobalPool() throws Exception {
+        System.out.println("[+] BufferPool: test global pool");
+        BufferPool pool = new BufferPool(false);
+
+        /* overflow the thread cache of the releasing thread */
+        LinkedList<ByteBuffer> buffers = new LinkedList<>();
+        for (int i = 0; i < BufferPool.THREAD_CACHE_SIZE + 4; i++) {
+            buffers.add(pool.acquire(4096));
+        }
+        Thread releaser = new Thread(() -> {
+            for (ByteBuffer buffer : buffers) {
+                pool.release(buffer);
+            }
+        });
+        releaser.start();
+        releaser.join();
+
+        /* only the buffers that reached the global pool are visible from this thread */
+        long misses = pool.getMissCount();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffers.contains(pool.acquire(4096)));
+        }
+        assertEquals(4, pool.getHitCount());
+        assertEquals(misses, pool.getMissCount());
+        pool.acquire(4096);
+        assertEquals(misses + 1, pool.getMissCount());
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        System.out.println("[+] BufferPool: test leak detection");
+        BufferPool pool = new BufferPool(false);
+        pool.setLeakDetection(true);
+
+        pool.acquire(100);
+        pool.release(pool.acquire(100));
+
+        for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, pool.getLeakCount());
+    }
+}
@@ -0,0 +1,45 @@
+package io.left.rightmesh.libdtn.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for the lazy log messages.
+ *
+ * @author Lucien Loiseau on 22/11/18.
+ */
+public class LogTest {
+
+    @Test
+    public void testLazyMessages() {
+        System.out.println("[+] Log: test lazy messages");
+        AtomicInteger built = new AtomicInteger(0);
+        Supplier<String> msg = () -> "message " + built.incrementAndGet();
+
+        SimpleLogger logger = new SimpleLogger();
+        logger.set(Log.LogLevel.WARN);
+        assertFalse(logger.isLoggable(Log.LogLevel.VERBOSE));
+        assertTrue(logger.isLoggable(Log.LogLevel.ERROR));
+
+        logger.v("LogTest", msg);
+        logger.d("LogTest", msg);
+        logger.i("LogTest", msg);
+        assertEquals(0, built.get());
+        logger.w("LogTest", msg);
+        logger.e("LogTest", msg);
+        assertEquals(2, built.get());
+
+        new NullLogger().e("LogTest", msg);
+        assertEquals(2, built.get());
+
+        /* a failing supplier doesn't break the caller */
+        logger.e("LogTest", () -> {
+            throw new Exception("failure");
+        });
+    }
+}
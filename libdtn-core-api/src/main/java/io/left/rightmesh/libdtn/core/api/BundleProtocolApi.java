@@ -2,6 +2,8 @@ package io.left.rightmesh.libdtn.core.api;
 
 import io.left.rightmesh.libdtn.common.data.Bundle;
 
+import java.util.List;
+
 /**
  * API for the BundleProcessor.
  *
@@ -45,6 +47,13 @@ public interface BundleProtocolApi {
      */
     void bundleExpired(Bundle bundle);
 
+    /**
+     * Process a batch of Bundles that expired at the same time.
+     *
+     * @param bundles to process
+     */
+    void bundlesExpired(List<Bundle> bundles);
+
     /**
      * Process Bundle that were received from a Convergence Layer Channel.
      *
@@ -52,6 +61,14 @@ public interface BundleProtocolApi {
      */
     void bundleReception(Bundle bundle);
 
+    /**
+     * Process Bundle that a Convergence Layer Channel rejected before receiving it entirely.
+     * The bundle only holds the blocks that were received, it is never stored nor forwarded.
+     *
+     * @param bundle to process
+     */
+    void bundleRejected(Bundle bundle);
+
     /**
      * Call this method if forwarding were successfully performed from another component.
      *
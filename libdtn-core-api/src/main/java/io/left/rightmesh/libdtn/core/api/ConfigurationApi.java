@@ -85,6 +85,7 @@ public interface ConfigurationApi {
         ALLOW_RECEIVE_ANONYMOUS_BUNDLE("allow_receive_anonymous_bundle"),
         ENABLE_STATUS_REPORTING("enable_status_reporting"),
         ENABLE_FORWARDING("dtn_enable_forwarding"),
+        ENABLE_CUT_THROUGH("dtn_enable_cut_through"),
         COMPONENT_ENABLE_CONNECTION_AGENT("component_enable_connection_agent"),
         ENABLE_AUTO_CONNECT_FOR_BUNDLE("dtn_enable_auto_connect_bundle"),
         ENABLE_COMPONENT_DETECT_PEER_ON_LAN("component_enable_detect_peer_lan"),
@@ -109,13 +110,36 @@ public interface ConfigurationApi {
         COMPONENT_ENABLE_STORAGE("component_enable_storage"),
         COMPONENT_ENABLE_VOLATILE_STORAGE("component_enable_volatile_storage"),
         VOLATILE_BLOB_STORAGE_MAX_CAPACITY("volatile_blob_storage_max_capacity"),
+        VOLATILE_BLOB_SIZE_THRESHOLD("volatile_blob_size_threshold"),
+        VOLATILE_STORAGE_SPILL_HIGH_WATERMARK("volatile_storage_spill_high_watermark"),
+        VOLATILE_STORAGE_SPILL_LOW_WATERMARK("volatile_storage_spill_low_watermark"),
+        VOLATILE_STORAGE_EVICTION_POLICY("volatile_storage_eviction_policy"),
         COMPONENT_ENABLE_SIMPLE_STORAGE("component_enable_simple_storage"),
         SIMPLE_STORAGE_PATH("simple_storage_paths"),
+        SIMPLE_STORAGE_CHECKPOINT_INTERVAL("simple_storage_checkpoint_interval"),
+        SIMPLE_STORAGE_INDEXING_PARALLELISM("simple_storage_indexing_parallelism"),
+        SIMPLE_STORAGE_DURABILITY("simple_storage_durability"),
+        SIMPLE_STORAGE_GROUP_COMMIT_SIZE("simple_storage_group_commit_size"),
+        SIMPLE_STORAGE_GROUP_COMMIT_DELAY("simple_storage_group_commit_delay"),
+        SIMPLE_STORAGE_MMAP_READ("simple_storage_mmap_read"),
+        SIMPLE_STORAGE_MMAP_CACHE_SIZE("simple_storage_mmap_cache_size"),
+        SIMPLE_STORAGE_FILE_REGION_THRESHOLD("simple_storage_file_region_threshold"),
+        COMPONENT_ENABLE_SEGMENTED_STORAGE("component_enable_segmented_storage"),
+        SEGMENTED_STORAGE_PATH("segmented_storage_paths"),
+        SEGMENTED_STORAGE_SEGMENT_SIZE("segmented_storage_segment_size"),
+        SEGMENTED_STORAGE_COMPACTION_THRESHOLD("segmented_storage_compaction_threshold"),
+        SEGMENTED_STORAGE_DURABILITY("segmented_storage_durability"),
+        COMPONENT_ENABLE_EXPIRY_SCHEDULER("component_enable_expiry_scheduler"),
+        EXPIRY_SCHEDULER_TICK("expiry_scheduler_tick"),
         LIMIT_BLOCKSIZE("limit_blocksize"),
         COMPONENT_ENABLE_LOGGING("component_enable_logging"),
         LOG_LEVEL("log_level"),
         ENABLE_LOG_FILE("enable_log_file"),
-        LOG_FILE_PATH("log_file_path");
+        LOG_FILE_PATH("log_file_path"),
+        LOG_FILE_SIZE("log_file_size"),
+        LOG_BUFFER_SIZE("log_buffer_size"),
+        LOG_OVERFLOW_POLICY("log_overflow_policy"),
+        ENABLE_BUFFER_LEAK_DETECTION("enable_buffer_leak_detection");
 
         private final String key;
 
@@ -3,7 +3,9 @@ package io.left.rightmesh.libdtn.core.api;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.BundleId;
 import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.reactivex.Completable;
+import io.reactivex.Observable;
 import io.reactivex.Single;
 
 /**
@@ -13,6 +15,25 @@ import io.reactivex.Single;
  */
 public interface StorageApi extends CoreComponentApi {
 
+    /**
+     * Policy used to select the bundles to spill from volatile to persistent storage when the
+     * volatile storage is under memory pressure.
+     */
+    enum EvictionPolicy {
+        LRU,             /* least recently stored or pulled first */
+        LOWEST_PRIORITY, /* lowest priority first, then least recently used */
+        FARTHEST_EXPIRY  /* bundles that will live the longest first */
+    }
+
+    /**
+     * Durability guarantee given by the persistent storage once a store operation completes.
+     */
+    enum Durability {
+        NONE,         /* bundle is written but may only be in the OS cache */
+        SYNC,         /* bundle is forced to the storage device before completing */
+        GROUP_COMMIT  /* concurrent bundles are forced together before completing */
+    }
+
     class StorageException extends Exception {
         public StorageException(String msg) {
             super(msg);
@@ -89,6 +110,59 @@ public interface StorageApi extends CoreComponentApi {
      */
     boolean contains(BundleId bid);
 
+    /**
+     * count the number of bundle that have a volatile copy.
+     *
+     * @return number of bundle in volatile storage
+     */
+    int countVolatile();
+
+    /**
+     * count the number of bundle that have a persistent copy.
+     *
+     * @return number of bundle in persistent storage
+     */
+    int countPersistent();
+
+    /**
+     * Find all the bundles in storage whose destination is the given Eid.
+     *
+     * @param destination of the bundles
+     * @return Observable of the matching bundle ids
+     */
+    Observable<BundleId> findByDestination(Eid destination);
+
+    /**
+     * Find all the bundles in storage whose source is the given Eid.
+     *
+     * @param source of the bundles
+     * @return Observable of the matching bundle ids
+     */
+    Observable<BundleId> findBySource(Eid source);
+
+    /**
+     * Find all the bundles in storage that expire at or before the given time. The
+     * bundles are emitted in expiry order.
+     *
+     * @param time in milliseconds
+     * @return Observable of the matching bundle ids
+     */
+    Observable<BundleId> findExpiringBefore(long time);
+
+    /**
+     * Find all the bundles that have a volatile copy.
+     *
+     * @return Observable of the matching bundle ids
+     */
+    Observable<BundleId> findVolatile();
+
+    /**
+     * Find all the bundles that have a persistent copy.
+     *
+     * @return Observable of the matching bundle ids
+     */
+    Observable<BundleId> findPersistent();
+
     /**
      * Try to store in volatile storage first and then copy in persistent storage whatever happens
      * If Volatile Storage is enabled, it will return the whole Bundle, otherwise it returns
@@ -97,6 +171,9 @@ public interface StorageApi extends CoreComponentApi {
      * <p>Whenever the Single completes, the caller can expect that no further operations is needed
      * in background to store the bundle.
      *
+     * <p>The volatile storage retains the bundle and releases it when the bundle is removed from
+     * it, the caller keeps its own reference.
+     *
      * @param bundle to store
      * @return Completable that complete whenever the bundle is stored, error otherwise
      */
@@ -115,6 +192,9 @@ public interface StorageApi extends CoreComponentApi {
      * Pull a Bundle from StorageApi. It will try to pull it from Volatile if it exists, or from
      * SimpleStorage otherwise.
      *
+     * <p>The caller owns a reference on the returned Bundle and must release it with
+     * {@link Bundle#clearBundle()} once it is done with it.
+     *
      * @param id of the bundle to pull from storage
      * @return a Single that completes if the Bundle was successfully pulled, onError otherwise
      */
@@ -123,6 +203,9 @@ public interface StorageApi extends CoreComponentApi {
     /**
      * Delete a Bundle from all storage and removes all event registration to it.
      *
+     * <p>The reference held by the storage is released, the Bundle itself is only cleared once
+     * every other holder has released its own reference.
+     *
      * @param id of the bundle to delete
      * @return Completable
      */
@@ -0,0 +1,24 @@
+package io.left.rightmesh.libdtn.core.events;
+
+import io.left.rightmesh.libdtn.common.data.Bundle;
+
+import java.util.List;
+
+/**
+ * BundleIndexedBatch event is thrown when a batch of bundles was added to the global bundle index,
+ * typically when a storage is indexed at startup.
+ *
+ * @author Lucien Loiseau on 15/11/18.
+ */
+public class BundleIndexedBatch implements DtnEvent {
+    public List<Bundle> bundles;
+
+    public BundleIndexedBatch(List<Bundle> bundles) {
+        this.bundles = bundles;
+    }
+
+    @Override
+    public String toString() {
+        return "Bundles indexed: " + bundles.size() + " bundles";
+    }
+}
@@ -3,6 +3,8 @@ package io.left.rightmesh.libdtn.core.spi.cla;
 import io.left.rightmesh.libdtn.common.ExtensionToolbox;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.eid.ClaEid;
 import io.reactivex.Flowable;
@@ -54,6 +56,33 @@ public interface ClaChannelSpi {
     Observable<Bundle> recvBundle(ExtensionToolbox toolbox,
                                   BlobFactory blobFactory);
 
+    /**
+     * Receive a deserialized stream of Bundle from this Convergence Layer. The header of every
+     * bundle is submitted to the header processor and the rejected bundles are dropped.
+     * A channel that parses the bundles as they arrive should override this method to call the
+     * header processor before receiving the payload. By default, the header processor is only
+     * called once the whole bundle has been received.
+     *
+     * @param toolbox to create new block, parse block data and extended eid
+     * @param blobFactory to store blob
+     * @param headerProcessor to reject a bundle before its payload is received
+     * @return Flowable of Bundle
+     */
+    default Observable<Bundle> recvBundle(ExtensionToolbox toolbox,
+                                          BlobFactory blobFactory,
+                                          HeaderProcessor headerProcessor) {
+        return recvBundle(toolbox, blobFactory).filter(bundle -> {
+            try {
+                headerProcessor.onPrimaryBlockDeserialized(bundle);
+                headerProcessor.onHeaderDeserialized(bundle);
+                return true;
+            } catch (ProcessingException pe) {
+                bundle.clearBundle();
+                return false;
+            }
+        });
+    }
+
     /**
      * Send a Bundle.
      * todo add priority
@@ -4,6 +4,8 @@ import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
 import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.left.rightmesh.libdtn.core.api.StorageApi;
+import io.left.rightmesh.libdtn.core.utils.Logger;
 import io.reactivex.Observable;
 import io.reactivex.subjects.BehaviorSubject;
 
@@ -197,6 +199,7 @@ public class CoreConfiguration implements ConfigurationApi {
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_EVENT_PROCESSING, true);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_AA_REGISTRATION, true);
         this.createCoreEntry(CoreEntry.ENABLE_FORWARDING, true);
+        this.createCoreEntry(CoreEntry.ENABLE_CUT_THROUGH, false);
         this.createCoreEntry(CoreEntry.ENABLE_AUTO_CONNECT_FOR_BUNDLE, true);
         this.createCoreEntry(CoreEntry.ENABLE_AUTO_CONNECT_FOR_DETECT_EVENT, true);
         this.createCoreEntry(CoreEntry.AUTO_CONNECT_USE_WHITELIST, true);
@@ -217,13 +220,38 @@ public class CoreConfiguration implements ConfigurationApi {
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_STORAGE, true);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE, true);
         this.createCoreEntry(CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY, 10000000);
+        this.createCoreEntry(CoreEntry.VOLATILE_BLOB_SIZE_THRESHOLD, (long) 1048576);
+        this.createCoreEntry(CoreEntry.VOLATILE_STORAGE_SPILL_HIGH_WATERMARK, 90);
+        this.createCoreEntry(CoreEntry.VOLATILE_STORAGE_SPILL_LOW_WATERMARK, 70);
+        this.createCoreEntry(CoreEntry.VOLATILE_STORAGE_EVICTION_POLICY,
+                StorageApi.EvictionPolicy.LRU);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE, false);
         this.<String>createCoreEntrySet(CoreEntry.SIMPLE_STORAGE_PATH);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_CHECKPOINT_INTERVAL, 1000);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_INDEXING_PARALLELISM,
+                Runtime.getRuntime().availableProcessors());
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_DURABILITY, StorageApi.Durability.NONE);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_SIZE, 64);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_DELAY, 10);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_MMAP_READ, false);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_MMAP_CACHE_SIZE, (long) 268435456);
+        this.createCoreEntry(CoreEntry.SIMPLE_STORAGE_FILE_REGION_THRESHOLD, (long) 65536);
+        this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_SEGMENTED_STORAGE, false);
+        this.<String>createCoreEntrySet(CoreEntry.SEGMENTED_STORAGE_PATH);
+        this.createCoreEntry(CoreEntry.SEGMENTED_STORAGE_SEGMENT_SIZE, (long) 67108864);
+        this.createCoreEntry(CoreEntry.SEGMENTED_STORAGE_COMPACTION_THRESHOLD, 50);
+        this.createCoreEntry(CoreEntry.SEGMENTED_STORAGE_DURABILITY, StorageApi.Durability.NONE);
+        this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_EXPIRY_SCHEDULER, true);
+        this.createCoreEntry(CoreEntry.EXPIRY_SCHEDULER_TICK, 1000);
         this.createCoreEntry(CoreEntry.LIMIT_BLOCKSIZE, (long) 1000000000);
         this.createCoreEntry(CoreEntry.COMPONENT_ENABLE_LOGGING, true);
         this.createCoreEntry(CoreEntry.LOG_LEVEL, Log.LogLevel.VERBOSE);
         this.createCoreEntry(CoreEntry.ENABLE_LOG_FILE, false);
         this.createCoreEntry(CoreEntry.LOG_FILE_PATH, "");
+        this.createCoreEntry(CoreEntry.LOG_FILE_SIZE, (long) 10485760);
+        this.createCoreEntry(CoreEntry.LOG_BUFFER_SIZE, 8192);
+        this.createCoreEntry(CoreEntry.LOG_OVERFLOW_POLICY, Logger.OverflowPolicy.DROP);
+        this.createCoreEntry(CoreEntry.ENABLE_BUFFER_LEAK_DETECTION, false);
     }
 
     @SuppressWarnings("unchecked")
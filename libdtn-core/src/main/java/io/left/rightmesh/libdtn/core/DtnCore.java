@@ -5,7 +5,10 @@ import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPO
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_MODULE_LOADER;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_ROUTING;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_BUFFER_LEAK_DETECTION;
 
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.utils.BufferPool;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.core.api.BundleProtocolApi;
 import io.left.rightmesh.libdtn.core.api.ClaManagerApi;
@@ -23,6 +26,7 @@ import io.left.rightmesh.libdtn.core.api.RoutingEngineApi;
 import io.left.rightmesh.libdtn.core.api.RoutingTableApi;
 import io.left.rightmesh.libdtn.core.api.StorageApi;
 import io.left.rightmesh.libdtn.core.events.BundleIndexed;
+import io.left.rightmesh.libdtn.core.events.BundleIndexedBatch;
 import io.left.rightmesh.libdtn.core.extension.ExtensionManager;
 import io.left.rightmesh.libdtn.core.network.ClaManager;
 import io.left.rightmesh.libdtn.core.processor.BundleProtocol;
@@ -75,6 +79,13 @@ public class DtnCore implements CoreApi {
 
         /* core */
         this.logger = new Logger(conf);
+        BufferPool.HEAP.setLogger(logger);
+        BufferPool.DIRECT.setLogger(logger);
+        conf.<Boolean>get(ENABLE_BUFFER_LEAK_DETECTION).observe().subscribe(
+                enabled -> {
+                    BufferPool.HEAP.setLeakDetection(enabled);
+                    BufferPool.DIRECT.setLeakDetection(enabled);
+                });
         this.localEidTable = new LocalEidTable(this);
 
         /* BP block toolbox */
@@ -184,4 +195,11 @@ public class DtnCore implements CoreApi {
     public void onEvent(BundleIndexed event) {
         bundleProcessor.bundleDispatching(event.bundle);
     }
+
+    @Subscribe(thread = RxThread.IO)
+    public void onEvent(BundleIndexedBatch event) {
+        for (Bundle bundle : event.bundles) {
+            bundleProcessor.bundleDispatching(bundle);
+        }
+    }
 }
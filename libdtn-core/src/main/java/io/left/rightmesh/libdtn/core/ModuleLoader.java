@@ -67,7 +67,7 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
                 core.getLogger(),
                 core.getExtensionManager(),
                 core.getStorage().getBlobFactory());
-        core.getLogger().i(TAG, "AA module loaded: " + aa.getModuleName() + " - UP");
+        core.getLogger().i(TAG, () -> "AA module loaded: " + aa.getModuleName() + " - UP");
     }
 
     @Override
@@ -77,7 +77,7 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
         }
 
         core.getClaManager().addCla(cla);
-        core.getLogger().i(TAG, "CLA module loaded: " + cla.getModuleName() + " - UP");
+        core.getLogger().i(TAG, () -> "CLA module loaded: " + cla.getModuleName() + " - UP");
     }
 
     @Override
@@ -87,7 +87,7 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
         }
 
         cm.init(core);
-        core.getLogger().i(TAG, "CORE module loaded: " + cm.getModuleName() + " - UP");
+        core.getLogger().i(TAG, () -> "CORE module loaded: " + cm.getModuleName() + " - UP");
     }
 
     private void loadAaModulesFromDirectory() {
@@ -102,12 +102,12 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
                             .value()) {
                         loadAaModule(aa);
                     } else {
-                        core.getLogger().i(TAG, "AA module loaded: " + aa.getModuleName()
+                        core.getLogger().i(TAG, () -> "AA module loaded: " + aa.getModuleName()
                                 + " - DOWN");
                     }
                 }
             } catch (Exception e) {
-                core.getLogger().w(TAG, "error loading AA module: " + e.getMessage());
+                core.getLogger().w(TAG, () -> "error loading AA module: " + e.getMessage());
             }
         }
     }
@@ -124,12 +124,12 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
                             .value()) {
                         loadClaModule(cla);
                     } else {
-                        core.getLogger().i(TAG, "CLA module loaded: " + cla.getModuleName()
+                        core.getLogger().i(TAG, () -> "CLA module loaded: " + cla.getModuleName()
                                 + " - DOWN");
                     }
                 }
             } catch (Exception e) {
-                core.getLogger().w(TAG, "error loading CLA module: " + e.getMessage());
+                core.getLogger().w(TAG, () -> "error loading CLA module: " + e.getMessage());
             }
         }
     }
@@ -145,12 +145,12 @@ public class ModuleLoader extends CoreComponent implements ModuleLoaderApi {
                             .value()) {
                         loadCoreModule(cm);
                     } else {
-                        core.getLogger().i(TAG, "CORE module loaded: " + cm.getModuleName()
+                        core.getLogger().i(TAG, () -> "CORE module loaded: " + cm.getModuleName()
                                 + " - DOWN");
                     }
                 }
             } catch (Exception e) {
-                core.getLogger().w(TAG, "error loading CORE module: " + e.getMessage());
+                core.getLogger().w(TAG, () -> "error loading CORE module: " + e.getMessage());
             }
         }
     }
@@ -159,7 +159,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
 
         Registration registration = new Registration(sink, cb);
         if (registrations.putIfAbsent(sink, registration) == null) {
-            core.getLogger().i(TAG, "sink registered: " + sink
+            core.getLogger().i(TAG, () -> "sink registered: " + sink
                     + " (cookie=" + registration.cookie + ") - "
                     + (cb == passiveRegistration ? "passive" : "active"));
             RxBus.post(new RegistrationActive(sink, registration.cb));
@@ -176,7 +176,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
         if (registrations.remove(sink) == null) {
             throw new SinkNotRegistered();
         }
-        core.getLogger().i(TAG, "sink unregistered: " + sink);
+        core.getLogger().i(TAG, () -> "sink unregistered: " + sink);
         return true;
     }
 
@@ -238,7 +238,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
         checkArgumentNotNull(cb);
         Registration registration = checkRegisteredSink(sink, cookie);
         registration.cb = cb;
-        core.getLogger().i(TAG, "registration active: " + sink);
+        core.getLogger().i(TAG, () -> "registration active: " + sink);
         RxBus.post(new RegistrationActive(sink, registration.cb));
         return true;
     }
@@ -248,7 +248,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
             throws RegistrarDisabled, SinkNotRegistered, NullArgument {
         Registration registration = checkRegisteredSink(sink);
         registration.cb = passiveRegistration;
-        core.getLogger().i(TAG, "registration passive: " + sink);
+        core.getLogger().i(TAG, () -> "registration passive: " + sink);
         return true;
     }
 
@@ -257,7 +257,7 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
             throws RegistrarDisabled, BadCookie, SinkNotRegistered, NullArgument {
         Registration registration = checkRegisteredSink(sink, cookie);
         registration.cb = passiveRegistration;
-        core.getLogger().i(TAG, "registration passive: " + sink);
+        core.getLogger().i(TAG, () -> "registration passive: " + sink);
         return true;
     }
 
@@ -352,7 +352,11 @@ public class Registrar extends CoreComponent implements RegistrarApi, DeliveryAp
                     return Completable.error(new PassiveRegistration());
                 }
 
-                return registration.cb.recv(bundle);
+                /* the bundle is retained until the application agent is done with it */
+                return Completable.defer(() -> {
+                    bundle.retain();
+                    return registration.cb.recv(bundle).doFinally(bundle::release);
+                });
             }
         }
         return Completable.error(new UnregisteredSink());
@@ -212,7 +212,7 @@ public class ExtensionManager implements ExtensionManagerApi {
         }
         extensionEidSchemeIana.put(ianaNumber, scheme);
         extensionEidParser.put(scheme, parser);
-        logger.v(TAG, "new Eid added: " + scheme + " (iana = " + ianaNumber + ")");
+        logger.v(TAG, () -> "new Eid added: " + scheme + " (iana = " + ianaNumber + ")");
     }
 
     @Override
@@ -221,6 +221,6 @@ public class ExtensionManager implements ExtensionManagerApi {
             throw new ClaNameAlreadyManaged();
         }
         extensionClaEidParser.put(clName, parser);
-        logger.v(TAG, "new CLA added: cla:" + clName);
+        logger.v(TAG, () -> "new CLA added: cla:" + clName);
     }
 }
@@ -41,16 +41,17 @@ public class ClaManager implements ClaManagerApi {
                         RxBus.post(new ChannelOpened(dtnChannel));
                     },
                     e -> {
-                        core.getLogger().w(TAG, "can't start CLA " + cla.getModuleName()
+                        core.getLogger().w(TAG, () -> "can't start CLA " + cla.getModuleName()
                                 + ": " + e.getMessage());
                         clas.remove(cla);
                     },
                     () -> {
-                        core.getLogger().w(TAG, "CLA " + cla.getModuleName() + " has stopped");
+                        core.getLogger().w(TAG, () -> "CLA " + cla.getModuleName()
+                                + " has stopped");
                         clas.remove(cla);
                     });
         } catch (ExtensionManagerApi.ClaNameAlreadyManaged cnam) {
-            core.getLogger().w(TAG, "can't load CLA " + cla.getModuleName() + ": "
+            core.getLogger().w(TAG, () -> "can't load CLA " + cla.getModuleName() + ": "
                     + cnam.getMessage());
         }
     }
@@ -63,14 +64,14 @@ public class ClaManager implements ClaManagerApi {
         }
 
         final String opp = "cla=" + eid.getClaName() + " peer=" + eid.getClaSpecificPart();
-        core.getLogger().d(TAG, "trying to create an opportunity with " + opp);
+        core.getLogger().d(TAG, () -> "trying to create an opportunity with " + opp);
         for (ConvergenceLayerSpi cla : clas) {
             if (eid.getClaName().equals(cla.getModuleName())) {
                 return cla.open(eid)
-                        .doOnError(e -> core.getLogger().d(TAG, "opportunity creation failed "
+                        .doOnError(e -> core.getLogger().d(TAG, () -> "opportunity creation failed "
                                 + opp + ": " + e.getMessage()))
                         .doOnSuccess((c) -> {
-                            core.getLogger().d(TAG, "opportunity creation success: " + opp);
+                            core.getLogger().d(TAG, () -> "opportunity creation success: " + opp);
                             RxBus.post(new ChannelOpened(c));
                         });
             }
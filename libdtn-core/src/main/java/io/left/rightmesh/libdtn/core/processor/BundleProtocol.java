@@ -23,7 +23,7 @@ import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 import io.left.rightmesh.libdtn.common.data.PayloadBlock;
 import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.left.rightmesh.libdtn.common.data.StatusReport;
-import io.left.rightmesh.libdtn.common.data.blob.UntrackedByteBufferBlob;
+import io.left.rightmesh.libdtn.common.data.blob.CompositeBlob;
 import io.left.rightmesh.libdtn.common.data.blob.WritableBlob;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
@@ -33,8 +33,8 @@ import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.left.rightmesh.libdtn.core.api.BundleProtocolApi;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.utils.ClockUtil;
+import io.reactivex.Observable;
 
-import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -62,7 +62,7 @@ public class BundleProtocol implements BundleProtocolApi {
     @Override
     public void bundleTransmission(Bundle bundle) {
         /* 5.2 - step 1 */
-        core.getLogger().v(TAG, "5.2-1 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.2-1 " + bundle.bid.getBidString());
         if (!bundle.getSource().equals(DtnEid.nullEid())
                 && !core.getLocalEid().isLocal(bundle.getSource())) {
             bundle.setSource(core.getLocalEid().localEid());
@@ -70,18 +70,18 @@ public class BundleProtocol implements BundleProtocolApi {
         bundle.tag("dispatch_pending");
 
         /* 5.2 - step 2 */
-        core.getLogger().v(TAG, "5.2-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.2-2 " + bundle.bid.getBidString());
         bundleForwarding(bundle);
     }
 
     /* 5.3 */
     @Override
     public void bundleDispatching(Bundle bundle) {
-        core.getLogger().i(TAG, "dispatching bundle: " + bundle.bid.getBidString()
+        core.getLogger().i(TAG, () -> "dispatching bundle: " + bundle.bid.getBidString()
                 + " to Eid: " + bundle.getDestination().getEidString());
 
         /* 5.3 - step 1 */
-        core.getLogger().v(TAG, "5.3-1: " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.3-1: " + bundle.bid.getBidString());
         if (core.getLocalEid().isLocal(bundle.getDestination())) {
             bundleLocalDelivery(bundle);
             return;
@@ -89,7 +89,7 @@ public class BundleProtocol implements BundleProtocolApi {
 
         if (core.getConf().<Boolean>get(ENABLE_FORWARDING).value()) {
             /* 5.3 - step 2 */
-            core.getLogger().v(TAG, "5.3-2: " + bundle.bid.getBidString());
+            core.getLogger().v(TAG, () -> "5.3-2: " + bundle.bid.getBidString());
             bundleForwarding(bundle);
         } else {
             bundle.tag("reason_code", NoKnownRouteForDestination);
@@ -99,7 +99,7 @@ public class BundleProtocol implements BundleProtocolApi {
 
     /* 5.4 */
     private void bundleForwarding(Bundle bundle) {
-        core.getLogger().d(TAG, "forwarding bundle: " + bundle.bid.getBidString());
+        core.getLogger().d(TAG, () -> "forwarding bundle: " + bundle.bid.getBidString());
 
         /* 5.4 - step 1 */
         bundle.removeTag("dispatch_pending");
@@ -117,6 +117,8 @@ public class BundleProtocol implements BundleProtocolApi {
                             break;
                         case CustodyAccepted:
                             endProcessing(bundle);
+                            /* the storage holds the bundle from now on */
+                            bundle.release();
                             break;
                         default:
                     }
@@ -127,7 +129,7 @@ public class BundleProtocol implements BundleProtocolApi {
     /* 5.4 - step 5 */
     @Override
     public void bundleForwardingSuccessful(Bundle bundle) {
-        core.getLogger().d(TAG, "forwarding successful: " + bundle.bid.getBidString());
+        core.getLogger().d(TAG, () -> "forwarding successful: " + bundle.bid.getBidString());
         bundle.removeTag("forward_pending");
         createStatusReport(ReportingNodeForwardedBundle, bundle, NoAdditionalInformation);
         bundleDiscarding(bundle);
@@ -136,11 +138,11 @@ public class BundleProtocol implements BundleProtocolApi {
     /* 5.4.2 */
     private void bundleForwardingFailed(Bundle bundle) {
         /* 5.4.2 - step 1 */
-        core.getLogger().v(TAG, "5.4.2-1 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.4.2-1 " + bundle.bid.getBidString());
         // atm we never send the bundle back to the source
 
         /* 5.4.2 - step 2 */
-        core.getLogger().v(TAG, "5.4.2-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.4.2-2 " + bundle.bid.getBidString());
         if (core.getLocalEid().isLocal(bundle.getDestination())) {
             bundle.removeTag("forward_pending");
             bundleDiscarding(bundle);
@@ -153,26 +155,43 @@ public class BundleProtocol implements BundleProtocolApi {
     /* 5.5 */
     @Override
     public void bundleExpired(Bundle bundle) {
-        core.getLogger().v(TAG, "5.5 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.5 " + bundle.bid.getBidString());
         bundle.tag("reason_code", LifetimeExpired);
         bundleDeletion(bundle);
     }
 
+    /* 5.5 - the bundles are removed from the storage as a single batch */
+    @Override
+    public void bundlesExpired(List<Bundle> bundles) {
+        core.getLogger().v(TAG, () -> "5.5 " + bundles.size() + " bundles");
+        for (Bundle bundle : bundles) {
+            bundle.tag("reason_code", LifetimeExpired);
+            bundleDeletionReport(bundle);
+        }
+
+        /* 5.11 */
+        core.getLogger().i(TAG, () -> "discarding " + bundles.size() + " bundles");
+        Observable.fromIterable(bundles)
+                .flatMapCompletable(b -> core.getStorage().remove(b.bid).onErrorComplete())
+                .subscribe(() -> bundles.forEach(Bundle::clearBundle));
+        bundles.forEach(this::endProcessing);
+    }
+
     /* 5.6 */
     @Override
     public void bundleReception(Bundle bundle) {
         /* 5.6 - step 1 */
-        core.getLogger().v(TAG, "5.6-1 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.6-1 " + bundle.bid.getBidString());
         bundle.tag("dispatch_pending");
 
         /* 5.6 - step 2 */
-        core.getLogger().v(TAG, "5.6-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.6-2 " + bundle.bid.getBidString());
         if (bundle.getV7Flag(RECEPTION_REPORT) && reporting()) {
             createStatusReport(ReportingNodeReceivedBundle, bundle, NoAdditionalInformation);
         }
 
         /* 5.6 - step 3 */
-        core.getLogger().v(TAG, "5.6-3 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.6-3 " + bundle.bid.getBidString());
         try {
             for (CanonicalBlock block : bundle.getBlocks()) {
                 try {
@@ -200,7 +219,7 @@ public class BundleProtocol implements BundleProtocolApi {
         }
 
         /* 5.6 - step 4 */
-        core.getLogger().v(TAG, "5.6-4 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.6-4 " + bundle.bid.getBidString());
         bundleDispatching(bundle);
     }
 
@@ -208,11 +227,11 @@ public class BundleProtocol implements BundleProtocolApi {
     private void bundleLocalDelivery(Bundle bundle) {
         bundle.tag("delivery_pending");
         /* 5.7 - step 1 */
-        core.getLogger().v(TAG, "5.7-1 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.7-1 " + bundle.bid.getBidString());
         // atm we don't support fragmentation
 
         /* 5.7 - step 2 */
-        core.getLogger().v(TAG, "5.7-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.7-2 " + bundle.bid.getBidString());
         Eid localMatch = core.getLocalEid().matchLocal(bundle.getDestination());
         if (localMatch != null) {
             String sink = bundle.getDestination().getEidString()
@@ -231,7 +250,8 @@ public class BundleProtocol implements BundleProtocolApi {
     /* 5.7 - step 3 */
     @Override
     public void bundleLocalDeliverySuccessful(Bundle bundle) {
-        core.getLogger().i(TAG, "bundle successfully delivered: " + bundle.bid.getBidString());
+        core.getLogger().i(TAG, () -> "bundle successfully delivered: "
+                + bundle.bid.getBidString());
         bundle.removeTag("delivery_pending");
         if (bundle.getV7Flag(DELIVERY_REPORT) && reporting()) {
             createStatusReport(ReportingNodeDeliveredBundle, bundle, NoAdditionalInformation);
@@ -242,7 +262,7 @@ public class BundleProtocol implements BundleProtocolApi {
     /* 5.7 - step 2 - delivery failure */
     @Override
     public void bundleLocalDeliveryFailure(String sink, Bundle bundle) {
-        core.getLogger().i(TAG, "bundle could not be delivered sink=" + sink + " bundleID="
+        core.getLogger().i(TAG, () -> "bundle could not be delivered sink=" + sink + " bundleID="
                 + bundle.bid.getBidString());
         if (!bundle.isTagged("in_storage")) {
             core.getStorage().store(bundle).subscribe(
@@ -250,10 +270,11 @@ public class BundleProtocol implements BundleProtocolApi {
                         /* register for event and deliver later */
                         core.getDelivery().deliverLater(sink, bundle);
                         endProcessing(bundle);
+                        bundle.release();
                     },
                     storageFailure -> {
                         /* abandon delivery */
-                        core.getLogger().w(TAG, "storage failure: "
+                        core.getLogger().w(TAG, () -> "storage failure: "
                                 + storageFailure.getMessage());
                         bundleDeletion(bundle);
                     }
@@ -261,38 +282,60 @@ public class BundleProtocol implements BundleProtocolApi {
         } else {
             /* register for event and deliver later */
             core.getDelivery().deliverLater(sink, bundle);
+            bundle.release();
         }
     }
 
     /* 5.8 */
     private void bundleFragmentation(Bundle bundle) {
         // not supported atm
-        core.getLogger().v(TAG, "5.8 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.8 " + bundle.bid.getBidString());
+    }
+
+    /* not in RFC - a bundle rejected by a channel is deleted before it was ever stored */
+    @Override
+    public void bundleRejected(Bundle bundle) {
+        StatusReport.ReasonCode reason = bundle.isTagged("reason_code")
+                ? bundle.<StatusReport.ReasonCode>getTagAttachment("reason_code")
+                : NoAdditionalInformation;
+        core.getLogger().i(TAG, () -> "rejected bundle (" + reason + "): "
+                + bundle.bid.getBidString());
+
+        if (bundle.getV7Flag(DELETION_REPORT) && reporting()) {
+            createStatusReport(ReportingNodeDeletedBundle, bundle, reason);
+        }
+        endProcessing(bundle);
+        bundle.clearBundle();
     }
 
     /* 5.10 */
     private void bundleDeletion(Bundle bundle) {
-        core.getLogger().i(TAG, "deleting bundle ("
+        bundleDeletionReport(bundle);
+        bundleDiscarding(bundle);
+    }
+
+    /* 5.10 - steps 1 and 2, the bundle is not discarded yet */
+    private void bundleDeletionReport(Bundle bundle) {
+        core.getLogger().i(TAG, () -> "deleting bundle ("
                 + bundle.<StatusReport.ReasonCode>getTagAttachment("reason_code") + "): "
                 + bundle.bid.getBidString());
 
         /* 5.10 - step 1 */
-        core.getLogger().v(TAG, "5.10-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.10-2 " + bundle.bid.getBidString());
         if (bundle.getV7Flag(DELETION_REPORT) && reporting()) {
             createStatusReport(ReportingNodeDeletedBundle, bundle, NoAdditionalInformation);
         }
 
         /* 5.10 - step 2 */
-        core.getLogger().v(TAG, "5.10-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.10-2 " + bundle.bid.getBidString());
         bundle.removeTag("dispatch_pending");
         bundle.removeTag("forward_pending");
         bundle.removeTag("delivery_pending");
-        bundleDiscarding(bundle);
     }
 
     /* 5.11 */
     private void bundleDiscarding(Bundle bundle) {
-        core.getLogger().i(TAG, "discarding bundle: " + bundle.bid.getBidString());
+        core.getLogger().i(TAG, () -> "discarding bundle: " + bundle.bid.getBidString());
         core.getStorage().remove(bundle.bid).subscribe(
                 bundle::clearBundle,
                 e -> {
@@ -307,7 +350,7 @@ public class BundleProtocol implements BundleProtocolApi {
         if (bundle.isTagged("status-reports")) {
             List<Bundle> reports = bundle.getTagAttachment("status-reports");
             for (Bundle report : reports) {
-                core.getLogger().i(TAG, "sending status report to: "
+                core.getLogger().i(TAG, () -> "sending status report to: "
                         + report.getDestination().getEidString());
                 report.setSource(core.getLocalEid().localEid());
                 bundleDispatching(report);
@@ -349,15 +392,9 @@ public class BundleProtocol implements BundleProtocolApi {
         /* create the bundle that will carry this status report back to the reporting node */
         Bundle report = new Bundle(bundle.getReportto());
 
-        /* get size of status report for the payload */
+        /* serialize the status report into the bundle payload in a single pass */
         CborEncoder enc = AdministrativeRecordSerializer.encode(statusReport);
-        long size = enc.observe()
-                .map(ByteBuffer::remaining)
-                .reduce(0, (a, b) -> a + b)
-                .blockingGet();
-
-        /* serialize the status report into the bundle payload */
-        UntrackedByteBufferBlob blobReport = new UntrackedByteBufferBlob((int) size);
+        CompositeBlob blobReport = new CompositeBlob();
         final WritableBlob wblob = blobReport.getWritableBlob();
         enc.observe()
                 .map(wblob::write)
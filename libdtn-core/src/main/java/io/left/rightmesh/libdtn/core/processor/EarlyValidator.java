@@ -1,11 +1,17 @@
 package io.left.rightmesh.libdtn.core.processor;
 
 import static io.left.rightmesh.libdtn.common.data.BlockHeader.BlockV7Flags.DELETE_BUNDLE_IF_NOT_PROCESSED;
+import static io.left.rightmesh.libdtn.common.data.StatusReport.ReasonCode.LifetimeExpired;
+import static io.left.rightmesh.libdtn.common.data.StatusReport.ReasonCode.NoAdditionalInformation;
+import static io.left.rightmesh.libdtn.common.data.StatusReport.ReasonCode.NoKnownRouteForDestination;
 
 import io.left.rightmesh.libdtn.common.data.BlockHeader;
+import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+import io.left.rightmesh.libdtn.common.data.StatusReport;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
@@ -13,11 +19,19 @@ import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.utils.ClockUtil;
 
 /**
- * EarlyValidator processes a Bundle during the different step of its lifetime.
+ * EarlyValidator processes a Bundle during the different step of its lifetime. As a
+ * {@link HeaderProcessor}, it lets a channel reject a bundle before receiving its payload, such
+ * a bundle is deleted with a status report carrying the reason code of its rejection.
+ *
+ * <p>Only the checks that do not depend on the payload run early: the primary block checks and
+ * the duplicate check. A bundle without route or without registration for its local
+ * destination is not rejected: the core stores such a bundle until a route or a registration
+ * shows up, so both decisions are still taken by the routing engine and the registrar once the
+ * bundle is received.
  *
  * @author Lucien Loiseau on 05/09/18.
  */
-public class EarlyValidator {
+public class EarlyValidator implements HeaderProcessor {
 
     /**
      * RejectedException is raised if an error during processing must discard the entire bundle.
@@ -26,13 +40,27 @@ public class EarlyValidator {
      */
     public static class RejectedException extends ProcessingException {
 
+        /* reason of the deletion, null if the bundle is discarded without report */
+        public final StatusReport.ReasonCode reasonCode;
+
         /**
          * Constructor.
          *
          * @param reason for not validating the block
          */
         public RejectedException(String reason) {
+            this(reason, NoAdditionalInformation);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param reason     for not validating the block
+         * @param reasonCode of the deletion, null to discard the bundle without report
+         */
+        public RejectedException(String reason, StatusReport.ReasonCode reasonCode) {
             super(reason);
+            this.reasonCode = reasonCode;
         }
     }
 
@@ -50,7 +78,7 @@ public class EarlyValidator {
      */
     public void onDeserialized(PrimaryBlock block) throws RejectedException {
         if (ClockUtil.isExpired(block.getCreationTimestamp(), block.getLifetime())) {
-            throw new RejectedException("bundle is expired");
+            throw new RejectedException("bundle is expired", LifetimeExpired);
         }
 
         if (!core.getConf()
@@ -62,7 +90,8 @@ public class EarlyValidator {
         if (!core.getLocalEid().isLocal(block.getDestination())
                 && !core.getConf()
                 .<Boolean>get(ConfigurationApi.CoreEntry.ENABLE_FORWARDING).value()) {
-            throw new RejectedException("forward isn't enabled and bundle is not local");
+            throw new RejectedException("forward isn't enabled and bundle is not local",
+                    NoKnownRouteForDestination);
         }
 
         long maxLifetime = core.getConf()
@@ -78,6 +107,38 @@ public class EarlyValidator {
         }
     }
 
+    @Override
+    public void onPrimaryBlockDeserialized(PrimaryBlock block) throws RejectedException {
+        try {
+            onDeserialized(block);
+        } catch (RejectedException re) {
+            rejected(block, re);
+            throw re;
+        }
+
+        /* the bundle is not deleted, this node already holds it */
+        if (core.getStorage().contains(block.getBid())) {
+            throw new RejectedException("bundle already in storage", null);
+        }
+    }
+
+    private void rejected(PrimaryBlock block, RejectedException re) {
+        if (re.reasonCode == null) {
+            return;
+        }
+        Bundle bundle = new Bundle(block);
+        bundle.tag("reason_code", re.reasonCode);
+        core.getBundleProtocol().bundleRejected(bundle);
+    }
+
+    @Override
+    public void onHeaderDeserialized(Bundle bundle) {
+        /*
+         * the extension blocks are processed on reception with the rest of the bundle, and
+         * unroutable or undeliverable bundles are stored for later rather than rejected.
+         */
+    }
+
     /**
      * Deserializer MAY call this method to ensure validity of the received BlockHeader.
      *
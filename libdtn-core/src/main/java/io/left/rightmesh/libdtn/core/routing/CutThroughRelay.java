@@ -0,0 +1,198 @@
+package io.left.rightmesh.libdtn.core.routing;
+
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_CUT_THROUGH;
+
+import io.left.rightmesh.libdtn.common.data.BlockHeader;
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.data.PayloadBlock;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+import io.left.rightmesh.libdtn.common.data.blob.Blob;
+import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.blob.NullBlob;
+import io.left.rightmesh.libdtn.common.data.blob.StreamingBlob;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
+import io.left.rightmesh.libdtn.common.data.eid.Eid;
+import io.left.rightmesh.libdtn.core.api.CoreApi;
+import io.left.rightmesh.libdtn.core.processor.EarlyValidator;
+import io.left.rightmesh.libdtn.core.spi.cla.ClaChannelSpi;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CutThroughRelay lets a channel forward a bundle while its payload is still being received.
+ * Once the header of a bundle is parsed, if the bundle is not local and a channel towards its
+ * destination is already opened, the payload is written into a {@link StreamingBlob} and the
+ * bundle enters the {@link io.left.rightmesh.libdtn.core.api.BundleProtocolApi} right away;
+ * the next hop then receives the payload as it arrives. The payload is still written into a
+ * blob from the storage so the bundle can be stored if the transmission fails.
+ *
+ * <p>A payload with a Crc is never relayed this way because it can only be validated once it
+ * is entirely received. The blocks that follow the payload couldn't be part of a transmission
+ * already in progress, so a bundle is only relayed if its payload is known to be its last block,
+ * that is if the parser tagged it "payload_last". Any other bundle is processed once it is
+ * entirely received.
+ *
+ * <p>The parser keeps adding blocks to the bundle it is parsing, so the bundle that enters the
+ * BundleProtocol is a copy holding the blocks received so far and nothing else.
+ *
+ * <p>There is one CutThroughRelay per channel, its parser calls it from a single thread.
+ *
+ * @author Lucien Loiseau on 26/11/18.
+ */
+class CutThroughRelay implements HeaderProcessor, BlobFactory {
+
+    private static final String TAG = "CutThroughRelay";
+
+    private CoreApi core;
+    private ClaChannelSpi channel;
+    private EarlyValidator validator;
+    private volatile Bundle armed;
+
+    /* payload of the last bundle relayed, until the bundle is entirely received */
+    private AtomicReference<StreamingBlob> pending = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     *
+     * @param core      reference to the core
+     * @param channel   channel receiving the bundles
+     * @param validator to reject a bundle early
+     */
+    CutThroughRelay(CoreApi core, ClaChannelSpi channel, EarlyValidator validator) {
+        this.core = core;
+        this.channel = channel;
+        this.validator = validator;
+    }
+
+    @Override
+    public void onPrimaryBlockDeserialized(PrimaryBlock block) throws ProcessingException {
+        armed = null;
+        validator.onPrimaryBlockDeserialized(block);
+    }
+
+    @Override
+    public void onHeaderDeserialized(Bundle bundle) throws ProcessingException {
+        validator.onHeaderDeserialized(bundle);
+        if (isEligible(bundle)) {
+            armed = bundle;
+        }
+    }
+
+    /**
+     * The blob following an eligible header is the payload, it is streamed. Any other blob
+     * comes straight from the storage.
+     */
+    @Override
+    public Blob createBlob(long size) throws BlobFactoryException {
+        Blob blob = core.getStorage().getBlobFactory().createBlob(size);
+        Bundle bundle = armed;
+        armed = null;
+        if (bundle == null || size < 0) {
+            return blob;
+        }
+
+        StreamingBlob stream = new StreamingBlob(blob, size);
+        pending.set(stream);
+
+        /* the bundle is processed before the parser gets to set the payload */
+        bundle.getPayloadBlock().data = stream;
+        bundle.tag("cut_through");
+        Bundle relayed = new Bundle((PrimaryBlock) bundle);
+        relayed.blocks.addAll(bundle.blocks);
+        relayed.tag("cut_through");
+        relayed.tag("cla-origin-iid", channel.channelEid());
+        core.getLogger().i(TAG, () -> "channel "
+                + channel.channelEid().getEidString()
+                + " relays a new bundle from "
+                + relayed.getSource().getEidString());
+        Schedulers.io().scheduleDirect(() -> core.getBundleProtocol().bundleReception(relayed));
+        return stream;
+    }
+
+    /**
+     * Terminate the cut-through of a bundle once it is entirely received. The bundle given by
+     * the parser is dropped, its copy is already processed.
+     *
+     * @param bundle received
+     * @return true if the bundle was relayed and is already processed, false otherwise
+     */
+    boolean received(Bundle bundle) {
+        if (!bundle.isTagged("cut_through")) {
+            if (armed == bundle) {
+                armed = null;
+            }
+            return false;
+        }
+
+        Blob data = bundle.getPayloadBlock().data;
+        if (!(data instanceof StreamingBlob)) {
+            return true;
+        }
+        StreamingBlob stream = (StreamingBlob) data;
+        pending.compareAndSet(stream, null);
+
+        List<CanonicalBlock> blocks = bundle.getBlocks();
+        if (blocks.get(blocks.size() - 1).type == PayloadBlock.PAYLOAD_BLOCK_TYPE) {
+            stream.seal();
+        } else {
+            core.getLogger().d(TAG, () -> "blocks after the payload, relay aborted: "
+                    + bundle.bid.getBidString());
+            stream.abort(new IOException("blocks after the payload"));
+        }
+        return true;
+    }
+
+    /**
+     * Abort the payload being relayed, if any, because the channel is closed.
+     */
+    void close() {
+        armed = null;
+        StreamingBlob stream = pending.getAndSet(null);
+        if (stream != null) {
+            stream.abort(new IOException("channel closed"));
+        }
+    }
+
+    private boolean isEligible(Bundle bundle) {
+        if (!core.getConf().<Boolean>get(ENABLE_CUT_THROUGH).value()) {
+            return false;
+        }
+
+        /* a channel may only call the header processor once the bundle is entirely received */
+        PayloadBlock payload = bundle.getPayloadBlock();
+        if (payload == null || !(payload.data instanceof NullBlob)
+                || payload.crcType != BlockHeader.CrcFieldType.NO_CRC) {
+            return false;
+        }
+
+        /* otherwise the relay is deferred until the bundle is entirely received */
+        if (!bundle.isTagged("payload_last")) {
+            return false;
+        }
+
+        return !core.getLocalEid().isLocal(bundle.getDestination())
+                && hasOpenedChannelTowards(bundle.getDestination());
+    }
+
+    private boolean hasOpenedChannelTowards(Eid destination) {
+        try {
+            return !Observable.concat(
+                    core.getLinkLocalTable().findCla(destination)
+                            .toObservable(),
+                    core.getRoutingTable().resolveEid(destination)
+                            .map(core.getLinkLocalTable()::findCla)
+                            .flatMap(Maybe::toObservable))
+                    .isEmpty()
+                    .blockingGet();
+        } catch (RuntimeException re) {
+            return false;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import io.left.rightmesh.libdtn.core.events.ChannelClosed;
 import io.left.rightmesh.libdtn.core.events.ChannelOpened;
 import io.left.rightmesh.libdtn.core.events.LinkLocalEntryDown;
 import io.left.rightmesh.libdtn.core.events.LinkLocalEntryUp;
+import io.left.rightmesh.libdtn.core.processor.EarlyValidator;
 import io.left.rightmesh.libdtn.core.spi.cla.ClaChannelSpi;
 import io.left.rightmesh.librxbus.RxBus;
 import io.left.rightmesh.librxbus.Subscribe;
@@ -31,9 +32,16 @@ public class LinkLocalTable extends CoreComponent implements LinkLocalTableApi {
 
     private Set<ClaChannelSpi> linkLocalTable;
     private CoreApi core;
+    private EarlyValidator validator;
 
+    /**
+     * Constructor.
+     *
+     * @param core reference to the core
+     */
     public LinkLocalTable(CoreApi core) {
         this.core = core;
+        this.validator = new EarlyValidator(core);
         linkLocalTable = new HashSet<>();
     }
 
@@ -54,20 +62,32 @@ public class LinkLocalTable extends CoreComponent implements LinkLocalTableApi {
 
     private void channelOpened(ClaChannelSpi channel) {
         if (linkLocalTable.add(channel)) {
+            CutThroughRelay relay = new CutThroughRelay(core, channel, validator);
             channel.recvBundle(
                     core.getExtensionManager(),
-                    core.getStorage().getBlobFactory())
+                    relay,
+                    relay)
                     .subscribe(
                             b -> {
-                                core.getLogger().i(TAG, "channel "
+                                if (relay.received(b)) {
+                                    /* already processed while it was being received */
+                                    return;
+                                }
+                                core.getLogger().i(TAG, () -> "channel "
                                         + channel.channelEid().getEidString()
                                         + " received a new bundle from "
                                         + b.getSource().getEidString());
                                 b.tag("cla-origin-iid", channel.channelEid());
                                 core.getBundleProtocol().bundleReception(b);
                             },
-                            e -> channelClosed(channel),
-                            () -> channelClosed(channel));
+                            e -> {
+                                relay.close();
+                                channelClosed(channel);
+                            },
+                            () -> {
+                                relay.close();
+                                channelClosed(channel);
+                            });
             RxBus.post(new LinkLocalEntryUp(channel));
         }
     }
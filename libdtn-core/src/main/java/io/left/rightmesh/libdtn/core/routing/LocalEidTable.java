@@ -20,7 +20,7 @@ public class LocalEidTable implements LocalEidApi {
 
     public LocalEidTable(CoreApi core) {
         this.core = core;
-        core.getLogger().i(TAG, "localEid=" + localEid().getEidString());
+        core.getLogger().i(TAG, () -> "localEid=" + localEid().getEidString());
     }
 
     public Eid localEid() {
@@ -101,12 +101,12 @@ public class RoutingEngine implements RoutingEngineApi {
                 RoutingBlock rb = (RoutingBlock) block;
                 if (additionalStrategies.containsKey(rb.strategyId)) {
                     core.getLogger().i(TAG,
-                            "using routing block strategy id: "
+                            () -> "using routing block strategy id: "
                                     + rb.strategyId);
                     return additionalStrategies.get(rb.strategyId);
                 } else {
                     core.getLogger().i(TAG,
-                            "routing block strategy id unknown: "
+                            () -> "routing block strategy id unknown: "
                                     + rb.strategyId);
                 }
             }
@@ -117,11 +117,11 @@ public class RoutingEngine implements RoutingEngineApi {
 
     /*
     private Single<RoutingStrategyResult> forwardingContraindicated(Bundle bundle) {
-        core.getLogger().d(TAG, "forwarding contraindicated ("
+        core.getLogger().d(TAG, () -> "forwarding contraindicated ("
                 + bundle.<StatusReport.ReasonCode>getTagAttachment("reason_code") + "): "
                 + bundle.bid.getBidString());
 
-        core.getLogger().v(TAG, "5.4.1-1 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.4.1-1 " + bundle.bid.getBidString());
         boolean isFailure;
         switch (bundle.<StatusReport.ReasonCode>getTagAttachment("reason_code")) {
             case DepletedStorage:
@@ -142,23 +142,23 @@ public class RoutingEngine implements RoutingEngineApi {
                 break;
         }
 
-        core.getLogger().v(TAG, "5.4.1-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.4.1-2 " + bundle.bid.getBidString());
         if (isFailure) {
             return Completable.error(new ForwardingFailureException());
         } else {
-        core.getLogger().v(TAG, "5.4.1-2 " + bundle.bid.getBidString());
+        core.getLogger().v(TAG, () -> "5.4.1-2 " + bundle.bid.getBidString());
         if (isFailure) {
         bundleForwardingFailed(bundle);
     } else {
         if (!bundle.isTagged("in_storage")) {
             core.getStorage().store(bundle).subscribe(
                     b -> {
-                        core.getLogger().v(TAG, "5.4.1-3 " + bundle.bid.getBidString());
+                        core.getLogger().v(TAG, () -> "5.4.1-3 " + bundle.bid.getBidString());
                         core.getRoutingEngine().forwardLater(b);
                         endProcessing(bundle);
                     },
                     storageFailure -> {
-                        core.getLogger().v(TAG, "5.4.1-2 storage failure: "
+                        core.getLogger().v(TAG, () -> "5.4.1-2 storage failure: "
                               + storageFailure.getMessage());
                         bundleForwardingFailed(bundle);
                     }
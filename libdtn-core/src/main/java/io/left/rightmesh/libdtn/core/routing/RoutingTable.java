@@ -120,7 +120,7 @@ public class RoutingTable extends CoreComponent implements RoutingTableApi {
             return;
         }
 
-        core.getLogger().i(TAG, "adding a new Route: " + to.getEidString() + " -> "
+        core.getLogger().i(TAG, () -> "adding a new Route: " + to.getEidString() + " -> "
                 + nextHop.getEidString());
         routingTable.add(new TableEntry(to, nextHop));
     }
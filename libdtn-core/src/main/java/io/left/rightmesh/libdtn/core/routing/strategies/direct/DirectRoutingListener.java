@@ -33,35 +33,37 @@ public class DirectRoutingListener extends EventListener<String> {
     @Subscribe
     public void onEvent(LinkLocalEntryUp event) {
         /* deliver every bundle of interest */
-        core.getLogger().i(TAG, "step 1: get all bundleOfInterest "
+        core.getLogger().i(TAG, () -> "step 1: get all bundleOfInterest "
                 + event.channel.channelEid().getClaSpecificPart());
         getBundlesOfInterest(event.channel.channelEid().getClaSpecificPart()).subscribe(
                 bundleID -> {
-                    core.getLogger().v(TAG, "step 1.1: pull from storage "
+                    core.getLogger().v(TAG, () -> "step 1.1: pull from storage "
                             + bundleID.getBidString());
                     core.getStorage().get(bundleID).subscribe(
                             bundle -> {
                                 core.getLogger().v(TAG,
-                                        "step 1.2-1: forward bundle "
+                                        () -> "step 1.2-1: forward bundle "
                                         + bundleID.getBidString());
-                                event.channel.sendBundle(
+                                DirectRoutingStrategy.transmit(
+                                        event.channel,
                                         bundle,
                                         core.getExtensionManager().getBlockDataSerializerFactory()
                                 ).ignoreElements().subscribe(
                                         () -> {
-                                            core.getLogger().v(TAG, "step 1.3: forward successful, resume processing " + bundleID.getBidString());
+                                            core.getLogger().v(TAG, () -> "step 1.3: forward successful, resume processing " + bundleID.getBidString());
                                             this.unwatch(bundle.bid);
                                             core.getBundleProtocol()
                                                     .bundleForwardingSuccessful(bundle);
                                         },
                                         e -> {
-                                            /* do nothing and wait for next opportunity */
-                                            core.getLogger().v(TAG, "step 1.3: forward failed, wait next opportunity " + bundleID.getBidString());
+                                            /* release the pulled bundle and wait for next opportunity */
+                                            core.getLogger().v(TAG, () -> "step 1.3: forward failed, wait next opportunity " + bundleID.getBidString());
+                                            bundle.clearBundle();
                                         });
                             },
                             e -> {
                                 core.getLogger().w(TAG,
-                                        "step 1.2-2: failed to pull bundle from storage " + bundleID.getBidString() + ": " + e.getLocalizedMessage());
+                                        () -> "step 1.2-2: failed to pull bundle from storage " + bundleID.getBidString() + ": " + e.getLocalizedMessage());
                             });
                 });
     }
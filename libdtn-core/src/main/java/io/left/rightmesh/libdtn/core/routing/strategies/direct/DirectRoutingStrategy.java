@@ -5,6 +5,7 @@ import io.left.rightmesh.libdtn.common.data.BundleId;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.eid.BaseClaEid;
 import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
@@ -49,7 +50,8 @@ public class DirectRoutingStrategy implements DirectRoutingStrategyApi {
         return findOpenedChannelTowards(bundle.getDestination())
                 .concatMapMaybe(
                         claChannel ->
-                                claChannel.sendBundle(
+                                transmit(
+                                        claChannel,
                                         bundle,
                                         core.getExtensionManager().getBlockDataSerializerFactory())
                                         .doOnSubscribe(
@@ -64,6 +66,24 @@ public class DirectRoutingStrategy implements DirectRoutingStrategyApi {
                 .toSingle(RoutingStrategyResult.CustodyRefused);
     }
 
+    /**
+     * Send a bundle over a channel. The bundle is retained for as long as the transmission is
+     * in-flight so that it can't be cleared while it is being serialized.
+     *
+     * @param claChannel to send the bundle to
+     * @param bundle to send
+     * @param serializerFactory to serialize the blocks
+     * @return Observable tracking the number of bytes sent
+     */
+    static Observable<Integer> transmit(ClaChannelSpi claChannel,
+                                        Bundle bundle,
+                                        BlockDataSerializerFactory serializerFactory) {
+        return Observable.defer(() -> {
+            bundle.retain();
+            return claChannel.sendBundle(bundle, serializerFactory).doFinally(bundle::release);
+        });
+    }
+
     private Observable<ClaChannelSpi> findOpenedChannelTowards(Eid destination) {
         return Observable.concat(
                 core.getLinkLocalTable().findCla(destination)
@@ -75,7 +95,7 @@ public class DirectRoutingStrategy implements DirectRoutingStrategyApi {
     }
 
     private void prepareBundleForTransmission(Bundle bundle, ClaChannelSpi claChannel) {
-        core.getLogger().v(TAG, "5.4-4 "
+        core.getLogger().v(TAG, () -> "5.4-4 "
                 + bundle.bid.getBidString() + " -> "
                 + claChannel.channelEid().getEidString());
 
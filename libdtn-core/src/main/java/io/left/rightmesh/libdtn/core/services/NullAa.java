@@ -16,10 +16,7 @@ public class NullAa implements ApplicationAgentSpi {
     @Override
     public void init(RegistrarApi registrar, Log logger) {
         try {
-            registrar.register("/null/", (bundle) -> {
-                bundle.clearBundle();
-                return Completable.complete();
-            });
+            registrar.register("/null/", (bundle) -> Completable.complete());
         } catch (RegistrarApi.RegistrarDisabled
                 | RegistrarApi.NullArgument
                 | RegistrarApi.SinkAlreadyRegistered e) {
@@ -0,0 +1,173 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static io.left.rightmesh.libdtn.common.utils.FileUtil.spaceLeft;
+
+import io.left.rightmesh.libdtn.common.utils.BufferPool;
+import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFullException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * BundleFileWriter writes a serialized bundle into a file in a single pass. The buffers emitted
+ * by the serializer are copied into a batch of direct buffers taken from
+ * {@link BufferPool#DIRECT} which are written with a single gathering
+ * {@link FileChannel#write(ByteBuffer[], int, int)} whenever the batch is full.
+ * The space left on the device is checked before every batch so that a bundle that doesn't fit
+ * fails early instead of filling the disk.
+ *
+ * @author Lucien Loiseau on 16/11/18.
+ */
+class BundleFileWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int GATHER_SIZE = 16;
+
+    private File file;
+    private String folder;
+    private FileChannel channel;
+    private ByteBuffer[] batch = new ByteBuffer[GATHER_SIZE];
+    private int current = 0;
+    private long written = 0;
+
+    /**
+     * Constructor. The file is truncated if it already exists.
+     *
+     * @param file to write the bundle into
+     * @throws IOException if the file could not be opened
+     */
+    BundleFileWriter(File file) throws IOException {
+        this.file = file;
+        this.folder = file.getParent();
+        this.channel = new FileOutputStream(file).getChannel();
+    }
+
+    /**
+     * Append a buffer to the file. The buffer is fully consumed but may only be written to disk
+     * after a subsequent call to write or to {@link #close()}.
+     *
+     * @param buffer to write
+     * @throws IOException          if the file could not be written
+     * @throws StorageFullException if there is not enough space left on the device
+     */
+    void write(ByteBuffer buffer) throws IOException, StorageFullException {
+        while (buffer.hasRemaining()) {
+            if (batch[current] == null) {
+                batch[current] = BufferPool.DIRECT.acquire(BUFFER_SIZE);
+            }
+            ByteBuffer target = batch[current];
+            if (!target.hasRemaining()) {
+                if (current == GATHER_SIZE - 1) {
+                    flush();
+                } else {
+                    current++;
+                }
+                continue;
+            }
+
+            int length = Math.min(target.remaining(), buffer.remaining());
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + length);
+            target.put(slice);
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private void flush() throws IOException, StorageFullException {
+        long pending = 0;
+        int count = 0;
+        for (int i = 0; i <= current && batch[i] != null; i++) {
+            batch[i].flip();
+            pending += batch[i].remaining();
+            count++;
+        }
+
+        if (pending > 0) {
+            if (spaceLeft(folder) < pending) {
+                throw new StorageFullException();
+            }
+            long remaining = pending;
+            while (remaining > 0) {
+                remaining -= channel.write(batch, 0, count);
+            }
+            written += pending;
+        }
+
+        for (int i = 0; i < count; i++) {
+            batch[i].clear();
+        }
+        current = 0;
+    }
+
+    /**
+     * Number of bytes written to the file so far.
+     *
+     * @return number of bytes written
+     */
+    long written() {
+        return written;
+    }
+
+    /**
+     * Channel to the file being written.
+     *
+     * @return FileChannel
+     */
+    FileChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Write whatever is still buffered but leave the file open so that it can be forced to
+     * the device before it is closed.
+     *
+     * @throws IOException          if the file could not be written
+     * @throws StorageFullException if there is not enough space left on the device
+     */
+    void finish() throws IOException, StorageFullException {
+        try {
+            flush();
+        } finally {
+            releaseAll();
+        }
+    }
+
+    /**
+     * Write whatever is still buffered and close the file.
+     *
+     * @throws IOException          if the file could not be written
+     * @throws StorageFullException if there is not enough space left on the device
+     */
+    void close() throws IOException, StorageFullException {
+        try {
+            finish();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Close and delete the file.
+     */
+    void abort() {
+        releaseAll();
+        try {
+            channel.close();
+        } catch (IOException io) {
+            /* ignore */
+        }
+        file.delete();
+    }
+
+    private void releaseAll() {
+        for (int i = 0; i < GATHER_SIZE; i++) {
+            if (batch[i] != null) {
+                BufferPool.DIRECT.release(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.EXPIRY_SCHEDULER_TICK;
+
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.BundleId;
+import io.left.rightmesh.libdtn.core.CoreComponent;
+import io.left.rightmesh.libdtn.core.api.BundleProtocolApi;
+import io.left.rightmesh.libdtn.core.api.CoreApi;
+import io.left.rightmesh.libdtn.core.utils.ClockUtil;
+import io.left.rightmesh.libdtn.core.utils.TimerWheel;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExpiryScheduler keeps track of the expiry time of every bundle in Storage and expires them
+ * through the BundleProtocol as soon as their lifetime is over.
+ *
+ * <p>Bundles are scheduled in a {@link TimerWheel} when they are added to the storage index and
+ * the whole index is loaded into the wheel when the component goes up. At every tick, all the
+ * bundles that fired are expired as one batch. A bundle removed from storage before its expiry
+ * is cancelled from the wheel so that the wheel only holds the bundles still in storage.
+ *
+ * @author Lucien Loiseau on 15/11/18.
+ */
+public class ExpiryScheduler extends CoreComponent {
+
+    private static final String TAG = "ExpiryScheduler";
+
+    private Storage metaStorage;
+    private CoreApi core;
+    private TimerWheel<BundleId> wheel;
+    private Disposable ticker;
+
+    public ExpiryScheduler(Storage metaStorage, CoreApi core) {
+        this.metaStorage = metaStorage;
+        this.core = core;
+    }
+
+    @Override
+    public String getComponentName() {
+        return TAG;
+    }
+
+    @Override
+    protected synchronized void componentUp() {
+        long tick = core.getConf().<Integer>get(EXPIRY_SCHEDULER_TICK).value();
+        wheel = new TimerWheel<>(tick, ClockUtil.getCurrentTime());
+        for (Storage.IndexEntry entry : metaStorage.index.values()) {
+            entry.expiryTimeout = wheel.add(entry.bid, entry.expiry);
+        }
+        core.getLogger().i(TAG, () -> "scheduled " + wheel.size() + " bundles for expiry");
+
+        ticker = Observable.interval(tick, tick, TimeUnit.MILLISECONDS, Schedulers.io())
+                .subscribe(
+                        t -> expire(),
+                        e -> core.getLogger().w(TAG, () -> "expiry scheduler stopped: "
+                                + e.getMessage()));
+    }
+
+    @Override
+    protected synchronized void componentDown() {
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+        if (wheel != null) {
+            wheel.clear();
+            wheel = null;
+        }
+    }
+
+    /**
+     * Schedule the expiry of a new storage entry.
+     *
+     * @param entry to schedule
+     */
+    void schedule(Storage.IndexEntry entry) {
+        TimerWheel<BundleId> wheel = this.wheel;
+        if (isEnabled() && wheel != null) {
+            entry.expiryTimeout = wheel.add(entry.bid, entry.expiry);
+        }
+    }
+
+    /**
+     * Cancel the expiry of an entry removed from storage.
+     *
+     * @param entry to cancel
+     */
+    void cancel(Storage.IndexEntry entry) {
+        TimerWheel.Timeout timeout = entry.expiryTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+            entry.expiryTimeout = null;
+        }
+    }
+
+    /**
+     * Number of bundles currently scheduled.
+     *
+     * @return number of bundles in the wheel
+     */
+    int scheduled() {
+        TimerWheel<BundleId> wheel = this.wheel;
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    /**
+     * Advance the wheel to the current time and expire every bundle that fired.
+     */
+    void expire() {
+        TimerWheel<BundleId> wheel = this.wheel;
+        if (!isEnabled() || wheel == null) {
+            return;
+        }
+
+        long now = ClockUtil.getCurrentTime();
+        Set<BundleId> fired = new LinkedHashSet<>(wheel.advance(now));
+        if (fired.isEmpty()) {
+            return;
+        }
+
+        /* an entry may have been removed or replaced since it was scheduled */
+        LinkedList<Bundle> expired = new LinkedList<>();
+        for (BundleId bid : fired) {
+            Storage.IndexEntry entry = metaStorage.index.get(bid);
+            if (entry != null && entry.expiry <= now) {
+                try {
+                    /* the bundle protocol releases it once the bundle is discarded */
+                    expired.add(entry.bundle.retain());
+                } catch (IllegalStateException ise) {
+                    /* released meanwhile */
+                }
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        core.getLogger().i(TAG, () -> "expiring " + expired.size() + " bundles");
+        BundleProtocolApi bundleProtocol = core.getBundleProtocol();
+        if (bundleProtocol != null) {
+            bundleProtocol.bundlesExpired(expired);
+        } else {
+            Observable.fromIterable(expired)
+                    .flatMapCompletable(b -> metaStorage.remove(b.bid).onErrorComplete())
+                    .subscribe(() -> expired.forEach(Bundle::clearBundle));
+        }
+    }
+}
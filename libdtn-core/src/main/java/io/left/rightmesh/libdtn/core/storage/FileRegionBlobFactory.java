@@ -0,0 +1,67 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import io.left.rightmesh.libdtn.common.data.blob.Blob;
+import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.blob.FileRegionBlob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * FileRegionBlobFactory is the {@link BlobFactory} used while a bundle file is parsed during a
+ * storage pull. Whenever the parser requests a Blob for a byte string large enough, it returns a
+ * {@link FileRegionBlob} that refers to the byte string within the bundle file instead of a Blob
+ * that the data would be copied into. Smaller Blob are created by the delegate factory.
+ *
+ * <p>The reader must call {@link #feed(ByteBuffer, long)} before every buffer it hands to the
+ * parser. When the parser requests a Blob, it has just consumed the byte string header so the
+ * data starts at the current position of the buffer being parsed.
+ *
+ * @author Lucien Loiseau on 17/11/18.
+ */
+class FileRegionBlobFactory implements BlobFactory {
+
+    private File file;
+    private BlobFactory delegate;
+    private long threshold;
+    private ByteBuffer current;
+    private long base;
+
+    /**
+     * Constructor.
+     *
+     * @param file      being parsed
+     * @param delegate  factory for the Blob smaller than the threshold
+     * @param threshold minimum size of a Blob to be left in the file
+     */
+    FileRegionBlobFactory(File file, BlobFactory delegate, long threshold) {
+        this.file = file;
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Set the buffer about to be parsed.
+     *
+     * @param buffer about to be parsed
+     * @param base   offset within the file of the first byte of the buffer (index 0)
+     */
+    void feed(ByteBuffer buffer, long base) {
+        this.current = buffer;
+        this.base = base;
+    }
+
+    @Override
+    public Blob createBlob(long size) throws BlobFactoryException {
+        if (current == null || size < 0 || size < threshold) {
+            return delegate.createBlob(size);
+        }
+
+        try {
+            return new FileRegionBlob(file, base + current.position(), size);
+        } catch (IOException io) {
+            return delegate.createBlob(size);
+        }
+    }
+}
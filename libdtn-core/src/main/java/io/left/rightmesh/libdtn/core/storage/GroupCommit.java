@@ -0,0 +1,192 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GroupCommit collects the bundle files written concurrently into commit groups and makes a
+ * whole group durable at once. A group is committed as soon as it reaches its maximum size or
+ * when its oldest file has waited for the maximum delay, whichever comes first.
+ *
+ * <p>As every bundle is stored in its own file, each file of the group still needs its own
+ * {@link FileChannel#force(boolean)}. These forces are issued concurrently, by at most
+ * {@link #MAX_CONCURRENT_FORCES} threads, so that the storage device may serve them together.
+ * What is batched is the rest of the commit: the directory holding the files, which records
+ * their creation, and the index journal of every storage path involved are synced only once
+ * per group. The commit of each file completes after the whole group is durable.
+ *
+ * @author Lucien Loiseau on 16/11/18.
+ */
+class GroupCommit {
+
+    static final int MAX_CONCURRENT_FORCES = 4;
+
+    private static class Request {
+        FileChannel channel;
+        File directory;
+        IndexCheckpoint checkpoint;
+        CompletableEmitter emitter;
+        volatile IOException error;
+
+        Request(FileChannel channel,
+                File directory,
+                IndexCheckpoint checkpoint,
+                CompletableEmitter emitter) {
+            this.channel = channel;
+            this.directory = directory;
+            this.checkpoint = checkpoint;
+            this.emitter = emitter;
+        }
+    }
+
+    private final int maxSize;
+    private final long maxDelay;
+    private LinkedList<Request> group = new LinkedList<>();
+    private boolean scheduled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize  maximum number of files in a group
+     * @param maxDelay maximum time in milliseconds a file waits for its group to be committed
+     */
+    GroupCommit(int maxSize, long maxDelay) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelay = Math.max(0, maxDelay);
+    }
+
+    /**
+     * Add a bundle file to the current commit group. The channel is closed once the group is
+     * committed.
+     *
+     * @param channel    of the bundle file
+     * @param directory  holding the bundle file, may be null
+     * @param checkpoint journal of the storage path holding the file, may be null
+     * @return Completable that completes once the file is durable
+     */
+    Completable commit(FileChannel channel, File directory, IndexCheckpoint checkpoint) {
+        return Completable.create(s -> {
+            boolean full;
+            boolean schedule = false;
+            synchronized (this) {
+                group.add(new Request(channel, directory, checkpoint, s));
+                full = group.size() >= maxSize;
+                if (!full && !scheduled) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+
+            if (full) {
+                Schedulers.io().scheduleDirect(this::flush);
+            } else if (schedule) {
+                Schedulers.io().scheduleDirect(this::flush, maxDelay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Commit the current group.
+     */
+    void flush() {
+        LinkedList<Request> committing;
+        synchronized (this) {
+            committing = group;
+            group = new LinkedList<>();
+            scheduled = false;
+        }
+        if (committing.isEmpty()) {
+            return;
+        }
+
+        /* one force per file, issued concurrently so that the device may batch them */
+        LinkedList<Completable> forces = new LinkedList<>();
+        for (Request request : committing) {
+            forces.add(Completable.fromAction(() -> {
+                try {
+                    request.channel.force(false);
+                } catch (IOException io) {
+                    request.error = io;
+                }
+                try {
+                    request.channel.close();
+                } catch (IOException io) {
+                    /* ignore */
+                }
+            }).subscribeOn(Schedulers.io()));
+        }
+        Completable.merge(Flowable.fromIterable(forces), MAX_CONCURRENT_FORCES)
+                .blockingAwait();
+
+        Set<File> directories = new LinkedHashSet<>();
+        Set<IndexCheckpoint> journals = new LinkedHashSet<>();
+        for (Request request : committing) {
+            if (request.directory != null) {
+                directories.add(request.directory);
+            }
+            if (request.checkpoint != null) {
+                journals.add(request.checkpoint);
+            }
+        }
+
+        for (File directory : directories) {
+            try {
+                syncDirectory(directory);
+            } catch (IOException io) {
+                for (Request request : committing) {
+                    if (directory.equals(request.directory) && request.error == null) {
+                        request.error = io;
+                    }
+                }
+            }
+        }
+
+        for (IndexCheckpoint journal : journals) {
+            try {
+                journal.sync();
+            } catch (IOException io) {
+                /* the journal is only a cache, bundle files are authoritative */
+            }
+        }
+
+        for (Request request : committing) {
+            if (request.error != null) {
+                request.emitter.onError(request.error);
+            } else {
+                request.emitter.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Force the entries of a directory to the storage device so that the files created in it
+     * survive a crash. A platform that can't open a directory, like Windows, is ignored.
+     *
+     * @param directory to sync
+     * @throws IOException if the directory could not be synced
+     */
+    void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException io) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
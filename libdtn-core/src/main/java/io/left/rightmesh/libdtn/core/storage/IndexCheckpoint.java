@@ -0,0 +1,345 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * IndexCheckpoint persists the index of the bundles stored under one SimpleStorage path so that
+ * the index can be rebuilt at startup without opening and parsing every bundle file.
+ *
+ * <p>It is made of two files located at the root of the storage path:
+ * <ul>
+ * <li>a snapshot that contains one record per bundle file and is protected by a CRC32 checksum.
+ * The snapshot is written to a temporary file first and then renamed so that a valid snapshot is
+ * always available.</li>
+ * <li>a journal of the bundle files that were added or deleted since the last snapshot. Each
+ * journal entry is checksummed individually so that a torn write at the end of the journal only
+ * loses the last entry.</li>
+ * </ul>
+ *
+ * <p>The checkpoint is only a cache, the content of the bundle folder is authoritative. A bundle
+ * file is only journaled once it is durable and its record holds the length of the file. A
+ * bundle file that is not in the checkpoint, whose length differs from its record or that was
+ * modified after its record was written, must be parsed again.
+ *
+ * @author Lucien Loiseau on 14/11/18.
+ */
+class IndexCheckpoint {
+
+    static final String SNAPSHOT_FILE = "index.snapshot";
+    static final String JOURNAL_FILE = "index.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x494e4458; /* INDX */
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_ADD = 3; /* 1 was an add without the length of the file */
+
+    /**
+     * A Record holds everything needed to index a bundle file without parsing it.
+     */
+    static class Record {
+        String fileName;      /* name of the bundle file */
+        long timestamp;       /* time at which the record was written */
+        long length;          /* length of the bundle file */
+        boolean hasBlob;      /* true if payload is also a file */
+        String blobPath;      /* path to the payload */
+        byte[] primaryBlock;  /* cbor-encoded primary block */
+
+        Record(String fileName,
+               long timestamp,
+               long length,
+               boolean hasBlob,
+               String blobPath,
+               byte[] primaryBlock) {
+            this.fileName = fileName;
+            this.timestamp = timestamp;
+            this.length = length;
+            this.hasBlob = hasBlob;
+            this.blobPath = blobPath;
+            this.primaryBlock = primaryBlock;
+        }
+
+        /**
+         * Check that a bundle file can be indexed from this record without being parsed.
+         *
+         * @param file bundle file
+         * @return true if the file has the recorded length and was not modified afterward
+         */
+        boolean matches(File file) {
+            return file.length() == length && file.lastModified() <= timestamp;
+        }
+    }
+
+    private File snapshot;
+    private File snapshotTmp;
+    private File journal;
+    private FileOutputStream journalOut;
+    private int journalSize = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param folder root of the storage path
+     */
+    IndexCheckpoint(File folder) {
+        this.snapshot = new File(folder, SNAPSHOT_FILE);
+        this.snapshotTmp = new File(folder, SNAPSHOT_FILE + ".tmp");
+        this.journal = new File(folder, JOURNAL_FILE);
+    }
+
+    /**
+     * Load the last valid snapshot and replay the journal on top of it. A corrupted snapshot
+     * is ignored entirely, a corrupted journal is replayed up to the first invalid entry.
+     *
+     * @return recovered records indexed by bundle file name
+     */
+    synchronized Map<String, Record> load() {
+        Map<String, Record> records = new HashMap<>();
+        loadSnapshot(records);
+        journalSize = replayJournal(records);
+        return records;
+    }
+
+    private void loadSnapshot(Map<String, Record> records) {
+        if (!snapshot.exists()) {
+            return;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(snapshot.toPath());
+            if (data.length < 8) {
+                return;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 8);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            in.skipBytes(data.length - 8);
+            if (in.readLong() != crc.getValue()) {
+                return;
+            }
+
+            in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 8));
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                return;
+            }
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = in.readUTF();
+                long length = in.readLong();
+                boolean hasBlob = in.readBoolean();
+                String blobPath = in.readUTF();
+                byte[] primaryBlock = new byte[in.readInt()];
+                in.readFully(primaryBlock);
+                records.put(fileName, new Record(
+                        fileName, timestamp, length, hasBlob, blobPath, primaryBlock));
+            }
+        } catch (IOException io) {
+            records.clear();
+        }
+    }
+
+    private int replayJournal(Map<String, Record> records) {
+        if (!journal.exists()) {
+            return 0;
+        }
+
+        int replayed = 0;
+        long valid = 0;
+        long total = 0;
+        try {
+            byte[] data = Files.readAllBytes(journal.toPath());
+            total = data.length;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            while (in.available() > 0) {
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    break;
+                }
+                byte[] entry = new byte[length];
+                in.readFully(entry);
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if (in.readInt() != (int) crc.getValue()) {
+                    break;
+                }
+
+                DataInputStream ein = new DataInputStream(new ByteArrayInputStream(entry));
+                byte op = ein.readByte();
+                long timestamp = ein.readLong();
+                String fileName = ein.readUTF();
+                if (op == OP_ADD) {
+                    long length = ein.readLong();
+                    boolean hasBlob = ein.readBoolean();
+                    String blobPath = ein.readUTF();
+                    byte[] primaryBlock = new byte[ein.readInt()];
+                    ein.readFully(primaryBlock);
+                    records.put(fileName, new Record(
+                            fileName, timestamp, length, hasBlob, blobPath, primaryBlock));
+                } else {
+                    /* deleted, or recorded by an older version: the file must be parsed */
+                    records.remove(fileName);
+                }
+                replayed++;
+                valid = data.length - in.available();
+            }
+        } catch (EOFException eof) {
+            /* torn entry at the end of the journal */
+        } catch (IOException io) {
+            /* ignore the rest of the journal */
+        }
+
+        /* drop the invalid tail so that new entries are appended after the last valid one */
+        if (valid < total) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+                raf.setLength(valid);
+                raf.close();
+            } catch (IOException io) {
+                /* ignore */
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Number of entries in the journal since the last snapshot.
+     *
+     * @return journal size
+     */
+    synchronized int journalSize() {
+        return journalSize;
+    }
+
+    /**
+     * Journal a new bundle file. It must only be called once the bundle file is durable.
+     *
+     * @param record of the bundle file
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void journalAdd(Record record) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(OP_ADD);
+        out.writeLong(record.timestamp);
+        out.writeUTF(record.fileName);
+        out.writeLong(record.length);
+        out.writeBoolean(record.hasBlob);
+        out.writeUTF(record.blobPath);
+        out.writeInt(record.primaryBlock.length);
+        out.write(record.primaryBlock);
+        appendToJournal(bos.toByteArray());
+    }
+
+    /**
+     * Journal the deletion of a bundle file.
+     *
+     * @param fileName name of the deleted bundle file
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void journalDelete(String fileName) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(OP_DELETE);
+        out.writeLong(System.currentTimeMillis());
+        out.writeUTF(fileName);
+        appendToJournal(bos.toByteArray());
+    }
+
+    private void appendToJournal(byte[] entry) throws IOException {
+        if (journalOut == null) {
+            journalOut = new FileOutputStream(journal, true);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(entry);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(entry.length + 8);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(entry.length);
+        out.write(entry);
+        out.writeInt((int) crc.getValue());
+        journalOut.write(bos.toByteArray());
+        journalSize++;
+    }
+
+    /**
+     * Write a new snapshot and reset the journal. The snapshot timestamp must be taken before
+     * the records are collected so that any bundle file modified afterward is parsed again.
+     *
+     * @param timestamp time at which the records were collected
+     * @param records   all the records to persist
+     * @throws IOException if the snapshot could not be written
+     */
+    synchronized void checkpoint(long timestamp, Collection<Record> records) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(timestamp);
+        out.writeInt(records.size());
+        for (Record record : records) {
+            out.writeUTF(record.fileName);
+            out.writeLong(record.length);
+            out.writeBoolean(record.hasBlob);
+            out.writeUTF(record.blobPath);
+            out.writeInt(record.primaryBlock.length);
+            out.write(record.primaryBlock);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bos.toByteArray());
+        out.writeLong(crc.getValue());
+
+        FileOutputStream fos = new FileOutputStream(snapshotTmp);
+        try {
+            fos.write(bos.toByteArray());
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!snapshotTmp.renameTo(snapshot)) {
+            throw new IOException("can't replace index snapshot");
+        }
+
+        close();
+        journal.delete();
+        journalSize = 0;
+    }
+
+    /**
+     * Force the journal to the storage device.
+     *
+     * @throws IOException if the journal could not be synced
+     */
+    synchronized void sync() throws IOException {
+        if (journalOut != null) {
+            journalOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Close the journal.
+     */
+    synchronized void close() {
+        if (journalOut != null) {
+            try {
+                journalOut.close();
+            } catch (IOException io) {
+                /* ignore */
+            }
+            journalOut = null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MappedFileCache maps bundle files read-only into memory and keeps the most recently used
+ * mappings so that pulling a hot bundle again costs neither a system call nor a copy. The total
+ * size of the cached mappings is bounded, the least recently used mappings are evicted first.
+ *
+ * <p>An evicted mapping is only unmapped once it is garbage collected, the bound thus limits
+ * the address space the cache retains rather than the address space in use at any time.
+ *
+ * @author Lucien Loiseau on 17/11/18.
+ */
+class MappedFileCache {
+
+    private final long capacity;
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private LinkedHashMap<String, MappedByteBuffer> mappings
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of bytes mapped by the cache
+     */
+    MappedFileCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Map a file read-only. The returned buffer is independent from the one returned to any
+     * other caller so it can be read concurrently.
+     *
+     * @param file to map
+     * @return a read-only buffer positioned at the beginning of the file, or null if the file is
+     *         too big to be mapped
+     * @throws IOException if the file could not be mapped
+     */
+    ByteBuffer map(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        synchronized (this) {
+            MappedByteBuffer mapped = mappings.get(path);
+            if (mapped != null) {
+                hits++;
+                return mapped.duplicate();
+            }
+            misses++;
+        }
+
+        long length = file.length();
+        if (length > Integer.MAX_VALUE || length > capacity) {
+            return null;
+        }
+
+        MappedByteBuffer mapped;
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            fis.close();
+        }
+
+        synchronized (this) {
+            MappedByteBuffer old = mappings.put(path, mapped);
+            if (old != null) {
+                size -= old.capacity();
+            }
+            size += mapped.capacity();
+            evict();
+        }
+        return mapped.duplicate();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, MappedByteBuffer>> it = mappings.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().getValue().capacity();
+            it.remove();
+        }
+    }
+
+    /**
+     * Drop the mapping of a file, if any. Must be called whenever a file is deleted.
+     *
+     * @param path of the file
+     */
+    synchronized void invalidate(String path) {
+        MappedByteBuffer mapped = mappings.remove(new File(path).getAbsolutePath());
+        if (mapped != null) {
+            size -= mapped.capacity();
+        }
+    }
+
+    /**
+     * Drop all the mappings.
+     */
+    synchronized void clear() {
+        mappings.clear();
+        size = 0;
+    }
+
+    /**
+     * Number of bytes currently mapped by the cache.
+     *
+     * @return mapped size
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+}
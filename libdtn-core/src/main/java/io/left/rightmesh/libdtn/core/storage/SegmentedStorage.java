@@ -0,0 +1,1276 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static io.left.rightmesh.libdtn.common.utils.FileUtil.createFile;
+import static io.left.rightmesh.libdtn.common.utils.FileUtil.createNewFile;
+import static io.left.rightmesh.libdtn.common.utils.FileUtil.spaceLeft;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_COMPACTION_THRESHOLD;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_DURABILITY;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_PATH;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_SEGMENT_SIZE;
+
+import io.left.rightmesh.libcbor.CBOR;
+import io.left.rightmesh.libcbor.CborParser;
+import io.left.rightmesh.libcbor.rxparser.RxParserException;
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.BundleId;
+import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
+import io.left.rightmesh.libdtn.common.data.MetaBundle;
+import io.left.rightmesh.libdtn.common.data.blob.Blob;
+import io.left.rightmesh.libdtn.common.data.blob.FileBlob;
+import io.left.rightmesh.libdtn.common.data.blob.NullBlob;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BundleV7Item;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.PrimaryBlockItem;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.left.rightmesh.libdtn.common.utils.BufferPool;
+import io.left.rightmesh.libdtn.common.utils.Log;
+import io.left.rightmesh.libdtn.core.CoreComponent;
+import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.left.rightmesh.libdtn.core.api.CoreApi;
+import io.left.rightmesh.libdtn.core.api.StorageApi.BundleAlreadyExistsException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.BundleNotFoundException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.Durability;
+import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFailedException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFullException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.StorageUnavailableException;
+import io.left.rightmesh.libdtn.core.events.BundleIndexed;
+import io.left.rightmesh.librxbus.RxBus;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SegmentedStorage is a persistent storage engine that appends serialized bundles to a small
+ * number of fixed-size segment files instead of creating one file per bundle. Like SimpleStorage,
+ * it keeps in memory an index of all the bundles in storage, each entry holding the segment and
+ * the offset of the bundle record as well as a MetaBundle used for routing.
+ *
+ * <p>A segment is a sequence of records. Each record starts with a 13 bytes header (4 bytes magic
+ * number, 1 byte status, 8 bytes length) followed by the same CBOR {file header, bundle} array
+ * that SimpleStorage writes in a bundle file. The space of a record is reserved and its header
+ * appended as pending with the lock held, its content is then written without the lock so that
+ * reads, removals and other stores don't wait for it, and it is only marked live with the lock
+ * held again once it is entirely written. Removing a bundle simply marks its record as dead.
+ * Once a segment reaches the configured size it is sealed and a new segment is opened. Sealed
+ * segments whose live ratio falls below the compaction threshold are compacted in the
+ * background: their live records are copied to the active segment and the segment is deleted.
+ * A copy is forced to the storage device before its original record is marked dead so that a
+ * compaction never loses a bundle nor brings a deleted one back, even if it is interrupted.
+ *
+ * <p>The SegmentedStorage is configurable through {@link ConfigurationApi} by updating the
+ * following values:
+ * <ul>
+ * <li>COMPONENT_ENABLE_SEGMENTED_STORAGE: enable/disable SegmentedStorage, if enabled it is
+ * used instead of SimpleStorage for every new persistent bundle</li>
+ * <li>SEGMENTED_STORAGE_PATH: update the list of path to be used as storage.</li>
+ * <li>SEGMENTED_STORAGE_SEGMENT_SIZE: size in bytes after which a segment is sealed</li>
+ * <li>SEGMENTED_STORAGE_COMPACTION_THRESHOLD: percentage of live data under which a sealed
+ * segment is compacted</li>
+ * <li>SEGMENTED_STORAGE_DURABILITY: unless NONE, a bundle is forced to the storage device before
+ * its store completes. Concurrent stores share the force of the segment. It is configured
+ * independently from SIMPLE_STORAGE_DURABILITY.</li>
+ * </ul>
+ *
+ * @author Lucien Loiseau on 12/11/18.
+ */
+public class SegmentedStorage extends CoreComponent {
+
+    private static final String TAG = "SegmentedStorage";
+
+    private static final String BLOB_FOLDER = File.separator + "blob" + File.separator;
+    private static final String SEGMENT_FOLDER = File.separator + "segment" + File.separator;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    static final int RECORD_MAGIC = 0x53454731; /* SEG1 */
+    static final int RECORD_HEADER_SIZE = 13;
+    static final byte RECORD_PENDING = 0;
+    static final byte RECORD_LIVE = 1;
+    static final byte RECORD_DEAD = 2;
+
+    /**
+     * A Segment is an append-only file holding bundle records.
+     */
+    static class Segment {
+        final long id;
+        final String path;
+        final File file;
+        FileChannel channel;
+        volatile long size;
+        long liveBytes;
+        int pending; /* records reserved but not yet live nor discarded */
+        boolean sealed;
+        final AtomicLong written = new AtomicLong(0); /* records entirely written */
+        long synced;
+        Set<BundleId> records = new HashSet<>();
+
+        Segment(long id, String path, File file) {
+            this.id = id;
+            this.path = path;
+            this.file = file;
+        }
+
+        /**
+         * Ratio of live data in this segment, in percent.
+         *
+         * @return live ratio
+         */
+        int liveRatio() {
+            if (size == 0) {
+                return 100;
+            }
+            return (int) (liveBytes * 100 / size);
+        }
+
+        /**
+         * A segment may be deleted once it holds no live record and no record is being written.
+         *
+         * @return true if the segment is not used
+         */
+        boolean isUnused() {
+            return records.isEmpty() && pending == 0;
+        }
+
+        /**
+         * Number a record that is entirely written. Records are written concurrently so they
+         * may complete in any order.
+         *
+         * @return sequence number of the record
+         */
+        long recordWritten() {
+            return written.incrementAndGet();
+        }
+
+        /**
+         * Force this segment to the storage device up to the given record. A caller waits for
+         * the force in progress and returns at once if it already covered its record, this way
+         * the stores that are written concurrently are committed together.
+         *
+         * @param sequence of the record that must be durable
+         * @throws IOException if the segment could not be forced
+         */
+        synchronized void sync(long sequence) throws IOException {
+            if (synced >= sequence) {
+                return;
+            }
+            long covered = written.get();
+            channel.force(false);
+            synced = Math.max(synced, covered);
+        }
+    }
+
+    private Storage metaStorage;
+    private CoreApi core;
+
+    private final Object lock = new Object();
+    private LinkedList<String> storagePaths = new LinkedList<>();
+    private LinkedList<Segment> segments = new LinkedList<>();
+    private Segment activeSegment = null;
+    private AtomicLong nextSegmentId = new AtomicLong(0);
+    private AtomicBoolean compacting = new AtomicBoolean(false);
+
+    public SegmentedStorage(Storage metaStorage, CoreApi core) {
+        this.metaStorage = metaStorage;
+        this.core = core;
+    }
+
+    @Override
+    public String getComponentName() {
+        return TAG;
+    }
+
+    @Override
+    public void initComponent(ConfigurationApi conf, ConfigurationApi.CoreEntry entry, Log logger) {
+        super.initComponent(conf, entry, logger);
+        core.getConf().<Set<String>>get(SEGMENTED_STORAGE_PATH).observe()
+                .subscribe(
+                        updatedPaths -> {
+                            /* remove obsolete path */
+                            LinkedList<String> pathsToRemove = new LinkedList<>();
+                            for (String path : storagePaths) {
+                                if (!updatedPaths.contains(path)) {
+                                    pathsToRemove.add(path);
+                                }
+                            }
+                            for (String path : pathsToRemove) {
+                                removePath(path);
+                            }
+
+                            /* add new path */
+                            LinkedList<String> pathsToAdd = new LinkedList<>();
+                            for (String path : updatedPaths) {
+                                if (!storagePaths.contains(path)) {
+                                    pathsToAdd.add(path);
+                                }
+                            }
+                            for (String path : pathsToAdd) {
+                                addPath(path);
+                            }
+                        });
+    }
+
+    @Override
+    protected void componentUp() {
+    }
+
+    @Override
+    protected void componentDown() {
+        synchronized (lock) {
+            sealActiveSegment();
+        }
+    }
+
+    /**
+     * Count the number of Bundle in SegmentedStorage.
+     *
+     * @return number of bundle in segments
+     */
+    public int count() {
+        synchronized (lock) {
+            return segments.stream().mapToInt(s -> s.records.size()).sum();
+        }
+    }
+
+    /**
+     * Count the number of segment files currently in use.
+     *
+     * @return number of segments
+     */
+    public int segmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    private boolean removePath(String path) {
+        if (storagePaths.contains(path)) {
+            synchronized (lock) {
+                metaStorage.index.forEach(
+                        (bid, entry) -> {
+                            if (entry.isPersistent
+                                    && entry.segment != null
+                                    && entry.segment.path.equals(path)) {
+                                entry.setPersistent(false);
+                                entry.segment = null;
+                                if (!entry.isVolatile) {
+                                    metaStorage.removeEntry(bid, entry);
+                                }
+                            }
+                        });
+                if (activeSegment != null && activeSegment.path.equals(path)) {
+                    sealActiveSegment();
+                }
+                LinkedList<Segment> segmentsToRemove = new LinkedList<>();
+                for (Segment segment : segments) {
+                    if (segment.path.equals(path)) {
+                        segmentsToRemove.add(segment);
+                    }
+                }
+                for (Segment segment : segmentsToRemove) {
+                    closeSilently(segment);
+                    segments.remove(segment);
+                }
+                storagePaths.remove(path);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean addPath(String path) {
+        if (!storagePaths.contains(path)) {
+            File f = new File(path);
+            if (f.exists() && f.canRead() && f.canWrite()) {
+                File fblob = new File(path + BLOB_FOLDER);
+                File fsegment = new File(path + SEGMENT_FOLDER);
+                if (!fblob.exists() && !fblob.mkdir()) {
+                    return false;
+                }
+                if (!fsegment.exists() && !fsegment.mkdir()) {
+                    return false;
+                }
+                synchronized (lock) {
+                    indexSegmentsFromPath(path, fsegment);
+                    storagePaths.add(path);
+                }
+                compact();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long segmentIdFromName(String name) {
+        try {
+            return Long.parseLong(name.substring(
+                    SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private void indexSegmentsFromPath(String path, File folder) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        File[] files = folder.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(file -> segmentIdFromName(file.getName())));
+
+        for (final File file : files) {
+            long id = segmentIdFromName(file.getName());
+            if (id < 0) {
+                continue;
+            }
+            nextSegmentId.set(Math.max(nextSegmentId.get(), id + 1));
+
+            Segment segment = new Segment(id, path, file);
+            try {
+                segment.channel = new RandomAccessFile(file, "rw").getChannel();
+                indexSegment(segment);
+            } catch (IOException io) {
+                core.getLogger().w(TAG, () -> "can't index segment " + file.getAbsolutePath()
+                        + ": " + io.getMessage());
+                closeSilently(segment);
+                continue;
+            }
+
+            /* segments found at startup are never appended to */
+            segment.sealed = true;
+            if (segment.isUnused()) {
+                deleteSegment(segment);
+            } else {
+                segments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Scan all the records of a segment and index the live ones. A pending record means that
+     * the node stopped while it was being written, it is marked dead. A corrupted record or a
+     * record that doesn't fit in the file means that the node stopped while appending to this
+     * segment, it is truncated.
+     *
+     * @param segment to index
+     * @throws IOException if the segment could not be read
+     */
+    private void indexSegment(Segment segment) throws IOException {
+        FileChannel channel = segment.channel;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = 0;
+        long fileSize = channel.size();
+        while (position < fileSize) {
+            header.clear();
+            if (readFully(channel, header, position) < RECORD_HEADER_SIZE) {
+                break;
+            }
+            header.flip();
+            int magic = header.getInt();
+            byte status = header.get();
+            long length = header.getLong();
+            long recordSize = RECORD_HEADER_SIZE + length;
+            if (magic != RECORD_MAGIC
+                    || length < 0
+                    || position + recordSize > fileSize) {
+                break;
+            }
+
+            if (status == RECORD_PENDING) {
+                markRecord(segment, position, RECORD_DEAD);
+            } else if (status == RECORD_LIVE) {
+                MetaBundle meta = parseMeta(segment, position, length);
+                if (meta == null) {
+                    markRecord(segment, position, RECORD_DEAD);
+                } else if (segment.records.contains(meta.bid)) {
+                    RxBus.post(new BundleIndexed(meta));
+                } else if (metaStorage.index.get(meta.bid).segment != null) {
+                    /* duplicate left by an interrupted compaction */
+                    markRecord(segment, position, RECORD_DEAD);
+                }
+            }
+            position += recordSize;
+        }
+
+        if (position < fileSize) {
+            final long truncated = position;
+            core.getLogger().w(TAG, () -> "truncating segment " + segment.file.getAbsolutePath()
+                    + " at offset " + truncated);
+            channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private MetaBundle parseMeta(Segment segment, long offset, long length) {
+        /*
+         * preparing the parser. We just parse the file header and the primary block of
+         * the bundle and then build a MetaBundle that will be use for processing
+         */
+        AtomicReference<MetaBundle> ret = new AtomicReference<>();
+        CborParser parser = CBOR.parser()
+                .cbor_open_array(2)
+                .cbor_parse_custom_item(
+                        SimpleStorage.FileHeaderItem::new,
+                        (p, t, item) -> {
+                            p.setReg(0, item);
+                        })
+                .cbor_open_array((p, t, s) -> {
+                }) /* we are just parsing the primary block */
+                .cbor_parse_custom_item(
+                        () -> new PrimaryBlockItem(
+                                core.getExtensionManager().getEidFactory(),
+                                core.getLogger()),
+                        (p, t, item) -> {
+                            MetaBundle meta = new MetaBundle(item.bundle);
+                            ret.set(meta);
+                            if (metaStorage.containsPersistent(meta.bid)) {
+                                return;
+                            }
+                            Storage.IndexEntry entry
+                                    = metaStorage.getEntryOrCreate(meta.bid, meta);
+                            entry.segment = segment;
+                            entry.recordOffset = offset;
+                            entry.recordLength = length;
+                            entry.bundlePath = segment.file.getAbsolutePath();
+                            entry.hasBlob = p.<SimpleStorage.FileHeaderItem>getReg(0).hasBlob;
+                            entry.blobPath = p.<SimpleStorage.FileHeaderItem>getReg(0).blobPath;
+                            entry.setPersistent(true);
+                            segment.records.add(meta.bid);
+                            segment.liveBytes += RECORD_HEADER_SIZE + length;
+                        });
+
+        ByteBuffer buffer = BufferPool.HEAP.acquire(512);
+        long position = offset + RECORD_HEADER_SIZE;
+        long end = position + length;
+        try {
+            boolean done = false;
+            while (!done && position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = segment.channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+                buffer.flip();
+                done = parser.read(buffer);
+            }
+        } catch (RxParserException | IOException rpe) {
+            return null;
+        } finally {
+            BufferPool.HEAP.release(buffer);
+        }
+        return ret.get();
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static void markRecord(Segment segment, long offset, byte status)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        buffer.put(status);
+        buffer.flip();
+        writeFully(segment.channel, buffer, offset + 4);
+    }
+
+    /**
+     * Create a new {@link FileBlob}. Payload blobs are not appended to the segments, they are
+     * kept in a separate file referenced by the record header.
+     *
+     * @param expectedSize expected size of the Blob to create
+     * @return a new FileBlob with capacity of expectedSize
+     * @throws StorageFullException        if there isn't enough space in SegmentedStorage
+     * @throws StorageUnavailableException if SegmentedStorage is disabled
+     */
+    FileBlob createBlob(long expectedSize)
+            throws StorageUnavailableException, StorageFullException {
+        if (!isEnabled()) {
+            throw new StorageUnavailableException();
+        }
+
+        for (String path : storagePaths) {
+            if (spaceLeft(path + BLOB_FOLDER) > expectedSize) {
+                try {
+                    File fblob = createNewFile(
+                            "blob-",
+                            ".blob",
+                            path + BLOB_FOLDER);
+                    return new FileBlob(fblob);
+                } catch (IOException io) {
+                    // ignore and try next path
+                }
+            }
+        }
+        throw new StorageFullException();
+    }
+
+    private void sealActiveSegment() {
+        if (activeSegment != null) {
+            activeSegment.sealed = true;
+            if (activeSegment.isUnused()) {
+                deleteSegment(activeSegment);
+            }
+            activeSegment = null;
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        core.getLogger().v(TAG, () -> "deleting segment " + segment.file.getAbsolutePath());
+        closeSilently(segment);
+        segment.file.delete();
+        segments.remove(segment);
+    }
+
+    private static void closeSilently(Segment segment) {
+        try {
+            if (segment.channel != null) {
+                segment.channel.close();
+            }
+        } catch (IOException io) {
+            /* ignore */
+        }
+    }
+
+    /**
+     * Return the segment to append to. The active segment is sealed and a new one is created
+     * if the active segment reached the configured segment size. Must be called with lock held.
+     *
+     * @return the active segment
+     * @throws StorageFullException if no segment could be created
+     */
+    private Segment activeSegment() throws StorageFullException {
+        long maxSize = core.getConf().<Long>get(SEGMENTED_STORAGE_SEGMENT_SIZE).value();
+        if (activeSegment != null && activeSegment.size < maxSize) {
+            return activeSegment;
+        }
+        sealActiveSegment();
+
+        for (String path : storagePaths) {
+            if (spaceLeft(path + SEGMENT_FOLDER) > maxSize) {
+                long id = nextSegmentId.getAndIncrement();
+                try {
+                    File file = createFile(
+                            SEGMENT_PREFIX + id + SEGMENT_SUFFIX,
+                            path + SEGMENT_FOLDER);
+                    Segment segment = new Segment(id, path, file);
+                    segment.channel = new RandomAccessFile(file, "rw").getChannel();
+                    if (durability() != Durability.NONE) {
+                        syncDirectory(file.getParentFile());
+                    }
+                    segments.add(segment);
+                    activeSegment = segment;
+                    core.getLogger().v(TAG, () -> "new segment " + file.getAbsolutePath());
+                    return segment;
+                } catch (IOException io) {
+                    // ignore and try next path
+                }
+            }
+        }
+        throw new StorageFullException();
+    }
+
+    private Durability durability() {
+        return core.getConf().<Durability>get(SEGMENTED_STORAGE_DURABILITY).value();
+    }
+
+    /**
+     * Force the entries of a directory to the storage device so that a new segment survives a
+     * crash. A platform that can't open a directory, like Windows, is ignored.
+     *
+     * @param directory to sync
+     * @throws IOException if the directory could not be synced
+     */
+    private static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException io) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make a record durable according to the configured durability mode. A segment is a single
+     * file so SYNC and GROUP_COMMIT are the same: concurrent stores share the same force.
+     *
+     * @param segment  holding the record
+     * @param sequence of the record, as returned by {@link Segment#recordWritten()}
+     * @throws IOException if the record could not be forced
+     */
+    private void durable(Segment segment, long sequence) throws IOException {
+        if (durability() == Durability.NONE) {
+            return;
+        }
+        try {
+            segment.sync(sequence);
+        } catch (ClosedChannelException cce) {
+            /* segment deleted, its records were either removed or relocated and forced */
+        }
+    }
+
+    /**
+     * Mark a reserved record that could not be written or indexed as dead. Its space is
+     * reclaimed by the compaction. Must be called with lock held.
+     *
+     * @param segment holding the record
+     * @param offset  of the record within the segment
+     */
+    private void discardPending(Segment segment, long offset) {
+        try {
+            markRecord(segment, offset, RECORD_DEAD);
+        } catch (IOException io) {
+            /* ignore, a pending record is marked dead when the segment is indexed */
+        }
+        if (segment.sealed && segment.isUnused() && segments.contains(segment)) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Mark a record that could not be made durable as dead and remove it from the index. Unlike
+     * {@link #remove(BundleId)}, the payload blob is left untouched as it still belongs to the
+     * caller.
+     *
+     * @param id      of the bundle
+     * @param segment holding the record
+     * @param offset  of the record within the segment
+     */
+    private void discard(BundleId id, Segment segment, long offset) {
+        synchronized (lock) {
+            Storage.IndexEntry entry = metaStorage.index.get(id);
+            if (entry == null || entry.segment != segment || entry.recordOffset != offset) {
+                return;
+            }
+            try {
+                markRecord(segment, offset, RECORD_DEAD);
+            } catch (IOException io) {
+                /* ignore */
+            }
+            segment.records.remove(id);
+            segment.liveBytes -= RECORD_HEADER_SIZE + entry.recordLength;
+            entry.segment = null;
+            entry.recordOffset = 0;
+            entry.recordLength = 0;
+            entry.hasBlob = false;
+            entry.bundlePath = "";
+            entry.blobPath = "";
+            entry.setPersistent(false);
+            if (!entry.isVolatile) {
+                metaStorage.removeEntry(id, entry);
+            }
+        }
+    }
+
+    /**
+     * Reserve the space of a record at the end of the active segment and append its header as
+     * pending. Must be called with lock held.
+     *
+     * @param length of the record content
+     * @return the segment holding the record, the record starts at the returned segment size
+     *         minus the reserved space
+     * @throws IOException          if the header could not be written
+     * @throws StorageFullException if no segment is available
+     */
+    private Segment reserve(long length) throws IOException, StorageFullException {
+        Segment segment = activeSegment();
+        long start = segment.size;
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.putInt(RECORD_MAGIC);
+        header.put(RECORD_PENDING);
+        header.putLong(length);
+        header.flip();
+        writeFully(segment.channel, header, start);
+
+        segment.size = start + RECORD_HEADER_SIZE + length;
+        segment.pending++;
+        return segment;
+    }
+
+    /**
+     * Write the content of a record whose space was reserved. The lock must not be held, the
+     * record stays pending until it is marked live.
+     *
+     * @param segment holding the record
+     * @param start   offset of the record within the segment
+     * @param length  of the record content that was reserved
+     * @param record  serialized record content
+     * @throws IOException if the record could not be written or doesn't match its length
+     */
+    private static void writeRecord(Segment segment, long start, long length,
+                                    Flowable<ByteBuffer> record) throws IOException {
+        long dataStart = start + RECORD_HEADER_SIZE;
+        AtomicLong written = new AtomicLong(0);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        record.subscribe(
+                buffer -> {
+                    int size = buffer.remaining();
+                    if (written.get() + size > length) {
+                        throw new IOException("record larger than reserved");
+                    }
+                    writeFully(segment.channel, buffer, dataStart + written.get());
+                    written.addAndGet(size);
+                },
+                failure::set);
+
+        if (failure.get() != null) {
+            throw new IOException(failure.get().getMessage());
+        }
+        if (written.get() != length) {
+            throw new IOException("record shorter than reserved");
+        }
+    }
+
+    /**
+     * store a bundle into a segment. This operation can take time so it is done in
+     * a different thread and returns a Single.
+     *
+     * @param bundle to store
+     * @return Single of the MetaBundle
+     */
+    Single<Bundle> store(Bundle bundle) {
+        return store(bundle, null);
+    }
+
+    /**
+     * store a bundle into a segment only if its index entry is still the expected one, no
+     * record is appended otherwise.
+     *
+     * @param bundle   to store
+     * @param expected index entry of the bundle, null if the bundle may not be indexed yet
+     * @return Single of the MetaBundle
+     */
+    Single<Bundle> store(Bundle bundle, Storage.IndexEntry expected) {
+        if (!isEnabled()) {
+            return Single.error(new StorageUnavailableException());
+        }
+
+        if (metaStorage.containsPersistent(bundle.bid)) {
+            return Single.error(new BundleAlreadyExistsException());
+        }
+
+        return Single.<Bundle>create(
+                s -> {
+                    /* prepare bundle: we do not serialize the payload if it is a fileBLOB */
+                    boolean hasBlob = false;
+                    String blobPath = "";
+                    Blob blob = new NullBlob();
+                    if (bundle.getPayloadBlock().data.isFileBlob()) {
+                        blob = bundle.getPayloadBlock().data;
+                        hasBlob = true;
+                        blobPath = blob.getFilePath();
+
+                        /* temporary remove the blob from bundle for serialization */
+                        bundle.getPayloadBlock().data = new NullBlob();
+                    }
+
+                    /* prepare metabundle */
+                    final MetaBundle meta = new MetaBundle(bundle);
+
+                    /*
+                     * the bundle will be serialized in the record as a CBOR array containing
+                     * two item, the file header and the bundle. Its length is computed first
+                     * so that its space can be reserved.
+                     */
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    CBOR.encoder()
+                            .cbor_start_array(2)  /* Record = {header , bundle} */
+                            .cbor_start_array(2)  /* File Header = { boolean, String }*/
+                            .cbor_encode_boolean(hasBlob)
+                            .cbor_encode_text_string(blobPath)
+                            .observe()
+                            .subscribe(buffer -> {
+                                while (buffer.hasRemaining()) {
+                                    out.write(buffer.get());
+                                }
+                            });
+                    byte[] fileHeader = out.toByteArray();
+                    long length = fileHeader.length + BundleV7Serializer.encodedSize(
+                            bundle, core.getExtensionManager().getBlockDataSerializerFactory());
+                    Flowable<ByteBuffer> record = Flowable.fromCallable(
+                            () -> ByteBuffer.wrap(fileHeader))
+                            .concatWith(BundleV7Serializer.observe(bundle,
+                                    core.getExtensionManager().getBlockDataSerializerFactory()));
+
+                    Segment segment = null;
+                    long offset = 0;
+                    long sequence = 0;
+                    Throwable error = null;
+                    synchronized (lock) {
+                        try {
+                            if (!metaStorage.isIndexed(meta.bid, expected)) {
+                                throw new BundleNotFoundException(meta.bid);
+                            }
+                            segment = reserve(length);
+                            offset = segment.size - RECORD_HEADER_SIZE - length;
+                        } catch (StorageFullException sfe) {
+                            error = new Throwable("storage is full");
+                        } catch (BundleNotFoundException bnfe) {
+                            error = bnfe;
+                        } catch (IOException io) {
+                            error = new Throwable("bundle failed to serialize into segment");
+                        }
+                    }
+
+                    /* the content is written without the lock so that other operations proceed */
+                    if (error == null) {
+                        try {
+                            writeRecord(segment, offset, length, record);
+                        } catch (IOException io) {
+                            error = new Throwable("bundle failed to serialize into segment");
+                        }
+                    }
+
+                    if (segment != null) {
+                        synchronized (lock) {
+                            segment.pending--;
+                            try {
+                                if (error == null && !segments.contains(segment)) {
+                                    error = new Throwable("segment was removed");
+                                }
+                                if (error == null && !metaStorage.isIndexed(meta.bid, expected)) {
+                                    error = new BundleNotFoundException(meta.bid);
+                                }
+                                if (error == null && metaStorage.containsPersistent(meta.bid)) {
+                                    error = new BundleAlreadyExistsException();
+                                }
+                                if (error == null) {
+                                    /* the record is live once entirely written */
+                                    markRecord(segment, offset, RECORD_LIVE);
+                                    final Storage.IndexEntry entry
+                                            = metaStorage.getEntryOrCreate(meta.bid, meta);
+                                    entry.segment = segment;
+                                    entry.recordOffset = offset;
+                                    entry.recordLength = length;
+                                    entry.setPersistent(true);
+                                    entry.bundlePath = segment.file.getAbsolutePath();
+                                    entry.hasBlob = hasBlob;
+                                    entry.blobPath = blobPath;
+                                    segment.records.add(meta.bid);
+                                    segment.liveBytes += RECORD_HEADER_SIZE + length;
+                                    sequence = segment.recordWritten();
+                                }
+                            } catch (IOException io) {
+                                error = new Throwable("bundle failed to serialize into segment");
+                            }
+                            if (error != null) {
+                                discardPending(segment, offset);
+                            }
+                        }
+                    }
+
+                    /* the record is forced outside the lock so that other stores may join it */
+                    if (error == null) {
+                        try {
+                            durable(segment, sequence);
+                        } catch (IOException io) {
+                            discard(meta.bid, segment, offset);
+                            error = new Throwable("bundle record could not be synced: "
+                                    + io.getMessage());
+                        }
+                    }
+
+                    /* post-serialization: we put back the blob into the bundle */
+                    if (hasBlob) {
+                        bundle.getPayloadBlock().data = blob;
+                    }
+
+                    if (error == null) {
+                        if (hasBlob) {
+                            /* the payload file now belongs to the storage */
+                            blob.disown();
+                        }
+                        bundle.tag("in_storage");
+                        s.onSuccess(meta);
+                    } else {
+                        s.onError(error);
+                    }
+                }
+        ).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Pull a bundle from a segment. This operation can take some time so it is done in a
+     * different thread and returns a Single RxJava object.
+     *
+     * @param id of the bundle
+     * @return Single completes with the bundle on success, throw an error otherwise
+     */
+    public Single<Bundle> get(BundleId id) {
+        if (!isEnabled()) {
+            return Single.error(new StorageUnavailableException());
+        }
+
+        return Single.<Bundle>create(s -> {
+            /*
+             * the channel is opened with the lock held so that a concurrent compaction cannot
+             * delete the segment in between. The record stays readable even if the segment is
+             * deleted afterward.
+             */
+            FileChannel in;
+            long start;
+            long end;
+            synchronized (lock) {
+                Storage.IndexEntry entry = metaStorage.index.get(id);
+                if (entry == null || !entry.isPersistent || entry.segment == null) {
+                    s.onError(new BundleNotFoundException(id));
+                    return;
+                }
+                try {
+                    in = new FileInputStream(entry.segment.file).getChannel();
+                } catch (IOException io) {
+                    s.onError(new StorageFailedException("can't read segment in storage: "
+                            + entry.segment.file.getAbsolutePath()));
+                    return;
+                }
+                start = entry.recordOffset + RECORD_HEADER_SIZE;
+                end = start + entry.recordLength;
+            }
+
+            /* preparing parser */
+            CborParser parser = CBOR.parser()
+                    .cbor_open_array(2)
+                    .cbor_parse_custom_item(
+                            SimpleStorage.FileHeaderItem::new,
+                            (p, t, item) -> p.setReg(0, item))
+                    .cbor_parse_custom_item(
+                            () -> new BundleV7Item(
+                                    core.getLogger(),
+                                    core.getExtensionManager(),
+                                    metaStorage.getBlobFactory()),
+                            (p, t, item) -> {
+                                if (p.<SimpleStorage.FileHeaderItem>getReg(0).hasBlob) {
+                                    String path = p.<SimpleStorage.FileHeaderItem>getReg(0)
+                                            .blobPath;
+                                    try {
+                                        /* the storage owns the payload file */
+                                        item.bundle.getPayloadBlock().data
+                                                = new FileBlob(path).disown();
+                                    } catch (IOException io) {
+                                        throw new RxParserException("can't retrieve payload blob");
+                                    }
+                                }
+                                item.bundle.tag("in_storage");
+                                p.setReg(1, item.bundle); // ret value
+                            });
+
+            /* extracting bundle from the record */
+            ByteBuffer buffer = BufferPool.HEAP.acquire(2048);
+            try {
+                long position = start;
+                boolean done = false;
+                while (!done && position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = in.read(buffer, position);
+                    if (read <= 0) {
+                        break;
+                    }
+                    position += read;
+                    buffer.flip();
+                    done = parser.read(buffer);
+                }
+                in.close();
+            } catch (RxParserException | IOException rpe) {
+                try {
+                    in.close();
+                } catch (IOException io) {
+                    /* ignore */
+                }
+                s.onError(rpe);
+                return;
+            } finally {
+                BufferPool.HEAP.release(buffer);
+            }
+
+            Bundle ret = parser.getReg(1);
+            parser.reset();
+
+            if (ret != null) {
+                /* call block specific routine when bundle is pulled from storage */
+                try {
+                    for (CanonicalBlock block : ret.getBlocks()) {
+                        try {
+                            core.getExtensionManager().getBlockProcessorFactory().create(block.type)
+                                    .onPullFromStorage(block, ret, core.getLogger());
+                        } catch (BlockProcessorFactory.ProcessorNotFoundException pe) {
+                            /* ignore */
+                        }
+                    }
+                    s.onSuccess(ret);
+                } catch (ProcessingException e) {
+                    s.onError(e);
+                }
+            } else {
+                s.onError(new StorageFailedException("can't retrieve bundle from segment"));
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Remove a bundle from SegmentedStorage. Removing implies marking the record as dead,
+     * deleting the payload blob (if any) and updating the entry in Storage. If the entry has no
+     * volatile copy, it deletes the entry from the index. The space used by the record is
+     * reclaimed later by the compaction.
+     *
+     * @param id of the bundle to delete
+     * @return Completable
+     */
+    public Completable remove(BundleId id) {
+        if (!isEnabled()) {
+            return Completable.error(StorageUnavailableException::new);
+        }
+
+        return Completable.create(s -> {
+            String error = "";
+            Storage.IndexEntry entry;
+            synchronized (lock) {
+                entry = metaStorage.index.get(id);
+                if (entry == null || !entry.isPersistent || entry.segment == null) {
+                    s.onError(new BundleNotFoundException());
+                    return;
+                }
+
+                Segment segment = entry.segment;
+                core.getLogger().v(TAG, () -> "deleting " + id.getBidString()
+                        + " record from segment: "
+                        + segment.file.getAbsolutePath());
+                try {
+                    markRecord(segment, entry.recordOffset, RECORD_DEAD);
+                } catch (IOException io) {
+                    error += "can't mark record as deleted";
+                }
+                segment.records.remove(id);
+                segment.liveBytes -= RECORD_HEADER_SIZE + entry.recordLength;
+                if (segment.sealed && segment.isUnused()) {
+                    deleteSegment(segment);
+                }
+
+                if (entry.hasBlob) {
+                    File fblob = new File(entry.blobPath);
+                    core.getLogger().v(TAG, () -> "deleting  " + id.getBidString()
+                            + " blob file: "
+                            + fblob.getAbsolutePath());
+                    if (fblob.exists() && !fblob.canWrite()) {
+                        error += "can't access payload blob file for deletion";
+                    } else {
+                        fblob.delete();
+                    }
+                }
+                entry.segment = null;
+                entry.recordOffset = 0;
+                entry.recordLength = 0;
+                entry.hasBlob = false;
+                entry.bundlePath = "";
+                entry.blobPath = "";
+                entry.setPersistent(false);
+
+                if (!entry.isVolatile) {
+                    metaStorage.removeEntry(id, entry);
+                }
+            }
+
+            compact();
+
+            if (error.length() > 0) {
+                s.onError(new Throwable(error));
+            } else {
+                s.onComplete();
+            }
+        });
+    }
+
+    /**
+     * Clear the entire SegmentedStorage. Delete all the records and related blob (if any) and
+     * clear the index.
+     *
+     * @return completable that completes once the database is wiped.
+     */
+    public Completable clear() {
+        if (!isEnabled()) {
+            return Completable.error(new StorageUnavailableException());
+        }
+
+        return Observable.fromIterable(metaStorage.index.keySet())
+                .flatMapCompletable(metaStorage::remove)
+                .onErrorComplete();
+    }
+
+    /**
+     * Schedule a background compaction of every sealed segment whose live ratio is below the
+     * configured threshold. Only one compaction runs at a time.
+     */
+    void compact() {
+        if (!isEnabled() || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        Schedulers.io().scheduleDirect(() -> {
+            try {
+                int threshold = core.getConf()
+                        .<Integer>get(SEGMENTED_STORAGE_COMPACTION_THRESHOLD).value();
+                LinkedList<Segment> candidates = new LinkedList<>();
+                synchronized (lock) {
+                    for (Segment segment : segments) {
+                        if (segment.sealed && segment.liveRatio() < threshold) {
+                            candidates.add(segment);
+                        }
+                    }
+                }
+                for (Segment segment : candidates) {
+                    compactSegment(segment);
+                }
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    private void compactSegment(Segment segment) {
+        core.getLogger().i(TAG, () -> "compacting segment " + segment.file.getAbsolutePath()
+                + " live=" + segment.liveRatio() + "%");
+
+        LinkedList<BundleId> bids;
+        synchronized (lock) {
+            bids = new LinkedList<>(segment.records);
+        }
+
+        /* records are moved one by one so that stores and reads are not blocked for long */
+        for (BundleId bid : bids) {
+            if (!moveRecord(segment, bid)) {
+                return;
+            }
+        }
+
+        /* every relocated record was forced in its new segment before the segment is deleted */
+        synchronized (lock) {
+            if (segments.contains(segment) && segment.isUnused()) {
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    /**
+     * Move the record of a bundle out of a segment being compacted. A record that was removed
+     * or already moved in the meantime is skipped.
+     *
+     * @param segment being compacted
+     * @param bid     of the bundle to move
+     * @return false if the compaction must be aborted, true otherwise
+     */
+    boolean moveRecord(Segment segment, BundleId bid) {
+        synchronized (lock) {
+            Storage.IndexEntry entry = metaStorage.index.get(bid);
+            if (entry == null || entry.segment != segment) {
+                return true;
+            }
+            try {
+                relocate(entry);
+                return true;
+            } catch (IOException | StorageFullException e) {
+                core.getLogger().w(TAG, () -> "compaction of segment "
+                        + segment.file.getAbsolutePath() + " aborted: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Copy a live record at the end of the active segment and update its index entry. The copy
+     * is forced to the storage device before the original record is marked dead, so that a
+     * crash or an aborted compaction leaves exactly one live copy on disk. Must be
+     * called with lock held.
+     *
+     * @param entry index entry of the record to move
+     * @throws IOException          if the record could not be copied
+     * @throws StorageFullException if no segment is available
+     */
+    private void relocate(Storage.IndexEntry entry) throws IOException, StorageFullException {
+        Segment from = entry.segment;
+        Segment to = activeSegment();
+        long recordSize = RECORD_HEADER_SIZE + entry.recordLength;
+        long start = to.size;
+
+        to.channel.position(start);
+        long transferred = 0;
+        while (transferred < recordSize) {
+            long n = from.channel.transferTo(
+                    entry.recordOffset + transferred,
+                    recordSize - transferred,
+                    to.channel);
+            if (n <= 0) {
+                to.channel.truncate(start);
+                throw new IOException("short transfer");
+            }
+            transferred += n;
+        }
+
+        to.size = start + recordSize;
+        try {
+            to.sync(to.recordWritten());
+        } catch (IOException io) {
+            to.size = start;
+            to.channel.truncate(start);
+            throw io;
+        }
+        markRecord(from, entry.recordOffset, RECORD_DEAD);
+
+        to.liveBytes += recordSize;
+        to.records.add(entry.bundle.bid);
+        from.records.remove(entry.bundle.bid);
+        from.liveBytes -= recordSize;
+
+        entry.segment = to;
+        entry.recordOffset = start;
+        entry.bundlePath = to.file.getAbsolutePath();
+    }
+}
@@ -3,15 +3,23 @@ package io.left.rightmesh.libdtn.core.storage;
 import static io.left.rightmesh.libdtn.common.utils.FileUtil.createFile;
 import static io.left.rightmesh.libdtn.common.utils.FileUtil.createNewFile;
 import static io.left.rightmesh.libdtn.common.utils.FileUtil.spaceLeft;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_CHECKPOINT_INTERVAL;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_DURABILITY;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_FILE_REGION_THRESHOLD;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_DELAY;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_GROUP_COMMIT_SIZE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_INDEXING_PARALLELISM;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_MMAP_CACHE_SIZE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_MMAP_READ;
 
 import io.left.rightmesh.libcbor.CBOR;
-import io.left.rightmesh.libcbor.CborEncoder;
 import io.left.rightmesh.libcbor.CborParser;
 import io.left.rightmesh.libcbor.rxparser.RxParserException;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.BundleId;
 import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 import io.left.rightmesh.libdtn.common.data.MetaBundle;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.left.rightmesh.libdtn.common.data.blob.Blob;
 import io.left.rightmesh.libdtn.common.data.blob.FileBlob;
 import io.left.rightmesh.libdtn.common.data.blob.NullBlob;
@@ -20,36 +28,46 @@ import io.left.rightmesh.libdtn.common.data.bundlev7.parser.PrimaryBlockItem;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.CborSize;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.PrimaryBlockSerializer;
+import io.left.rightmesh.libdtn.common.utils.BufferPool;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.core.CoreComponent;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.api.StorageApi.BundleAlreadyExistsException;
 import io.left.rightmesh.libdtn.core.api.StorageApi.BundleNotFoundException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.Durability;
 import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFailedException;
 import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFullException;
 import io.left.rightmesh.libdtn.core.api.StorageApi.StorageUnavailableException;
-import io.left.rightmesh.libdtn.core.events.BundleIndexed;
+import io.left.rightmesh.libdtn.core.events.BundleIndexedBatch;
 import io.left.rightmesh.librxbus.RxBus;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.observers.DisposableObserver;
 import io.reactivex.schedulers.Schedulers;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SimpleStorage stores bundle in files but keep an index in memory of all the bundles in storage.
@@ -68,6 +86,14 @@ import java.util.concurrent.atomic.AtomicLong;
  * StorageApi priority follows the list order</li>
  * </ul>
  *
+ * <p>In order to avoid parsing every bundle file at startup, the index of each storage path is
+ * periodically saved into an {@link IndexCheckpoint}. Every bundle file added or deleted is
+ * journaled and a new snapshot is written once the journal holds SIMPLE_STORAGE_CHECKPOINT_INTERVAL
+ * entries. A bundle file is only journaled once it is durable, and is only parsed at startup if
+ * it is not in the checkpoint, if its length differs from its record or if it was modified after
+ * its record was written. When several paths must be indexed, they are indexed in parallel by
+ * up to SIMPLE_STORAGE_INDEXING_PARALLELISM threads.
+ *
  * @author Lucien Loiseau on 20/09/18.
  */
 public class SimpleStorage extends CoreComponent {
@@ -77,6 +103,7 @@ public class SimpleStorage extends CoreComponent {
     private static final String TMP_FOLDER = File.separator + "tmp" + File.separator;
     private static final String BLOB_FOLDER = File.separator + "blob" + File.separator;
     private static final String BUNDLE_FOLDER = File.separator + "bundle" + File.separator;
+    private static final int INDEXING_CHUNK_SIZE = 256;
 
     private Storage metaStorage;
     private CoreApi core;
@@ -100,47 +127,75 @@ public class SimpleStorage extends CoreComponent {
                         updated_paths -> {
                             /* remove obsolete path */
                             LinkedList<String> pathsToRemove = new LinkedList<>();
-                            storagePaths.stream()
-                                    .filter(p -> !updated_paths.contains(p))
-                                    .map(pathsToRemove::add)
-                                    .count();
-                            pathsToRemove.stream().map(this::removePath).count();
+                            for (String path : storagePaths) {
+                                if (!updated_paths.contains(path)) {
+                                    pathsToRemove.add(path);
+                                }
+                            }
+                            for (String path : pathsToRemove) {
+                                removePath(path);
+                            }
 
                             /* add new path */
                             LinkedList<String> pathsToAdd = new LinkedList<>();
-                            updated_paths.stream()
-                                    .filter(p -> !storagePaths.contains(p))
-                                    .map(pathsToAdd::add)
-                                    .count();
-                            pathsToAdd.stream().map(this::addPath).count();
+                            for (String path : updated_paths) {
+                                if (!storagePaths.contains(path)) {
+                                    pathsToAdd.add(path);
+                                }
+                            }
+                            addPaths(pathsToAdd);
                         });
     }
 
     @Override
     protected void componentUp() {
+        mappedFiles = new MappedFileCache(
+                core.getConf().<Long>get(SIMPLE_STORAGE_MMAP_CACHE_SIZE).value());
+        groupCommit = new GroupCommit(
+                core.getConf().<Integer>get(SIMPLE_STORAGE_GROUP_COMMIT_SIZE).value(),
+                core.getConf().<Integer>get(SIMPLE_STORAGE_GROUP_COMMIT_DELAY).value());
     }
 
     @Override
     protected void componentDown() {
+        if (groupCommit != null) {
+            groupCommit.flush();
+        }
+        storagePaths.forEach(this::checkpoint);
+        if (mappedFiles != null) {
+            mappedFiles.clear();
+        }
     }
 
     private LinkedList<String> storagePaths = new LinkedList<>();
+    private GroupCommit groupCommit;
+    private MappedFileCache mappedFiles;
+    private Map<String, IndexCheckpoint> checkpoints = new ConcurrentHashMap<>();
+    private AtomicBoolean checkpointing = new AtomicBoolean(false);
 
     /**
-     * Count the number of Persistent Bundle in Storage. This method iterates over the entire index.
+     * Count the number of Persistent Bundle in SimpleStorage.
      *
      * @return number of Persistent bundle in storage
      */
     public int count() {
-        return (int) metaStorage.index.values().stream().filter(e -> e.isPersistent).count();
+        return metaStorage.countPersistent() - metaStorage.getSegmentedStorage().count();
     }
 
     private boolean removePath(String path) {
         if (storagePaths.contains(path)) {
+            checkpoint(path);
+            IndexCheckpoint checkpoint = checkpoints.remove(path);
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
             metaStorage.index.forEach(
                     (bid, entry) -> {
-                        if (entry.isPersistent && entry.bundlePath.startsWith(path)) {
-                            entry.isPersistent = false;
+                        if (entry.isPersistent
+                                && entry.segment == null
+                                && entry.bundlePath.startsWith(path)) {
+                            invalidateMapping(entry.bundlePath);
+                            entry.setPersistent(false);
                             if (!entry.isVolatile) {
                                 metaStorage.removeEntry(bid, entry);
                             }
@@ -152,7 +207,7 @@ public class SimpleStorage extends CoreComponent {
         return false;
     }
 
-    private boolean addPath(String path) {
+    private boolean preparePath(String path) {
         if (!storagePaths.contains(path)) {
             File f = new File(path);
             if (f.exists() && f.canRead() && f.canWrite()) {
@@ -168,73 +223,360 @@ public class SimpleStorage extends CoreComponent {
                 if (!fbundle.exists() && !fbundle.mkdir()) {
                     return false;
                 }
-                indexBundlesFromPath(fbundle);
-                storagePaths.add(path);
                 return true;
             }
         }
         return false;
     }
 
-    private void indexBundlesFromPath(File folder) {
-        if (!isEnabled()) {
+    /**
+     * Add new storage paths and index the bundles they contain. Every path is indexed in
+     * parallel using a bounded {@link ForkJoinPool}, the bundle folder of each path being further
+     * split into chunks of {@link #INDEXING_CHUNK_SIZE} files.
+     *
+     * @param paths to add
+     */
+    private void addPaths(Collection<String> paths) {
+        LinkedList<String> pathsToIndex = new LinkedList<>();
+        for (String path : paths) {
+            if (preparePath(path)) {
+                pathsToIndex.add(path);
+            }
+        }
+        if (pathsToIndex.isEmpty()) {
             return;
         }
 
-        for (final File file : folder.listFiles()) {
-            /*
-             * preparing the parser. We just parse the file header and the primary block of
-             * the bundle and then build a MetaBundle that will be use for processing
-             */
-            BundleV7Item bundleParser = new BundleV7Item(
-                    core.getLogger(),
-                    core.getExtensionManager(),
-                    null);
-            CborParser parser = CBOR.parser()
-                    .cbor_open_array(2)
-                    .cbor_parse_custom_item(
-                            FileHeaderItem::new,
-                            (p, t, item) -> {
-                                p.setReg(0, item);
-                            })
-                    .cbor_open_array((p, t, s) -> {
-                    }) /* we are just parsing the primary block */
-                    .cbor_parse_custom_item(
-                            () -> new PrimaryBlockItem(
-                                    core.getExtensionManager().getEidFactory(),
-                                    core.getLogger()),
-                            (p, t, item) -> {
-                                MetaBundle meta = new MetaBundle(item.bundle);
-                                Storage.IndexEntry entry
-                                        = metaStorage.getEntryOrCreate(meta.bid, meta);
-                                entry.bundlePath = file.getAbsolutePath();
-                                entry.hasBlob = p.<FileHeaderItem>getReg(0).hasBlob;
-                                entry.blobPath = p.<FileHeaderItem>getReg(0).blobPath;
-                                entry.isPersistent = true;
-                                RxBus.post(new BundleIndexed(meta));
-                            });
-
-            ByteBuffer buffer = ByteBuffer.allocate(500);
-            FileChannel in;
+        if (isEnabled()) {
+            int parallelism = Math.max(1, core.getConf()
+                    .<Integer>get(SIMPLE_STORAGE_INDEXING_PARALLELISM).value());
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
             try {
-                in = new FileInputStream(file).getChannel();
-            } catch (FileNotFoundException fnfe) {
-                continue; /* cannot happen */
+                LinkedList<IndexPathTask> tasks = new LinkedList<>();
+                for (String path : pathsToIndex) {
+                    tasks.add(new IndexPathTask(path));
+                }
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } finally {
+                pool.shutdown();
             }
+        }
 
-            /* extracting meta */
-            boolean done = false;
-            try {
-                while ((in.read(buffer) > 0) && !done) {
-                    buffer.flip();
-                    done = parser.read(buffer);
-                    buffer.clear();
+        for (String path : pathsToIndex) {
+            storagePaths.add(path);
+            checkpoint(path);
+        }
+    }
+
+    /**
+     * IndexPathTask indexes all the bundles of a storage path.
+     */
+    private class IndexPathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final String path;
+        IndexCheckpoint checkpoint;
+        Map<String, IndexCheckpoint.Record> records;
+        File[] files;
+        AtomicInteger fromCheckpoint = new AtomicInteger(0);
+        AtomicInteger fromFile = new AtomicInteger(0);
+
+        IndexPathTask(String path) {
+            this.path = path;
+        }
+
+        int indexed() {
+            return fromCheckpoint.get() + fromFile.get();
+        }
+
+        @Override
+        protected void compute() {
+            checkpoint = new IndexCheckpoint(new File(path));
+            checkpoints.put(path, checkpoint);
+            records = checkpoint.load();
+            files = new File(path + BUNDLE_FOLDER).listFiles();
+            if (files == null) {
+                return;
+            }
+
+            core.getLogger().i(TAG, () -> "indexing " + path + ": " + files.length + " files");
+            new IndexChunkTask(this, 0, files.length).invoke();
+            core.getLogger().i(TAG, () -> "indexed " + path + ": " + fromCheckpoint.get()
+                    + " bundles from checkpoint, " + fromFile.get() + " bundle files parsed");
+        }
+    }
+
+    /**
+     * IndexChunkTask indexes a chunk of the bundle folder of a storage path. Chunks larger than
+     * {@link #INDEXING_CHUNK_SIZE} are split in two. Every bundle indexed by a chunk is notified
+     * in a single {@link BundleIndexedBatch} event.
+     */
+    private class IndexChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final IndexPathTask task;
+        final int from;
+        final int to;
+
+        IndexChunkTask(IndexPathTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > INDEXING_CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new IndexChunkTask(task, from, middle),
+                        new IndexChunkTask(task, middle, to));
+                return;
+            }
+
+            LinkedList<Bundle> batch = new LinkedList<>();
+            for (int i = from; i < to; i++) {
+                File file = task.files[i];
+                IndexCheckpoint.Record record = task.records.get(file.getName());
+                MetaBundle meta = null;
+                if (record != null && record.matches(file)) {
+                    meta = indexBundleFromRecord(file, record);
+                }
+                if (meta != null) {
+                    task.fromCheckpoint.incrementAndGet();
+                } else {
+                    meta = indexBundleFromFile(file);
+                    task.fromFile.incrementAndGet();
+                }
+                if (meta != null) {
+                    batch.add(meta);
                 }
+            }
+
+            if (!batch.isEmpty()) {
+                RxBus.post(new BundleIndexedBatch(batch));
+            }
+            core.getLogger().v(TAG, () -> "indexing " + task.path + ": "
+                    + task.indexed() + "/" + task.files.length);
+        }
+    }
+
+    private MetaBundle indexBundleFromRecord(File file, IndexCheckpoint.Record record) {
+        AtomicReference<MetaBundle> ret = new AtomicReference<>();
+        CborParser parser = CBOR.parser()
+                .cbor_parse_custom_item(
+                        () -> new PrimaryBlockItem(
+                                core.getExtensionManager().getEidFactory(),
+                                core.getLogger()),
+                        (p, t, item) -> ret.set(new MetaBundle(item.bundle)));
+
+        try {
+            parser.read(ByteBuffer.wrap(record.primaryBlock));
+        } catch (RxParserException rpe) {
+            return null;
+        }
+
+        MetaBundle meta = ret.get();
+        if (meta == null) {
+            return null;
+        }
+
+        Storage.IndexEntry entry = metaStorage.getEntryOrCreate(meta.bid, meta);
+        entry.bundlePath = file.getAbsolutePath();
+        entry.hasBlob = record.hasBlob;
+        entry.blobPath = record.blobPath;
+        entry.setPersistent(true);
+        return meta;
+    }
+
+    private MetaBundle indexBundleFromFile(File file) {
+        /*
+         * preparing the parser. We just parse the file header and the primary block of
+         * the bundle and then build a MetaBundle that will be use for processing
+         */
+        CborParser parser = CBOR.parser()
+                .cbor_open_array(2)
+                .cbor_parse_custom_item(
+                        FileHeaderItem::new,
+                        (p, t, item) -> {
+                            p.setReg(0, item);
+                        })
+                .cbor_open_array((p, t, s) -> {
+                }) /* we are just parsing the primary block */
+                .cbor_parse_custom_item(
+                        () -> new PrimaryBlockItem(
+                                core.getExtensionManager().getEidFactory(),
+                                core.getLogger()),
+                        (p, t, item) -> {
+                            MetaBundle meta = new MetaBundle(item.bundle);
+                            Storage.IndexEntry entry
+                                    = metaStorage.getEntryOrCreate(meta.bid, meta);
+                            entry.bundlePath = file.getAbsolutePath();
+                            entry.hasBlob = p.<FileHeaderItem>getReg(0).hasBlob;
+                            entry.blobPath = p.<FileHeaderItem>getReg(0).blobPath;
+                            entry.setPersistent(true);
+                            p.setReg(1, meta);
+                        });
+
+        FileChannel in;
+        try {
+            in = new FileInputStream(file).getChannel();
+        } catch (FileNotFoundException fnfe) {
+            return null; /* cannot happen */
+        }
+
+        /* extracting meta */
+        ByteBuffer buffer = BufferPool.HEAP.acquire(500);
+        boolean done = false;
+        try {
+            while ((in.read(buffer) > 0) && !done) {
+                buffer.flip();
+                done = parser.read(buffer);
+                buffer.clear();
+            }
+            in.close();
+        } catch (RxParserException | IOException rpe) {
+            try {
                 in.close();
-            } catch (RxParserException | IOException rpe) {
-                continue;
+            } catch (IOException io) {
+                /* ignore */
+            }
+            return null;
+        } finally {
+            BufferPool.HEAP.release(buffer);
+        }
+        return parser.getReg(1);
+    }
+
+    private static byte[] encodePrimaryBlock(PrimaryBlock block) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrimaryBlockSerializer.encode(block).observe().subscribe(
+                buffer -> {
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer.get());
+                    }
+                });
+        return out.toByteArray();
+    }
+
+    private IndexCheckpoint checkpointOf(String bundlePath) {
+        for (Map.Entry<String, IndexCheckpoint> checkpoint : checkpoints.entrySet()) {
+            if (bundlePath.startsWith(checkpoint.getKey())) {
+                return checkpoint.getValue();
             }
         }
+        return null;
+    }
+
+    /**
+     * Write a new snapshot of the index of a storage path and reset its journal.
+     *
+     * @param path storage path
+     */
+    private void checkpoint(String path) {
+        IndexCheckpoint checkpoint = checkpoints.get(path);
+        if (checkpoint == null) {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        LinkedList<IndexCheckpoint.Record> records = new LinkedList<>();
+        metaStorage.index.forEach(
+                (bid, entry) -> {
+                    if (entry.isPersistent
+                            && entry.segment == null
+                            && entry.bundlePath.startsWith(path)) {
+                        File fbundle = new File(entry.bundlePath);
+                        records.add(new IndexCheckpoint.Record(
+                                fbundle.getName(),
+                                timestamp,
+                                fbundle.length(),
+                                entry.hasBlob,
+                                entry.blobPath,
+                                encodePrimaryBlock(entry.bundle)));
+                    }
+                });
+
+        try {
+            checkpoint.checkpoint(timestamp, records);
+            core.getLogger().v(TAG, () -> "index checkpoint for " + path + ": "
+                    + records.size() + " bundles");
+        } catch (IOException io) {
+            core.getLogger().w(TAG, () -> "index checkpoint for " + path + " failed: "
+                    + io.getMessage());
+        }
+    }
+
+    /**
+     * Schedule a checkpoint of a storage path if its journal is too big.
+     *
+     * @param bundlePath path of the bundle file that was journaled
+     */
+    private void checkpointIfNeeded(String bundlePath) {
+        IndexCheckpoint checkpoint = checkpointOf(bundlePath);
+        int interval = core.getConf().<Integer>get(SIMPLE_STORAGE_CHECKPOINT_INTERVAL).value();
+        if (checkpoint == null || checkpoint.journalSize() < interval) {
+            return;
+        }
+
+        if (checkpointing.compareAndSet(false, true)) {
+            Schedulers.io().scheduleDirect(() -> {
+                try {
+                    checkpoints.forEach((path, c) -> {
+                        if (c == checkpoint) {
+                            checkpoint(path);
+                        }
+                    });
+                } finally {
+                    checkpointing.set(false);
+                }
+            });
+        }
+    }
+
+    private void journalAdd(File fbundle, Bundle bundle, boolean hasBlob, String blobPath) {
+        IndexCheckpoint checkpoint = checkpointOf(fbundle.getAbsolutePath());
+        if (checkpoint == null) {
+            return;
+        }
+
+        try {
+            checkpoint.journalAdd(new IndexCheckpoint.Record(
+                    fbundle.getName(),
+                    System.currentTimeMillis(),
+                    fbundle.length(),
+                    hasBlob,
+                    blobPath,
+                    encodePrimaryBlock(bundle)));
+        } catch (IOException io) {
+            /* the bundle file will be parsed at next startup */
+        }
+        checkpointIfNeeded(fbundle.getAbsolutePath());
+    }
+
+    private void invalidateMapping(String bundlePath) {
+        MappedFileCache cache = mappedFiles;
+        if (cache != null) {
+            cache.invalidate(bundlePath);
+        }
+    }
+
+    private void journalDelete(String bundlePath) {
+        IndexCheckpoint checkpoint = checkpointOf(bundlePath);
+        if (checkpoint == null) {
+            return;
+        }
+
+        try {
+            checkpoint.journalDelete(new File(bundlePath).getName());
+        } catch (IOException io) {
+            /* the bundle file is gone anyway */
+        }
+        checkpointIfNeeded(bundlePath);
     }
 
     /**
@@ -303,14 +645,44 @@ public class SimpleStorage extends CoreComponent {
                             "bundle-" + safeBid + ".bundle",
                             path + BUNDLE_FOLDER);
                 } catch (IOException io) {
-                    System.out.println("IOException createNewFile: " + io.getMessage() + " : "
-                            + path + BUNDLE_FOLDER + "bid=" + bid.getBidString() + ".bundle");
+                    core.getLogger().w(TAG, () -> "IOException createNewFile: " + io.getMessage()
+                            + " : " + path + BUNDLE_FOLDER + "bid=" + bid.getBidString()
+                            + ".bundle");
                 }
             }
         }
         throw new StorageFullException();
     }
 
+    /**
+     * Make a bundle file durable according to the configured durability mode and close it.
+     *
+     * @param writer  that wrote the bundle file
+     * @param fbundle bundle file
+     * @return Completable that completes once the file is durable
+     */
+    private Completable durable(BundleFileWriter writer, File fbundle) {
+        FileChannel channel = writer.channel();
+        Durability durability = core.getConf().<Durability>get(SIMPLE_STORAGE_DURABILITY).value();
+        switch (durability) {
+            case GROUP_COMMIT:
+                return groupCommit.commit(channel,
+                        fbundle.getParentFile(),
+                        checkpointOf(fbundle.getAbsolutePath()));
+            case SYNC:
+                return Completable.fromAction(() -> {
+                    try {
+                        channel.force(false);
+                    } finally {
+                        channel.close();
+                    }
+                });
+            case NONE:
+            default:
+                return Completable.fromAction(channel::close);
+        }
+    }
+
     /**
      * store a bundle into persistent storage. This operation can take time so it is done in
      * a different thread and returns a Completable.
@@ -319,6 +691,19 @@ public class SimpleStorage extends CoreComponent {
      * @return Single of the MetaBundle
      */
     Single<Bundle> store(Bundle bundle) {
+        return store(bundle, null);
+    }
+
+    /**
+     * store a bundle into persistent storage only if its index entry is still the expected one
+     * once the bundle file is durable. Otherwise the bundle file is deleted and no entry is
+     * created.
+     *
+     * @param bundle   to store
+     * @param expected index entry of the bundle, null if the bundle may not be indexed yet
+     * @return Single of the MetaBundle
+     */
+    Single<Bundle> store(Bundle bundle, Storage.IndexEntry expected) {
         if (!isEnabled()) {
             return Single.error(new StorageUnavailableException());
         }
@@ -349,28 +734,30 @@ public class SimpleStorage extends CoreComponent {
                      * the bundle will be serialized in the file as a CBOR array containing
                      * two item, the file header and the bundle
                      */
-                    CborEncoder enc = CBOR.encoder()
+                    Flowable<ByteBuffer> record = CBOR.encoder()
                             .cbor_start_array(2)  /* File = {header , bundle} */
                             .cbor_start_array(2)  /* File Header = { boolean, String }*/
                             .cbor_encode_boolean(hasBlob)
                             .cbor_encode_text_string(blobPath)
-                            .merge(BundleV7Serializer.encode(bundle,
+                            .observe()
+                            .concatWith(BundleV7Serializer.observe(bundle,
                                     core.getExtensionManager().getBlockDataSerializerFactory()));
 
-                    /* assess file size */
-                    AtomicLong size = new AtomicLong();
-                    BundleV7Serializer.encode(bundle,
-                            core.getExtensionManager().getBlockDataSerializerFactory()).observe()
-                            .subscribe(
-                                    buffer -> size.set(size.get() + buffer.remaining()),
-                                    e -> size.set(-1),
-                                    () -> { /* ignore */ });
-
-                    /* create file */
+                    /*
+                     * create file. The size of the file is computed from the headers and the
+                     * size of the Blob, the space left is still checked as the file is written.
+                     */
+                    long expectedSize = 2 * CborSize.header(2)
+                            + 1 /* boolean */
+                            + CborSize.textString(blobPath)
+                            + BundleV7Serializer.encodedSize(bundle,
+                            core.getExtensionManager().getBlockDataSerializerFactory());
                     File fbundle;
+                    BundleFileWriter writer;
                     try {
-                        fbundle = createBundleFile(bundle.bid, size.get());
-                    } catch (StorageFullException sfe) {
+                        fbundle = createBundleFile(bundle.bid, expectedSize);
+                        writer = new BundleFileWriter(fbundle);
+                    } catch (StorageFullException | IOException e) {
                         if (hasBlob) {
                             bundle.getPayloadBlock().data = blob;
                         }
@@ -378,33 +765,34 @@ public class SimpleStorage extends CoreComponent {
                         return;
                     }
 
-                    /* actual serialization of the bundle */
-                    OutputStream out = new BufferedOutputStream(new FileOutputStream(fbundle));
-                    enc.observe().toObservable().subscribe(
+                    /* actual serialization of the bundle, in a single pass */
+                    record.toObservable().subscribe(
                             new DisposableObserver<ByteBuffer>() {
                                 @Override
                                 public void onNext(ByteBuffer buffer) {
                                     try {
-                                        while (buffer.hasRemaining()) {
-                                            out.write(buffer.get());
-                                        }
-                                    } catch (IOException io) {
+                                        writer.write(buffer);
+                                    } catch (IOException | StorageFullException e) {
                                         dispose();
-                                        closeSilently(out);
+                                        writer.abort();
                                         meta.tag("serialization_failed");
                                     }
                                 }
 
                                 @Override
                                 public void onError(Throwable t) {
-                                    fbundle.delete();
-                                    closeSilently(out);
+                                    writer.abort();
                                     meta.tag("serialization_failed");
                                 }
 
                                 @Override
                                 public void onComplete() {
-                                    closeSilently(out);
+                                    try {
+                                        writer.finish();
+                                    } catch (IOException | StorageFullException e) {
+                                        writer.abort();
+                                        meta.tag("serialization_failed");
+                                    }
                                 }
                             });
 
@@ -413,27 +801,83 @@ public class SimpleStorage extends CoreComponent {
                         bundle.getPayloadBlock().data = blob;
                     }
 
-                    if (!meta.isTagged("serialization_failed")) {
-                        final Storage.IndexEntry entry
-                                = metaStorage.getEntryOrCreate(meta.bid, meta);
-                        entry.isPersistent = true;
-                        entry.bundlePath = fbundle.getAbsolutePath();
-                        entry.hasBlob = hasBlob;
-                        entry.blobPath = blobPath;
-                        bundle.tag("in_storage");
-                        s.onSuccess(meta);
-                    } else {
+                    if (meta.isTagged("serialization_failed")) {
                         s.onError(new Throwable("bundle failed to serialize into file"));
+                        return;
                     }
+
+                    /* the bundle is only indexed once it is durable */
+                    final boolean fileHasBlob = hasBlob;
+                    final String fileBlobPath = blobPath;
+                    final Blob fileBlob = blob;
+                    durable(writer, fbundle).subscribe(
+                            () -> {
+                                if (!metaStorage.isIndexed(meta.bid, expected)) {
+                                    fbundle.delete();
+                                    s.onError(new BundleNotFoundException(meta.bid));
+                                    return;
+                                }
+                                final Storage.IndexEntry entry
+                                        = metaStorage.getEntryOrCreate(meta.bid, meta);
+                                entry.setPersistent(true);
+                                entry.bundlePath = fbundle.getAbsolutePath();
+                                entry.hasBlob = fileHasBlob;
+                                entry.blobPath = fileBlobPath;
+                                journalAdd(fbundle, meta, fileHasBlob, fileBlobPath);
+                                if (fileHasBlob) {
+                                    /* the payload file now belongs to the storage */
+                                    fileBlob.disown();
+                                }
+                                bundle.tag("in_storage");
+                                s.onSuccess(meta);
+                            },
+                            e -> {
+                                fbundle.delete();
+                                s.onError(new Throwable("bundle file could not be synced: "
+                                        + e.getMessage()));
+                            });
                 }
         ).subscribeOn(Schedulers.io());
     }
 
-    static void closeSilently(OutputStream s) {
+    /**
+     * Feed the content of a bundle file to a parser. The file is mapped into memory if the
+     * memory-mapped read path is enabled, otherwise it is read chunk by chunk.
+     *
+     * @param fbundle bundle file
+     * @param parser  to feed
+     * @param regions blob factory used by the parser, fed with the file offset of every buffer
+     * @throws IOException       if the file could not be read
+     * @throws RxParserException if the file could not be parsed
+     */
+    private void readBundleFile(File fbundle, CborParser parser, FileRegionBlobFactory regions)
+            throws IOException, RxParserException {
+        MappedFileCache cache = mappedFiles;
+        if (cache != null && core.getConf().<Boolean>get(SIMPLE_STORAGE_MMAP_READ).value()) {
+            ByteBuffer mapped = cache.map(fbundle);
+            if (mapped != null) {
+                regions.feed(mapped, 0);
+                parser.read(mapped);
+                return;
+            }
+        }
+
+        FileChannel in = new FileInputStream(fbundle).getChannel();
+        ByteBuffer buffer = BufferPool.HEAP.acquire(2048);
         try {
-            s.close();
-        } catch (IOException io) {
-            /* ignore */
+            long base = 0;
+            boolean done = false;
+            int read;
+            while (!done && (read = in.read(buffer)) > 0) { // read buffer from file
+                buffer.flip();
+                regions.feed(buffer, base);
+                done = parser.read(buffer);
+                buffer.clear();
+                base += read;
+            }
+        } finally {
+            BufferPool.HEAP.release(buffer);
+            in.close();
         }
     }
 
@@ -464,7 +908,11 @@ public class SimpleStorage extends CoreComponent {
                 return;
             }
 
-            /* preparing file and parser */
+            /* preparing file and parser, large blocks are left in the file */
+            FileRegionBlobFactory regions = new FileRegionBlobFactory(
+                    fbundle,
+                    metaStorage.getBlobFactory(),
+                    core.getConf().<Long>get(SIMPLE_STORAGE_FILE_REGION_THRESHOLD).value());
             CborParser parser = CBOR.parser()
                     .cbor_open_array(2)
                     .cbor_parse_custom_item(
@@ -474,12 +922,14 @@ public class SimpleStorage extends CoreComponent {
                             () -> new BundleV7Item(
                                     core.getLogger(),
                                     core.getExtensionManager(),
-                                    metaStorage.getBlobFactory()),
+                                    regions),
                             (p, t, item) -> {
                                 if (p.<FileHeaderItem>getReg(0).hasBlob) {
                                     String path = p.<FileHeaderItem>getReg(0).blobPath;
                                     try {
-                                        item.bundle.getPayloadBlock().data = new FileBlob(path);
+                                        /* the storage owns the payload file */
+                                        item.bundle.getPayloadBlock().data
+                                                = new FileBlob(path).disown();
                                     } catch (IOException io) {
                                         throw new RxParserException("can't retrieve payload blob");
                                     }
@@ -489,16 +939,8 @@ public class SimpleStorage extends CoreComponent {
                             });
 
             /* extracting bundle from file */
-            ByteBuffer buffer = ByteBuffer.allocate(2048);
-            FileChannel in = new FileInputStream(entry.bundlePath).getChannel();
             try {
-                boolean done = false;
-                while ((in.read(buffer) > 0) && !done) { // read buffer from file
-                    buffer.flip();
-                    done = parser.read(buffer);
-                    buffer.clear();
-                }
-                in.close();
+                readBundleFile(fbundle, parser, regions);
             } catch (RxParserException | IOException rpe) {
                 /* should not happen */
                 s.onError(rpe);
@@ -553,18 +995,21 @@ public class SimpleStorage extends CoreComponent {
             Storage.IndexEntry entry = metaStorage.index.get(id);
 
             File fbundle = new File(entry.bundlePath);
-            core.getLogger().v(TAG, "deleting " + id.getBidString()
+            core.getLogger().v(TAG, () -> "deleting " + id.getBidString()
                     + " bundle file: "
                     + fbundle.getAbsolutePath());
             if (fbundle.exists() && !fbundle.canWrite()) {
                 error += "can't access bundle file for deletion";
             } else {
+                invalidateMapping(entry.bundlePath);
+                /* a FileRegionBlob still being read keeps the file opened until it is released */
                 fbundle.delete();
+                journalDelete(entry.bundlePath);
             }
 
             if (entry.hasBlob) {
                 File fblob = new File(entry.blobPath);
-                core.getLogger().v(TAG, "deleting  " + id.getBidString()
+                core.getLogger().v(TAG, () -> "deleting  " + id.getBidString()
                         + " blob file: "
                         + fblob.getAbsolutePath());
                 if (fblob.exists() && !fblob.canWrite()) {
@@ -576,7 +1021,7 @@ public class SimpleStorage extends CoreComponent {
             entry.hasBlob = false;
             entry.bundlePath = "";
             entry.blobPath = "";
-            entry.isPersistent = false;
+            entry.setPersistent(false);
 
             if (!entry.isVolatile) {
                 metaStorage.removeEntry(id, entry);
@@ -606,7 +1051,7 @@ public class SimpleStorage extends CoreComponent {
                 .onErrorComplete();
     }
 
-    private static class FileHeaderItem implements CborParser.ParseableItem {
+    static class FileHeaderItem implements CborParser.ParseableItem {
 
         boolean hasBlob;
         String blobPath;
@@ -1,7 +1,10 @@
 package io.left.rightmesh.libdtn.core.storage;
 
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_EXPIRY_SCHEDULER;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SEGMENTED_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_BLOB_SIZE_THRESHOLD;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY;
 
 import io.left.rightmesh.libdtn.common.data.Bundle;
@@ -11,24 +14,42 @@ import io.left.rightmesh.libdtn.common.data.blob.BaseBlobFactory;
 import io.left.rightmesh.libdtn.common.data.blob.Blob;
 import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
 import io.left.rightmesh.libdtn.common.data.blob.NullBlob;
+import io.left.rightmesh.libdtn.common.data.blob.VolatileMemory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.ProcessingException;
+import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.core.CoreComponent;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.api.StorageApi;
+import io.left.rightmesh.libdtn.core.utils.ClockUtil;
+import io.left.rightmesh.libdtn.core.utils.TimerWheel;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Storage class implements StorageAPI and provides both volatile and peristent storage operation
  * based on the node configuration.
  *
+ * <p>Besides the main index keyed by BundleId, Storage maintains secondary indexes by
+ * destination, by source, by expiry time and by volatile/persistent state so that a query only
+ * costs the size of its result. The secondary indexes are updated whenever an entry is added or
+ * removed and whenever its volatile or persistent state changes through
+ * {@link IndexEntry#setVolatile(boolean)} and {@link IndexEntry#setPersistent(boolean)}.
+ *
+ * <p>Every entry is also scheduled in the {@link ExpiryScheduler} so that bundles are expired
+ * as soon as their lifetime is over.
+ *
  * @author Lucien Loiseau on 29/09/18.
  */
 public class Storage extends CoreComponent implements StorageApi {
@@ -39,6 +60,7 @@ public class Storage extends CoreComponent implements StorageApi {
         CoreBlobFactory() {
             enableVolatile(conf.<Integer>get(VOLATILE_BLOB_STORAGE_MAX_CAPACITY).value());
             enablePersistent("");
+            getVolatileMemory().setLogger(logger);
         }
 
         @Override
@@ -46,14 +68,34 @@ public class Storage extends CoreComponent implements StorageApi {
             return conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).value();
         }
 
+        @Override
+        public long getVolatileThreshold() {
+            return conf.<Long>get(VOLATILE_BLOB_SIZE_THRESHOLD).value();
+        }
+
         @Override
         public boolean isPersistentEnabled() {
-            return conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).value();
+            return conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).value()
+                    || conf.<Boolean>get(COMPONENT_ENABLE_SEGMENTED_STORAGE).value();
+        }
+
+        @Override
+        public Blob createVolatileBlob(long expectedSize) throws BlobFactoryException {
+            try {
+                return super.createVolatileBlob(expectedSize);
+            } catch (BlobFactoryException bfe) {
+                /* volatile memory is exhausted, make room for the next ones */
+                volatileStorage.spillIfNeeded();
+                throw bfe;
+            }
         }
 
         @Override
-        public Blob createFileBlob(int expectedSize) throws BlobFactoryException {
+        public Blob createFileBlob(long expectedSize) throws BlobFactoryException {
             try {
+                if (segmentedStorage.isEnabled()) {
+                    return segmentedStorage.createBlob(expectedSize);
+                }
                 return simpleStorage.createBlob(expectedSize);
             } catch (StorageApi.StorageException se) {
                 throw new BlobFactoryException();
@@ -65,26 +107,72 @@ public class Storage extends CoreComponent implements StorageApi {
     private CoreApi core;
     private VolatileStorage volatileStorage;
     private SimpleStorage simpleStorage;
+    private SegmentedStorage segmentedStorage;
+    private ExpiryScheduler expiryScheduler;
     private CoreBlobFactory blobFactory;
     private BlockProcessorFactory processorFactory;
     private Log logger;
 
     class IndexEntry {
+        final BundleId bid;
+        final long expiry;
         Bundle bundle;      /* either a bundle or a metabundle */
+        volatile long lastAccess; /* last time the volatile copy was stored or pulled */
+        volatile TimerWheel.Timeout expiryTimeout; /* expiry scheduled in ExpiryScheduler */
 
         IndexEntry(Bundle bundle) {
+            this.bid = bundle.bid;
             this.bundle = bundle;
+            this.expiry = ClockUtil.getExpiryTime(
+                    bundle.getCreationTimestamp(),
+                    bundle.getLifetime());
         }
 
         boolean isVolatile = false;
         boolean isPersistent = false;
+
+        void touch() {
+            lastAccess = ClockUtil.getCurrentTime();
+        }
+
+        void setVolatile(boolean value) {
+            isVolatile = value;
+            if (value) {
+                touch();
+                volatileIndex.add(bid);
+            } else {
+                volatileIndex.remove(bid);
+            }
+        }
+
+        void setPersistent(boolean value) {
+            isPersistent = value;
+            if (value) {
+                persistentIndex.add(bid);
+            } else {
+                persistentIndex.remove(bid);
+            }
+        }
+
         String bundlePath; /* path to persistent bundle */
         boolean hasBlob;   /* true if payload is also a file */
         String blobPath;   /* path to the payload */
+
+        SegmentedStorage.Segment segment; /* segment holding the bundle, if any */
+        long recordOffset; /* offset of the record within the segment */
+        long recordLength; /* length of the record content */
     }
 
     Map<BundleId, IndexEntry> index = new ConcurrentHashMap<>();
 
+    /* secondary indexes */
+    private Map<String, Set<BundleId>> destinationIndex = new ConcurrentHashMap<>();
+    private Map<String, Set<BundleId>> sourceIndex = new ConcurrentHashMap<>();
+    private ConcurrentSkipListMap<Long, Set<BundleId>> expiryIndex
+            = new ConcurrentSkipListMap<>();
+    private Set<BundleId> volatileIndex = ConcurrentHashMap.newKeySet();
+    private Set<BundleId> persistentIndex = ConcurrentHashMap.newKeySet();
+
     /**
      * Constructor.
      *
@@ -97,6 +185,8 @@ public class Storage extends CoreComponent implements StorageApi {
         this.processorFactory = core.getExtensionManager().getBlockProcessorFactory();
         volatileStorage = new VolatileStorage(this, core);
         simpleStorage = new SimpleStorage(this, core);
+        segmentedStorage = new SegmentedStorage(this, core);
+        expiryScheduler = new ExpiryScheduler(this, core);
         blobFactory = new CoreBlobFactory();
     }
 
@@ -112,6 +202,10 @@ public class Storage extends CoreComponent implements StorageApi {
                 .initComponent(core.getConf(), COMPONENT_ENABLE_VOLATILE_STORAGE, core.getLogger());
         simpleStorage
                 .initComponent(core.getConf(), COMPONENT_ENABLE_SIMPLE_STORAGE, core.getLogger());
+        segmentedStorage
+                .initComponent(core.getConf(), COMPONENT_ENABLE_SEGMENTED_STORAGE, core.getLogger());
+        expiryScheduler
+                .initComponent(core.getConf(), COMPONENT_ENABLE_EXPIRY_SCHEDULER, core.getLogger());
     }
 
     @Override
@@ -138,26 +232,109 @@ public class Storage extends CoreComponent implements StorageApi {
         return simpleStorage;
     }
 
+    public SegmentedStorage getSegmentedStorage() {
+        return segmentedStorage;
+    }
+
+    public ExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    /**
+     * Get the memory tracker of the volatile Blob.
+     *
+     * @return VolatileMemory, null if volatile blob are disabled
+     */
+    VolatileMemory getVolatileMemory() {
+        return blobFactory.getVolatileMemory();
+    }
+
+    /**
+     * check if any persistent storage is enabled.
+     *
+     * @return true if SimpleStorage or SegmentedStorage is enabled, false otherwise
+     */
+    boolean isPersistentEnabled() {
+        return simpleStorage.isEnabled() || segmentedStorage.isEnabled();
+    }
+
+    private static <K> void addToIndex(Map<K, Set<BundleId>> secondary, K key, BundleId bid) {
+        secondary.compute(key, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(bid);
+            return set;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<BundleId>> secondary,
+                                            K key,
+                                            BundleId bid) {
+        secondary.computeIfPresent(key, (k, set) -> {
+            set.remove(bid);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static Observable<BundleId> fromIndex(Collection<BundleId> set) {
+        if (set == null) {
+            return Observable.empty();
+        }
+        return Observable.fromIterable(new HashSet<>(set));
+    }
+
     IndexEntry addEntry(BundleId bid, Bundle bundle) {
         IndexEntry entry = new IndexEntry(bundle);
-        index.put(bid, entry);
-        bundle.tag("in_storage");
+        IndexEntry old = index.put(bid, entry);
+        if (old != null) {
+            unindex(old);
+        }
+        index(entry);
         return entry;
     }
 
+    private void index(IndexEntry entry) {
+        addToIndex(destinationIndex, entry.bundle.getDestination().getEidString(), entry.bid);
+        addToIndex(sourceIndex, entry.bundle.getSource().getEidString(), entry.bid);
+        addToIndex(expiryIndex, entry.expiry, entry.bid);
+        expiryScheduler.schedule(entry);
+        entry.bundle.tag("in_storage");
+    }
+
+    private void unindex(IndexEntry entry) {
+        removeFromIndex(destinationIndex, entry.bundle.getDestination().getEidString(), entry.bid);
+        removeFromIndex(sourceIndex, entry.bundle.getSource().getEidString(), entry.bid);
+        removeFromIndex(expiryIndex, entry.expiry, entry.bid);
+        volatileIndex.remove(entry.bid);
+        persistentIndex.remove(entry.bid);
+        expiryScheduler.cancel(entry);
+    }
+
+    /**
+     * Get the entry of a bundle, or create it. This is atomic so that a bundle found twice by
+     * concurrent indexing tasks gets a single entry.
+     *
+     * @param bid bundle id
+     * @param bundle to index if there is no entry yet
+     * @return the index entry of the bundle
+     */
     IndexEntry getEntryOrCreate(BundleId bid, Bundle bundle) {
-        if (contains(bid)) {
-            return index.get(bid);
-        } else {
-            logger.d(TAG, "new entry: " + bid.getBidString());
-            return addEntry(bid, bundle);
+        IndexEntry created = new IndexEntry(bundle);
+        IndexEntry entry = index.computeIfAbsent(bid, b -> created);
+        if (entry == created) {
+            logger.d(TAG, () -> "new entry: " + bid.getBidString());
+            index(entry);
         }
+        return entry;
     }
 
     void removeEntry(BundleId bid, IndexEntry entry) {
         if (index.containsKey(bid)) {
-            logger.i(TAG, "deleting from storage: " + bid.getBidString());
-            index.remove(bid, entry);
+            logger.i(TAG, () -> "deleting from storage: " + bid.getBidString());
+            if (index.remove(bid, entry)) {
+                unindex(entry);
+            }
         }
     }
 
@@ -179,6 +356,71 @@ public class Storage extends CoreComponent implements StorageApi {
         return index.containsKey(bid);
     }
 
+    @Override
+    public int countVolatile() {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        return volatileIndex.size();
+    }
+
+    @Override
+    public int countPersistent() {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        return persistentIndex.size();
+    }
+
+    @Override
+    public Observable<BundleId> findByDestination(Eid destination) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return fromIndex(destinationIndex.get(destination.getEidString()));
+    }
+
+    @Override
+    public Observable<BundleId> findBySource(Eid source) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return fromIndex(sourceIndex.get(source.getEidString()));
+    }
+
+    @Override
+    public Observable<BundleId> findExpiringBefore(long time) {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        LinkedList<BundleId> expired = new LinkedList<>();
+        expiryIndex.headMap(time, true).values().forEach(expired::addAll);
+        return Observable.fromIterable(expired);
+    }
+
+    @Override
+    public Observable<BundleId> findVolatile() {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return fromIndex(volatileIndex);
+    }
+
+    @Override
+    public Observable<BundleId> findPersistent() {
+        if (!isEnabled()) {
+            return Observable.empty();
+        }
+
+        return fromIndex(persistentIndex);
+    }
+
     /**
      * check if a Bundle is stored in volatile storage.
      *
@@ -199,6 +441,53 @@ public class Storage extends CoreComponent implements StorageApi {
         return index.containsKey(bid) && index.get(bid).isPersistent;
     }
 
+    /**
+     * check if a Bundle is stored in a segment of the SegmentedStorage.
+     *
+     * @param bid of the bundle
+     * @return true if the Bundle is stored in a segment, false otherwise
+     */
+    boolean containsSegmented(BundleId bid) {
+        return containsPersistent(bid) && index.get(bid).segment != null;
+    }
+
+    /**
+     * store a bundle into persistent storage. SegmentedStorage takes precedence over
+     * SimpleStorage if it is enabled.
+     *
+     * @param bundle to store
+     * @return Single of the MetaBundle
+     */
+    Single<Bundle> storePersistent(Bundle bundle) {
+        return storePersistent(bundle, null);
+    }
+
+    /**
+     * store a bundle into persistent storage only if its index entry is still the expected one.
+     * The store fails without creating an entry if the bundle was removed in the meantime.
+     *
+     * @param bundle   to store
+     * @param expected index entry of the bundle, null if the bundle may not be indexed yet
+     * @return Single of the MetaBundle
+     */
+    Single<Bundle> storePersistent(Bundle bundle, IndexEntry expected) {
+        if (segmentedStorage.isEnabled()) {
+            return segmentedStorage.store(bundle, expected);
+        }
+        return simpleStorage.store(bundle, expected);
+    }
+
+    /**
+     * check if an index entry is still the one indexed for its bundle.
+     *
+     * @param bid      of the bundle
+     * @param expected index entry, null if any entry is acceptable
+     * @return true if expected is null or is still indexed, false otherwise
+     */
+    boolean isIndexed(BundleId bid, IndexEntry expected) {
+        return expected == null || index.get(bid) == expected;
+    }
+
     @Override
     public Single<Bundle> store(Bundle bundle) {
         if (!isEnabled()) {
@@ -223,11 +512,11 @@ public class Storage extends CoreComponent implements StorageApi {
         }
 
         return Single.create(s -> volatileStorage.store(bundle).subscribe(
-                vb -> simpleStorage.store(vb).onErrorReturnItem(vb)
+                vb -> storePersistent(vb).onErrorReturnItem(vb)
                         .subscribe(
                                 pb -> s.onSuccess(vb),
                                 e -> s.onSuccess(vb)),
-                e -> simpleStorage.store(bundle)
+                e -> storePersistent(bundle)
                         .subscribe(
                                 s::onSuccess,
                                 s::onError)));
@@ -253,7 +542,9 @@ public class Storage extends CoreComponent implements StorageApi {
         }
 
         if (containsVolatile(id)) {
-            Bundle vb = index.get(id).bundle;
+            IndexEntry entry = index.get(id);
+            entry.touch();
+            Bundle vb = entry.bundle;
 
             /* call block specific routine when bundle is pulled from volatile storage */
             try {
@@ -268,7 +559,14 @@ public class Storage extends CoreComponent implements StorageApi {
                 return Single.error(e);
             }
 
-            return Single.just(vb);
+            /* the caller gets its own reference */
+            try {
+                return Single.just(vb.retain());
+            } catch (IllegalStateException ise) {
+                return Single.error(BundleNotFoundException::new);
+            }
+        } else if (containsSegmented(id)) {
+            return segmentedStorage.get(id);
         } else {
             return simpleStorage.get(id);
         }
@@ -284,7 +582,11 @@ public class Storage extends CoreComponent implements StorageApi {
             return Completable.error(BundleNotFoundException::new);
         }
 
-        if (containsPersistent(id)) {
+        if (containsSegmented(id)) {
+            return segmentedStorage.remove(id)
+                    .onErrorComplete()
+                    .andThen(volatileStorage.remove(id));
+        } else if (containsPersistent(id)) {
             return simpleStorage.remove(id)
                     .onErrorComplete()
                     .andThen(volatileStorage.remove(id));
@@ -308,6 +610,9 @@ public class Storage extends CoreComponent implements StorageApi {
             String dest = entry.bundle.getDestination().getEidString();
             String vol = entry.isVolatile ? "V" : "";
             String per = entry.isPersistent ? "P=" + entry.bundlePath : "";
+            if (entry.isPersistent && entry.segment != null) {
+                per += "@" + entry.recordOffset;
+            }
             sb.append(bid.getBidString() + "  -  " + dest + "  -  " + vol + " " + per + "\n");
         });
         sb.append("\n");
@@ -1,19 +1,38 @@
 package io.left.rightmesh.libdtn.core.storage;
 
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_STORAGE_EVICTION_POLICY;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_STORAGE_SPILL_HIGH_WATERMARK;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_STORAGE_SPILL_LOW_WATERMARK;
+
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.BundleId;
 import io.left.rightmesh.libdtn.common.data.MetaBundle;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+import io.left.rightmesh.libdtn.common.data.blob.VolatileMemory;
 import io.left.rightmesh.libdtn.core.CoreComponent;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.api.StorageApi.BundleAlreadyExistsException;
+import io.left.rightmesh.libdtn.core.api.StorageApi.EvictionPolicy;
 import io.left.rightmesh.libdtn.core.api.StorageApi.StorageUnavailableException;
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * VolatileStorage holds all the Bundle in memory.
  *
+ * <p>When the memory used by the volatile Blob crosses the high watermark, the coldest volatile
+ * bundles are spilled to persistent storage in the background until the memory used falls below
+ * the low watermark. A spilled bundle is demoted to a MetaBundle in the index and will be pulled
+ * from persistent storage next time. The coldest bundles are selected according to the
+ * configured {@link EvictionPolicy}. The priority of a bundle is read from its "priority" tag,
+ * bundles that are not tagged have a {@link PrimaryBlock.Priority#NORMAL} priority.
+ *
  * @author Lucien Loiseau on 26/07/18.
  */
 public class VolatileStorage extends CoreComponent {
@@ -22,6 +41,7 @@ public class VolatileStorage extends CoreComponent {
 
     private Storage metaStorage;
     private CoreApi core;
+    private AtomicBoolean spilling = new AtomicBoolean(false);
 
     public VolatileStorage(Storage metaStorage, CoreApi core) {
         this.metaStorage = metaStorage;
@@ -43,12 +63,12 @@ public class VolatileStorage extends CoreComponent {
     }
 
     /**
-     * Count the number of VolatileBundle in Storage. This method iterates over the entire index.
+     * Count the number of VolatileBundle in Storage.
      *
      * @return number of volatile bundle in storage
      */
     int count() {
-        return (int) metaStorage.index.values().stream().filter(e -> e.isVolatile).count();
+        return metaStorage.countVolatile();
     }
 
     /**
@@ -65,8 +85,11 @@ public class VolatileStorage extends CoreComponent {
         if (metaStorage.containsVolatile(bundle.bid)) {
             return Single.error(new BundleAlreadyExistsException());
         } else {
+            /* the storage holds a reference until the bundle leaves the volatile storage */
             Storage.IndexEntry entry = metaStorage.getEntryOrCreate(bundle.bid, bundle);
-            entry.isVolatile = true;
+            entry.bundle = bundle.retain();
+            entry.setVolatile(true);
+            spillIfNeeded();
             return Single.just(bundle);
         }
     }
@@ -74,10 +97,16 @@ public class VolatileStorage extends CoreComponent {
 
     private Completable remove(BundleId bid, Storage.IndexEntry entry) {
         return Completable.create(s -> {
+            Bundle bundle = entry.bundle;
+            boolean retained = entry.isVolatile;
             if (!entry.isPersistent) {
                 metaStorage.removeEntry(bid, entry);
             } else {
-                entry.bundle = new MetaBundle(entry.bundle);
+                entry.setVolatile(false);
+                entry.bundle = new MetaBundle(bundle);
+            }
+            if (retained) {
+                bundle.release();
             }
             s.onComplete();
         });
@@ -92,6 +121,9 @@ public class VolatileStorage extends CoreComponent {
      */
     Completable remove(BundleId bid) {
         Storage.IndexEntry entry = metaStorage.index.get(bid);
+        if (entry == null) {
+            return Completable.complete();
+        }
         return remove(bid, entry);
     }
 
@@ -104,8 +136,130 @@ public class VolatileStorage extends CoreComponent {
             return Completable.error(new StorageUnavailableException());
         }
 
-        return Observable.fromIterable(metaStorage.index.entrySet())
-                .flatMapCompletable(e -> remove(e.getKey(), e.getValue()))
+        return metaStorage.findVolatile()
+                .flatMapCompletable(this::remove)
                 .onErrorComplete();
     }
+
+    private static PrimaryBlock.Priority priority(Storage.IndexEntry entry) {
+        if (entry.bundle.isTagged("priority")) {
+            return entry.bundle.getTagAttachment("priority");
+        }
+        return PrimaryBlock.Priority.NORMAL;
+    }
+
+    private static Comparator<Storage.IndexEntry> evictionOrder(EvictionPolicy policy) {
+        Comparator<Storage.IndexEntry> lru = Comparator.comparingLong(e -> e.lastAccess);
+        switch (policy) {
+            case LOWEST_PRIORITY:
+                return Comparator.comparing(VolatileStorage::priority).thenComparing(lru);
+            case FARTHEST_EXPIRY:
+                return Comparator.<Storage.IndexEntry>comparingLong(e -> e.expiry).reversed();
+            case LRU:
+            default:
+                return lru;
+        }
+    }
+
+    /**
+     * List the volatile bundles from the coldest to the hottest according to an eviction
+     * policy.
+     *
+     * @param policy eviction policy
+     * @return list of volatile index entries, coldest first
+     */
+    List<Storage.IndexEntry> evictionCandidates(EvictionPolicy policy) {
+        LinkedList<Storage.IndexEntry> candidates = new LinkedList<>();
+        for (BundleId bid : metaStorage.findVolatile().toList().blockingGet()) {
+            Storage.IndexEntry entry = metaStorage.index.get(bid);
+            if (entry != null && entry.isVolatile) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(evictionOrder(policy));
+        return candidates;
+    }
+
+    private static long percentOf(long value, int percent) {
+        return value * percent / 100;
+    }
+
+    /**
+     * Start spilling volatile bundles to persistent storage in the background if the volatile
+     * memory crossed the high watermark. It does nothing if a spill is already running.
+     */
+    void spillIfNeeded() {
+        VolatileMemory memory = metaStorage.getVolatileMemory();
+        if (!isEnabled() || memory == null || !metaStorage.isPersistentEnabled()) {
+            return;
+        }
+
+        int high = core.getConf().<Integer>get(VOLATILE_STORAGE_SPILL_HIGH_WATERMARK).value();
+        if (memory.getMemoryUsage() < percentOf(memory.getMemoryLimit(), high)) {
+            return;
+        }
+
+        if (spilling.compareAndSet(false, true)) {
+            Schedulers.io().scheduleDirect(() -> {
+                try {
+                    spill(memory);
+                } finally {
+                    spilling.set(false);
+                }
+            });
+        }
+    }
+
+    /* the memory of a spilled bundle is given back as soon as it is removed */
+    void spill(VolatileMemory memory) {
+        int low = core.getConf().<Integer>get(VOLATILE_STORAGE_SPILL_LOW_WATERMARK).value();
+        EvictionPolicy policy
+                = core.getConf().<EvictionPolicy>get(VOLATILE_STORAGE_EVICTION_POLICY).value();
+        long target = percentOf(memory.getMemoryLimit(), low);
+        long usage = memory.getMemoryUsage();
+
+        int spilled = 0;
+        for (Storage.IndexEntry entry : evictionCandidates(policy)) {
+            if (memory.getMemoryUsage() <= target) {
+                break;
+            }
+            if (!isEnabled() || !metaStorage.isPersistentEnabled()) {
+                break;
+            }
+
+            /* the bundle must not be released while it is written */
+            Bundle bundle;
+            try {
+                bundle = entry.bundle.retain();
+            } catch (IllegalStateException ise) {
+                continue; /* already released */
+            }
+            try {
+                if (metaStorage.index.get(entry.bid) != entry || !entry.isVolatile) {
+                    continue; /* removed in the meantime */
+                }
+                if (!entry.isPersistent) {
+                    metaStorage.storePersistent(bundle, entry).blockingGet();
+                }
+            } catch (RuntimeException re) {
+                core.getLogger().w(TAG, () -> "could not spill bundle: "
+                        + entry.bid.getBidString() + " reason=" + re.getMessage());
+                continue;
+            } finally {
+                bundle.release();
+            }
+
+            if (metaStorage.index.get(entry.bid) == entry && entry.isPersistent) {
+                remove(entry.bid, entry).blockingAwait();
+                spilled++;
+            }
+        }
+
+        if (spilled > 0) {
+            final int count = spilled;
+            final long released = usage - memory.getMemoryUsage();
+            core.getLogger().i(TAG, () -> "spilled " + count + " bundles to persistent storage ("
+                    + released + " bytes released)");
+        }
+    }
 }
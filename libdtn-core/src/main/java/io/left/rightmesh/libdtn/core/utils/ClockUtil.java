@@ -26,4 +26,19 @@ public class ClockUtil {
         }
         return getCurrentTime() < (timestamp + lifetime);
     }
+
+    /**
+     * Compute the time at which a bundle with the given timestamp and lifetime expires. If
+     * timestamp is 0, the source had no clock and the lifetime starts from local time.
+     *
+     * @param timestamp start time
+     * @param lifetime  limit time
+     * @return expiry time in milliseconds
+     */
+    public static long getExpiryTime(long timestamp, long lifetime) {
+        if (timestamp == 0) {
+            return getCurrentTime() + lifetime;
+        }
+        return timestamp + lifetime;
+    }
 }
@@ -1,7 +1,12 @@
 package io.left.rightmesh.libdtn.core.utils;
 
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_LOGGING;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_LOG_FILE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_BUFFER_SIZE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_FILE_PATH;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_FILE_SIZE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_LEVEL;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_OVERFLOW_POLICY;
 
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.core.CoreComponent;
@@ -9,14 +14,75 @@ import io.left.rightmesh.libdtn.core.CoreConfiguration;
 import io.left.rightmesh.librxbus.RxBus;
 import io.left.rightmesh.librxbus.Subscribe;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 /**
- * Simple Logger.
+ * Logger is the logger of the core. Logging a message only publishes it into a lock-free
+ * {@link RingBuffer}, a single consumer thread formats the messages and writes them by batch
+ * either on the standard output or in a log file that is rotated once it reaches its maximum
+ * size. The output is flushed whenever the ring buffer is drained.
+ *
+ * <p>If the producers outpace the consumer and the ring buffer is full, the message is either
+ * dropped (and the number of dropped messages is reported later) or the producer waits for a
+ * free slot, depending on the {@link OverflowPolicy}.
  *
  * @author Lucien Loiseau on 15/09/18.
  */
 public class Logger extends CoreComponent implements Log {
 
     private static final String TAG = "Logger";
+    private static final int MAX_BATCH = 256;
+    private static final int MAX_ROTATED_FILES = 5;
+    private static final long IDLE_PARK_NS = 100_000_000L;
+    private static final long BLOCK_PARK_NS = 10_000L;
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private static class Entry {
+        final long timestamp;
+        final String thread;
+        final LogLevel level;
+        final String tag;
+        final String msg;
+
+        Entry(long timestamp, String thread, LogLevel level, String tag, String msg) {
+            this.timestamp = timestamp;
+            this.thread = thread;
+            this.level = level;
+            this.tag = tag;
+            this.msg = msg;
+        }
+    }
+
+    private static LogLevel level;
+
+    private final RingBuffer<Entry> ring;
+    private final AtomicLong dropped = new AtomicLong(0);
+    private volatile OverflowPolicy policy = OverflowPolicy.DROP;
+    private volatile boolean logToFile = false;
+    private volatile String logFilePath = "";
+    private volatile long logFileSize = 0;
+    private volatile Thread consumer;
+    private volatile boolean running = false;
+    private volatile boolean sleeping = false;
+    private boolean subscribed = false;
+
+    /* output, only used by the consumer thread */
+    private Writer writer;
+    private File file;
+    private String outputPath;
+    private long written;
 
     /**
      * Constructor.
@@ -25,7 +91,16 @@ public class Logger extends CoreComponent implements Log {
      */
     public Logger(CoreConfiguration conf) {
         level = LogLevel.INFO;
-        conf.<LogLevel>get(LOG_LEVEL).observe().subscribe(l -> level = l);
+        ring = new RingBuffer<>(conf.<Integer>get(LOG_BUFFER_SIZE).value());
+        conf.<LogLevel>get(LOG_LEVEL).observe().subscribe(l -> {
+            level = l;
+            updateEventSubscription();
+        });
+        conf.<OverflowPolicy>get(LOG_OVERFLOW_POLICY).observe().subscribe(p -> policy = p);
+        conf.<Boolean>get(ENABLE_LOG_FILE).observe().subscribe(b -> logToFile = b);
+        conf.<String>get(LOG_FILE_PATH).observe().subscribe(p -> logFilePath = p);
+        conf.<Long>get(LOG_FILE_SIZE).observe().subscribe(s -> logFileSize = s);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stopConsumer));
         initComponent(conf, COMPONENT_ENABLE_LOGGING, null);
     }
 
@@ -36,27 +111,250 @@ public class Logger extends CoreComponent implements Log {
 
     @Override
     protected void componentUp() {
-        RxBus.register(this);
+        startConsumer();
+        updateEventSubscription();
     }
 
     @Override
     protected void componentDown() {
-        RxBus.unregister(this);
+        updateEventSubscription();
+        stopConsumer();
     }
 
-    private static LogLevel level;
+    /* the events are only logged in debug, no need to receive them otherwise */
+    private synchronized void updateEventSubscription() {
+        boolean subscribe = isLoggable(LogLevel.DEBUG);
+        if (subscribe && !subscribed) {
+            RxBus.register(this);
+        } else if (!subscribe && subscribed) {
+            RxBus.unregister(this);
+        }
+        subscribed = subscribe;
+    }
 
-    private void log(LogLevel l, String tag, String msg) {
-        if (isEnabled()) {
-            if (l.ordinal() >= level.ordinal()) {
-                System.out.println(System.currentTimeMillis() + " "
-                        + Thread.currentThread().getName() + " " + l + " - " + tag + ": " + msg);
-            }
+    private synchronized void startConsumer() {
+        if (consumer != null) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, "dtn-logger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    private synchronized void stopConsumer() {
+        Thread thread = consumer;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
+        consumer = null;
     }
 
     public void set(LogLevel level) {
         Logger.level = level;
+        updateEventSubscription();
+    }
+
+    /**
+     * Number of messages dropped because the ring buffer was full and not reported yet.
+     *
+     * @return number of dropped messages
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public boolean isLoggable(LogLevel l) {
+        return isEnabled() && l.ordinal() >= level.ordinal();
+    }
+
+    private void log(LogLevel l, String tag, String msg) {
+        if (!isLoggable(l)) {
+            return;
+        }
+
+        Entry entry = new Entry(System.currentTimeMillis(),
+                Thread.currentThread().getName(), l, tag, msg);
+        while (!ring.offer(entry)) {
+            if (policy == OverflowPolicy.DROP || !running
+                    || Thread.currentThread() == consumer) {
+                dropped.incrementAndGet();
+                return;
+            }
+            wakeUpConsumer();
+            LockSupport.parkNanos(BLOCK_PARK_NS);
+        }
+        if (sleeping) {
+            wakeUpConsumer();
+        }
+    }
+
+    private void wakeUpConsumer() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void consume() {
+        while (running || !ring.isEmpty()) {
+            Entry entry = ring.poll();
+            if (entry == null) {
+                flush();
+                sleeping = true;
+                if (running && ring.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NS);
+                }
+                sleeping = false;
+                continue;
+            }
+
+            updateOutput();
+            int batch = 0;
+            do {
+                write(entry.timestamp, entry.thread, entry.level, entry.tag, entry.msg);
+            } while (++batch < MAX_BATCH && (entry = ring.poll()) != null);
+
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                write(System.currentTimeMillis(), Thread.currentThread().getName(),
+                        LogLevel.WARN, TAG, lost + " log messages dropped");
+            }
+        }
+        flush();
+        closeOutput();
+    }
+
+    private void write(long timestamp, String thread, LogLevel l, String tag, String msg) {
+        try {
+            String line = timestamp + " " + thread + " " + l + " - " + tag + ": " + msg + "\n";
+            writer.write(line);
+            written += encodedLength(line);
+        } catch (IOException io) {
+            System.err.println("log output failed: " + io.getMessage());
+            closeOutput();
+            openStandardOutput();
+            return;
+        }
+        if (file != null && logFileSize > 0 && written >= logFileSize) {
+            rotate();
+        }
+    }
+
+    /**
+     * Number of bytes of a line once encoded in UTF-8, the file size is counted in bytes and not
+     * in characters.
+     *
+     * @param line to encode
+     * @return encoded length in bytes
+     */
+    private static int encodedLength(String line) {
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < line.length()
+                    && Character.isLowSurrogate(line.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                /* an unpaired surrogate is replaced by the encoder */
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException io) {
+            System.err.println("log output failed: " + io.getMessage());
+        }
+    }
+
+    /* switch the output if the configuration has changed */
+    private void updateOutput() {
+        String path = logToFile && !logFilePath.isEmpty() ? logFilePath : null;
+        if (writer != null && (path == null ? outputPath == null : path.equals(outputPath))) {
+            return;
+        }
+
+        closeOutput();
+        outputPath = path;
+        if (path == null) {
+            openStandardOutput();
+        } else {
+            openFile(new File(path));
+        }
+    }
+
+    private void openStandardOutput() {
+        writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        file = null;
+    }
+
+    private void openFile(File logFile) {
+        try {
+            File parent = logFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("can't create directory " + parent.getPath());
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(logFile, true), StandardCharsets.UTF_8), 65536);
+            file = logFile;
+            written = logFile.length();
+        } catch (IOException io) {
+            System.err.println("can't open log file " + logFile.getPath() + ": "
+                    + io.getMessage() + ", logging to standard output");
+            openStandardOutput();
+        }
+    }
+
+    private void closeOutput() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            if (file != null) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        } catch (IOException io) {
+            /* ignore */
+        }
+        writer = null;
+        file = null;
+    }
+
+    /* log -> log.1 -> ... -> log.MAX_ROTATED_FILES, the oldest file is deleted */
+    private void rotate() {
+        File current = file;
+        closeOutput();
+        String path = current.getPath();
+        new File(path + "." + MAX_ROTATED_FILES).delete();
+        for (int i = MAX_ROTATED_FILES - 1; i >= 1; i--) {
+            new File(path + "." + i).renameTo(new File(path + "." + (i + 1)));
+        }
+        current.renameTo(new File(path + ".1"));
+        openFile(current);
     }
 
     @Override
@@ -86,7 +384,7 @@ public class Logger extends CoreComponent implements Log {
 
     @Subscribe
     public void onEvent(Object o) {
-        d(TAG, "EventReceived - " + o.toString());
+        d(TAG, () -> "EventReceived - " + o.toString());
     }
 
 }
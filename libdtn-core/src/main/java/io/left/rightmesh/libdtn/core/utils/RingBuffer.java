@@ -0,0 +1,119 @@
+package io.left.rightmesh.libdtn.core.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RingBuffer is a bounded lock-free queue for many producers and a single consumer. Every slot
+ * carries a sequence number that tells whether it is free for the producer claiming its
+ * position or ready for the consumer, so that a producer only does a compare-and-set on the
+ * tail to publish an item and never waits for another producer.
+ *
+ * <p>{@link #offer(Object)} can be called from any thread, {@link #poll()} must only ever be
+ * called from the same consumer thread.
+ *
+ * @param <T> type of the items
+ * @author Lucien Loiseau on 23/11/18.
+ */
+public class RingBuffer<T> {
+
+    private final int mask;
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+    private volatile long head = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity minimum number of items the buffer can hold, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Number of items the buffer can hold.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Approximate number of items in the buffer.
+     *
+     * @return size
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(items.length, tail.get() - head));
+    }
+
+    /**
+     * Approximate emptiness of the buffer.
+     *
+     * @return true if the buffer is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Publish an item, can be called from any thread.
+     *
+     * @param item to publish, must not be null
+     * @return false if the buffer is full, true otherwise
+     */
+    public boolean offer(T item) {
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[index] = item;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                /* the slot still holds an item from the previous lap */
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the oldest item, must only be called from the consumer thread.
+     *
+     * @return the item or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        T item = (T) items[index];
+        items[index] = null;
+        sequences.set(index, pos + items.length);
+        head = pos + 1;
+        return item;
+    }
+}
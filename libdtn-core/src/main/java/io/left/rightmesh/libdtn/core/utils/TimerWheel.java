@@ -0,0 +1,259 @@
+package io.left.rightmesh.libdtn.core.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * TimerWheel is a hierarchical timing wheel that schedules items at a deadline with a constant
+ * cost per insertion and per tick, regardless of the number of items scheduled.
+ *
+ * <p>The wheel is made of {@link #LEVELS} levels of {@link #SLOTS} slots each. The first level
+ * has a resolution of one tick, every level above it has a resolution {@link #SLOTS} times
+ * coarser than the level below. Whenever a level wraps around, the next slot of the level above
+ * is cascaded down to the finer levels. With the default tick of one second, the wheel covers
+ * more than a century, items scheduled further than that are kept aside and rescheduled every
+ * time the last level is cascaded.
+ *
+ * <p>Every slot is an intrusive doubly linked list so that a scheduled item can be cancelled
+ * in constant time through the {@link Timeout} returned by {@link #add(Object, long)}.
+ *
+ * @param <T> type of the scheduled item
+ * @author Lucien Loiseau on 15/11/18.
+ */
+public class TimerWheel<T> {
+
+    public static final int LEVELS = 4;
+    public static final int SLOT_BITS = 8;
+    public static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * Handle of a scheduled item.
+     */
+    public interface Timeout {
+        /**
+         * Remove the item from the wheel.
+         *
+         * @return true if the item was removed, false if it already fired or was cancelled
+         */
+        boolean cancel();
+    }
+
+    private class Timer implements Timeout {
+        T item;
+        long tick;
+        Timer prev;
+        Timer next;
+        Timer list; /* head of the list holding this timer, null if not scheduled */
+
+        Timer(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+
+        @Override
+        public boolean cancel() {
+            return TimerWheel.this.cancel(this);
+        }
+    }
+
+    private final long tickMs;
+    private final List<Timer> wheel;
+    private final Timer overflow = newList();
+    private final Timer due = newList();
+    private long currentTick;
+    private int size = 0;
+    private int dueSize = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param tickMs duration of a tick in milliseconds
+     * @param nowMs  current time in milliseconds
+     */
+    public TimerWheel(long tickMs, long nowMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tick must be positive");
+        }
+        this.tickMs = tickMs;
+        this.currentTick = nowMs / tickMs;
+        this.wheel = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            wheel.add(newList());
+        }
+    }
+
+    private Timer newList() {
+        Timer head = new Timer(null, 0);
+        head.prev = head;
+        head.next = head;
+        return head;
+    }
+
+    private void link(Timer list, Timer timer) {
+        timer.list = list;
+        timer.prev = list.prev;
+        timer.next = list;
+        list.prev.next = timer;
+        list.prev = timer;
+        if (list == due) {
+            dueSize++;
+        }
+    }
+
+    private void unlink(Timer timer) {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        if (timer.list == due) {
+            dueSize--;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.list = null;
+    }
+
+    /**
+     * Empty a list and return its first timer, the detached timers are still chained together
+     * and the last one points back to the head of the list.
+     */
+    private Timer detach(Timer list) {
+        Timer first = list.next;
+        list.prev = list;
+        list.next = list;
+        return first;
+    }
+
+    private Timer slot(int level, long tick) {
+        return wheel.get(level * SLOTS + (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK));
+    }
+
+    private void place(Timer timer) {
+        long delta = timer.tick - currentTick;
+        if (delta <= 0) {
+            link(due, timer);
+            return;
+        }
+
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << ((level + 1) * SLOT_BITS))) {
+                link(slot(level, timer.tick), timer);
+                return;
+            }
+        }
+        link(overflow, timer);
+    }
+
+    private void replace(Timer list) {
+        Timer timer = detach(list);
+        while (timer != list) {
+            Timer next = timer.next;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * Schedule an item. An item whose deadline is already passed is returned by the next call to
+     * {@link #advance(long)}.
+     *
+     * @param item       to schedule
+     * @param deadlineMs time in milliseconds at which the item fires
+     * @return Timeout to cancel the item
+     */
+    public synchronized Timeout add(T item, long deadlineMs) {
+        long tick = deadlineMs / tickMs;
+        if (deadlineMs % tickMs != 0) {
+            /* never fire before the deadline */
+            tick++;
+        }
+        Timer timer = new Timer(item, tick);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    private synchronized boolean cancel(Timer timer) {
+        if (timer.list == null) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the wheel forward up to the given time and return every item whose deadline is
+     * passed, in deadline order at the resolution of a tick.
+     *
+     * @param nowMs current time in milliseconds
+     * @return list of fired items, empty if none
+     */
+    public synchronized List<T> advance(long nowMs) {
+        long target = nowMs / tickMs;
+        while (currentTick < target) {
+            if (size == dueSize) {
+                /* nothing left in the wheel, jump straight to the target */
+                currentTick = target;
+                break;
+            }
+            currentTick++;
+
+            /* find the highest level that wraps around and cascade from the top down */
+            int top = 0;
+            while (top < LEVELS - 1
+                    && (currentTick & ((1L << ((top + 1) * SLOT_BITS)) - 1)) == 0) {
+                top++;
+            }
+            if (top == LEVELS - 1) {
+                replace(overflow);
+            }
+            for (int level = top; level > 0; level--) {
+                replace(slot(level, currentTick));
+            }
+            replace(slot(0, currentTick));
+        }
+
+        LinkedList<T> ret = new LinkedList<>();
+        Timer list = due;
+        Timer timer = detach(list);
+        while (timer != list) {
+            Timer next = timer.next;
+            ret.add(timer.item);
+            timer.prev = null;
+            timer.next = null;
+            timer.list = null;
+            timer = next;
+        }
+        size -= dueSize;
+        dueSize = 0;
+        return ret;
+    }
+
+    /**
+     * Number of items scheduled that have not been returned by {@link #advance(long)} yet.
+     *
+     * @return number of items
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the items from the wheel.
+     */
+    public synchronized void clear() {
+        for (Timer list : wheel) {
+            while (list.next != list) {
+                unlink(list.next);
+            }
+        }
+        while (overflow.next != overflow) {
+            unlink(overflow.next);
+        }
+        while (due.next != due) {
+            unlink(due.next);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,416 @@
+package io.left.rightmesh.libdtn.core.routing;
+
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_CUT_THROUGH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.left.rightmesh.libdtn.common.ExtensionToolbox;
+import io.left.rightmesh.libdtn.common.data.AgeBlock;
+import io.left.rightmesh.libdtn.common.data.BlockHeader;
+import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.PayloadBlock;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
+import io.left.rightmesh.libdtn.common.data.blob.Blob;
+import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
+import io.left.rightmesh.libdtn.common.data.blob.StreamingBlob;
+import io.left.rightmesh.libdtn.common.data.blob.UntrackedByteBufferBlob;
+import io.left.rightmesh.libdtn.common.data.blob.WritableBlob;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
+import io.left.rightmesh.libdtn.common.data.eid.BaseClaEid;
+import io.left.rightmesh.libdtn.common.data.eid.ClaEid;
+import io.left.rightmesh.libdtn.common.data.eid.DtnEid;
+import io.left.rightmesh.libdtn.common.data.eid.Eid;
+import io.left.rightmesh.libdtn.common.data.eid.UnknownClaEid;
+import io.left.rightmesh.libdtn.common.utils.Log;
+import io.left.rightmesh.libdtn.core.CoreConfiguration;
+import io.left.rightmesh.libdtn.core.MockCore;
+import io.left.rightmesh.libdtn.core.api.BundleProtocolApi;
+import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.left.rightmesh.libdtn.core.api.CoreApi;
+import io.left.rightmesh.libdtn.core.api.LinkLocalTableApi;
+import io.left.rightmesh.libdtn.core.api.LocalEidApi;
+import io.left.rightmesh.libdtn.core.api.RoutingTableApi;
+import io.left.rightmesh.libdtn.core.api.StorageApi;
+import io.left.rightmesh.libdtn.core.processor.EarlyValidator;
+import io.left.rightmesh.libdtn.core.spi.cla.ClaChannelSpi;
+import io.left.rightmesh.libdtn.core.storage.Storage;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.subscribers.TestSubscriber;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test class for CutThroughRelay.
+ *
+ * @author Lucien Loiseau on 26/11/18.
+ */
+public class CutThroughRelayTest {
+
+    private CountDownLatch processed;
+    private AtomicReference<Bundle> relayed = new AtomicReference<>();
+
+    /* what the next hop reads from the payload of the bundle being relayed */
+    private AtomicReference<TestSubscriber<ByteBuffer>> nextHop = new AtomicReference<>();
+
+    private static byte[] bytes(int from, int length) {
+        byte[] ret = new byte[length];
+        for (int i = 0; i < length; i++) {
+            ret[i] = (byte) (from + i);
+        }
+        return ret;
+    }
+
+    private static byte[] concat(Iterable<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer b : buffers) {
+            while (b.hasRemaining()) {
+                out.write(b.get());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /* mocking a channel */
+    private ClaChannelSpi mockChannel() throws Exception {
+        ClaEid eid = new UnknownClaEid("test", "peer", "");
+        return new ClaChannelSpi() {
+            @Override
+            public ChannelMode getMode() {
+                return ChannelMode.BiDirectional;
+            }
+
+            @Override
+            public ClaEid channelEid() {
+                return eid;
+            }
+
+            @Override
+            public ClaEid localEid() {
+                return eid;
+            }
+
+            @Override
+            public Observable<Bundle> recvBundle(ExtensionToolbox toolbox,
+                                                 BlobFactory blobFactory) {
+                return Observable.never();
+            }
+
+            @Override
+            public Observable<Integer> sendBundle(Bundle bundle,
+                                                  BlockDataSerializerFactory serializerFactory) {
+                return Observable.empty();
+            }
+
+            @Override
+            public Observable<Integer> sendBundles(Flowable<Bundle> upstream,
+                                                   BlockDataSerializerFactory serializerFactory) {
+                return Observable.empty();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /* mocking the core, nextHopReads makes the payload read as soon as the bundle is processed */
+    private CoreApi mockCore(ClaChannelSpi channel, boolean opened, boolean nextHopReads) {
+        CoreConfiguration conf = new CoreConfiguration();
+        conf.<Boolean>get(ENABLE_CUT_THROUGH).update(true);
+        return new MockCore() {
+            @Override
+            public ConfigurationApi getConf() {
+                return conf;
+            }
+
+            @Override
+            public LocalEidApi getLocalEid() {
+                return new LocalEidApi() {
+                    @Override
+                    public Eid localEid() {
+                        return DtnEid.nullEid();
+                    }
+
+                    @Override
+                    public Set<Eid> aliases() {
+                        return Collections.emptySet();
+                    }
+
+                    @Override
+                    public boolean isLocal(Eid eid) {
+                        return false;
+                    }
+
+                    @Override
+                    public Eid matchLocal(Eid eid) {
+                        return null;
+                    }
+                };
+            }
+
+            @Override
+            public StorageApi getStorage() {
+                return new Storage(this) {
+                    @Override
+                    public BlobFactory getBlobFactory() {
+                        return size -> new UntrackedByteBufferBlob((int) size);
+                    }
+                };
+            }
+
+            @Override
+            public LinkLocalTableApi getLinkLocalTable() {
+                return new LinkLocalTableApi() {
+                    @Override
+                    public ClaEid isEidLinkLocal(Eid eid) {
+                        return null;
+                    }
+
+                    @Override
+                    public Maybe<ClaChannelSpi> findCla(Eid destination) {
+                        return opened ? Maybe.just(channel) : Maybe.empty();
+                    }
+
+                    @Override
+                    public Set<ClaChannelSpi> dumpTable() {
+                        return Collections.singleton(channel);
+                    }
+
+                    @Override
+                    public String getComponentName() {
+                        return "LinkLocalTable";
+                    }
+
+                    @Override
+                    public void initComponent(ConfigurationApi conf,
+                                              ConfigurationApi.CoreEntry entry,
+                                              Log logger) {
+                    }
+                };
+            }
+
+            @Override
+            public RoutingTableApi getRoutingTable() {
+                return new RoutingTableApi() {
+                    @Override
+                    public void addRoute(Eid to, Eid nextHop) {
+                    }
+
+                    @Override
+                    public Observable<BaseClaEid> resolveEid(Eid destination) {
+                        return Observable.empty();
+                    }
+
+                    @Override
+                    public Set<TableEntry> dumpTable() {
+                        return Collections.emptySet();
+                    }
+
+                    @Override
+                    public String getComponentName() {
+                        return "RoutingTable";
+                    }
+
+                    @Override
+                    public void initComponent(ConfigurationApi conf,
+                                              ConfigurationApi.CoreEntry entry,
+                                              Log logger) {
+                    }
+                };
+            }
+
+            @Override
+            public BundleProtocolApi getBundleProtocol() {
+                return new BundleProtocolApi() {
+                    @Override
+                    public void bundleTransmission(Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundleDispatching(Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundleLocalDeliverySuccessful(Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundleLocalDeliveryFailure(String sink, Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundleExpired(Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundlesExpired(List<Bundle> bundles) {
+                    }
+
+                    @Override
+                    public void bundleReception(Bundle bundle) {
+                        /* the bundle is forwarded right away to the opened channel */
+                        relayed.set(bundle);
+                        if (nextHopReads) {
+                            nextHop.set(bundle.getPayloadBlock().data.observe().test());
+                        }
+                        processed.countDown();
+                    }
+
+                    @Override
+                    public void bundleRejected(Bundle bundle) {
+                    }
+
+                    @Override
+                    public void bundleForwardingSuccessful(Bundle bundle) {
+                    }
+                };
+            }
+        };
+    }
+
+    private static CutThroughRelay relay(CoreApi core, ClaChannelSpi channel) {
+        return new CutThroughRelay(core, channel, new EarlyValidator(core) {
+            @Override
+            public void onPrimaryBlockDeserialized(PrimaryBlock block) {
+            }
+        });
+    }
+
+    /* the parser calls the relay with the header and then asks for the payload blob */
+    private static Blob receiveHeader(CutThroughRelay relay, Bundle bundle, long size)
+            throws Exception {
+        relay.onPrimaryBlockDeserialized(bundle);
+        relay.onHeaderDeserialized(bundle);
+        return relay.createBlob(size);
+    }
+
+    /* as parsed from a definite-length array whose last block is the payload */
+    private static Bundle testBundle() {
+        Bundle bundle = new Bundle(DtnEid.generate());
+        bundle.setSource(DtnEid.generate());
+        bundle.addBlock(new PayloadBlock());
+        bundle.tag("payload_last");
+        return bundle;
+    }
+
+    @Test
+    public void testRelayToOpenedChannel() throws Exception {
+        System.out.println("[+] CutThroughRelay: relay to an opened channel");
+        processed = new CountDownLatch(1);
+        ClaChannelSpi channel = mockChannel();
+        CutThroughRelay relay = relay(mockCore(channel, true, true), channel);
+
+        Bundle bundle = testBundle();
+        Blob blob = receiveHeader(relay, bundle, 100);
+        assertTrue(blob instanceof StreamingBlob);
+        assertSame(blob, bundle.getPayloadBlock().data);
+        assertTrue(bundle.isTagged("cut_through"));
+
+        /* the bundle is processed before its payload is received */
+        assertTrue(processed.await(1, TimeUnit.SECONDS));
+        TestSubscriber<ByteBuffer> live = nextHop.get();
+
+        /* what the parser does to its bundle doesn't reach the bundle being processed */
+        Bundle copy = relayed.get();
+        assertNotSame(bundle, copy);
+        assertEquals(bundle.bid, copy.bid);
+        assertSame(bundle.getPayloadBlock(), copy.getPayloadBlock());
+        assertTrue(copy.isTagged("cla-origin-iid"));
+        bundle.addBlock(new AgeBlock());
+        assertEquals(1, copy.getBlocks().size());
+        bundle.delBlock(bundle.getBlocks(AgeBlock.AGE_BLOCK_TYPE).getFirst());
+
+        WritableBlob wblob = blob.getWritableBlob();
+        wblob.write(bytes(0, 60));
+        live.assertValueCount(1);
+        live.assertNotComplete();
+
+        wblob.write(bytes(60, 40));
+        wblob.close();
+        assertTrue(relay.received(bundle));
+        live.assertComplete();
+        assertArrayEquals(bytes(0, 100), concat(live.values()));
+    }
+
+    @Test
+    public void testNotRelayed() throws Exception {
+        System.out.println("[+] CutThroughRelay: bundles that are not relayed");
+        processed = new CountDownLatch(1);
+        ClaChannelSpi channel = mockChannel();
+
+        /* no channel towards the destination */
+        CutThroughRelay closed = relay(mockCore(channel, false, true), channel);
+        Bundle bundle = testBundle();
+        assertFalse(receiveHeader(closed, bundle, 100) instanceof StreamingBlob);
+        assertFalse(bundle.isTagged("cut_through"));
+        assertFalse(closed.received(bundle));
+
+        /* a payload with a Crc can only be validated once it is entirely received */
+        CutThroughRelay opened = relay(mockCore(channel, true, true), channel);
+        Bundle crc = testBundle();
+        crc.getPayloadBlock().crcType = BlockHeader.CrcFieldType.CRC_32;
+        assertFalse(receiveHeader(opened, crc, 100) instanceof StreamingBlob);
+        assertFalse(opened.received(crc));
+
+        /* a block may follow the payload, the bundle is processed once entirely received */
+        Bundle notLast = testBundle();
+        notLast.removeTag("payload_last");
+        assertFalse(receiveHeader(opened, notLast, 100) instanceof StreamingBlob);
+        assertFalse(opened.received(notLast));
+        assertEquals(1, processed.getCount());
+    }
+
+    @Test
+    public void testLateSubscriber() throws Exception {
+        System.out.println("[+] CutThroughRelay: late subscriber reads the stored payload");
+        processed = new CountDownLatch(1);
+        ClaChannelSpi channel = mockChannel();
+        CutThroughRelay relay = relay(mockCore(channel, true, false), channel);
+
+        /* nobody reads the payload while it is received, more than the live buffer holds */
+        int size = 3 << 20;
+        Bundle bundle = testBundle();
+        Blob blob = receiveHeader(relay, bundle, size);
+        assertTrue(processed.await(1, TimeUnit.SECONDS));
+        WritableBlob wblob = blob.getWritableBlob();
+        for (int i = 0; i < size; i += 4096) {
+            wblob.write(bytes(i, 4096));
+        }
+        wblob.close();
+        assertTrue(relay.received(bundle));
+
+        byte[] expected = new byte[size];
+        for (int i = 0; i < size; i += 4096) {
+            System.arraycopy(bytes(i, 4096), 0, expected, i, 4096);
+        }
+        assertArrayEquals(expected, concat(blob.observe().blockingIterable()));
+        assertArrayEquals(expected, concat(blob.observe().blockingIterable()));
+
+        /* a payload still being received when the channel closes is aborted */
+        processed = new CountDownLatch(1);
+        Bundle aborted = testBundle();
+        Blob abortedBlob = receiveHeader(relay, aborted, 100);
+        assertTrue(processed.await(1, TimeUnit.SECONDS));
+        TestSubscriber<ByteBuffer> live = abortedBlob.observe().test();
+        abortedBlob.getWritableBlob().write(bytes(0, 50));
+        relay.close();
+        live.assertError(IOException.class);
+        abortedBlob.observe().test().assertError(IOException.class);
+    }
+}
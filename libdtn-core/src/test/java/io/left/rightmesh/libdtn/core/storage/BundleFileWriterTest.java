@@ -0,0 +1,64 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import io.left.rightmesh.libdtn.core.api.StorageApi.StorageFullException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for BundleFileWriter.
+ *
+ * @author Lucien Loiseau on 16/11/18.
+ */
+public class BundleFileWriterTest {
+
+    private File dir = new File(System.getProperty("path") + "/writer/");
+
+    @Test
+    public void testGatheringWrite() throws IOException, StorageFullException {
+        System.out.println("[+] BundleFileWriter: gathering write");
+        dir.mkdirs();
+        File file = new File(dir, "bundle-test.bundle");
+
+        /* more than one full batch, written with buffers of various sizes */
+        int total = BundleFileWriter.GATHER_SIZE * BundleFileWriter.BUFFER_SIZE * 2 + 1234;
+        byte[] expected = new byte[total];
+        new Random(7).nextBytes(expected);
+
+        BundleFileWriter writer = new BundleFileWriter(file);
+        int offset = 0;
+        int chunk = 1;
+        while (offset < total) {
+            int length = Math.min(chunk, total - offset);
+            writer.write(ByteBuffer.wrap(expected, offset, length));
+            offset += length;
+            chunk = (chunk * 7) % 200000 + 1;
+        }
+        writer.close();
+
+        assertEquals(total, writer.written());
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testAbort() throws IOException, StorageFullException {
+        System.out.println("[+] BundleFileWriter: abort");
+        dir.mkdirs();
+        File file = new File(dir, "bundle-abort.bundle");
+
+        BundleFileWriter writer = new BundleFileWriter(file);
+        writer.write(ByteBuffer.wrap(new byte[1000]));
+        writer.abort();
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,103 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.reactivex.Completable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test class for GroupCommit.
+ *
+ * @author Lucien Loiseau on 16/11/18.
+ */
+public class GroupCommitTest {
+
+    private File dir = new File(System.getProperty("path") + "/groupcommit/");
+
+    private FileChannel open(String name) throws IOException {
+        dir.mkdirs();
+        FileChannel channel = new FileOutputStream(new File(dir, name)).getChannel();
+        channel.write(ByteBuffer.wrap(name.getBytes()));
+        return channel;
+    }
+
+    @Test
+    public void testCommitOnDelay() throws IOException {
+        System.out.println("[+] GroupCommit: commit on delay");
+        GroupCommit groupCommit = new GroupCommit(1000, 20);
+        LinkedList<FileChannel> channels = new LinkedList<>();
+        LinkedList<Completable> commits = new LinkedList<>();
+        for (int i = 0; i < 10; i++) {
+            FileChannel channel = open("delay-" + i);
+            channels.add(channel);
+            commits.add(groupCommit.commit(channel, null, null).cache());
+        }
+        commits.forEach(Completable::subscribe);
+
+        assertTrue(Completable.merge(commits).blockingAwait(5, TimeUnit.SECONDS));
+        for (FileChannel channel : channels) {
+            assertFalse(channel.isOpen());
+        }
+    }
+
+    @Test
+    public void testCommitOnSize() throws IOException {
+        System.out.println("[+] GroupCommit: commit on size");
+        GroupCommit groupCommit = new GroupCommit(2, 60000);
+        Completable first = groupCommit.commit(open("size-1"), null, null).cache();
+        first.subscribe();
+        Completable second = groupCommit.commit(open("size-2"), null, null).cache();
+        second.subscribe();
+        assertTrue(first.mergeWith(second).blockingAwait(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletionWaitsForGroup() throws IOException {
+        System.out.println("[+] GroupCommit: completion waits for the group flush");
+        LinkedList<File> synced = new LinkedList<>();
+        GroupCommit groupCommit = new GroupCommit(1000, 60000) {
+            @Override
+            void syncDirectory(File directory) throws IOException {
+                synced.add(directory);
+                super.syncDirectory(directory);
+            }
+        };
+
+        LinkedList<FileChannel> channels = new LinkedList<>();
+        LinkedList<Completable> commits = new LinkedList<>();
+        for (int i = 0; i < 5; i++) {
+            FileChannel channel = open("group-" + i);
+            channels.add(channel);
+            Completable commit = groupCommit.commit(channel, dir, null).cache();
+            commit.subscribe();
+            commits.add(commit);
+        }
+
+        /* nothing is durable until the group is flushed */
+        assertFalse(Completable.merge(commits).blockingAwait(100, TimeUnit.MILLISECONDS));
+        for (FileChannel channel : channels) {
+            assertTrue(channel.isOpen());
+        }
+        assertTrue(synced.isEmpty());
+
+        /* the whole group completes at once and its directory is synced only once */
+        groupCommit.flush();
+        assertTrue(Completable.merge(commits).blockingAwait(5, TimeUnit.SECONDS));
+        for (FileChannel channel : channels) {
+            assertFalse(channel.isOpen());
+        }
+        assertEquals(1, synced.size());
+        assertEquals(dir, synced.getFirst());
+    }
+}
@@ -0,0 +1,142 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test class for IndexCheckpoint.
+ *
+ * @author Lucien Loiseau on 14/11/18.
+ */
+public class IndexCheckpointTest {
+
+    private File dir = new File(System.getProperty("path") + "/checkpoint/");
+
+    private void cleanDir() {
+        dir.mkdirs();
+        new File(dir, IndexCheckpoint.SNAPSHOT_FILE).delete();
+        new File(dir, IndexCheckpoint.JOURNAL_FILE).delete();
+    }
+
+    private IndexCheckpoint.Record record(String name, long timestamp) {
+        byte[] primary = {0x01, 0x02, 0x03, (byte) name.length()};
+        return new IndexCheckpoint.Record(name, timestamp, name.length(), false, "", primary);
+    }
+
+    @Test
+    public void testJournalReplay() throws IOException {
+        System.out.println("[+] IndexCheckpoint: journal replay");
+        cleanDir();
+
+        IndexCheckpoint checkpoint = new IndexCheckpoint(dir);
+        assertEquals(0, checkpoint.load().size());
+        checkpoint.journalAdd(record("bundle-1.bundle", 10));
+        checkpoint.journalAdd(record("bundle-2.bundle", 20));
+        checkpoint.journalAdd(record("bundle-3.bundle", 30));
+        checkpoint.journalDelete("bundle-2.bundle");
+        checkpoint.close();
+
+        IndexCheckpoint reloaded = new IndexCheckpoint(dir);
+        Map<String, IndexCheckpoint.Record> records = reloaded.load();
+        assertEquals(2, records.size());
+        assertEquals(4, reloaded.journalSize());
+        assertTrue(records.containsKey("bundle-1.bundle"));
+        assertFalse(records.containsKey("bundle-2.bundle"));
+        assertEquals(30, records.get("bundle-3.bundle").timestamp);
+        assertEquals(15, records.get("bundle-3.bundle").length);
+        assertArrayEquals(record("bundle-3.bundle", 0).primaryBlock,
+                records.get("bundle-3.bundle").primaryBlock);
+        reloaded.close();
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        System.out.println("[+] IndexCheckpoint: snapshot");
+        cleanDir();
+
+        IndexCheckpoint checkpoint = new IndexCheckpoint(dir);
+        checkpoint.load();
+        checkpoint.journalAdd(record("bundle-1.bundle", 10));
+        LinkedList<IndexCheckpoint.Record> records = new LinkedList<>();
+        records.add(record("bundle-1.bundle", 100));
+        records.add(record("bundle-2.bundle", 100));
+        checkpoint.checkpoint(100, records);
+        assertEquals(0, checkpoint.journalSize());
+        assertFalse(new File(dir, IndexCheckpoint.JOURNAL_FILE).exists());
+        checkpoint.journalAdd(record("bundle-3.bundle", 200));
+        checkpoint.close();
+
+        IndexCheckpoint reloaded = new IndexCheckpoint(dir);
+        Map<String, IndexCheckpoint.Record> loaded = reloaded.load();
+        assertEquals(3, loaded.size());
+        assertEquals(100, loaded.get("bundle-1.bundle").timestamp);
+        assertEquals(200, loaded.get("bundle-3.bundle").timestamp);
+        reloaded.close();
+    }
+
+    @Test
+    public void testCorruption() throws IOException {
+        System.out.println("[+] IndexCheckpoint: corruption");
+        cleanDir();
+
+        IndexCheckpoint checkpoint = new IndexCheckpoint(dir);
+        checkpoint.load();
+        LinkedList<IndexCheckpoint.Record> records = new LinkedList<>();
+        records.add(record("bundle-1.bundle", 100));
+        checkpoint.checkpoint(100, records);
+        checkpoint.journalAdd(record("bundle-2.bundle", 200));
+        checkpoint.close();
+
+        /* corrupt the snapshot, it must be ignored */
+        RandomAccessFile raf = new RandomAccessFile(new File(dir, IndexCheckpoint.SNAPSHOT_FILE),
+                "rw");
+        raf.seek(20);
+        raf.write(0xff);
+        raf.close();
+
+        /* torn write at the end of the journal */
+        FileOutputStream out = new FileOutputStream(
+                new File(dir, IndexCheckpoint.JOURNAL_FILE), true);
+        out.write(new byte[]{0x00, 0x00, 0x00, 0x40, 0x01});
+        out.close();
+
+        IndexCheckpoint reloaded = new IndexCheckpoint(dir);
+        Map<String, IndexCheckpoint.Record> loaded = reloaded.load();
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.containsKey("bundle-2.bundle"));
+
+        /* new entries must be appended after the last valid entry */
+        reloaded.journalAdd(record("bundle-3.bundle", 300));
+        reloaded.close();
+        assertEquals(2, new IndexCheckpoint(dir).load().size());
+    }
+
+    @Test
+    public void testRecordMatches() throws IOException {
+        System.out.println("[+] IndexCheckpoint: record matches its bundle file");
+        cleanDir();
+
+        File file = new File(dir, "bundle-1.bundle");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[15]);
+        out.close();
+        long now = System.currentTimeMillis() + 1000;
+        assertTrue(record("bundle-1.bundle", now).matches(file));
+
+        /* the file was truncated or rewritten after its record */
+        assertFalse(record("bundle-12.bundle", now).matches(file));
+        assertFalse(record("bundle-1.bundle", file.lastModified() - 1000).matches(file));
+        file.delete();
+    }
+}
@@ -0,0 +1,69 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Test class for MappedFileCache.
+ *
+ * @author Lucien Loiseau on 17/11/18.
+ */
+public class MappedFileCacheTest {
+
+    private File dir = new File(System.getProperty("path") + "/mmap/");
+
+    private File file(String name, int size) throws IOException {
+        dir.mkdirs();
+        File file = new File(dir, name);
+        FileOutputStream fos = new FileOutputStream(file);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        fos.write(data);
+        fos.close();
+        return file;
+    }
+
+    @Test
+    public void testMapAndEvict() throws IOException {
+        System.out.println("[+] MappedFileCache: map and evict");
+        MappedFileCache cache = new MappedFileCache(1000);
+        File f1 = file("f1", 400);
+        File f2 = file("f2", 400);
+        File f3 = file("f3", 400);
+
+        ByteBuffer b1 = cache.map(f1);
+        assertEquals(400, b1.remaining());
+        assertEquals((byte) 10, b1.get(10));
+
+        /* independent buffers */
+        b1.position(100);
+        assertEquals(0, cache.map(f1).position());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        cache.map(f2);
+        cache.map(f1);
+        cache.map(f3);
+        assertEquals(800, cache.size());
+
+        /* f2 was the least recently used */
+        cache.map(f1);
+        cache.map(f2);
+        assertEquals(4, cache.misses());
+
+        cache.invalidate(f2.getAbsolutePath());
+        assertEquals(400, cache.size());
+
+        /* files bigger than the cache are not mapped */
+        assertNull(cache.map(file("big", 2000)));
+    }
+}
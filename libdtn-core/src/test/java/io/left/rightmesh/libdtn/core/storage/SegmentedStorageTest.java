@@ -0,0 +1,377 @@
+package io.left.rightmesh.libdtn.core.storage;
+
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SEGMENTED_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_PATH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.left.rightmesh.libdtn.common.data.BaseBlockFactory;
+import io.left.rightmesh.libdtn.common.data.BlockFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BaseBlockDataParserFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BlockDataParserFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BaseBlockProcessorFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
+import io.left.rightmesh.libdtn.common.data.eid.BaseEidFactory;
+import io.left.rightmesh.libdtn.common.data.eid.EidFactory;
+import io.left.rightmesh.libdtn.common.utils.Log;
+import io.left.rightmesh.libdtn.common.utils.SimpleLogger;
+import io.left.rightmesh.libdtn.core.CoreConfiguration;
+import io.left.rightmesh.libdtn.common.data.Bundle;
+
+import io.left.rightmesh.libdtn.core.MockExtensionManager;
+import io.left.rightmesh.libdtn.core.MockCore;
+import io.left.rightmesh.libdtn.core.api.CoreApi;
+import io.left.rightmesh.libdtn.core.api.ExtensionManagerApi;
+import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test class for SegmentedStorage.
+ * @author Lucien Loiseau on 12/11/18.
+ */
+public class SegmentedStorageTest {
+
+    public static final AtomicReference<CountDownLatch> WAIT_LOCK = new AtomicReference<>(new CountDownLatch(1));
+    private Set<String> paths = new HashSet<>();
+    private CoreConfiguration conf = new CoreConfiguration();
+    private File dir = new File(System.getProperty("path") + "/segment/");
+    private Storage storage;
+    private CoreApi mockCore = mockCore();
+
+    /* mocking the core */
+    private CoreApi mockCore() {
+        return new MockCore() {
+            @Override
+            public ConfigurationApi getConf() {
+                conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+                conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(false);
+                conf.<Boolean>get(COMPONENT_ENABLE_SEGMENTED_STORAGE).update(true);
+
+                Set<String> paths = new HashSet<>();
+                paths.add(System.getProperty("path"));
+                conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+                return conf;
+            }
+
+            @Override
+            public ExtensionManagerApi getExtensionManager() {
+                return new MockExtensionManager() {
+                    @Override
+                    public BlockDataParserFactory getBlockDataParserFactory() {
+                        return new BaseBlockDataParserFactory();
+                    }
+
+                    @Override
+                    public BlockFactory getBlockFactory() {
+                        return new BaseBlockFactory();
+                    }
+
+                    @Override
+                    public EidFactory getEidFactory() {
+                        return new BaseEidFactory();
+                    }
+
+                    @Override
+                    public BlockDataSerializerFactory getBlockDataSerializerFactory() {
+                        return new BaseBlockDataSerializerFactory();
+                    }
+
+                    @Override
+                    public BlockProcessorFactory getBlockProcessorFactory() {
+                        return new BaseBlockProcessorFactory();
+                    }
+                };
+            }
+
+            @Override
+            public Log getLogger() {
+                return new SimpleLogger();
+            }
+        };
+    }
+
+    @Test
+    public void testSegmentedStoreBundle() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SegmentedStorage");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+
+            System.out.println("[.] clear SegmentedStorage");
+            clearStorage();
+            assertStorageSize(0);
+            assertFileStorageSize(0, dir);
+
+            Bundle[] bundles = {
+                    TestBundle.testBundle1(),
+                    TestBundle.testBundle2(),
+                    TestBundle.testBundle3(),
+                    TestBundle.testBundle4(),
+                    TestBundle.testBundle5(),
+                    TestBundle.testBundle6()
+            };
+
+            /* store the bundles in storage */
+            System.out.println("[.] store in SegmentedStorage");
+            cockLock();
+            Observable.fromArray(bundles).flatMapCompletable(
+                    b -> Completable.fromSingle(storage.getSegmentedStorage().store(b)))
+                    .subscribe(
+                            () -> {
+                                WAIT_LOCK.get().countDown();
+                            },
+                            e -> {
+                                WAIT_LOCK.get().countDown();
+                            });
+            waitFinish();
+            assertStorageSize(bundles.length);
+            assertFileStorageSize(1, dir);
+            assertEquals(1, storage.getSegmentedStorage().segmentCount());
+
+            /* pull the bundles from storage  */
+            System.out.println("[.] pull from SegmentedStorage");
+            final LinkedList<Bundle> pulledBundles = new LinkedList<>();
+            cockLock();
+            Observable.fromArray(bundles).flatMapCompletable(
+                    b -> Completable.create(s ->
+                            storage.getSegmentedStorage().get(b.bid).subscribe(
+                                    pb -> {
+                                        pulledBundles.add(pb);
+                                        s.onComplete();
+                                    },
+                                    e -> {
+                                        System.out.println("error pulling bundle: " + e.getMessage());
+                                        s.onComplete();
+                                    })))
+                    .subscribe(
+                            () -> WAIT_LOCK.get().countDown(),
+                            e -> WAIT_LOCK.get().countDown());
+            waitFinish();
+            assertEquals(bundles.length, pulledBundles.size());
+            assertFileStorageSize(1, dir);
+
+            /* check that they are the same */
+            for (Bundle bundle : pulledBundles) {
+                boolean found = false;
+                for (int j = 0; j < bundles.length; j++) {
+                    if (bundles[j].bid.getBidString().equals(bundle.bid.getBidString())) {
+                        found = true;
+                        assertArrayEquals(
+                                flowableToByteArray(bundles[j].getPayloadBlock().data.observe()),
+                                flowableToByteArray(bundle.getPayloadBlock().data.observe()));
+                        bundle.clearBundle();
+                    }
+                }
+                assertTrue(found);
+            }
+
+            /* check remove path */
+            System.out.println("[.] remove path from SegmentedStorage configuration");
+            paths.clear();
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            try {
+                // give it time to unindex
+                Thread.sleep(200);
+            } catch (InterruptedException ie) {
+                // ignore
+            }
+            assertStorageSize(0);
+            assertFileStorageSize(1, dir);
+
+            /* check indexing new path */
+            System.out.println("[.] add path to SegmentedStorage configuration for indexing");
+            paths.add(System.getProperty("path"));
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            try {
+                // give it time to index
+                Thread.sleep(200);
+            } catch (InterruptedException ie) {
+                // ignore
+            }
+            assertStorageSize(6);
+            assertFileStorageSize(1, dir);
+
+            /* clear the storage */
+            System.out.println("[.] clear SegmentedStorage");
+            clearStorage();
+            assertStorageSize(0);
+            assertFileStorageSize(0, dir);
+
+            for(Bundle bundle : bundles) {
+                bundle.clearBundle();
+            }
+        }
+    }
+
+    @Test
+    public void testInterruptedCompaction() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SegmentedStorage: interrupted compaction");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+            assertStorageSize(0);
+
+            Bundle[] bundles = {
+                    TestBundle.testBundle1(),
+                    TestBundle.testBundle2(),
+                    TestBundle.testBundle3()
+            };
+
+            cockLock();
+            Observable.fromArray(bundles).flatMapCompletable(
+                    b -> Completable.fromSingle(storage.getSegmentedStorage().store(b)))
+                    .subscribe(
+                            () -> WAIT_LOCK.get().countDown(),
+                            e -> WAIT_LOCK.get().countDown());
+            waitFinish();
+            assertStorageSize(bundles.length);
+
+            /* a compaction that stops after having moved the first record */
+            System.out.println("[.] move one record and abort the compaction");
+            SegmentedStorage.Segment segment = storage.index.get(bundles[0].bid).segment;
+            assertTrue(storage.getSegmentedStorage().moveRecord(segment, bundles[0].bid));
+            assertStorageSize(bundles.length);
+
+            /* the moved bundle is deleted */
+            System.out.println("[.] remove the moved bundle");
+            cockLock();
+            storage.getSegmentedStorage().remove(bundles[0].bid).subscribe(
+                    () -> WAIT_LOCK.get().countDown(),
+                    e -> WAIT_LOCK.get().countDown());
+            waitFinish();
+            assertStorageSize(bundles.length - 1);
+
+            /* re-indexing must not bring the original copy of the deleted bundle back */
+            System.out.println("[.] re-index SegmentedStorage");
+            paths.clear();
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            paths.add(System.getProperty("path"));
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            try {
+                // give it time to index
+                Thread.sleep(200);
+            } catch (InterruptedException ie) {
+                // ignore
+            }
+            assertStorageSize(bundles.length - 1);
+            assertFalse(storage.containsPersistent(bundles[0].bid));
+
+            clearStorage();
+            assertStorageSize(0);
+            for (Bundle bundle : bundles) {
+                bundle.clearBundle();
+            }
+        }
+    }
+
+    @Test
+    public void testPendingRecord() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SegmentedStorage: pending record left by a stopped store");
+            storage = new Storage(mockCore);
+            storage.initComponent(mockCore.getConf(), COMPONENT_ENABLE_STORAGE, mockCore.getLogger());
+            clearStorage();
+            assertStorageSize(0);
+
+            Bundle[] bundles = {
+                    TestBundle.testBundle1(),
+                    TestBundle.testBundle2(),
+                    TestBundle.testBundle3()
+            };
+            for (Bundle bundle : bundles) {
+                storage.getSegmentedStorage().store(bundle).blockingGet();
+            }
+            assertStorageSize(bundles.length);
+
+            /* the node stopped while the second record was being written */
+            Storage.IndexEntry entry = storage.index.get(bundles[1].bid);
+            RandomAccessFile file = new RandomAccessFile(entry.segment.file, "rw");
+            file.seek(entry.recordOffset + 4);
+            file.write(SegmentedStorage.RECORD_PENDING);
+            file.close();
+
+            /* the pending record is skipped, the records that follow it are still indexed */
+            paths.clear();
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            paths.add(System.getProperty("path"));
+            conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            try {
+                // give it time to index
+                Thread.sleep(200);
+            } catch (InterruptedException ie) {
+                // ignore
+            }
+            assertStorageSize(bundles.length - 1);
+            assertTrue(storage.containsPersistent(bundles[0].bid));
+            assertFalse(storage.containsPersistent(bundles[1].bid));
+            assertTrue(storage.containsPersistent(bundles[2].bid));
+
+            clearStorage();
+            assertStorageSize(0);
+            for (Bundle bundle : bundles) {
+                bundle.clearBundle();
+            }
+        }
+    }
+
+    public void cockLock() {
+        WAIT_LOCK.set(new CountDownLatch(1));
+    }
+
+    public void waitFinish() {
+        try {
+            WAIT_LOCK.get().await(2000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            // ignore
+        }
+    }
+
+    private byte[] flowableToByteArray(Flowable<ByteBuffer> f) {
+        AtomicInteger size = new AtomicInteger();
+        f.subscribe(b -> size.addAndGet(b.remaining()));
+        ByteBuffer ret = ByteBuffer.allocate(size.get());
+        f.subscribe(ret::put);
+        return ret.array();
+    }
+
+    private void clearStorage() {
+        cockLock();
+        storage.clear().subscribe(
+                () -> WAIT_LOCK.get().countDown(),
+                e -> WAIT_LOCK.get().countDown()
+        );
+        waitFinish();
+    }
+
+    void assertStorageSize(int expectedSize) {
+        assertEquals(expectedSize, storage.getSegmentedStorage().count());
+    }
+
+    void assertFileStorageSize(int expectedSize, File dir) {
+        assertEquals(expectedSize, dir.listFiles().length);
+    }
+
+
+}
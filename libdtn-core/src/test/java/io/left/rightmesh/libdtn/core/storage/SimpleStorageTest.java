@@ -3,13 +3,17 @@ package io.left.rightmesh.libdtn.core.storage;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_INDEXING_PARALLELISM;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_MMAP_READ;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import io.left.rightmesh.libdtn.common.data.BaseBlockFactory;
 import io.left.rightmesh.libdtn.common.data.BlockFactory;
+import io.left.rightmesh.libdtn.common.data.CanonicalBlock;
 import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BaseBlockDataParserFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BlockDataParserFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BaseBlockProcessorFactory;
@@ -17,7 +21,12 @@ import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFac
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.eid.BaseEidFactory;
+import io.left.rightmesh.libdtn.common.data.eid.Eid;
 import io.left.rightmesh.libdtn.common.data.eid.EidFactory;
+import io.left.rightmesh.libdtn.common.data.security.BlockIntegrityBlock;
+import io.left.rightmesh.libdtn.common.data.security.CipherSuites;
+import io.left.rightmesh.libdtn.common.data.security.SecurityBlock;
+import io.left.rightmesh.libdtn.common.data.security.SecurityContext;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.common.utils.SimpleLogger;
 import io.left.rightmesh.libdtn.core.CoreConfiguration;
@@ -28,20 +37,28 @@ import io.left.rightmesh.libdtn.core.MockCore;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.api.ExtensionManagerApi;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.left.rightmesh.libdtn.core.events.BundleIndexedBatch;
+import io.left.rightmesh.librxbus.RxBus;
+import io.left.rightmesh.librxbus.Subscribe;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.crypto.Cipher;
+
 import org.junit.Test;
 
 /**
@@ -222,6 +239,281 @@ public class SimpleStorageTest {
     }
 
 
+    /* collects the bundles notified by the BundleIndexedBatch events */
+    public static class BatchListener {
+        final List<Bundle> indexed = new LinkedList<>();
+        int batches = 0;
+
+        @Subscribe
+        public synchronized void onEvent(BundleIndexedBatch event) {
+            batches++;
+            indexed.addAll(event.bundles);
+        }
+    }
+
+    /* mocking a core whose configuration is only modified by the test */
+    private CoreApi fixedCore(CoreConfiguration conf) {
+        return new MockCore() {
+            @Override
+            public ConfigurationApi getConf() {
+                return conf;
+            }
+
+            @Override
+            public ExtensionManagerApi getExtensionManager() {
+                return mockCore.getExtensionManager();
+            }
+
+            @Override
+            public Log getLogger() {
+                return new SimpleLogger();
+            }
+        };
+    }
+
+    private void updatePaths(CoreConfiguration conf, String... roots) {
+        Set<String> updated = new HashSet<>();
+        for (String root : roots) {
+            updated.add(root);
+        }
+        conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(updated);
+        try {
+            // give it time to index
+            Thread.sleep(500);
+        } catch (InterruptedException ie) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testParallelIndexing() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage: parallel indexing of several paths");
+            CoreConfiguration conf = new CoreConfiguration();
+            conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+            conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(false);
+            conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(true);
+            conf.<Integer>get(SIMPLE_STORAGE_INDEXING_PARALLELISM).update(3);
+            String[] roots = {
+                    System.getProperty("path") + "/index-0",
+                    System.getProperty("path") + "/index-1",
+                    System.getProperty("path") + "/index-2"
+            };
+            for (String root : roots) {
+                new File(root).mkdirs();
+            }
+            conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(new HashSet<>());
+
+            CoreApi core = fixedCore(conf);
+            storage = new Storage(core);
+            storage.initComponent(conf, COMPONENT_ENABLE_STORAGE, core.getLogger());
+
+            /* store a few bundles in every path, one path at a time */
+            Set<String> stored = new HashSet<>();
+            for (String root : roots) {
+                updatePaths(conf, root);
+                clearStorage();
+                Bundle[] bundles = {
+                        TestBundle.testBundle1(),
+                        TestBundle.testBundle2(),
+                        TestBundle.testBundle3(),
+                        TestBundle.testBundle4(),
+                        TestBundle.testBundle5(),
+                        TestBundle.testBundle6()
+                };
+                cockLock();
+                Observable.fromArray(bundles).flatMapCompletable(
+                        b -> Completable.fromSingle(storage.getSimpleStorage().store(b)))
+                        .subscribe(
+                                () -> WAIT_LOCK.get().countDown(),
+                                e -> WAIT_LOCK.get().countDown());
+                waitFinish();
+                assertStorageSize(bundles.length);
+                for (Bundle bundle : bundles) {
+                    stored.add(bundle.bid.getBidString());
+                    bundle.clearBundle();
+                }
+            }
+
+            /* index all the paths at once */
+            updatePaths(conf);
+            assertStorageSize(0);
+            BatchListener listener = new BatchListener();
+            RxBus.register(listener);
+            updatePaths(conf, roots);
+            RxBus.unregister(listener);
+
+            /* every bundle is indexed exactly once */
+            assertStorageSize(stored.size());
+            synchronized (listener) {
+                assertTrue(listener.batches >= roots.length);
+                assertEquals(stored.size(), listener.indexed.size());
+                Set<String> indexed = new HashSet<>();
+                for (Bundle bundle : listener.indexed) {
+                    indexed.add(bundle.bid.getBidString());
+                }
+                assertEquals(stored, indexed);
+            }
+
+            clearStorage();
+            assertStorageSize(0);
+        }
+    }
+
+    @Test
+    public void testIndexCheckpoint() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage: checkpoint the index of a path");
+            CoreConfiguration conf = new CoreConfiguration();
+            conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+            conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(false);
+            conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(true);
+            String root = System.getProperty("path") + "/checkpoint";
+            new File(root).mkdirs();
+            conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(new HashSet<>());
+
+            CoreApi core = fixedCore(conf);
+            storage = new Storage(core);
+            storage.initComponent(conf, COMPONENT_ENABLE_STORAGE, core.getLogger());
+            updatePaths(conf, root);
+            clearStorage();
+
+            Bundle[] bundles = {
+                    TestBundle.testBundle1(),
+                    TestBundle.testBundle2(),
+                    TestBundle.testBundle3()
+            };
+            Set<String> stored = new HashSet<>();
+            for (Bundle bundle : bundles) {
+                storage.getSimpleStorage().store(bundle).blockingGet();
+                stored.add(bundle.bid.getBidString());
+            }
+            assertStorageSize(bundles.length);
+
+            /* removing the path writes a snapshot of its index */
+            updatePaths(conf);
+            assertStorageSize(0);
+            File snapshot = new File(root, IndexCheckpoint.SNAPSHOT_FILE);
+            assertTrue(snapshot.exists());
+            IndexCheckpoint checkpoint = new IndexCheckpoint(new File(root));
+            assertEquals(bundles.length, checkpoint.load().size());
+            checkpoint.close();
+
+            /* the bundles are reloaded from the snapshot */
+            BatchListener listener = new BatchListener();
+            RxBus.register(listener);
+            updatePaths(conf, root);
+            RxBus.unregister(listener);
+            assertStorageSize(bundles.length);
+            synchronized (listener) {
+                Set<String> indexed = new HashSet<>();
+                for (Bundle bundle : listener.indexed) {
+                    indexed.add(bundle.bid.getBidString());
+                }
+                assertEquals(stored, indexed);
+            }
+
+            for (Bundle bundle : bundles) {
+                bundle.clearBundle();
+            }
+            clearStorage();
+            assertStorageSize(0);
+        }
+    }
+
+    /* security context that only provides the digests used for integrity */
+    private SecurityContext digestContext() {
+        return new SecurityContext() {
+            @Override
+            public MessageDigest initDigestForIntegrity(int cipherSuiteId, Eid securitySource)
+                    throws NoSuchAlgorithmException {
+                return CipherSuites.fromId(cipherSuiteId).getMessageDigest();
+            }
+
+            @Override
+            public MessageDigest initDigestForVerification(int cipherSuiteId, Eid securitySource)
+                    throws NoSuchAlgorithmException {
+                return CipherSuites.fromId(cipherSuiteId).getMessageDigest();
+            }
+
+            @Override
+            public Cipher initCipherForEncryption(int cipherSuiteId, Eid securitySource)
+                    throws NoSecurityContextFound {
+                throw new NoSecurityContextFound();
+            }
+
+            @Override
+            public Cipher initCipherForDecryption(int cipherSuiteId, Eid securitySource)
+                    throws NoSecurityContextFound {
+                throw new NoSecurityContextFound();
+            }
+        };
+    }
+
+    @Test
+    public void testMappedReadIntegrityBlock() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] SimpleStorage: pull a bundle with a BIB through mmap");
+            CoreConfiguration conf = new CoreConfiguration();
+            conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+            conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(false);
+            conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(true);
+            conf.<Boolean>get(SIMPLE_STORAGE_MMAP_READ).update(true);
+            String root = System.getProperty("path") + "/mmap-bib";
+            new File(root).mkdirs();
+            conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(new HashSet<>());
+
+            CoreApi core = fixedCore(conf);
+            storage = new Storage(core);
+            storage.initComponent(conf, COMPONENT_ENABLE_STORAGE, core.getLogger());
+            updatePaths(conf, root);
+            clearStorage();
+
+            /* protect the payload with an integrity block */
+            SecurityContext context = digestContext();
+            Bundle bundle = TestBundle.testBundle3();
+            BlockIntegrityBlock bib = new BlockIntegrityBlock();
+            bib.addTarget(0);
+            bib.setDigestSuite(CipherSuites.BIB_SHA256);
+            try {
+                bib.addTo(bundle);
+                bib.applyTo(bundle, context,
+                        core.getExtensionManager().getBlockDataSerializerFactory(),
+                        core.getLogger());
+            } catch (SecurityBlock.ForbiddenOperationException
+                    | SecurityBlock.NoSuchBlockException
+                    | SecurityBlock.SecurityOperationException e) {
+                fail();
+            }
+
+            storage.getSimpleStorage().store(bundle).blockingGet();
+            assertStorageSize(1);
+
+            /* the security result is parsed from a buffer mapped from the bundle file */
+            Bundle pulled = storage.getSimpleStorage().get(bundle.bid).blockingGet();
+            boolean verified = false;
+            for (CanonicalBlock block : pulled.getBlocks()) {
+                if (block.type == BlockIntegrityBlock.BLOCK_INTEGRITY_BLOCK_TYPE) {
+                    try {
+                        ((BlockIntegrityBlock) block).applyFrom(pulled, context,
+                                core.getExtensionManager().getBlockDataSerializerFactory(),
+                                core.getLogger());
+                        verified = true;
+                    } catch (SecurityBlock.SecurityOperationException soe) {
+                        fail();
+                    }
+                }
+            }
+            assertTrue(verified);
+            TestBundle.checkBundlePayload(pulled);
+
+            pulled.clearBundle();
+            bundle.clearBundle();
+            clearStorage();
+            assertStorageSize(0);
+        }
+    }
+
     public void cockLock() {
         WAIT_LOCK.set(new CountDownLatch(1));
     }
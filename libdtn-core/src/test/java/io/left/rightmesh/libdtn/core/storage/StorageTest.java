@@ -130,6 +130,18 @@ public class StorageTest {
             assertEquals(bundles.length, storage.getSimpleStorage().count());
             assertFileStorageSize(bundles.length, dir);
 
+            System.out.println("[.] query Storage secondary indexes");
+            assertEquals(bundles.length, storage.countVolatile());
+            assertEquals(bundles.length, storage.countPersistent());
+            assertEquals(bundles.length, (long) storage
+                    .findByDestination(bundles[0].getDestination()).count().blockingGet());
+            assertEquals(bundles.length, (long) storage
+                    .findBySource(bundles[0].getSource()).count().blockingGet());
+            assertEquals(bundles.length, (long) storage
+                    .findExpiringBefore(Long.MAX_VALUE).count().blockingGet());
+            assertEquals(0, (long) storage
+                    .findExpiringBefore(0).count().blockingGet());
+
             System.out.println("[.] clear Storage");
             cockLock();
             storage.clear().subscribe(
@@ -142,6 +154,8 @@ public class StorageTest {
             assertEquals(0, storage.getVolatileStorage().count());
             assertEquals(0, storage.getSimpleStorage().count());
             assertFileStorageSize(0, dir);
+            assertEquals(0, (long) storage
+                    .findByDestination(bundles[0].getDestination()).count().blockingGet());
 
             for(Bundle bundle : bundles) {
                 bundle.clearBundle();
@@ -3,22 +3,43 @@ package io.left.rightmesh.libdtn.core.storage;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_STORAGE_SPILL_HIGH_WATERMARK;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_STORAGE_SPILL_LOW_WATERMARK;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import io.left.rightmesh.libdtn.common.data.BaseBlockFactory;
+import io.left.rightmesh.libdtn.common.data.BlockFactory;
+import io.left.rightmesh.libdtn.common.data.PayloadBlock;
+import io.left.rightmesh.libdtn.common.data.blob.Blob;
+import io.left.rightmesh.libdtn.common.data.blob.VolatileMemory;
+import io.left.rightmesh.libdtn.common.data.blob.WritableBlob;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BaseBlockDataParserFactory;
+import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BlockDataParserFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BaseBlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.processor.BlockProcessorFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BaseBlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
+import io.left.rightmesh.libdtn.common.data.eid.BaseEidFactory;
+import io.left.rightmesh.libdtn.common.data.eid.EidFactory;
 import io.left.rightmesh.libdtn.common.utils.Log;
 import io.left.rightmesh.libdtn.common.utils.SimpleLogger;
 import io.left.rightmesh.libdtn.core.CoreConfiguration;
 import io.left.rightmesh.libdtn.common.data.Bundle;
+import io.left.rightmesh.libdtn.common.data.PrimaryBlock;
 import io.left.rightmesh.libdtn.core.MockExtensionManager;
 import io.left.rightmesh.libdtn.core.MockCore;
 import io.left.rightmesh.libdtn.core.api.CoreApi;
 import io.left.rightmesh.libdtn.core.api.ExtensionManagerApi;
 import io.left.rightmesh.libdtn.core.api.ConfigurationApi;
+import io.left.rightmesh.libdtn.core.api.StorageApi.EvictionPolicy;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -65,6 +86,61 @@ public class VolatileStorageTest {
         };
     }
 
+    /* mocking a core with a small volatile memory that spills to a simple storage */
+    private CoreApi spillingCore() {
+        CoreConfiguration conf = new CoreConfiguration();
+        conf.<Boolean>get(COMPONENT_ENABLE_STORAGE).update(true);
+        conf.<Boolean>get(COMPONENT_ENABLE_VOLATILE_STORAGE).update(true);
+        conf.<Boolean>get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(true);
+        Set<String> paths = new HashSet<>();
+        paths.add(System.getProperty("path"));
+        conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(paths);
+        conf.<Integer>get(VOLATILE_BLOB_STORAGE_MAX_CAPACITY).update(1 << 20);
+        conf.<Integer>get(VOLATILE_STORAGE_SPILL_HIGH_WATERMARK).update(100);
+        conf.<Integer>get(VOLATILE_STORAGE_SPILL_LOW_WATERMARK).update(30);
+        return new MockCore() {
+            @Override
+            public ConfigurationApi getConf() {
+                return conf;
+            }
+
+            @Override
+            public ExtensionManagerApi getExtensionManager() {
+                return new MockExtensionManager() {
+                    @Override
+                    public BlockDataParserFactory getBlockDataParserFactory() {
+                        return new BaseBlockDataParserFactory();
+                    }
+
+                    @Override
+                    public BlockFactory getBlockFactory() {
+                        return new BaseBlockFactory();
+                    }
+
+                    @Override
+                    public EidFactory getEidFactory() {
+                        return new BaseEidFactory();
+                    }
+
+                    @Override
+                    public BlockDataSerializerFactory getBlockDataSerializerFactory() {
+                        return new BaseBlockDataSerializerFactory();
+                    }
+
+                    @Override
+                    public BlockProcessorFactory getBlockProcessorFactory() {
+                        return new BaseBlockProcessorFactory();
+                    }
+                };
+            }
+
+            @Override
+            public Log getLogger() {
+                return new SimpleLogger();
+            }
+        };
+    }
+
     @Test
     public void testVolatileStoreBundle() {
         synchronized (StorageTest.LOCK) {
@@ -107,4 +183,90 @@ public class VolatileStorageTest {
         }
     }
 
+    @Test
+    public void testEvictionOrder() {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] Volatile Storage: eviction order");
+            Storage storage = new Storage(mockCore);
+            storage.initComponent(
+                    mockCore.getConf(),
+                    COMPONENT_ENABLE_STORAGE,
+                    mockCore.getLogger());
+            storage.getVolatileStorage().clear().subscribe();
+
+            Bundle hot = TestBundle.testBundle1();
+            Bundle cold = TestBundle.testBundle2();
+            Bundle bulk = TestBundle.testBundle3();
+            hot.setLifetime(1000);
+            cold.setLifetime(3000);
+            bulk.setLifetime(2000);
+            bulk.tag("priority", PrimaryBlock.Priority.BULK);
+            storage.getVolatileStorage().store(hot).subscribe();
+            storage.getVolatileStorage().store(cold).subscribe();
+            storage.getVolatileStorage().store(bulk).subscribe();
+            storage.index.get(hot.bid).lastAccess = 300;
+            storage.index.get(cold.bid).lastAccess = 100;
+            storage.index.get(bulk.bid).lastAccess = 200;
+
+            List<Storage.IndexEntry> lru
+                    = storage.getVolatileStorage().evictionCandidates(EvictionPolicy.LRU);
+            assertEquals(cold.bid, lru.get(0).bid);
+            assertEquals(bulk.bid, lru.get(1).bid);
+            assertEquals(hot.bid, lru.get(2).bid);
+
+            List<Storage.IndexEntry> priority = storage.getVolatileStorage()
+                    .evictionCandidates(EvictionPolicy.LOWEST_PRIORITY);
+            assertEquals(bulk.bid, priority.get(0).bid);
+            assertEquals(cold.bid, priority.get(1).bid);
+            assertEquals(hot.bid, priority.get(2).bid);
+
+            List<Storage.IndexEntry> expiry = storage.getVolatileStorage()
+                    .evictionCandidates(EvictionPolicy.FARTHEST_EXPIRY);
+            assertEquals(cold.bid, expiry.get(0).bid);
+            assertEquals(bulk.bid, expiry.get(1).bid);
+            assertEquals(hot.bid, expiry.get(2).bid);
+
+            storage.getVolatileStorage().clear().subscribe();
+            assertEquals(0, storage.getVolatileStorage().count());
+        }
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        synchronized (StorageTest.LOCK) {
+            System.out.println("[+] Volatile Storage: spill down to the low watermark");
+            CoreApi core = spillingCore();
+            Storage storage = new Storage(core);
+            storage.initComponent(core.getConf(), COMPONENT_ENABLE_STORAGE, core.getLogger());
+            storage.clear().blockingAwait();
+
+            /* every payload takes one 64KB chunk of the volatile memory */
+            VolatileMemory memory = storage.getVolatileMemory();
+            Bundle[] bundles = new Bundle[10];
+            for (int i = 0; i < bundles.length; i++) {
+                bundles[i] = TestBundle.testBundle0();
+                bundles[i].setLifetime(1000 + i);
+                Blob payload = storage.getBlobFactory().createBlob(60000);
+                WritableBlob wblob = payload.getWritableBlob();
+                wblob.write(new byte[60000]);
+                wblob.close();
+                bundles[i].addBlock(new PayloadBlock(payload));
+                storage.getVolatileStorage().store(bundles[i]).blockingGet();
+                /* the storage holds the bundle from now on */
+                bundles[i].release();
+            }
+            assertEquals(10 * 65536, memory.getMemoryUsage());
+
+            /* the spill stops as soon as the usage is below the low watermark */
+            long target = (1 << 20) * 30 / 100;
+            storage.getVolatileStorage().spill(memory);
+            assertTrue(memory.getMemoryUsage() <= target);
+            assertTrue(memory.getMemoryUsage() > target - 65536);
+            assertEquals(4, storage.getVolatileStorage().count());
+            assertEquals(10, storage.count());
+
+            storage.clear().blockingAwait();
+            assertEquals(0, memory.getMemoryUsage());
+        }
+    }
 }
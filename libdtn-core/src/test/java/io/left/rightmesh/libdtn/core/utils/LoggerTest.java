@@ -0,0 +1,112 @@
+package io.left.rightmesh.libdtn.core.utils;
+
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_LOGGING;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_LOG_FILE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_BUFFER_SIZE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_FILE_PATH;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_FILE_SIZE;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_LEVEL;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_OVERFLOW_POLICY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.left.rightmesh.libdtn.common.utils.Log;
+import io.left.rightmesh.libdtn.core.CoreConfiguration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the asynchronous Logger.
+ *
+ * @author Lucien Loiseau on 23/11/18.
+ */
+public class LoggerTest {
+
+    @Test
+    public void testLogFile() throws Exception {
+        System.out.println("[+] Logger: log from multiple threads into a file");
+        File log = File.createTempFile("dtn", ".log");
+        log.deleteOnExit();
+
+        CoreConfiguration conf = new CoreConfiguration();
+        conf.<Integer>get(LOG_BUFFER_SIZE).update(16);
+        conf.get(LOG_OVERFLOW_POLICY).update(Logger.OverflowPolicy.BLOCK);
+        conf.get(LOG_LEVEL).update(Log.LogLevel.VERBOSE);
+        conf.get(ENABLE_LOG_FILE).update(true);
+        conf.get(LOG_FILE_PATH).update(log.getPath());
+        conf.get(COMPONENT_ENABLE_LOGGING).update(true);
+        Logger logger = new Logger(conf);
+
+        final int threads = 4;
+        final int count = 1000;
+        List<Thread> producers = new LinkedList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    logger.i("LoggerTest", "message " + i);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+
+        /* disabling the logger drains the ring buffer and closes the file */
+        conf.get(COMPONENT_ENABLE_LOGGING).update(false);
+        assertEquals(0, logger.getDroppedCount());
+
+        int lines = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(log));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertTrue(line.contains("INFO - LoggerTest: message "));
+                lines++;
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(threads * count, lines);
+    }
+
+    @Test
+    public void testLogFileRotation() throws Exception {
+        System.out.println("[+] Logger: rotate the log file on its size in bytes");
+        File log = File.createTempFile("dtn", ".log");
+        log.deleteOnExit();
+        File rotated = new File(log.getPath() + ".1");
+        rotated.deleteOnExit();
+
+        CoreConfiguration conf = new CoreConfiguration();
+        conf.get(LOG_OVERFLOW_POLICY).update(Logger.OverflowPolicy.BLOCK);
+        conf.get(LOG_LEVEL).update(Log.LogLevel.VERBOSE);
+        conf.get(ENABLE_LOG_FILE).update(true);
+        conf.get(LOG_FILE_PATH).update(log.getPath());
+        conf.<Long>get(LOG_FILE_SIZE).update(1000L);
+        conf.get(COMPONENT_ENABLE_LOGGING).update(true);
+        Logger logger = new Logger(conf);
+
+        /* every character of the message takes two bytes in UTF-8 */
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            msg.append('\u00e9');
+        }
+        for (int i = 0; i < 5; i++) {
+            logger.i("LoggerTest", msg.toString());
+        }
+        conf.get(COMPONENT_ENABLE_LOGGING).update(false);
+
+        /* the file is rotated on the first line that crosses the limit */
+        assertTrue(rotated.exists());
+        assertTrue(rotated.length() >= 1000);
+        assertTrue(rotated.length() < 1000 + 300);
+    }
+}
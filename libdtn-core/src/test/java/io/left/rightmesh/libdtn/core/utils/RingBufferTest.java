@@ -0,0 +1,81 @@
+package io.left.rightmesh.libdtn.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for the RingBuffer.
+ *
+ * @author Lucien Loiseau on 23/11/18.
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testFullAndEmpty() {
+        System.out.println("[+] RingBuffer: full and empty");
+        RingBuffer<Integer> ring = new RingBuffer<>(5);
+        assertEquals(8, ring.capacity());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++) {
+                assertTrue(ring.offer(i));
+            }
+            assertFalse(ring.offer(8));
+            assertEquals(8, ring.size());
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i, (int) ring.poll());
+            }
+            assertNull(ring.poll());
+            assertTrue(ring.isEmpty());
+        }
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        System.out.println("[+] RingBuffer: multiple producers");
+        final int producers = 4;
+        final int count = 50000;
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+
+        List<Thread> threads = new LinkedList<>();
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    while (!ring.offer(id * count + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        /* every item is received once and in order for a given producer */
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * count) {
+            Integer item = ring.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            int id = item / count;
+            assertEquals(next[id]++, item % count);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+    }
+}
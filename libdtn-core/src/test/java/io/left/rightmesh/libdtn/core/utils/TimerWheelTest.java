@@ -0,0 +1,103 @@
+package io.left.rightmesh.libdtn.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for the TimerWheel.
+ *
+ * @author Lucien Loiseau on 15/11/18.
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void testFireInOrder() {
+        System.out.println("[+] TimerWheel: fire in order");
+        TimerWheel<Integer> wheel = new TimerWheel<>(10, 1000);
+        wheel.add(3, 1030);
+        wheel.add(1, 1010);
+        wheel.add(2, 1015);
+        wheel.add(0, 500);
+        assertEquals(4, wheel.size());
+
+        assertEquals(1, wheel.advance(1000).size());
+        assertEquals(0, wheel.advance(1009).size());
+        assertEquals(1, wheel.advance(1010).size());
+        assertEquals(0, wheel.advance(1019).size());
+        assertEquals(1, wheel.advance(1020).size());
+        assertEquals(1, wheel.advance(1050).size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCascade() {
+        System.out.println("[+] TimerWheel: cascade");
+        long start = 123456;
+        TimerWheel<Long> wheel = new TimerWheel<>(1, start);
+        Random random = new Random(42);
+        LinkedList<Long> deadlines = new LinkedList<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = start + 1 + (long) random.nextInt(300000);
+            deadlines.add(deadline);
+            wheel.add(deadline, deadline);
+        }
+
+        int fired = 0;
+        for (long now = start; now <= start + 300001; now += 97) {
+            List<Long> expired = wheel.advance(now);
+            for (Long deadline : expired) {
+                assertTrue(deadline <= now);
+                assertTrue(deadline > now - 97);
+            }
+            fired += expired.size();
+        }
+        assertEquals(deadlines.size(), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testIdleJump() {
+        System.out.println("[+] TimerWheel: idle jump");
+        TimerWheel<String> wheel = new TimerWheel<>(1, 0);
+        assertEquals(0, wheel.advance(1L << 40).size());
+        wheel.add("next", (1L << 40) + 300);
+        assertEquals(0, wheel.advance((1L << 40) + 299).size());
+        assertEquals(1, wheel.advance((1L << 40) + 300).size());
+    }
+
+    @Test
+    public void testCancel() {
+        System.out.println("[+] TimerWheel: cancel");
+        TimerWheel<Integer> wheel = new TimerWheel<>(10, 1000);
+        TimerWheel.Timeout near = wheel.add(1, 1010);
+        TimerWheel.Timeout far = wheel.add(2, 1000 + 10L * TimerWheel.SLOTS * 3);
+        TimerWheel.Timeout late = wheel.add(3, 500);
+        wheel.add(4, 1020);
+        assertEquals(4, wheel.size());
+
+        assertTrue(near.cancel());
+        assertTrue(far.cancel());
+        assertTrue(late.cancel());
+        assertFalse(near.cancel());
+        assertEquals(1, wheel.size());
+
+        assertEquals(0, wheel.advance(1010).size());
+        List<Integer> fired = wheel.advance(1000 + 10L * TimerWheel.SLOTS * 4);
+        assertEquals(1, fired.size());
+        assertEquals(4, (int) fired.get(0));
+        assertEquals(0, wheel.size());
+
+        /* an item that fired can't be cancelled anymore */
+        TimerWheel.Timeout fire = wheel.add(5, 2000);
+        wheel.advance(1000 + 10L * TimerWheel.SLOTS * 5);
+        assertFalse(fire.cancel());
+        assertEquals(0, wheel.size());
+    }
+}
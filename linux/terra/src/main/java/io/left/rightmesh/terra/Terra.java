@@ -1,5 +1,6 @@
 package io.left.rightmesh.terra;
 
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SEGMENTED_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_SIMPLE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.COMPONENT_ENABLE_VOLATILE_STORAGE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_AA_MODULES;
@@ -7,13 +8,17 @@ import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABL
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_AUTO_CONNECT_FOR_DETECT_EVENT;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_CLA_MODULES;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_CORE_MODULES;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_CUT_THROUGH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_FORWARDING;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_LOG_FILE;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.ENABLE_STATUS_REPORTING;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOCAL_EID;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_FILE_PATH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.LOG_LEVEL;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.MODULES_AA_PATH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.MODULES_CLA_PATH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.MODULES_CORE_PATH;
+import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SEGMENTED_STORAGE_PATH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.SIMPLE_STORAGE_PATH;
 import static io.left.rightmesh.libdtn.core.api.ConfigurationApi.CoreEntry.VOLATILE_BLOB_STORAGE_MAX_CAPACITY;
 
@@ -89,6 +94,10 @@ public class Terra implements Callable<Void> {
             description = "persistent storage directory")
     private String simplePath = "./";
 
+    @Option(names = {"-S", "--segmented"},
+            description = "use segmented log files for persistent storage")
+    private boolean segmentedStorage = false;
+
     @Option(names = {"-d", "--daemon"},
             description = "Start Terra as a daemon.")
     private boolean daemon;
@@ -109,6 +118,10 @@ public class Terra implements Callable<Void> {
             description = "set the log level to debug (-v -vv -vvv).")
     private boolean[] verbose = new boolean[0];
 
+    @Option(names = {"--log-file"},
+            description = "write the logs in a file instead of the standard output.")
+    private String logFile = null;
+
     @Option(names = {"--disable-reporting"},
             description = "disable sending status reporting.")
     private boolean disableReporting = false;
@@ -117,6 +130,10 @@ public class Terra implements Callable<Void> {
             description = "do not forward bundle that are not local.")
     private boolean disableForwarding = false;
 
+    @Option(names = {"--cut-through"},
+            description = "start forwarding a bundle before its payload is entirely received.")
+    private boolean cutThrough = false;
+
     @Option(names = {"--disable-eid-autoconnect"},
             description = "do not try to create opportunity when dispatching bundles.")
     private boolean disableEidAutoconnect = false;
@@ -168,15 +185,21 @@ public class Terra implements Callable<Void> {
             conf.get(VOLATILE_BLOB_STORAGE_MAX_CAPACITY).update(volatileLimit);
         }
 
-        conf.get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(persistentStorage);
+        conf.get(COMPONENT_ENABLE_SIMPLE_STORAGE).update(persistentStorage && !segmentedStorage);
+        conf.get(COMPONENT_ENABLE_SEGMENTED_STORAGE).update(persistentStorage && segmentedStorage);
         if (persistentStorage) {
             Set<String> paths = new HashSet<>();
             paths.add(simplePath);
-            conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(paths);
+            if (segmentedStorage) {
+                conf.<Set<String>>get(SEGMENTED_STORAGE_PATH).update(paths);
+            } else {
+                conf.<Set<String>>get(SIMPLE_STORAGE_PATH).update(paths);
+            }
         }
 
         conf.get(ENABLE_STATUS_REPORTING).update(!disableReporting);
         conf.get(ENABLE_FORWARDING).update(!disableForwarding);
+        conf.get(ENABLE_CUT_THROUGH).update(cutThrough);
         conf.get(ENABLE_AUTO_CONNECT_FOR_BUNDLE).update(!disableEidAutoconnect);
         conf.get(ENABLE_AUTO_CONNECT_FOR_DETECT_EVENT).update(!disablePeerAutoconnect);
 
@@ -212,6 +235,10 @@ public class Terra implements Callable<Void> {
             default:
                 conf.get(LOG_LEVEL).update(Log.LogLevel.VERBOSE);
         }
+        if (logFile != null) {
+            conf.get(ENABLE_LOG_FILE).update(true);
+            conf.get(LOG_FILE_PATH).update(logFile);
+        }
 
         /* module configuration */
         for(String enableModule : whitelistModules) {
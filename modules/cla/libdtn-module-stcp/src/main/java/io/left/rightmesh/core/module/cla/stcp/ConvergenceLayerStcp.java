@@ -4,13 +4,13 @@ import static io.left.rightmesh.core.module.cla.stcp.Configuration.CLA_STCP_LIST
 import static io.left.rightmesh.core.module.cla.stcp.Configuration.CLA_STCP_LISTENING_PORT_DEFAULT;
 
 import io.left.rightmesh.libcbor.CBOR;
-import io.left.rightmesh.libcbor.CborEncoder;
 import io.left.rightmesh.libcbor.CborParser;
 import io.left.rightmesh.libcbor.rxparser.RxParserException;
 import io.left.rightmesh.libdtn.common.ExtensionToolbox;
 import io.left.rightmesh.libdtn.common.data.Bundle;
 import io.left.rightmesh.libdtn.common.data.blob.BlobFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.parser.BundleV7Item;
+import io.left.rightmesh.libdtn.common.data.bundlev7.processor.HeaderProcessor;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BlockDataSerializerFactory;
 import io.left.rightmesh.libdtn.common.data.bundlev7.serializer.BundleV7Serializer;
 import io.left.rightmesh.libdtn.common.data.eid.BaseClaEid;
@@ -181,13 +181,11 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
                 return Observable.error(new RecvOnlyPeerException());
             }
             */
-            Flowable<ByteBuffer> job = createBundleJob(bundle, serializerFactory);
-            if (job == null) {
-                return Observable.error(new Throwable("Cannot serialize the bundle"));
-            }
-
-            ConnectionAPI.TrackOrder handle = tcpcon.order(job);
-            return handle.track();
+            ConnectionAPI.TrackOrder handle = tcpcon.order(
+                    createBundleJob(bundle, serializerFactory));
+            /* a bundle that fails mid-frame, such as a relayed payload that was aborted, leaves
+             * the stream unparseable for the peer: the connection must go */
+            return handle.track().doOnError(e -> tcpcon.closeNow());
         }
 
 
@@ -238,6 +236,13 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
         @Override
         public Observable<Bundle> recvBundle(ExtensionToolbox toolbox,
                                              BlobFactory blobFactory) {
+            return recvBundle(toolbox, blobFactory, null);
+        }
+
+        @Override
+        public Observable<Bundle> recvBundle(ExtensionToolbox toolbox,
+                                             BlobFactory blobFactory,
+                                             HeaderProcessor headerProcessor) {
             /*
             if (initiator) {
                 return Observable.create(s ->
@@ -257,17 +262,26 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
             */
 
             return Observable.<Bundle>create(s -> {
+                /* one bundle item for the channel, its parser is reused for every bundle */
+                BundleV7Item bundleItem = new BundleV7Item(
+                        logger,
+                        toolbox,
+                        blobFactory,
+                        headerProcessor);
                 CborParser pdu = CBOR.parser()
                         .cbor_open_array(2)
                         .cbor_parse_int((p, t, i) -> {
                             // we might want check the length and refuse large bundle
                         })
                         .cbor_parse_custom_item(
-                                () -> new BundleV7Item(
-                                        logger,
-                                        toolbox,
-                                        blobFactory),
-                                (p, t, item) -> s.onNext(item.bundle));
+                                () -> bundleItem,
+                                (p, t, item) -> {
+                                    if (item.rejected) {
+                                        item.bundle.clearBundle();
+                                    } else {
+                                        s.onNext(item.bundle);
+                                    }
+                                });
 
                 tcpcon.recv().subscribe(
                         buffer -> {
@@ -294,25 +308,13 @@ public class ConvergenceLayerStcp implements ConvergenceLayerSpi {
             }).observeOn(Schedulers.io());
         }
 
+        /* the length prefix is measured on the serialization that is sent */
         Flowable<ByteBuffer> createBundleJob(Bundle b,
                                              BlockDataSerializerFactory serializerFactory) {
-            CborEncoder encodedB = BundleV7Serializer.encode(b, serializerFactory);
-            long[] size = {0};
-            encodedB.observe().subscribe(
-                    buffer -> {
-                        size[0] += buffer.remaining();
-                    },
-                    e -> {
-                        size[0] = -1;
-                    });
-            if (size[0] < 0) {
-                return null;
-            }
-            return CBOR.encoder()
-                    .cbor_start_array(2)
-                    .cbor_encode_int(size[0])
-                    .merge(encodedB)
-                    .observe(2048);
+            return BundleV7Serializer.observe(b, serializerFactory,
+                    size -> CBOR.encoder()
+                            .cbor_start_array(2)
+                            .cbor_encode_int(size));
         }
 
     }
@@ -57,7 +57,8 @@ public class RequestBundle {
                                 s.onCompleted();
                             },
                             s::onError))
-                    .flatMap((bundle) -> res.write(nettyBLOB(bundle.getPayloadBlock().data)));
+                    .flatMap((bundle) -> res.write(nettyBLOB(bundle.getPayloadBlock().data))
+                            .doAfterTerminate(bundle::clearBundle));
         } else {
             return res.writeString(just("no such bundle"));
         }